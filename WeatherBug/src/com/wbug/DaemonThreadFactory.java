@@ -0,0 +1,37 @@
+package com.wbug;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates named daemon threads, so that idle background workers do not prevent the JVM from exiting.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+    /** The thread name prefix. */
+    private final String prefix;
+
+    /** The number of threads created so far. */
+    private int count;
+
+    /**
+     * Constructs a new thread factory.
+     * 
+     * @param prefix
+     *            the thread name prefix.
+     */
+    public DaemonThreadFactory(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+     */
+    public synchronized Thread newThread(Runnable r) {
+        Thread t = new Thread(r, prefix + "-" + (++count));
+        t.setDaemon(true);
+        return t;
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.wbug;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wbug.cache.AccessHistory;
+import com.wbug.cache.CacheKeys;
+import com.wbug.cache.DiskCache;
+
+/**
+ * Refreshes the popular responses of the disk cache of a service shortly before they expire, so that user-facing calls find them
+ * fresh.
+ * <p>
+ * The prefetcher relies on the access histories kept by the {@link DiskCache}: every round, it looks at the cached forecasts
+ * (<i>getForecastRSS</i>) and live compact weather (<i>getLiveCompactWeatherRSS</i>) entries that expire within the lead time,
+ * estimates from the hour-of-day pattern of each key how many times it will be requested during its next time-to-live, and
+ * refreshes the entries expected to be requested at least once, most demanded first. Refreshes are issued as
+ * {@link RequestScheduler#PREFETCH} requests and within a share of the request budget; the entries left over wait for the next
+ * round or for a user request.
+ * <p>
+ * Only the methods cached by the disk cache are prefetched, and the prefetcher leaves the cache configuration alone: the live
+ * compact weather is not cached by default, to prefetch it the application must give it a time-to-live, for instance
+ * <code>diskCache.setTimeToLive("getLiveCompactWeatherRSS", Prefetcher.LIVE_TIME_TO_LIVE)</code>. This affects every caller of
+ * the service, which may then be served live readings up to the maximum staleness of the cache after their expiration (see
+ * {@link DiskCache#setMaxStaleness(long)}).
+ */
+public class Prefetcher {
+
+    /** Default time before expiration at which an entry can be refreshed (2 minutes, in milliseconds). */
+    public static final long DEFAULT_LEAD_TIME = 2 * 60 * 1000L;
+
+    /** Default interval between two rounds (30 seconds, in milliseconds). */
+    public static final long DEFAULT_PERIOD = 30 * 1000L;
+
+    /** Default minimum number of expected requests for an entry to be refreshed. */
+    public static final double DEFAULT_MIN_DEMAND = 1;
+
+    /** The suggested time-to-live of the live compact weather responses when prefetched (5 minutes, in milliseconds). */
+    public static final long LIVE_TIME_TO_LIVE = 5 * 60 * 1000L;
+
+    /** The methods whose responses are prefetched. */
+    private static final String[] METHODS = new String[] { "getForecastRSS", "getLiveCompactWeatherRSS" };
+
+    /** The service whose responses are refreshed. */
+    private final WeatherBugService service;
+
+    /** The disk cache of the service. */
+    private final DiskCache diskCache;
+
+    /** The budget of the prefetch requests. */
+    private final RequestBudget budget;
+
+    /** The time before expiration at which an entry can be refreshed (in milliseconds). */
+    private final long leadTime;
+
+    /** The minimum number of expected requests for an entry to be refreshed. */
+    private final double minDemand;
+
+    /** The number of refreshed entries. */
+    private final AtomicLong prefetchCount = new AtomicLong();
+
+    /** The number of due entries left over for lack of budget. */
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    /** The number of failed refreshes. */
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /** The thread running the rounds (<code>null</code> when the prefetcher is stopped). */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs a new prefetcher with the default lead time and minimum demand.
+     * 
+     * @param service
+     *            the service whose responses are refreshed; it must have a disk cache.
+     * @param budget
+     *            the global request budget.
+     * @param budgetShare
+     *            the share of the global request budget the prefetcher may use, between <code>0</code> and <code>1</code>.
+     */
+    public Prefetcher(WeatherBugService service, RequestBudget budget, double budgetShare) {
+        this(service, budget, budgetShare, DEFAULT_LEAD_TIME, DEFAULT_MIN_DEMAND);
+    }
+
+    /**
+     * Constructs a new prefetcher.
+     * 
+     * @param service
+     *            the service whose responses are refreshed; it must have a disk cache.
+     * @param budget
+     *            the global request budget.
+     * @param budgetShare
+     *            the share of the global request budget the prefetcher may use, between <code>0</code> and <code>1</code>.
+     * @param leadTimeMillis
+     *            the time before expiration at which an entry can be refreshed (in milliseconds).
+     * @param minDemand
+     *            the minimum number of requests expected during the next time-to-live of an entry for it to be refreshed.
+     */
+    public Prefetcher(WeatherBugService service, RequestBudget budget, double budgetShare, long leadTimeMillis, double minDemand) {
+        if (service.getDiskCache() == null) {
+            throw new IllegalArgumentException("The service has no disk cache");
+        }
+        if (budgetShare <= 0 || budgetShare > 1) {
+            throw new IllegalArgumentException("Invalid budget share: " + budgetShare);
+        }
+        if (leadTimeMillis <= 0) {
+            throw new IllegalArgumentException("Invalid lead time: " + leadTimeMillis);
+        }
+        this.service = service;
+        this.diskCache = service.getDiskCache();
+        this.budget = new RequestBudget(budget.getRequestsPerSecond() * budgetShare);
+        this.leadTime = leadTimeMillis;
+        this.minDemand = minDemand;
+    }
+
+    /**
+     * Starts the rounds, every {@link #DEFAULT_PERIOD}. Does nothing if the prefetcher is already running.
+     */
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("wbug-prefetcher"));
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                RequestScheduler.setPriority(RequestScheduler.PREFETCH);
+                prefetch();
+            }
+        }, 0, DEFAULT_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the rounds. A refresh in progress still completes.
+     */
+    public synchronized void stop() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        executor = null;
+    }
+
+    /**
+     * Runs a round: refreshes the due entries expected to be requested, most demanded first, as long as the budget allows. The
+     * permit taken for an entry already being refreshed is given back.
+     * 
+     * @return the number of refreshed entries.
+     */
+    public int prefetch() {
+        final long now = System.currentTimeMillis();
+        List candidates = new ArrayList();
+        final Map demands = new HashMap();
+        for (Iterator i = diskCache.getAccessHistories().entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            String key = (String) entry.getKey();
+            String methodName = getMethodName(key);
+            if (methodName == null) {
+                continue;
+            }
+            long expiresTime = diskCache.getExpiresTime(key);
+            if (expiresTime < 0 || expiresTime > now + leadTime) {
+                continue;
+            }
+            long from = Math.max(now, expiresTime);
+            double demand = ((AccessHistory) entry.getValue()).getExpectedAccesses(from,
+                    from + diskCache.getTimeToLive(methodName));
+            if (demand >= minDemand) {
+                candidates.add(key);
+                demands.put(key, Double.valueOf(demand));
+            }
+        }
+        Collections.sort(candidates, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                return ((Double) demands.get(o2)).compareTo((Double) demands.get(o1));
+            }
+        });
+        int refreshed = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!budget.tryAcquire()) {
+                skippedCount.addAndGet(candidates.size() - i);
+                break;
+            }
+            String key = (String) candidates.get(i);
+            int result = service.prefetch(getMethodName(key), CacheKeys.getParameters(key));
+            if (result == WeatherBugService.PREFETCHED) {
+                prefetchCount.incrementAndGet();
+                refreshed++;
+            } else if (result == WeatherBugService.PREFETCH_FAILED) {
+                failureCount.incrementAndGet();
+            } else {
+                budget.release();
+            }
+        }
+        return refreshed;
+    }
+
+    /**
+     * Returns the number of entries refreshed so far.
+     * 
+     * @return the number of prefetches.
+     */
+    public long getPrefetchCount() {
+        return prefetchCount.get();
+    }
+
+    /**
+     * Returns the number of due entries left over for lack of budget so far.
+     * 
+     * @return the number of skipped entries.
+     */
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    /**
+     * Returns the number of refreshes that failed so far.
+     * 
+     * @return the number of failures.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Returns the method of a cache key, if prefetched.
+     * 
+     * @param key
+     *            the cache key, as built by {@link CacheKeys#key(String, Map)}.
+     * @return the method name, or <code>null</code> if the method is not prefetched.
+     */
+    private static String getMethodName(String key) {
+        String endpoint = CacheKeys.getEndpoint(key);
+        for (int i = 0; i < METHODS.length; i++) {
+            if (METHODS[i].equals(endpoint)) {
+                return METHODS[i];
+            }
+        }
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "prefetched=" + getPrefetchCount() + ", skipped=" + getSkippedCount() + ", failures=" + getFailureCount();
+    }
+
+}
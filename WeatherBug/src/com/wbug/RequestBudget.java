@@ -0,0 +1,107 @@
+package com.wbug;
+
+/**
+ * A token bucket limiting the rate of requests issued against the WeatherBug API. Permits are refilled continuously at a fixed
+ * rate and up to a maximum burst size, so that a budget of <i>n</i> requests per minute is spent evenly rather than all at once.
+ * Instances are thread-safe.
+ */
+public class RequestBudget {
+
+    /** The number of permits added per millisecond. */
+    private final double permitsPerMillis;
+
+    /** The maximum number of permits that can be stored. */
+    private final double maxPermits;
+
+    /** The number of permits currently available. */
+    private double storedPermits;
+
+    /** The last time (in milliseconds) the stored permits have been refilled. */
+    private long lastRefillTime;
+
+    /**
+     * Constructs a new budget that allows bursts of one second of requests.
+     * 
+     * @param requestsPerSecond
+     *            the number of requests allowed per second.
+     */
+    public RequestBudget(double requestsPerSecond) {
+        this(requestsPerSecond, Math.max(1, requestsPerSecond));
+    }
+
+    /**
+     * Constructs a new budget.
+     * 
+     * @param requestsPerSecond
+     *            the number of requests allowed per second.
+     * @param maxBurst
+     *            the maximum number of requests that can be issued at once after a period of inactivity.
+     */
+    public RequestBudget(double requestsPerSecond, double maxBurst) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("Invalid request rate: " + requestsPerSecond);
+        }
+        if (maxBurst < 1) {
+            throw new IllegalArgumentException("Invalid burst size: " + maxBurst);
+        }
+        this.permitsPerMillis = requestsPerSecond / 1000;
+        this.maxPermits = maxBurst;
+        this.storedPermits = 1;
+        this.lastRefillTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the number of requests allowed per second.
+     * 
+     * @return the request rate.
+     */
+    public double getRequestsPerSecond() {
+        return permitsPerMillis * 1000;
+    }
+
+    /**
+     * Acquires a permit, waiting until one is available.
+     * 
+     * @throws InterruptedException
+     *             if the current thread has been interrupted while waiting.
+     */
+    public void acquire() throws InterruptedException {
+        long wait;
+        while ((wait = reserve()) > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    /**
+     * Acquires a permit only if it is immediately available.
+     * 
+     * @return <code>true</code> if the permit has been acquired.
+     */
+    public boolean tryAcquire() {
+        return reserve() == 0;
+    }
+
+    /**
+     * Gives back a permit acquired but not used, for instance because the request turned out to be unnecessary.
+     */
+    public synchronized void release() {
+        storedPermits = Math.min(maxPermits, storedPermits + 1);
+    }
+
+    /**
+     * Takes a permit if available, otherwise computes how long the caller should wait before retrying.
+     * 
+     * @return <code>0</code> if a permit has been taken, or the number of milliseconds to wait.
+     */
+    private synchronized long reserve() {
+        long now = System.currentTimeMillis();
+        storedPermits = Math.min(maxPermits, storedPermits + (now - lastRefillTime) * permitsPerMillis);
+        lastRefillTime = now;
+        if (storedPermits >= 1) {
+            storedPermits -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - storedPermits) / permitsPerMillis));
+    }
+
+}
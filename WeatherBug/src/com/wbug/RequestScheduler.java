@@ -0,0 +1,530 @@
+package com.wbug;
+
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits the requests issued against the WeatherBug API according to their class, so that background work sharing a service
+ * cannot starve interactive lookups.
+ * <p>
+ * Each request belongs to one of three classes ({@link #INTERACTIVE}, {@link #BACKGROUND} or {@link #PREFETCH}), taken from the
+ * calling thread (see {@link #setPriority(int)}). Each class has its own FIFO queue; a dispatcher thread dequeues them by
+ * weighted fair sharing (stride scheduling) into a bounded number of concurrent requests and, when a {@link RequestBudget} is
+ * given, spends its permits in the same order. A queued request is dropped, rather than sent, once it can no longer complete
+ * before the deadline of its thread (see {@link #setTimeout(long)}), considering the average duration of the recent requests.
+ * Instances are thread-safe.
+ */
+public class RequestScheduler {
+
+    /** The class of requests a user is waiting for. */
+    public static final int INTERACTIVE = 0;
+
+    /** The class of the periodic background requests (polling, refreshes). */
+    public static final int BACKGROUND = 1;
+
+    /** The class of the speculative requests. */
+    public static final int PREFETCH = 2;
+
+    /** Default maximum number of concurrent requests. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+
+    /** Default weights of the request classes, indexed by class. */
+    private static final int[] DEFAULT_WEIGHTS = new int[] { 8, 2, 1 };
+
+    /** The number of request classes. */
+    private static final int CLASS_COUNT = 3;
+
+    /** The request class of the current thread. */
+    private static final ThreadLocal PRIORITY = new ThreadLocal();
+
+    /** The time-out of the requests of the current thread (<code>Long</code>, in milliseconds). */
+    private static final ThreadLocal TIMEOUT = new ThreadLocal();
+
+    /** State of a queued ticket. */
+    private static final int WAITING = 0;
+
+    /** State of a ticket allowed to proceed. */
+    private static final int GRANTED = 1;
+
+    /** State of a ticket dropped from its queue. */
+    private static final int DROPPED = 2;
+
+    /** State of a ticket whose request has completed. */
+    private static final int RELEASED = 3;
+
+    /** The maximum number of concurrent requests. */
+    private final int maxConcurrency;
+
+    /** The request budget spent by the granted requests (may be <code>null</code>). */
+    private final RequestBudget budget;
+
+    /** The weights of the request classes. */
+    private final int[] weights;
+
+    /** The queues of waiting tickets, indexed by class. */
+    private final LinkedList[] queues = new LinkedList[CLASS_COUNT];
+
+    /** The virtual time at which each class is next served. */
+    private final double[] passes = new double[CLASS_COUNT];
+
+    /** The number of granted requests, indexed by class. */
+    private final long[] grantedCounts = new long[CLASS_COUNT];
+
+    /** The number of dropped requests, indexed by class. */
+    private final long[] droppedCounts = new long[CLASS_COUNT];
+
+    /** The lock guarding the scheduler state. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Signalled when a ticket is queued or a request completes. */
+    private final Condition changed = lock.newCondition();
+
+    /** The dispatcher thread. */
+    private final Thread dispatcher;
+
+    /** The virtual time of the last dispatched ticket. */
+    private double virtualTime;
+
+    /** The number of requests in progress. */
+    private int activeCount;
+
+    /** Whether a budget permit has been acquired and not yet given to a request. */
+    private boolean permitHeld;
+
+    /** The average duration of the recent requests (in milliseconds). */
+    private double averageDuration;
+
+    /** Whether the scheduler has been shut down. */
+    private boolean shutdown;
+
+    /**
+     * Constructs a new scheduler with the default concurrency, no request budget and the default weights (8 interactive requests
+     * for 2 background and 1 prefetch request).
+     */
+    public RequestScheduler() {
+        this(DEFAULT_MAX_CONCURRENCY, null);
+    }
+
+    /**
+     * Constructs a new scheduler with the default weights.
+     * 
+     * @param maxConcurrency
+     *            the maximum number of concurrent requests.
+     * @param budget
+     *            the request budget spent by the requests (may be <code>null</code>).
+     */
+    public RequestScheduler(int maxConcurrency, RequestBudget budget) {
+        this(maxConcurrency, budget, DEFAULT_WEIGHTS);
+    }
+
+    /**
+     * Constructs a new scheduler.
+     * 
+     * @param maxConcurrency
+     *            the maximum number of concurrent requests.
+     * @param budget
+     *            the request budget spent by the requests (may be <code>null</code>).
+     * @param weights
+     *            the weights of the interactive, background and prefetch classes: when all the queues are busy, each class gets a
+     *            share of the requests proportional to its weight.
+     */
+    public RequestScheduler(int maxConcurrency, RequestBudget budget, int[] weights) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Invalid concurrency: " + maxConcurrency);
+        }
+        if (weights.length != CLASS_COUNT) {
+            throw new IllegalArgumentException("Invalid number of weights: " + weights.length);
+        }
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            if (weights[i] < 1) {
+                throw new IllegalArgumentException("Invalid weight: " + weights[i]);
+            }
+            queues[i] = new LinkedList();
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.budget = budget;
+        this.weights = weights.clone();
+        dispatcher = new DaemonThreadFactory("wbug-scheduler").newThread(new Runnable() {
+            public void run() {
+                dispatch();
+            }
+        });
+        dispatcher.start();
+    }
+
+    /**
+     * Sets the class of the requests issued by the current thread ({@link #INTERACTIVE} by default).
+     * 
+     * @param priority
+     *            the request class.
+     */
+    public static void setPriority(int priority) {
+        if (priority < 0 || priority >= CLASS_COUNT) {
+            throw new IllegalArgumentException("Invalid request class: " + priority);
+        }
+        PRIORITY.set(Integer.valueOf(priority));
+    }
+
+    /**
+     * Returns the class of the requests issued by the current thread.
+     * 
+     * @return the request class.
+     */
+    public static int getPriority() {
+        Integer priority = (Integer) PRIORITY.get();
+        return (priority != null) ? priority.intValue() : INTERACTIVE;
+    }
+
+    /**
+     * Sets the time-out of the requests issued by the current thread, that is the time within which a request must complete,
+     * waiting included. Requests that can no longer complete in time are dropped while queued.
+     * 
+     * @param timeoutMillis
+     *            the time-out (in milliseconds), or <code>0</code> for none (the default).
+     */
+    public static void setTimeout(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("Invalid time-out: " + timeoutMillis);
+        }
+        TIMEOUT.set(Long.valueOf(timeoutMillis));
+    }
+
+    /**
+     * Returns the time-out of the requests issued by the current thread.
+     * 
+     * @return the time-out (in milliseconds), or <code>0</code> for none.
+     */
+    public static long getTimeout() {
+        Long timeout = (Long) TIMEOUT.get();
+        return (timeout != null) ? timeout.longValue() : 0;
+    }
+
+    /**
+     * Waits until the current thread is allowed to issue a request. Each successful call must be followed by a call to
+     * {@link #release(Ticket)} once the request has completed.
+     * 
+     * @return the ticket of the request.
+     * @throws WeatherBugServiceException
+     *             if the request has been dropped, the thread has been interrupted or the scheduler has been shut down.
+     */
+    public Ticket acquire() throws WeatherBugServiceException {
+        long timeout = getTimeout();
+        Ticket ticket = new Ticket(getPriority(), (timeout > 0) ? System.currentTimeMillis() + timeout : 0, lock.newCondition());
+        lock.lock();
+        try {
+            if (shutdown) {
+                throw new WeatherBugServiceException("Request scheduler shut down");
+            }
+            LinkedList queue = queues[ticket.priority];
+            if (queue.isEmpty()) {
+                passes[ticket.priority] = Math.max(passes[ticket.priority], virtualTime);
+            }
+            queue.addLast(ticket);
+            changed.signal();
+            try {
+                while (ticket.state == WAITING) {
+                    if (ticket.deadline == 0) {
+                        ticket.condition.await();
+                    } else {
+                        long remaining = ticket.deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            drop(ticket);
+                            break;
+                        }
+                        ticket.condition.await(remaining, TimeUnit.MILLISECONDS);
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (ticket.state == WAITING) {
+                    queue.remove(ticket);
+                    Thread.currentThread().interrupt();
+                    throw new WeatherBugServiceException("Interrupted while waiting for the request to be scheduled", e);
+                }
+                Thread.currentThread().interrupt();
+            }
+            if (ticket.state == DROPPED) {
+                throw new WeatherBugServiceException("Request dropped: it cannot complete within " + getTimeout() + " ms");
+            }
+        } finally {
+            lock.unlock();
+        }
+        ticket.startTime = System.currentTimeMillis();
+        return ticket;
+    }
+
+    /**
+     * Signals that a request has completed, making room for the next one.
+     * 
+     * @param ticket
+     *            the ticket returned by {@link #acquire()}.
+     */
+    public void release(Ticket ticket) {
+        lock.lock();
+        try {
+            if (ticket.state != GRANTED) {
+                return;
+            }
+            ticket.state = RELEASED;
+            activeCount--;
+            long duration = System.currentTimeMillis() - ticket.startTime;
+            averageDuration = (averageDuration == 0) ? duration : averageDuration + (duration - averageDuration) / 8;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the dispatcher. Queued requests are dropped and further requests are refused.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (int i = 0; i < CLASS_COUNT; i++) {
+                while (!queues[i].isEmpty()) {
+                    drop((Ticket) queues[i].getFirst());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispatcher.interrupt();
+    }
+
+    /**
+     * Returns the maximum number of concurrent requests.
+     * 
+     * @return the maximum concurrency.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns the number of requests in progress.
+     * 
+     * @return the number of active requests.
+     */
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return activeCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a class waiting to be scheduled.
+     * 
+     * @param priority
+     *            the request class.
+     * @return the queue length.
+     */
+    public int getQueueLength(int priority) {
+        lock.lock();
+        try {
+            return queues[priority].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a class allowed to proceed so far.
+     * 
+     * @param priority
+     *            the request class.
+     * @return the number of granted requests.
+     */
+    public long getGrantedCount(int priority) {
+        lock.lock();
+        try {
+            return grantedCounts[priority];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of requests of a class dropped so far.
+     * 
+     * @param priority
+     *            the request class.
+     * @return the number of dropped requests.
+     */
+    public long getDroppedCount(int priority) {
+        lock.lock();
+        try {
+            return droppedCounts[priority];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the average duration of the recent requests, used to drop the requests that cannot complete in time.
+     * 
+     * @return the average duration (in milliseconds).
+     */
+    public long getAverageDuration() {
+        lock.lock();
+        try {
+            return Math.round(averageDuration);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Dispatcher loop: grants the queued tickets by weighted fair order, within the concurrency limit and the request budget.
+     */
+    private void dispatch() {
+        lock.lock();
+        try {
+            while (!shutdown) {
+                if (activeCount >= maxConcurrency || isIdle()) {
+                    changed.await();
+                    continue;
+                }
+                if (budget != null && !permitHeld) {
+                    lock.unlock();
+                    try {
+                        budget.acquire();
+                    } finally {
+                        lock.lock();
+                    }
+                    permitHeld = true;
+                    continue;
+                }
+                Ticket ticket = next();
+                if (ticket.deadline != 0 && System.currentTimeMillis() + averageDuration > ticket.deadline) {
+                    drop(ticket);
+                    continue;
+                }
+                ticket.state = GRANTED;
+                grantedCounts[ticket.priority]++;
+                activeCount++;
+                permitHeld = false;
+                ticket.condition.signal();
+            }
+        } catch (InterruptedException e) {
+            // shut down
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Indicates whether all the queues are empty. Must be called with the lock held.
+     * 
+     * @return <code>true</code> if no ticket is waiting.
+     */
+    private boolean isIdle() {
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            if (!queues[i].isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the next ticket to serve: the head of the non-empty queue with the smallest pass, ties going to the higher priority.
+     * Must be called with the lock held, at least one queue being non-empty.
+     * 
+     * @return the next ticket.
+     */
+    private Ticket next() {
+        int selected = -1;
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            if (!queues[i].isEmpty() && (selected < 0 || passes[i] < passes[selected])) {
+                selected = i;
+            }
+        }
+        virtualTime = passes[selected];
+        passes[selected] += 1.0 / weights[selected];
+        return (Ticket) queues[selected].removeFirst();
+    }
+
+    /**
+     * Drops a waiting ticket and wakes up its thread. Must be called with the lock held.
+     * 
+     * @param ticket
+     *            the ticket being dropped.
+     */
+    private void drop(Ticket ticket) {
+        queues[ticket.priority].remove(ticket);
+        ticket.state = DROPPED;
+        droppedCounts[ticket.priority]++;
+        ticket.condition.signal();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        lock.lock();
+        try {
+            return "active=" + activeCount + ", queued=" + queues[INTERACTIVE].size() + "/" + queues[BACKGROUND].size() + "/"
+                    + queues[PREFETCH].size() + ", granted=" + grantedCounts[INTERACTIVE] + "/" + grantedCounts[BACKGROUND] + "/"
+                    + grantedCounts[PREFETCH] + ", dropped=" + droppedCounts[INTERACTIVE] + "/" + droppedCounts[BACKGROUND] + "/"
+                    + droppedCounts[PREFETCH] + ", averageDuration=" + Math.round(averageDuration);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A request admitted by the scheduler, to be released once completed.
+     */
+    public static final class Ticket {
+
+        /** The request class. */
+        private final int priority;
+
+        /** The time (in milliseconds) by which the request must complete, or <code>0</code> for none. */
+        private final long deadline;
+
+        /** Signalled when the ticket is granted or dropped. */
+        private final Condition condition;
+
+        /** The ticket state. */
+        private int state = WAITING;
+
+        /** The time (in milliseconds) the request started. */
+        private long startTime;
+
+        /**
+         * Constructs a new ticket.
+         * 
+         * @param priority
+         *            the request class.
+         * @param deadline
+         *            the time (in milliseconds) by which the request must complete, or <code>0</code> for none.
+         * @param condition
+         *            the condition signalled when the ticket is granted or dropped.
+         */
+        private Ticket(int priority, long deadline, Condition condition) {
+            this.priority = priority;
+            this.deadline = deadline;
+            this.condition = condition;
+        }
+
+        /**
+         * Returns the request class.
+         * 
+         * @return the request class.
+         */
+        public int getPriority() {
+            return priority;
+        }
+
+    }
+
+}
@@ -1,79 +1,287 @@
 package com.wbug;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpException;
 import org.apache.commons.httpclient.HttpMethodBase;
-import org.apache.commons.httpclient.SimpleHttpConnectionManager;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.params.HttpMethodParams;
 import org.apache.commons.lang.ObjectUtils;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
-import org.dom4j.DocumentFactory;
-import org.dom4j.io.SAXReader;
-import org.xml.sax.InputSource;
+import org.dom4j.Element;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
 
+import com.wbug.cache.CacheKeys;
+import com.wbug.cache.DiskCache;
+import com.wbug.cache.NegativeCache;
 import com.wbug.data.Alert;
+import com.wbug.data.DataObjectHandler;
 import com.wbug.data.Forecasts;
+import com.wbug.data.LazyLiveWeather;
 import com.wbug.data.LiveCompactWeather;
 import com.wbug.data.LiveWeather;
 import com.wbug.data.Location;
+import com.wbug.data.ProjectionFilter;
+import com.wbug.data.PushXmlParser;
+import com.wbug.data.SaxXmlParser;
 import com.wbug.data.Station;
+import com.wbug.data.StaxXmlParser;
+import com.wbug.data.StreamingBinder;
 import com.wbug.data.WeatherBugDataUtils;
+import com.wbug.data.XmlParser;
 
 /**
  * The WeatherBug service.
+ * <p>
+ * Instances are immutable and can be safely shared among threads: the configuration is fixed at construction time (see
+ * {@link Builder}; the deprecated {@link #setTimeout(int)} is the only exception, and is itself thread-safe), the HTTP
+ * connections are pooled and kept alive across requests, and the XML parsers are reused per thread.
+ * The responses of slow-changing methods can be cached on disk to survive restarts (see {@link Builder#diskCache(DiskCache)}).
+ * The <i>aws</i> namespace prefix is bound on the document factory returned by {@link WeatherBugDataUtils#getDocumentFactory()},
+ * so the process-wide dom4j factory is left untouched.
+ * <p>
+ * <b>Each instance owns a pool of HTTP connections</b>, which keeps connections open between requests. Create one service and
+ * share it rather than creating one per call, and call {@link #shutdown()} once it is no longer needed: the connections of a
+ * service that is merely dropped stay open until it is garbage collected. The threads fetching the parts of the weather bundles
+ * are shared by all the instances, and the idle background threads exit on their own.
  */
 public class WeatherBugService {
 
     /** HTTP connection default time-out (in milliseconds). */
     public static final int DEFAULT_TIMEOUT = 20000;
 
+    /** Default maximum number of pooled HTTP connections. */
+    public static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    /** The size of the chunks read from the streamed responses (in bytes). */
+    private static final int STREAMING_BUFFER_SIZE = 4096;
+
+    /** The result of {@link #prefetch(String, Map)} when the response has been refreshed. */
+    static final int PREFETCHED = 1;
+
+    /** The result of {@link #prefetch(String, Map)} when the refresh request failed. */
+    static final int PREFETCH_FAILED = 0;
+
     /**
-     * The alphanumeric license key issued by WeatherBug.
+     * The result of {@link #prefetch(String, Map)} when no request was issued: the method is not cached or the response is
+     * already being refreshed.
      */
-    private String aCode;
+    static final int PREFETCH_SKIPPED = -1;
+
+    /** The time an idle background thread is kept (in seconds). */
+    private static final long IDLE_THREAD_TIMEOUT = 60;
+
+    /** The threads fetching the parts of the weather bundles, shared by all the instances (created on demand). */
+    private static final ExecutorService BUNDLE_WORKERS = Executors.newCachedThreadPool(new DaemonThreadFactory("wbug-bundle"));
 
-    /** The current time-out (default = DEFAULT_TIMEOUT). */
-    private int timeout = DEFAULT_TIMEOUT;
+    /**
+     * The XPaths of the data elements of the method responses, keyed by method name. A response holding none is empty and is
+     * not stored in the disk cache.
+     */
+    private static final Map RECORD_PATHS = new HashMap();
 
     /* static initializer */
     static {
-        Map nsURIs = DocumentFactory.getInstance().getXPathNamespaceURIs();
-        if (nsURIs == null) {
-            nsURIs = new HashMap();
-        }
-        nsURIs.put("aws", "http://www.aws.com/aws");
-        DocumentFactory.getInstance().setXPathNamespaceURIs(nsURIs);
+        RECORD_PATHS.put("getLocationsXML", "/aws:weather/aws:locations/aws:location");
+        RECORD_PATHS.put("getStationsXML", "/aws:weather/aws:stations/aws:station");
+        RECORD_PATHS.put("getLiveWeatherRSS", "/rss/channel/aws:weather");
+        RECORD_PATHS.put("getLiveCompactWeatherRSS", "/rss/channel/aws:weather");
+        RECORD_PATHS.put("getForecastRSS", "/rss/channel/aws:weather");
     }
 
     /**
-     * Constructs a new WeatherBug service.
+     * The alphanumeric license key issued by WeatherBug.
+     */
+    private final String aCode;
+
+    /** The HTTP connection time-out (default = DEFAULT_TIMEOUT). */
+    private volatile int timeout;
+
+    /** Indicates whether live weather fields are decoded on first access (see {@link LazyLiveWeather}). */
+    private final boolean lazyBinding;
+
+    /** The disk cache of the responses (may be <code>null</code>). */
+    private final DiskCache diskCache;
+
+    /** The cache of the requests with empty responses (may be <code>null</code>). */
+    private final NegativeCache negativeCache;
+
+    /** The scheduler admitting the requests (may be <code>null</code>). */
+    private final RequestScheduler scheduler;
+
+    /** The parser of the responses. */
+    private final XmlParser xmlParser;
+
+    /** The executor refreshing the expired disk cache entries (<code>null</code> without disk cache). */
+    private final ExecutorService refresher;
+
+    /** The keys of the disk cache entries being refreshed. */
+    private final ConcurrentMap refreshing = new ConcurrentHashMap();
+
+    /** The pool of HTTP connections, shared by all the requests. */
+    private final MultiThreadedHttpConnectionManager connectionManager;
+
+    /** The HTTP client, shared by all the requests. */
+    private final HttpClient httpClient;
+
+    /**
+     * Constructs a new WeatherBug service using the default configuration.
      * 
      * @param aCode
      *            the alphanumeric license key issued by WeatherBug.
      */
     public WeatherBugService(String aCode) {
-        this.aCode = aCode;
+        this(new Builder(aCode));
+    }
+
+    /**
+     * Constructs a new WeatherBug service from a builder.
+     * 
+     * @param builder
+     *            the builder holding the service configuration.
+     */
+    private WeatherBugService(Builder builder) {
+        this.aCode = builder.aCode;
+        this.timeout = builder.timeout;
+        this.lazyBinding = builder.lazyBinding;
+        this.diskCache = builder.diskCache;
+        this.negativeCache = builder.negativeCache;
+        this.scheduler = builder.scheduler;
+        this.xmlParser = (builder.xmlParser != null) ? builder.xmlParser : new SaxXmlParser();
+        if (diskCache != null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue(), new DaemonThreadFactory("wbug-cache-refresh"));
+            executor.allowCoreThreadTimeOut(true);
+            this.refresher = executor;
+        } else {
+            this.refresher = null;
+        }
+        connectionManager = new MultiThreadedHttpConnectionManager();
+        connectionManager.getParams().setConnectionTimeout(timeout);
+        connectionManager.getParams().setSoTimeout(timeout);
+        connectionManager.getParams().setDefaultMaxConnectionsPerHost(builder.maxConnections);
+        connectionManager.getParams().setMaxTotalConnections(builder.maxConnections);
+        httpClient = new HttpClient(connectionManager);
+        httpClient.getParams().setParameter(HttpMethodParams.USER_AGENT, "WeatherBug Eclipse plug-in (http://abso.freehostia.com)");
+    }
+
+    /**
+     * Closes the pooled HTTP connections and stops the background refresh of the disk cache. The service must not be used
+     * afterwards.
+     */
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdown();
+        }
+        connectionManager.shutdown();
     }
 
     /**
-     * Sets the timeout.
+     * Returns the HTTP connection time-out.
+     * 
+     * @return the time-out (in milliseconds).
+     * @see #DEFAULT_TIMEOUT
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the HTTP connection time-out of the requests issued from now on. Kept for the callers written before the
+     * {@link Builder}; the requests in progress keep their time-out.
      * 
      * @param timeout
-     *            the timeout.
+     *            the time-out (in milliseconds).
      * @see #DEFAULT_TIMEOUT
+     * @deprecated configure the time-out once, with {@link Builder#timeout(int)}.
      */
+    @Deprecated
     public void setTimeout(int timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Invalid time-out: " + timeout);
+        }
         this.timeout = timeout;
+        connectionManager.getParams().setConnectionTimeout(timeout);
+        connectionManager.getParams().setSoTimeout(timeout);
+    }
+
+    /**
+     * Returns the HTTP client shared by the requests of the service. Used by the tests to route the requests to a local server.
+     * 
+     * @return the HTTP client.
+     */
+    HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Indicates whether the live weather fields are decoded on first access.
+     * 
+     * @return <code>true</code> if the <i>getLiveWeather</i> methods return {@link LazyLiveWeather} instances.
+     */
+    public boolean isLazyBinding() {
+        return lazyBinding;
+    }
+
+    /**
+     * Returns the disk cache of the responses.
+     * 
+     * @return the disk cache, or <code>null</code> if responses are not cached on disk.
+     */
+    public DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    /**
+     * Returns the cache of the requests with empty responses.
+     * 
+     * @return the negative cache, or <code>null</code> if empty responses are not cached.
+     */
+    public NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+
+    /**
+     * Returns the scheduler admitting the requests.
+     * 
+     * @return the scheduler, or <code>null</code> if requests are issued as soon as they are made.
+     */
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns the parser of the responses.
+     * 
+     * @return the XML parser backend.
+     */
+    public XmlParser getXmlParser() {
+        return xmlParser;
     }
 
     /**
@@ -89,11 +297,29 @@ public class WeatherBugService {
     public Location[] getLocationList(String searchString) throws WeatherBugServiceException {
         Map params = new HashMap();
         params.put("SearchString", searchString);
-        Document doc = execute("getLocationsXML", params);
-        List locations = WeatherBugDataUtils.bind(doc, "aws:locations/aws:location", Location.class);
+        List locations = executeList("getLocationsXML", params, "aws:locations/aws:location", Location.class);
         return (Location[]) locations.toArray(new Location[0]);
     }
 
+    /**
+     * Streams the set of locations matching a specific name: each location is passed to the handler as soon as it is parsed, and
+     * the response is no longer read once the handler returns <code>false</code>.
+     * 
+     * @param searchString
+     *            the search string.
+     * @param handler
+     *            the handler of the <i>Location</i> objects.
+     * @return the number of locations passed to the handler.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public int getLocationList(String searchString, DataObjectHandler handler) throws WeatherBugServiceException {
+        Map params = new HashMap();
+        params.put("SearchString", searchString);
+        return executeStreaming("getLocationsXML", params, "aws:locations/aws:location", StreamingBinder.LOCATION_PATH,
+                Location.class, handler);
+    }
+
     /**
      * For a given ZIP code returns the weather stations in the area.
      * 
@@ -106,11 +332,29 @@ public class WeatherBugService {
     public Station[] getStationListByUSZipCode(int zipCode) throws WeatherBugServiceException {
         Map params = new HashMap();
         params.put("zipCode", Integer.toString(zipCode));
-        Document doc = execute("getStationsXML", params);
-        List stations = WeatherBugDataUtils.bind(doc, "aws:stations/aws:station", Station.class);
+        List stations = executeList("getStationsXML", params, "aws:stations/aws:station", Station.class);
         return (Station[]) stations.toArray(new Station[0]);
     }
 
+    /**
+     * Streams the weather stations in the area of a given ZIP code: each station is passed to the handler as soon as it is parsed,
+     * and the response is no longer read once the handler returns <code>false</code>.
+     * 
+     * @param zipCode
+     *            the ZIP code to match.
+     * @param handler
+     *            the handler of the <i>Station</i> objects.
+     * @return the number of stations passed to the handler.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public int getStationListByUSZipCode(int zipCode, DataObjectHandler handler) throws WeatherBugServiceException {
+        Map params = new HashMap();
+        params.put("zipCode", Integer.toString(zipCode));
+        return executeStreaming("getStationsXML", params, "aws:stations/aws:station", StreamingBinder.STATION_PATH, Station.class,
+                handler);
+    }
+
     /**
      * For a given city code returns the weather stations in the area.
      * 
@@ -123,11 +367,29 @@ public class WeatherBugService {
     public Station[] getStationListByCityCode(int cityCode) throws WeatherBugServiceException {
         Map params = new HashMap();
         params.put("cityCode", Integer.toString(cityCode));
-        Document doc = execute("getStationsXML", params);
-        List stations = WeatherBugDataUtils.bind(doc, "aws:stations/aws:station", Station.class);
+        List stations = executeList("getStationsXML", params, "aws:stations/aws:station", Station.class);
         return (Station[]) stations.toArray(new Station[0]);
     }
 
+    /**
+     * Streams the weather stations in the area of a given city code: each station is passed to the handler as soon as it is
+     * parsed, and the response is no longer read once the handler returns <code>false</code>.
+     * 
+     * @param cityCode
+     *            the city code to match.
+     * @param handler
+     *            the handler of the <i>Station</i> objects.
+     * @return the number of stations passed to the handler.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public int getStationListByCityCode(int cityCode, DataObjectHandler handler) throws WeatherBugServiceException {
+        Map params = new HashMap();
+        params.put("cityCode", Integer.toString(cityCode));
+        return executeStreaming("getStationsXML", params, "aws:stations/aws:station", StreamingBinder.STATION_PATH, Station.class,
+                handler);
+    }
+
     /**
      * For a given latitude and longitude returns the weather stations in the area.
      * 
@@ -141,13 +403,37 @@ public class WeatherBugService {
      */
     public Station[] getStationListByLatLong(double latitude, double longitude) throws WeatherBugServiceException {
         Map params = new HashMap();
-        params.put("lat", WeatherBugDataUtils.formatNumber(latitude, "0.00"));
-        params.put("long", WeatherBugDataUtils.formatNumber(longitude, "0.00"));
-        Document doc = execute("getStationsXML", params);
-        List stations = WeatherBugDataUtils.bind(doc, "/aws:weather/aws:stations/aws:station", Station.class);
+        params.put("lat", Double.valueOf(latitude));
+        params.put("long", Double.valueOf(longitude));
+        List stations = executeList("getStationsXML", params, "/aws:weather/aws:stations/aws:station", Station.class);
         return (Station[]) stations.toArray(new Station[0]);
     }
 
+    /**
+     * Streams the weather stations in the area of a given latitude and longitude: each station is passed to the handler as soon as
+     * it is parsed, and the response is no longer read once the handler returns <code>false</code>. For instance, a handler
+     * collecting the first 10 stations and then returning <code>false</code> spares reading and binding the rest of a broad
+     * search.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param handler
+     *            the handler of the <i>Station</i> objects.
+     * @return the number of stations passed to the handler.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public int getStationListByLatLong(double latitude, double longitude, DataObjectHandler handler)
+            throws WeatherBugServiceException {
+        Map params = new HashMap();
+        params.put("lat", Double.valueOf(latitude));
+        params.put("long", Double.valueOf(longitude));
+        return executeStreaming("getStationsXML", params, "/aws:weather/aws:stations/aws:station", StreamingBinder.STATION_PATH,
+                Station.class, handler);
+    }
+
     /**
      * Gets the live weather based on a station.
      * 
@@ -163,9 +449,29 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("stationid", stationId);
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getLiveWeatherRSS", params);
-        return (LiveWeather) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", LiveWeather.class);
+        return (LiveWeather) executeSingle("getLiveWeatherRSS", params, "/rss/channel/aws:weather", getLiveWeatherClass());
+
+    }
 
+    /**
+     * Gets a subset of the fields of the live weather based on a station. Only the elements of the requested fields are
+     * built from the response and bound; the other fields of the result are <code>null</code> (-1 for integers).
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @param fields
+     *            the requested fields (<code>LiveWeatherField</code> constants).
+     * @return the live weather.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public LiveWeather getLiveWeatherByStationID(String stationId, int unitType, int[] fields) throws WeatherBugServiceException {
+        Map params = new HashMap();
+        params.put("stationid", stationId);
+        params.put("UnitType", Integer.toString(unitType));
+        return executeProjection(params, fields);
     }
 
     /**
@@ -183,8 +489,28 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("zipCode", Integer.toString(zipCode));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getLiveWeatherRSS", params);
-        return (LiveWeather) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", LiveWeather.class);
+        return (LiveWeather) executeSingle("getLiveWeatherRSS", params, "/rss/channel/aws:weather", getLiveWeatherClass());
+    }
+
+    /**
+     * Gets a subset of the fields of the live weather based on a U.S. ZIP code. Only the elements of the requested fields are
+     * built from the response and bound; the other fields of the result are <code>null</code> (-1 for integers).
+     * 
+     * @param zipCode
+     *            the ZIP code to match.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @param fields
+     *            the requested fields (<code>LiveWeatherField</code> constants).
+     * @return the live weather.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public LiveWeather getLiveWeatherByUSZipCode(int zipCode, int unitType, int[] fields) throws WeatherBugServiceException {
+        Map params = new HashMap();
+        params.put("zipCode", Integer.toString(zipCode));
+        params.put("UnitType", Integer.toString(unitType));
+        return executeProjection(params, fields);
     }
 
     /**
@@ -202,8 +528,28 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("cityCode", Integer.toString(cityCode));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getLiveWeatherRSS", params);
-        return (LiveWeather) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", LiveWeather.class);
+        return (LiveWeather) executeSingle("getLiveWeatherRSS", params, "/rss/channel/aws:weather", getLiveWeatherClass());
+    }
+
+    /**
+     * Gets a subset of the fields of the live weather based on a city located outside of the U.S.. Only the elements of the requested fields are
+     * built from the response and bound; the other fields of the result are <code>null</code> (-1 for integers).
+     * 
+     * @param cityCode
+     *            the city code to match.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @param fields
+     *            the requested fields (<code>LiveWeatherField</code> constants).
+     * @return the live weather.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public LiveWeather getLiveWeatherByCityCode(int cityCode, int unitType, int[] fields) throws WeatherBugServiceException {
+        Map params = new HashMap();
+        params.put("cityCode", Integer.toString(cityCode));
+        params.put("UnitType", Integer.toString(unitType));
+        return executeProjection(params, fields);
     }
 
     /**
@@ -221,8 +567,7 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("stationid", stationId);
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getLiveCompactWeatherRSS", params);
-        return (LiveCompactWeather) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", LiveCompactWeather.class);
+        return (LiveCompactWeather) executeSingle("getLiveCompactWeatherRSS", params, "/rss/channel/aws:weather", LiveCompactWeather.class);
     }
 
     /**
@@ -240,8 +585,7 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("zipCode", Integer.toString(zipCode));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getLiveCompactWeatherRSS", params);
-        return (LiveCompactWeather) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", LiveCompactWeather.class);
+        return (LiveCompactWeather) executeSingle("getLiveCompactWeatherRSS", params, "/rss/channel/aws:weather", LiveCompactWeather.class);
     }
 
     /**
@@ -259,8 +603,7 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("cityCode", Integer.toString(cityCode));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getLiveCompactWeatherRSS", params);
-        return (LiveCompactWeather) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", LiveCompactWeather.class);
+        return (LiveCompactWeather) executeSingle("getLiveCompactWeatherRSS", params, "/rss/channel/aws:weather", LiveCompactWeather.class);
     }
 
     /**
@@ -279,11 +622,10 @@ public class WeatherBugService {
     public LiveCompactWeather getLiveCompactWeatherByLatLong(double latitude, double longitude, int unitType)
             throws WeatherBugServiceException {
         Map params = new HashMap();
-        params.put("lat", WeatherBugDataUtils.formatNumber(latitude, "0.00"));
-        params.put("long", WeatherBugDataUtils.formatNumber(longitude, "0.00"));
+        params.put("lat", Double.valueOf(latitude));
+        params.put("long", Double.valueOf(longitude));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getLiveCompactWeatherRSS", params);
-        return (LiveCompactWeather) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", LiveCompactWeather.class);
+        return (LiveCompactWeather) executeSingle("getLiveCompactWeatherRSS", params, "/rss/channel/aws:weather", LiveCompactWeather.class);
     }
 
     /**
@@ -301,8 +643,7 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("zipCode", Integer.toString(zipCode));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getForecastRSS", params);
-        return (Forecasts) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", Forecasts.class);
+        return (Forecasts) executeSingle("getForecastRSS", params, "/rss/channel/aws:weather", Forecasts.class);
     }
 
     /**
@@ -320,8 +661,7 @@ public class WeatherBugService {
         Map params = new HashMap();
         params.put("cityCode", Integer.toString(cityCode));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getForecastRSS", params);
-        return (Forecasts) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", Forecasts.class);
+        return (Forecasts) executeSingle("getForecastRSS", params, "/rss/channel/aws:weather", Forecasts.class);
     }
 
     /**
@@ -339,11 +679,10 @@ public class WeatherBugService {
      */
     public Forecasts getForecastByLatLong(double latitude, double longitude, int unitType) throws WeatherBugServiceException {
         Map params = new HashMap();
-        params.put("lat", WeatherBugDataUtils.formatNumber(latitude, "0.00"));
-        params.put("long", WeatherBugDataUtils.formatNumber(longitude, "0.00"));
+        params.put("lat", Double.valueOf(latitude));
+        params.put("long", Double.valueOf(longitude));
         params.put("UnitType", Integer.toString(unitType));
-        Document doc = execute("getForecastRSS", params);
-        return (Forecasts) WeatherBugDataUtils.bindSingle(doc, "/rss/channel/aws:weather", Forecasts.class);
+        return (Forecasts) executeSingle("getForecastRSS", params, "/rss/channel/aws:weather", Forecasts.class);
     }
 
     /**
@@ -358,14 +697,127 @@ public class WeatherBugService {
      *             if an error occurred processing the service response.
      */
     public Alert[] getAlerts(int zipCode, int unitType) throws WeatherBugServiceException {
+        return getAlerts(zipCode, unitType, null);
+    }
+
+    /**
+     * Gets the weather alerts based on a U.S. ZIP code, reusing the alerts that have already been bound.
+     * 
+     * @param zipCode
+     *            the ZIP code to match.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @param knownAlerts
+     *            the alerts already bound, keyed by {@link Alert#getIdentity()} (may be <code>null</code>). Listed alerts having
+     *            the same identity are returned as is, without being bound again.
+     * @return the weather alerts.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public Alert[] getAlerts(int zipCode, int unitType, Map knownAlerts) throws WeatherBugServiceException {
         Map params = new HashMap();
         params.put("zipCode", Integer.toString(zipCode));
         params.put("UnitType", Integer.toString(unitType));
         Document doc = execute("getAlertsRSS", params);
-        List alerts = WeatherBugDataUtils.bind(doc, "/rss/channel/aws:weather/aws:alerts/aws:alert", Alert.class);
+        List alerts = WeatherBugDataUtils.bind(doc, "/rss/channel/aws:weather/aws:alerts/aws:alert", Alert.class,
+                Alert.IDENTITY_PATH, knownAlerts);
         return (Alert[]) alerts.toArray(new Alert[0]);
     }
 
+    /**
+     * Gets the live compact weather, the forecasts and the active alerts of a U.S. ZIP code at once. The three requests are
+     * issued concurrently, with the request class and time-out of the calling thread (see {@link RequestScheduler}), so the call
+     * takes as long as the slowest of them. A failed request does not fail the others: its error is reported by the bundle.
+     * 
+     * @param zipCode
+     *            the U.S. ZIP code.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @return the weather bundle.
+     */
+    public WeatherBundle getWeatherBundleByUSZipCode(final int zipCode, final int unitType) {
+        final int priority = RequestScheduler.getPriority();
+        final long timeout = RequestScheduler.getTimeout();
+        Future liveCompactWeather = BUNDLE_WORKERS.submit(new Callable() {
+            public Object call() {
+                RequestScheduler.setPriority(priority);
+                RequestScheduler.setTimeout(timeout);
+                try {
+                    return getLiveCompactWeatherByUSZipCode(zipCode, unitType);
+                } catch (WeatherBugServiceException e) {
+                    return e;
+                }
+            }
+        });
+        Future forecasts = BUNDLE_WORKERS.submit(new Callable() {
+            public Object call() {
+                RequestScheduler.setPriority(priority);
+                RequestScheduler.setTimeout(timeout);
+                try {
+                    return getForecastByUSZipCode(zipCode, unitType);
+                } catch (WeatherBugServiceException e) {
+                    return e;
+                }
+            }
+        });
+        Object alerts;
+        try {
+            alerts = getAlerts(zipCode, unitType);
+        } catch (WeatherBugServiceException e) {
+            alerts = e;
+        } catch (RuntimeException e) {
+            liveCompactWeather.cancel(true);
+            forecasts.cancel(true);
+            throw e;
+        }
+        Object liveCompactWeatherPart = getPart(liveCompactWeather);
+        Object forecastsPart = getPart(forecasts);
+        return new WeatherBundle(zipCode, unitType, (LiveCompactWeather) getPartValue(liveCompactWeatherPart),
+                getPartError(liveCompactWeatherPart), (Forecasts) getPartValue(forecastsPart), getPartError(forecastsPart),
+                (Alert[]) getPartValue(alerts), getPartError(alerts));
+    }
+
+    /**
+     * Waits for a part of a weather bundle.
+     * 
+     * @param future
+     *            the pending part.
+     * @return the part value, or the error that occurred fetching it.
+     */
+    private static Object getPart(Future future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            return new WeatherBugServiceException("Interrupted while waiting for the response", e);
+        } catch (ExecutionException e) {
+            return new WeatherBugServiceException("Unable to perform request: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Returns the value of a part of a weather bundle.
+     * 
+     * @param part
+     *            the part value, or the error that occurred fetching it.
+     * @return the part value, or <code>null</code> if an error occurred.
+     */
+    private static Object getPartValue(Object part) {
+        return (part instanceof WeatherBugServiceException) ? null : part;
+    }
+
+    /**
+     * Returns the error of a part of a weather bundle.
+     * 
+     * @param part
+     *            the part value, or the error that occurred fetching it.
+     * @return the error, or <code>null</code> if none occurred.
+     */
+    private static WeatherBugServiceException getPartError(Object part) {
+        return (part instanceof WeatherBugServiceException) ? (WeatherBugServiceException) part : null;
+    }
+
     /**
      * Gets the weather alerts based on a latitude and longitude.
      * 
@@ -381,12 +833,34 @@ public class WeatherBugService {
      */
     //http://api.wxbug.net/getAlertsRSS.aspx?ACode=&lat=26&long=-80
     public Alert[] getAlertsByLatLong(double latitude, double longitude, int unitType) throws WeatherBugServiceException {
+        return getAlertsByLatLong(latitude, longitude, unitType, null);
+    }
+
+    /**
+     * Gets the weather alerts based on a latitude and longitude, reusing the alerts that have already been bound.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @param knownAlerts
+     *            the alerts already bound, keyed by {@link Alert#getIdentity()} (may be <code>null</code>). Listed alerts having
+     *            the same identity are returned as is, without being bound again.
+     * @return the weather alerts.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public Alert[] getAlertsByLatLong(double latitude, double longitude, int unitType, Map knownAlerts)
+            throws WeatherBugServiceException {
         Map params = new HashMap();
-        params.put("lat", WeatherBugDataUtils.formatNumber(latitude, "0.00"));
-        params.put("long", WeatherBugDataUtils.formatNumber(longitude, "0.00"));
+        params.put("lat", Double.valueOf(latitude));
+        params.put("long", Double.valueOf(longitude));
         params.put("UnitType", Integer.toString(unitType));
         Document doc = execute("getAlertsRSS", params);
-        List alerts = WeatherBugDataUtils.bind(doc, "/rss/channel/aws:weather/aws:alerts/aws:alert", Alert.class);
+        List alerts = WeatherBugDataUtils.bind(doc, "/rss/channel/aws:weather/aws:alerts/aws:alert", Alert.class,
+                Alert.IDENTITY_PATH, knownAlerts);
         return (Alert[]) alerts.toArray(new Alert[0]);
     }
 
@@ -402,6 +876,241 @@ public class WeatherBugService {
      *             if an error occurred executing the method.
      */
     private Document execute(String methodName, Map params) throws WeatherBugServiceException {
+        return execute(methodName, params, null);
+    }
+
+    /**
+     * Executes a WeatherBug API method, filtering the SAX events of the response before the document is built.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @param filter
+     *            the filter applied to the response (may be <code>null</code>).
+     * @return the resulting XML document.
+     * @throws WeatherBugServiceException
+     *             if an error occurred executing the method.
+     */
+    private Document execute(String methodName, Map params, XMLFilter filter) throws WeatherBugServiceException {
+        long ttl = (diskCache != null) ? diskCache.getTimeToLive(methodName) : 0;
+        if (ttl > 0) {
+            return executeCached(methodName, params, filter, ttl);
+        }
+        HttpMethodBase httpMethod = new GetMethod(buildURL(methodName, params));
+        RequestScheduler.Ticket ticket = (scheduler != null) ? scheduler.acquire() : null;
+        try {
+            checkStatus(httpClient.executeMethod(httpMethod), httpMethod);
+            return parse(httpMethod.getResponseBodyAsStream(), filter);
+        } catch (HttpException e) {
+            throw new WeatherBugServiceException("Unable to perform request: " + e.getMessage(), e);
+        } catch (IOException e) {
+            throw new WeatherBugServiceException("Unable to perform request: " + e.getMessage(), e);
+        } catch (DocumentException e) {
+            throw new WeatherBugServiceException("Unable to parse response of request: " + e.getMessage(), e);
+        } finally {
+            httpMethod.releaseConnection();
+            if (ticket != null) {
+                scheduler.release(ticket);
+            }
+        }
+    }
+
+    /**
+     * Executes a WeatherBug API method through the disk cache. A cached response is returned even if expired, in which case it is
+     * refreshed in the background, unless it has been expired for longer than the maximum staleness of the cache; a missing or
+     * too stale response is fetched and stored once it has been parsed successfully, unless it is empty (empty responses are left
+     * to the negative cache). A failure to update the disk cache doesn't fail the request.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @param filter
+     *            the filter applied to the response (may be <code>null</code>).
+     * @param ttl
+     *            the time-to-live of the method responses (in milliseconds).
+     * @return the resulting XML document.
+     * @throws WeatherBugServiceException
+     *             if an error occurred executing the method.
+     */
+    private Document executeCached(final String methodName, final Map params, XMLFilter filter, final long ttl)
+            throws WeatherBugServiceException {
+        final String key = CacheKeys.key(methodName, params);
+        try {
+            DiskCache.Entry entry = diskCache.get(key);
+            if (entry != null && entry.getExpiresTime() + diskCache.getMaxStaleness() > System.currentTimeMillis()) {
+                try {
+                    Document doc = parse(new ByteArrayInputStream(entry.getData()), filter);
+                    if (entry.isExpired() && refreshing.putIfAbsent(key, key) == null) {
+                        refresher.execute(new Runnable() {
+                            public void run() {
+                                RequestScheduler.setPriority(RequestScheduler.BACKGROUND);
+                                refresh(key, methodName, params, ttl);
+                            }
+                        });
+                    }
+                    return doc;
+                } catch (DocumentException e) {
+                    updateCache(key, null, ttl);
+                }
+            }
+            byte[] data = fetch(methodName, params);
+            Document doc = parse(new ByteArrayInputStream(data), filter);
+            updateCache(key, isEmpty(methodName, doc) ? null : data, ttl);
+            return doc;
+        } catch (IOException e) {
+            throw new WeatherBugServiceException("Unable to perform request: " + e.getMessage(), e);
+        } catch (DocumentException e) {
+            throw new WeatherBugServiceException("Unable to parse response of request: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Stores a response in the disk cache, or removes it. Failures are ignored: the response has already been fetched and parsed,
+     * and the cache is only an optimization.
+     * 
+     * @param key
+     *            the cache key.
+     * @param data
+     *            the response bytes, or <code>null</code> to remove the cached response.
+     * @param ttl
+     *            the time-to-live of the response (in milliseconds).
+     */
+    private void updateCache(String key, byte[] data, long ttl) {
+        try {
+            if (data == null) {
+                diskCache.remove(key);
+            } else {
+                diskCache.put(key, data, ttl);
+            }
+        } catch (IOException e) {
+            // served without being cached
+        }
+    }
+
+    /**
+     * Refreshes a response of the disk cache ahead of its expiration, unless it is already being refreshed. Used by the
+     * {@link Prefetcher}.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @return {@link #PREFETCHED}, {@link #PREFETCH_FAILED} or {@link #PREFETCH_SKIPPED}.
+     */
+    int prefetch(String methodName, Map params) {
+        long ttl = (diskCache != null) ? diskCache.getTimeToLive(methodName) : 0;
+        String key = CacheKeys.key(methodName, params);
+        if (ttl <= 0 || refreshing.putIfAbsent(key, key) != null) {
+            return PREFETCH_SKIPPED;
+        }
+        return refresh(key, methodName, params, ttl) ? PREFETCHED : PREFETCH_FAILED;
+    }
+
+    /**
+     * Fetches a response again and replaces it in the disk cache if it can be parsed, or removes it if the response is now empty.
+     * The key must have been registered in <i>refreshing</i>, it is removed once done. Failures are ignored, the cached response
+     * being kept until a refresh succeeds.
+     * 
+     * @param key
+     *            the cache key.
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @param ttl
+     *            the time-to-live of the method responses (in milliseconds).
+     * @return <code>true</code> if the response has been refreshed.
+     */
+    private boolean refresh(String key, String methodName, Map params, long ttl) {
+        try {
+            byte[] data = fetch(methodName, params);
+            if (isEmpty(methodName, parse(new ByteArrayInputStream(data), null))) {
+                diskCache.remove(key);
+            } else {
+                diskCache.put(key, data, ttl);
+            }
+            return true;
+        } catch (Exception e) {
+            return false;
+        } finally {
+            refreshing.remove(key);
+        }
+    }
+
+    /**
+     * Executes a WeatherBug API method and returns the raw response.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @return the response bytes.
+     * @throws WeatherBugServiceException
+     *             if the request URL cannot be built, the request has been dropped by the scheduler or the response status is
+     *             not <i>200 OK</i>.
+     * @throws IOException
+     *             if the request failed.
+     */
+    private byte[] fetch(String methodName, Map params) throws WeatherBugServiceException, IOException {
+        HttpMethodBase httpMethod = new GetMethod(buildURL(methodName, params));
+        RequestScheduler.Ticket ticket = (scheduler != null) ? scheduler.acquire() : null;
+        try {
+            checkStatus(httpClient.executeMethod(httpMethod), httpMethod);
+            return httpMethod.getResponseBody();
+        } finally {
+            httpMethod.releaseConnection();
+            if (ticket != null) {
+                scheduler.release(ticket);
+            }
+        }
+    }
+
+    /**
+     * Checks that a response status is <i>200 OK</i>, so that error pages are neither parsed, cached nor taken for empty
+     * responses.
+     * 
+     * @param status
+     *            the response status.
+     * @param httpMethod
+     *            the executed method.
+     * @throws WeatherBugServiceException
+     *             if the status is not <i>200 OK</i>.
+     */
+    private static void checkStatus(int status, HttpMethodBase httpMethod) throws WeatherBugServiceException {
+        if (status != HttpStatus.SC_OK) {
+            throw new WeatherBugServiceException("Unable to perform request: HTTP " + status + " " + httpMethod.getStatusText());
+        }
+    }
+
+    /**
+     * Indicates whether a response holds no data element.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param doc
+     *            the response document.
+     * @return <code>true</code> if the response is empty, <code>false</code> if it is not or if the method is not known.
+     */
+    private static boolean isEmpty(String methodName, Document doc) {
+        String path = (String) RECORD_PATHS.get(methodName);
+        return (path != null) && doc.selectSingleNode(path) == null;
+    }
+
+    /**
+     * Builds the URL of a WeatherBug API request.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request; <code>Double</code> values are coordinates,
+     *            written with two decimals.
+     * @return the request URL.
+     * @throws WeatherBugServiceException
+     *             if a parameter cannot be encoded.
+     */
+    private String buildURL(String methodName, Map params) throws WeatherBugServiceException {
         StringBuffer url = new StringBuffer();
         url.append("http://");
         url.append(aCode);
@@ -416,36 +1125,219 @@ public class WeatherBugService {
                 throw new WeatherBugServiceException("Unable to encode parameter: " + param.getKey(), e);
             }
             url.append('=');
-            try {
-                url.append(encodeURLParameter(ObjectUtils.toString(param.getValue())));
-            } catch (UnsupportedEncodingException e) {
-                throw new WeatherBugServiceException("Unable to encode parameter: " + param.getValue(), e);
+            Object value = param.getValue();
+            if (value instanceof Double && !((Double) value).isNaN() && !((Double) value).isInfinite()) {
+                // finite coordinates are plain ASCII: appended in place, without encoding
+                WeatherBugDataUtils.appendCoordinate(url, ((Double) value).doubleValue());
+            } else {
+                String s = (value instanceof Double) ? WeatherBugDataUtils.formatCoordinate(((Double) value).doubleValue())
+                        : ObjectUtils.toString(value);
+                try {
+                    url.append(encodeURLParameter(s));
+                } catch (UnsupportedEncodingException e) {
+                    throw new WeatherBugServiceException("Unable to encode parameter: " + value, e);
+                }
             }
             url.append('&');
         }
         url.append("ACode=");
         url.append(aCode);
-        SimpleHttpConnectionManager connMgr = new SimpleHttpConnectionManager();
-        connMgr.getParams().setConnectionTimeout(timeout);
-        connMgr.getParams().setSoTimeout(timeout);
-        connMgr.getParams().setParameter(HttpMethodParams.USER_AGENT, "WeatherBug Eclipse plug-in (http://abso.freehostia.com)");
-        HttpMethodBase httpMethod = new GetMethod(url.toString());
-        HttpClient httpClient = new HttpClient(connMgr);
+        return url.toString();
+    }
+
+    /**
+     * Parses a response with the configured parser backend.
+     * 
+     * @param in
+     *            the response body.
+     * @param filter
+     *            the filter applied to the response (may be <code>null</code>).
+     * @return the resulting XML document.
+     * @throws DocumentException
+     *             if the response cannot be parsed.
+     */
+    private Document parse(InputStream in, XMLFilter filter) throws DocumentException {
+        return xmlParser.parse(in, filter);
+    }
+
+    /**
+     * Executes a WeatherBug API method and binds the first data object of the response. Empty responses are remembered by the
+     * negative cache, if any.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @param path
+     *            the XPath of the element to bind.
+     * @param dataClass
+     *            the class of the data object.
+     * @return the data object, or <code>null</code> if the response holds none.
+     * @throws WeatherBugServiceException
+     *             if an error occurred executing the method.
+     */
+    private Object executeSingle(String methodName, Map params, String path, Class dataClass) throws WeatherBugServiceException {
+        String key = getNegativeCacheKey(methodName, params);
+        if (key != null && negativeCache.contains(key)) {
+            return null;
+        }
+        Object data = WeatherBugDataUtils.bindSingle(execute(methodName, params), path, dataClass);
+        if (key != null && data == null) {
+            negativeCache.put(key);
+        }
+        return data;
+    }
+
+    /**
+     * Executes a WeatherBug API method and binds the data objects of the response. Empty responses are remembered by the negative
+     * cache, if any.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @param path
+     *            the XPath of the elements to bind.
+     * @param dataClass
+     *            the class of the data objects.
+     * @return the list of data objects.
+     * @throws WeatherBugServiceException
+     *             if an error occurred executing the method.
+     */
+    private List executeList(String methodName, Map params, String path, Class dataClass) throws WeatherBugServiceException {
+        String key = getNegativeCacheKey(methodName, params);
+        if (key != null && negativeCache.contains(key)) {
+            return Collections.EMPTY_LIST;
+        }
+        List data = WeatherBugDataUtils.bind(execute(methodName, params), path, dataClass);
+        if (key != null && data.isEmpty()) {
+            negativeCache.put(key);
+        }
+        return data;
+    }
+
+    /**
+     * Executes a WeatherBug API method and streams the data objects of the response to a handler. The response body is read in
+     * chunks pushed to a {@link PushXmlParser}, so each object is bound and handed over as soon as its element is complete, and
+     * neither the document nor the object list is ever built. Once the handler asks to stop, the connection is aborted instead of
+     * reading the rest of the body. Responses cached on disk are bound from the cached document. Empty responses are remembered by
+     * the negative cache, if any.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @param path
+     *            the XPath of the elements to bind, for cached responses.
+     * @param recordPath
+     *            the local names of the elements leading to the elements to bind, root element included.
+     * @param dataClass
+     *            the class of the data objects.
+     * @param handler
+     *            the handler of the data objects.
+     * @return the number of objects passed to the handler.
+     * @throws WeatherBugServiceException
+     *             if an error occurred executing the method.
+     */
+    private int executeStreaming(String methodName, Map params, String path, String[] recordPath, Class dataClass,
+            DataObjectHandler handler) throws WeatherBugServiceException {
+        String key = getNegativeCacheKey(methodName, params);
+        if (key != null && negativeCache.contains(key)) {
+            return 0;
+        }
+        if (diskCache != null && diskCache.getTimeToLive(methodName) > 0) {
+            int count = WeatherBugDataUtils.bind(execute(methodName, params).getRootElement(), path, dataClass, handler);
+            if (key != null && count == 0) {
+                negativeCache.put(key);
+            }
+            return count;
+        }
+        StreamingBinder binder = new StreamingBinder(recordPath, dataClass, handler);
+        PushXmlParser parser = new PushXmlParser(binder);
+        HttpMethodBase httpMethod = new GetMethod(buildURL(methodName, params));
+        RequestScheduler.Ticket ticket = (scheduler != null) ? scheduler.acquire() : null;
+        boolean complete = false;
         try {
-            httpClient.executeMethod(httpMethod);
-            SAXReader reader = new SAXReader();
-            InputSource source = new InputSource(httpMethod.getResponseBodyAsStream());
-            source.setEncoding("UTF-8"/* httpMethod.getResponseCharSet() */);
-            return reader.read(source);
+            checkStatus(httpClient.executeMethod(httpMethod), httpMethod);
+            InputStream in = httpMethod.getResponseBodyAsStream();
+            if (in != null) {
+                byte[] buffer = new byte[STREAMING_BUFFER_SIZE];
+                for (int n = in.read(buffer); n >= 0 && !binder.isStopped(); n = in.read(buffer)) {
+                    parser.feed(ByteBuffer.wrap(buffer, 0, n));
+                }
+            }
+            if (!binder.isStopped()) {
+                parser.endOfInput();
+                complete = true;
+            }
         } catch (HttpException e) {
             throw new WeatherBugServiceException("Unable to perform request: " + e.getMessage(), e);
         } catch (IOException e) {
             throw new WeatherBugServiceException("Unable to perform request: " + e.getMessage(), e);
-        } catch (DocumentException e) {
+        } catch (SAXException e) {
             throw new WeatherBugServiceException("Unable to parse response of request: " + e.getMessage(), e);
         } finally {
+            if (!complete) {
+                httpMethod.abort();
+            }
             httpMethod.releaseConnection();
+            if (ticket != null) {
+                scheduler.release(ticket);
+            }
+        }
+        if (key != null && binder.getCount() == 0) {
+            negativeCache.put(key);
         }
+        return binder.getCount();
+    }
+
+    /**
+     * Executes the live weather method, projected on a set of fields, and binds the response.
+     * 
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @param fields
+     *            the requested fields.
+     * @return the live weather, or <code>null</code> if the response holds none.
+     * @throws WeatherBugServiceException
+     *             if an error occurred executing the method.
+     */
+    private LiveWeather executeProjection(Map params, int[] fields) throws WeatherBugServiceException {
+        String key = getNegativeCacheKey("getLiveWeatherRSS", params);
+        if (key != null && negativeCache.contains(key)) {
+            return null;
+        }
+        Document doc = execute("getLiveWeatherRSS", params, ProjectionFilter.forLiveWeather(fields));
+        Element weather = (Element) doc.selectSingleNode("/rss/channel/aws:weather");
+        if (weather == null) {
+            if (key != null) {
+                negativeCache.put(key);
+            }
+            return null;
+        }
+        return new LazyLiveWeather(weather, fields);
+    }
+
+    /**
+     * Returns the negative cache key of a request.
+     * 
+     * @param methodName
+     *            the name of the method.
+     * @param params
+     *            the set of parameters being appended to the secure request.
+     * @return the key, or <code>null</code> if empty responses are not cached.
+     */
+    private String getNegativeCacheKey(String methodName, Map params) {
+        return (negativeCache != null) ? CacheKeys.key(methodName, params) : null;
+    }
+
+    /**
+     * Returns the class bound to the live weather responses.
+     * 
+     * @return <code>LazyLiveWeather</code> if lazy binding is enabled, <code>LiveWeather</code> otherwise.
+     */
+    private Class getLiveWeatherClass() {
+        return lazyBinding ? LazyLiveWeather.class : LiveWeather.class;
     }
 
     /**
@@ -463,4 +1355,154 @@ public class WeatherBugService {
         return encodedPath;
     }
 
+    /**
+     * Builds immutable {@link WeatherBugService} instances.
+     */
+    public static class Builder {
+
+        /** The alphanumeric license key issued by WeatherBug. */
+        private final String aCode;
+
+        /** The HTTP connection time-out. */
+        private int timeout = DEFAULT_TIMEOUT;
+
+        /** Indicates whether live weather fields are decoded on first access. */
+        private boolean lazyBinding;
+
+        /** The disk cache of the responses. */
+        private DiskCache diskCache;
+
+        /** The cache of the requests with empty responses. */
+        private NegativeCache negativeCache;
+
+        /** The scheduler admitting the requests. */
+        private RequestScheduler scheduler;
+
+        /** The maximum number of pooled HTTP connections. */
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+        /** The parser of the responses. */
+        private XmlParser xmlParser;
+
+        /**
+         * Constructs a new builder.
+         * 
+         * @param aCode
+         *            the alphanumeric license key issued by WeatherBug.
+         */
+        public Builder(String aCode) {
+            if (aCode == null) {
+                throw new IllegalArgumentException("The license key cannot be null");
+            }
+            this.aCode = aCode;
+        }
+
+        /**
+         * Sets the HTTP connection time-out.
+         * 
+         * @param timeout
+         *            the time-out (in milliseconds).
+         * @return this builder.
+         * @see WeatherBugService#DEFAULT_TIMEOUT
+         */
+        public Builder timeout(int timeout) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("Invalid time-out: " + timeout);
+            }
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * Sets whether the live weather fields are decoded on first access rather than all at once (disabled by default).
+         * 
+         * @param lazyBinding
+         *            <code>true</code> to return {@link LazyLiveWeather} instances from the <i>getLiveWeather</i> methods.
+         * @return this builder.
+         */
+        public Builder lazyBinding(boolean lazyBinding) {
+            this.lazyBinding = lazyBinding;
+            return this;
+        }
+
+        /**
+         * Sets the disk cache of the responses (none by default). The methods given a time-to-live by the cache are served from
+         * disk when possible, expired responses being refreshed in the background.
+         * 
+         * @param diskCache
+         *            the disk cache (may be <code>null</code>).
+         * @return this builder.
+         */
+        public Builder diskCache(DiskCache diskCache) {
+            this.diskCache = diskCache;
+            return this;
+        }
+
+        /**
+         * Sets the cache of the requests with empty responses (none by default). Requests for unknown ZIP codes, stations or
+         * locations are then answered with <code>null</code> or an empty array without calling the API until the cached entry
+         * expires. Alerts are not concerned, an empty alert list being a regular answer. Failed requests are never cached.
+         * 
+         * @param negativeCache
+         *            the negative cache (may be <code>null</code>).
+         * @return this builder.
+         */
+        public Builder negativeCache(NegativeCache negativeCache) {
+            this.negativeCache = negativeCache;
+            return this;
+        }
+
+        /**
+         * Sets the scheduler admitting the requests (none by default). Each API call then waits for the scheduler according to the
+         * request class of the calling thread, and fails with a {@link WeatherBugServiceException} if dropped. Responses served
+         * from the caches do not go through the scheduler. A scheduler can be shared by several services.
+         * 
+         * @param scheduler
+         *            the scheduler (may be <code>null</code>).
+         * @return this builder.
+         */
+        public Builder scheduler(RequestScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of pooled HTTP connections, that is the maximum number of concurrent requests.
+         * 
+         * @param maxConnections
+         *            the maximum number of connections.
+         * @return this builder.
+         * @see WeatherBugService#DEFAULT_MAX_CONNECTIONS
+         */
+        public Builder maxConnections(int maxConnections) {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("Invalid number of connections: " + maxConnections);
+            }
+            this.maxConnections = maxConnections;
+            return this;
+        }
+
+        /**
+         * Sets the parser of the responses (a {@link SaxXmlParser} by default).
+         * 
+         * @param xmlParser
+         *            the XML parser backend, for instance a {@link StaxXmlParser}.
+         * @return this builder.
+         */
+        public Builder xmlParser(XmlParser xmlParser) {
+            this.xmlParser = xmlParser;
+            return this;
+        }
+
+        /**
+         * Creates a new service using the current configuration.
+         * 
+         * @return the new service.
+         */
+        public WeatherBugService build() {
+            return new WeatherBugService(this);
+        }
+
+    }
+
 }
@@ -0,0 +1,217 @@
+package com.wbug;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+import com.wbug.data.Alert;
+import com.wbug.data.Forecasts;
+import com.wbug.data.LiveCompactWeather;
+
+/**
+ * The weather of a location as displayed on a page: the live compact weather, the forecasts and the active alerts, fetched
+ * concurrently (see {@link WeatherBugService#getWeatherBundleByUSZipCode(int, int)}).
+ * <p>
+ * Each part has its own status, so that a failed part does not prevent the others from being displayed.
+ */
+public class WeatherBundle {
+
+    /** Status of a part successfully fetched. */
+    public static final int STATUS_OK = 0;
+
+    /** Status of a part successfully fetched but holding no data (unknown location). */
+    public static final int STATUS_EMPTY = 1;
+
+    /** Status of a part whose request failed. */
+    public static final int STATUS_FAILED = 2;
+
+    /** The ZIP code. */
+    private final int zipCode;
+
+    /** The unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units. */
+    private final int unitType;
+
+    /** The live compact weather (may be <code>null</code>). */
+    private final LiveCompactWeather liveCompactWeather;
+
+    /** The error of the live compact weather request (may be <code>null</code>). */
+    private final WeatherBugServiceException liveCompactWeatherError;
+
+    /** The forecasts (may be <code>null</code>). */
+    private final Forecasts forecasts;
+
+    /** The error of the forecasts request (may be <code>null</code>). */
+    private final WeatherBugServiceException forecastsError;
+
+    /** The alerts (may be <code>null</code>). */
+    private final Alert[] alerts;
+
+    /** The error of the alerts request (may be <code>null</code>). */
+    private final WeatherBugServiceException alertsError;
+
+    /**
+     * Constructs a new bundle.
+     * 
+     * @param zipCode
+     *            the ZIP code.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units.
+     * @param liveCompactWeather
+     *            the live compact weather (may be <code>null</code>).
+     * @param liveCompactWeatherError
+     *            the error of the live compact weather request (may be <code>null</code>).
+     * @param forecasts
+     *            the forecasts (may be <code>null</code>).
+     * @param forecastsError
+     *            the error of the forecasts request (may be <code>null</code>).
+     * @param alerts
+     *            the alerts (may be <code>null</code>).
+     * @param alertsError
+     *            the error of the alerts request (may be <code>null</code>).
+     */
+    WeatherBundle(int zipCode, int unitType, LiveCompactWeather liveCompactWeather,
+            WeatherBugServiceException liveCompactWeatherError, Forecasts forecasts, WeatherBugServiceException forecastsError,
+            Alert[] alerts, WeatherBugServiceException alertsError) {
+        this.zipCode = zipCode;
+        this.unitType = unitType;
+        this.liveCompactWeather = liveCompactWeather;
+        this.liveCompactWeatherError = liveCompactWeatherError;
+        this.forecasts = forecasts;
+        this.forecastsError = forecastsError;
+        this.alerts = alerts;
+        this.alertsError = alertsError;
+    }
+
+    /**
+     * Returns the ZIP code.
+     * 
+     * @return the ZIP code.
+     */
+    public int getZipCode() {
+        return zipCode;
+    }
+
+    /**
+     * Returns the unit type.
+     * 
+     * @return <code>0</code> for U.S. customary units or <code>1</code> for Metric system units.
+     */
+    public int getUnitType() {
+        return unitType;
+    }
+
+    /**
+     * Returns the live compact weather.
+     * 
+     * @return the live compact weather, or <code>null</code> if not available.
+     */
+    public LiveCompactWeather getLiveCompactWeather() {
+        return liveCompactWeather;
+    }
+
+    /**
+     * Returns the status of the live compact weather.
+     * 
+     * @return {@link #STATUS_OK}, {@link #STATUS_EMPTY} or {@link #STATUS_FAILED}.
+     */
+    public int getLiveCompactWeatherStatus() {
+        return getStatus(liveCompactWeather, liveCompactWeatherError);
+    }
+
+    /**
+     * Returns the error of the live compact weather request.
+     * 
+     * @return the error, or <code>null</code> if the request succeeded.
+     */
+    public WeatherBugServiceException getLiveCompactWeatherError() {
+        return liveCompactWeatherError;
+    }
+
+    /**
+     * Returns the forecasts.
+     * 
+     * @return the forecasts, or <code>null</code> if not available.
+     */
+    public Forecasts getForecasts() {
+        return forecasts;
+    }
+
+    /**
+     * Returns the status of the forecasts.
+     * 
+     * @return {@link #STATUS_OK}, {@link #STATUS_EMPTY} or {@link #STATUS_FAILED}.
+     */
+    public int getForecastsStatus() {
+        return getStatus(forecasts, forecastsError);
+    }
+
+    /**
+     * Returns the error of the forecasts request.
+     * 
+     * @return the error, or <code>null</code> if the request succeeded.
+     */
+    public WeatherBugServiceException getForecastsError() {
+        return forecastsError;
+    }
+
+    /**
+     * Returns the active alerts.
+     * 
+     * @return the alerts (possibly empty), or <code>null</code> if the request failed.
+     */
+    public Alert[] getAlerts() {
+        return alerts;
+    }
+
+    /**
+     * Returns the status of the alerts. An empty alert list is a regular answer, so the status is never {@link #STATUS_EMPTY}.
+     * 
+     * @return {@link #STATUS_OK} or {@link #STATUS_FAILED}.
+     */
+    public int getAlertsStatus() {
+        return (alertsError != null) ? STATUS_FAILED : STATUS_OK;
+    }
+
+    /**
+     * Returns the error of the alerts request.
+     * 
+     * @return the error, or <code>null</code> if the request succeeded.
+     */
+    public WeatherBugServiceException getAlertsError() {
+        return alertsError;
+    }
+
+    /**
+     * Indicates whether all the parts have been fetched.
+     * 
+     * @return <code>true</code> if no request failed.
+     */
+    public boolean isComplete() {
+        return liveCompactWeatherError == null && forecastsError == null && alertsError == null;
+    }
+
+    /**
+     * Returns the status of a part.
+     * 
+     * @param value
+     *            the part value.
+     * @param error
+     *            the part error.
+     * @return the part status.
+     */
+    private static int getStatus(Object value, WeatherBugServiceException error) {
+        if (error != null) {
+            return STATUS_FAILED;
+        }
+        return (value != null) ? STATUS_OK : STATUS_EMPTY;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.MULTI_LINE_STYLE);
+    }
+
+}
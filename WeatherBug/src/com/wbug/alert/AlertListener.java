@@ -0,0 +1,43 @@
+package com.wbug.alert;
+
+import com.wbug.data.Alert;
+
+/**
+ * Receives the alert events raised by an {@link AlertTracker}.
+ */
+public interface AlertListener {
+
+    /**
+     * Notifies that a new alert has been issued for a location.
+     * 
+     * @param location
+     *            the location key.
+     * @param alert
+     *            the new alert.
+     */
+    void alertIssued(String location, Alert alert);
+
+    /**
+     * Notifies that an active alert has been updated (same identifier, different content).
+     * 
+     * @param location
+     *            the location key.
+     * @param previous
+     *            the previous version of the alert.
+     * @param alert
+     *            the updated alert.
+     */
+    void alertUpdated(String location, Alert previous, Alert alert);
+
+    /**
+     * Notifies that an alert is no longer active, either because its expiration time has passed or because it has been withdrawn
+     * from the service.
+     * 
+     * @param location
+     *            the location key.
+     * @param alert
+     *            the expired alert.
+     */
+    void alertExpired(String location, Alert alert);
+
+}
@@ -0,0 +1,397 @@
+package com.wbug.alert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.wbug.WeatherBugService;
+import com.wbug.WeatherBugServiceException;
+import com.wbug.data.Alert;
+import com.wbug.data.WeatherBugDataUtils;
+
+/**
+ * Maintains the set of active weather alerts of a number of locations.
+ * <p>
+ * Each refresh compares the alerts returned by the service with the active set of the location and raises issued, updated and
+ * expired events (see {@link AlertListener}). Alerts are deduplicated by identifier; the ones whose identity is unchanged since the
+ * previous refresh are not bound again. Active alerts are indexed by type and kept in a priority queue ordered by expiration time,
+ * so that {@link #expire(long)} only looks at the alerts that are actually due.
+ * <p>
+ * Locations are identified by a string key (see {@link #zipCodeKey(int)} and {@link #latLongKey(double, double)}). Instances are
+ * thread-safe; listeners are notified outside of the internal lock.
+ */
+public class AlertTracker {
+
+    /** The service used to fetch the alerts. */
+    private final WeatherBugService service;
+
+    /** The unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units. */
+    private final int unitType;
+
+    /** The active alerts, keyed by location key, then by alert identifier. */
+    private final Map alertsByLocation = new HashMap();
+
+    /** The active alerts (<i>TrackedAlert</i> objects), keyed by alert type, then by location key and alert identifier. */
+    private final Map alertsByType = new HashMap();
+
+    /** The active alerts, ordered by expiration time. Replaced entries are discarded lazily. */
+    private final PriorityQueue expiryQueue = new PriorityQueue();
+
+    /** The registered listeners. */
+    private final List listeners = new CopyOnWriteArrayList();
+
+    /**
+     * Constructs a new alert tracker.
+     * 
+     * @param service
+     *            the service used to fetch the alerts.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     */
+    public AlertTracker(WeatherBugService service, int unitType) {
+        this.service = service;
+        this.unitType = unitType;
+    }
+
+    /**
+     * Returns the location key of a U.S. ZIP code.
+     * 
+     * @param zipCode
+     *            the ZIP code.
+     * @return the location key.
+     */
+    public static String zipCodeKey(int zipCode) {
+        return "zip:" + zipCode;
+    }
+
+    /**
+     * Returns the location key of a latitude and longitude, rounded as in the service requests.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @return the location key.
+     */
+    public static String latLongKey(double latitude, double longitude) {
+        StringBuffer key = new StringBuffer("latlong:");
+        WeatherBugDataUtils.appendCoordinate(key, latitude).append(',');
+        return WeatherBugDataUtils.appendCoordinate(key, longitude).toString();
+    }
+
+    /**
+     * Registers a listener.
+     * 
+     * @param listener
+     *            the listener being added.
+     */
+    public void addListener(AlertListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener
+     *            the listener being removed.
+     */
+    public void removeListener(AlertListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Fetches the alerts of a U.S. ZIP code and updates its active set.
+     * 
+     * @param zipCode
+     *            the ZIP code.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public void refresh(int zipCode) throws WeatherBugServiceException {
+        String location = zipCodeKey(zipCode);
+        update(location, service.getAlerts(zipCode, unitType, getKnownAlerts(location)));
+    }
+
+    /**
+     * Fetches the alerts of a latitude and longitude and updates its active set.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    public void refreshByLatLong(double latitude, double longitude) throws WeatherBugServiceException {
+        String location = latLongKey(latitude, longitude);
+        update(location, service.getAlertsByLatLong(latitude, longitude, unitType, getKnownAlerts(location)));
+    }
+
+    /**
+     * Replaces the active set of a location with the alerts currently listed by the service, raising the matching events. Alerts
+     * that are already past their expiration time are ignored.
+     * 
+     * @param location
+     *            the location key.
+     * @param alerts
+     *            the alerts currently listed for the location.
+     */
+    public void update(String location, Alert[] alerts) {
+        List events = new ArrayList();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Map previous = (Map) alertsByLocation.get(location);
+            Map current = new HashMap();
+            for (int i = 0; i < alerts.length; i++) {
+                Alert alert = alerts[i];
+                TrackedAlert tracked = new TrackedAlert(location, alert);
+                if (tracked.getExpiresTime() <= now || current.containsKey(alert.getId())) {
+                    continue;
+                }
+                TrackedAlert old = (previous != null) ? (TrackedAlert) previous.remove(alert.getId()) : null;
+                if (old != null && old.getAlert() == alert) {
+                    current.put(alert.getId(), old);
+                    continue;
+                }
+                if (old != null) {
+                    unindex(old);
+                    events.add(new AlertEvent(AlertEvent.UPDATED, location, old.getAlert(), alert));
+                } else {
+                    events.add(new AlertEvent(AlertEvent.ISSUED, location, null, alert));
+                }
+                current.put(alert.getId(), tracked);
+                index(tracked);
+            }
+            if (previous != null) {
+                for (Iterator i = previous.values().iterator(); i.hasNext();) {
+                    TrackedAlert withdrawn = (TrackedAlert) i.next();
+                    unindex(withdrawn);
+                    events.add(new AlertEvent(AlertEvent.EXPIRED, location, null, withdrawn.getAlert()));
+                }
+            }
+            if (current.isEmpty()) {
+                alertsByLocation.remove(location);
+            } else {
+                alertsByLocation.put(location, current);
+            }
+        }
+        fire(events);
+    }
+
+    /**
+     * Removes the alerts whose expiration time has passed, raising the matching events. This method should be called periodically.
+     * 
+     * @param now
+     *            the current time (in milliseconds).
+     * @return the number of expired alerts.
+     */
+    public int expire(long now) {
+        List events = new ArrayList();
+        synchronized (this) {
+            while (!expiryQueue.isEmpty() && ((TrackedAlert) expiryQueue.peek()).getExpiresTime() <= now) {
+                TrackedAlert tracked = (TrackedAlert) expiryQueue.poll();
+                Map active = (Map) alertsByLocation.get(tracked.getLocation());
+                if (active == null || active.get(tracked.getAlert().getId()) != tracked) {
+                    continue; // replaced or withdrawn
+                }
+                active.remove(tracked.getAlert().getId());
+                if (active.isEmpty()) {
+                    alertsByLocation.remove(tracked.getLocation());
+                }
+                unindex(tracked);
+                events.add(new AlertEvent(AlertEvent.EXPIRED, tracked.getLocation(), null, tracked.getAlert()));
+            }
+        }
+        fire(events);
+        return events.size();
+    }
+
+    /**
+     * Returns the time of the next expiration.
+     * 
+     * @return the next expiration time (in milliseconds), or <code>Long.MAX_VALUE</code> if no alert is active.
+     */
+    public synchronized long getNextExpiryTime() {
+        return expiryQueue.isEmpty() ? Long.MAX_VALUE : ((TrackedAlert) expiryQueue.peek()).getExpiresTime();
+    }
+
+    /**
+     * Returns the active alerts of a location.
+     * 
+     * @param location
+     *            the location key.
+     * @return the active alerts.
+     */
+    public synchronized Alert[] getActiveAlerts(String location) {
+        Map active = (Map) alertsByLocation.get(location);
+        if (active == null) {
+            return new Alert[0];
+        }
+        return toAlerts(active.values());
+    }
+
+    /**
+     * Returns the active alerts of a specific type, across all locations.
+     * 
+     * @param type
+     *            the alert type.
+     * @return the active alerts.
+     */
+    public synchronized Alert[] getActiveAlertsByType(String type) {
+        Map active = (Map) alertsByType.get(type);
+        if (active == null) {
+            return new Alert[0];
+        }
+        return toAlerts(active.values());
+    }
+
+    /**
+     * Returns the active alerts of a location, keyed by identity, to be reused by the binding of the next refresh.
+     * 
+     * @param location
+     *            the location key.
+     * @return the active alerts keyed by {@link Alert#getIdentity()}.
+     */
+    private synchronized Map getKnownAlerts(String location) {
+        Map active = (Map) alertsByLocation.get(location);
+        if (active == null) {
+            return Collections.EMPTY_MAP;
+        }
+        Map known = new HashMap();
+        for (Iterator i = active.values().iterator(); i.hasNext();) {
+            Alert alert = ((TrackedAlert) i.next()).getAlert();
+            known.put(alert.getIdentity(), alert);
+        }
+        return known;
+    }
+
+    /**
+     * Adds an alert to the type index and the expiry queue.
+     * 
+     * @param tracked
+     *            the alert.
+     */
+    private void index(TrackedAlert tracked) {
+        Map byType = (Map) alertsByType.get(tracked.getAlert().getType());
+        if (byType == null) {
+            byType = new HashMap();
+            alertsByType.put(tracked.getAlert().getType(), byType);
+        }
+        byType.put(tracked.getLocation() + '#' + tracked.getAlert().getId(), tracked);
+        if (tracked.getExpiresTime() != Long.MAX_VALUE) {
+            expiryQueue.add(tracked);
+        }
+    }
+
+    /**
+     * Removes an alert from the type index. The expiry queue entry is discarded lazily.
+     * 
+     * @param tracked
+     *            the alert.
+     */
+    private void unindex(TrackedAlert tracked) {
+        Map byType = (Map) alertsByType.get(tracked.getAlert().getType());
+        if (byType != null) {
+            byType.remove(tracked.getLocation() + '#' + tracked.getAlert().getId());
+            if (byType.isEmpty()) {
+                alertsByType.remove(tracked.getAlert().getType());
+            }
+        }
+    }
+
+    /**
+     * Converts a collection of tracked alerts into an array of alerts.
+     * 
+     * @param trackedAlerts
+     *            the tracked alerts.
+     * @return the alerts.
+     */
+    private static Alert[] toAlerts(Collection trackedAlerts) {
+        Alert[] alerts = new Alert[trackedAlerts.size()];
+        int n = 0;
+        for (Iterator i = trackedAlerts.iterator(); i.hasNext();) {
+            alerts[n++] = ((TrackedAlert) i.next()).getAlert();
+        }
+        return alerts;
+    }
+
+    /**
+     * Notifies the listeners of a list of events.
+     * 
+     * @param events
+     *            the events.
+     */
+    private void fire(List events) {
+        for (Iterator i = events.iterator(); i.hasNext();) {
+            AlertEvent event = (AlertEvent) i.next();
+            for (Iterator j = listeners.iterator(); j.hasNext();) {
+                AlertListener listener = (AlertListener) j.next();
+                switch (event.type) {
+                case AlertEvent.ISSUED:
+                    listener.alertIssued(event.location, event.alert);
+                    break;
+                case AlertEvent.UPDATED:
+                    listener.alertUpdated(event.location, event.previous, event.alert);
+                    break;
+                default:
+                    listener.alertExpired(event.location, event.alert);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A pending notification.
+     */
+    private static class AlertEvent {
+
+        /** Event type of issued alerts. */
+        static final int ISSUED = 0;
+
+        /** Event type of updated alerts. */
+        static final int UPDATED = 1;
+
+        /** Event type of expired alerts. */
+        static final int EXPIRED = 2;
+
+        /** The event type. */
+        final int type;
+
+        /** The location key. */
+        final String location;
+
+        /** The previous version of the alert (updates only). */
+        final Alert previous;
+
+        /** The alert. */
+        final Alert alert;
+
+        /**
+         * Constructs a new event.
+         * 
+         * @param type
+         *            the event type.
+         * @param location
+         *            the location key.
+         * @param previous
+         *            the previous version of the alert (updates only).
+         * @param alert
+         *            the alert.
+         */
+        AlertEvent(int type, String location, Alert previous, Alert alert) {
+            this.type = type;
+            this.location = location;
+            this.previous = previous;
+            this.alert = alert;
+        }
+
+    }
+
+}
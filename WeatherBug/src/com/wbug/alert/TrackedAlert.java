@@ -0,0 +1,70 @@
+package com.wbug.alert;
+
+import com.wbug.data.Alert;
+
+/**
+ * An active alert of a location, as stored in the expiry queue of an {@link AlertTracker}.
+ */
+class TrackedAlert implements Comparable {
+
+    /** The location key. */
+    private final String location;
+
+    /** The alert. */
+    private final Alert alert;
+
+    /** The expiration time (in milliseconds, <code>Long.MAX_VALUE</code> if unknown). */
+    private final long expiresTime;
+
+    /**
+     * Constructs a new tracked alert.
+     * 
+     * @param location
+     *            the location key.
+     * @param alert
+     *            the alert.
+     */
+    TrackedAlert(String location, Alert alert) {
+        this.location = location;
+        this.alert = alert;
+        this.expiresTime = (alert.getExpiresTime() != null) ? alert.getExpiresTime().getTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the location key.
+     * 
+     * @return the location key.
+     */
+    String getLocation() {
+        return location;
+    }
+
+    /**
+     * Returns the alert.
+     * 
+     * @return the alert.
+     */
+    Alert getAlert() {
+        return alert;
+    }
+
+    /**
+     * Returns the expiration time.
+     * 
+     * @return the expiration time (in milliseconds).
+     */
+    long getExpiresTime() {
+        return expiresTime;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(Object obj) {
+        long other = ((TrackedAlert) obj).expiresTime;
+        return (expiresTime < other) ? -1 : ((expiresTime == other) ? 0 : 1);
+    }
+
+}
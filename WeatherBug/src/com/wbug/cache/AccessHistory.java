@@ -0,0 +1,125 @@
+package com.wbug.cache;
+
+import java.util.TimeZone;
+
+/**
+ * The access pattern of a cache key: the number of accesses per hour of the day (in the default time zone), averaged over the
+ * past days with an exponential decay so that recent days weigh more. Instances are thread-safe.
+ */
+public class AccessHistory {
+
+    /** The number of milliseconds per hour. */
+    public static final long HOUR = 60 * 60 * 1000L;
+
+    /** The number of milliseconds per day. */
+    private static final long DAY = 24 * HOUR;
+
+    /** The weight of a day relative to the next one. */
+    private static final double DAILY_DECAY = 0.75;
+
+    /** The decayed access counts, indexed by hour of the day. */
+    private final double[] hourlyCounts = new double[24];
+
+    /** The decayed number of days observed. */
+    private double dayWeight;
+
+    /** The day of the last access, counted from the epoch. */
+    private long lastDay = -1;
+
+    /** The total number of accesses. */
+    private long count;
+
+    /** The time of the last access (in milliseconds). */
+    private long lastAccessTime;
+
+    /**
+     * Records an access.
+     * 
+     * @param time
+     *            the access time (in milliseconds).
+     */
+    public synchronized void record(long time) {
+        long localTime = toLocalTime(time);
+        long day = localTime / DAY;
+        if (day > lastDay) {
+            double decay = (lastDay < 0) ? 0 : Math.pow(DAILY_DECAY, day - lastDay);
+            for (int i = 0; i < hourlyCounts.length; i++) {
+                hourlyCounts[i] *= decay;
+            }
+            dayWeight = dayWeight * decay + 1;
+            lastDay = day;
+        }
+        hourlyCounts[(int) (localTime % DAY / HOUR)]++;
+        count++;
+        lastAccessTime = Math.max(lastAccessTime, time);
+    }
+
+    /**
+     * Returns the expected number of accesses during the hour of the day containing a given time.
+     * 
+     * @param time
+     *            the time (in milliseconds).
+     * @return the average number of accesses during that hour over the past days.
+     */
+    public synchronized double getHourlyRate(long time) {
+        return (dayWeight == 0) ? 0 : hourlyCounts[(int) (toLocalTime(time) % DAY / HOUR)] / dayWeight;
+    }
+
+    /**
+     * Returns the expected number of accesses during a period, summing the hourly rates of the hours it overlaps.
+     * 
+     * @param from
+     *            the start of the period (in milliseconds).
+     * @param to
+     *            the end of the period (in milliseconds).
+     * @return the expected number of accesses.
+     */
+    public synchronized double getExpectedAccesses(long from, long to) {
+        double expected = 0;
+        for (long start = from; start < to;) {
+            long end = Math.min(to, start - toLocalTime(start) % HOUR + HOUR);
+            expected += getHourlyRate(start) * (end - start) / HOUR;
+            start = end;
+        }
+        return expected;
+    }
+
+    /**
+     * Returns the total number of accesses.
+     * 
+     * @return the number of accesses.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the time of the last access.
+     * 
+     * @return the last access time (in milliseconds).
+     */
+    public synchronized long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
+    /**
+     * Converts a time to the default time zone.
+     * 
+     * @param time
+     *            the time (in milliseconds, UTC).
+     * @return the local time (in milliseconds).
+     */
+    private static long toLocalTime(long time) {
+        return time + TimeZone.getDefault().getOffset(time);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public synchronized String toString() {
+        return "count=" + count + ", lastAccessTime=" + lastAccessTime + ", days=" + dayWeight;
+    }
+
+}
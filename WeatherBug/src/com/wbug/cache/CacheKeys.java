@@ -0,0 +1,132 @@
+package com.wbug.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.wbug.data.WeatherBugDataUtils;
+
+/**
+ * Builds and parses the cache keys shared by the caches of the service (disk cache, negative cache, off-heap cache) and the
+ * prefetcher.
+ * <p>
+ * A key is made of the endpoint followed by the request parameters in name order, in the form of a query string:
+ * <i>endpoint?name1=value1&amp;name2=value2</i>. The characters <code>%</code>, <code>&amp;</code>, <code>=</code> and
+ * <code>?</code> are escaped as <code>%XX</code> in the parameter names and values, so that distinct requests never share a key.
+ * <code>Double</code> values are latitudes and longitudes, written as in the request URLs (see
+ * {@link WeatherBugDataUtils#appendCoordinate(StringBuffer, double)}), so that the coordinates of the same request share a key.
+ */
+public class CacheKeys {
+
+    /** The characters escaped in the parameter names and values. */
+    private static final String ESCAPED_CHARS = "%&=?";
+
+    /** The hexadecimal digits. */
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Builds a cache key from an endpoint and its parameters, independently of the parameter order.
+     * 
+     * @param endpoint
+     *            the endpoint (for instance the name of a <code>WeatherBugService</code> method).
+     * @param params
+     *            the request parameters.
+     * @return the cache key.
+     */
+    public static String key(String endpoint, Map params) {
+        StringBuffer key = new StringBuffer(endpoint);
+        char separator = '?';
+        for (Iterator i = new TreeMap(params).entrySet().iterator(); i.hasNext();) {
+            Map.Entry param = (Map.Entry) i.next();
+            key.append(separator);
+            escape(key, String.valueOf(param.getKey()));
+            key.append('=');
+            if (param.getValue() instanceof Double) {
+                WeatherBugDataUtils.appendCoordinate(key, ((Double) param.getValue()).doubleValue());
+            } else {
+                escape(key, String.valueOf(param.getValue()));
+            }
+            separator = '&';
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the endpoint of a cache key.
+     * 
+     * @param key
+     *            the cache key, as built by {@link #key(String, Map)}.
+     * @return the endpoint.
+     */
+    public static String getEndpoint(String key) {
+        int start = key.indexOf('?');
+        return (start >= 0) ? key.substring(0, start) : key;
+    }
+
+    /**
+     * Returns the request parameters of a cache key.
+     * 
+     * @param key
+     *            the cache key, as built by {@link #key(String, Map)}.
+     * @return the request parameters (unescaped).
+     */
+    public static Map getParameters(String key) {
+        Map params = new HashMap();
+        int start = key.indexOf('?');
+        while (start >= 0) {
+            int end = key.indexOf('&', start + 1);
+            String param = key.substring(start + 1, (end >= 0) ? end : key.length());
+            int separator = param.indexOf('=');
+            if (separator > 0) {
+                params.put(unescape(param.substring(0, separator)), unescape(param.substring(separator + 1)));
+            }
+            start = end;
+        }
+        return params;
+    }
+
+    /**
+     * Appends a parameter name or value to a key, escaping the key separators.
+     * 
+     * @param key
+     *            the key being built.
+     * @param s
+     *            the parameter name or value.
+     */
+    private static void escape(StringBuffer key, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (ESCAPED_CHARS.indexOf(c) >= 0) {
+                key.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xF]);
+            } else {
+                key.append(c);
+            }
+        }
+    }
+
+    /**
+     * Decodes a parameter name or value escaped by {@link #escape(StringBuffer, String)}.
+     * 
+     * @param s
+     *            the escaped parameter name or value.
+     * @return the parameter name or value.
+     */
+    private static String unescape(String s) {
+        if (s.indexOf('%') < 0) {
+            return s;
+        }
+        StringBuffer result = new StringBuffer(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '%' && i + 2 < s.length()) {
+                result.append((char) Integer.parseInt(s.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+}
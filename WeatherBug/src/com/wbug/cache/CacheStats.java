@@ -0,0 +1,82 @@
+package com.wbug.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hit and miss counters of a cache. Instances are thread-safe.
+ */
+public class CacheStats {
+
+    /** The number of requests served from the cache. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of requests that required an upstream call. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The number of upstream calls that failed. */
+    private final AtomicLong failures = new AtomicLong();
+
+    /** Records a hit. */
+    public void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /** Records a miss. */
+    public void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /** Records a failed upstream call. */
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     * 
+     * @return the number of hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of requests that required an upstream call.
+     * 
+     * @return the number of misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of upstream calls that failed.
+     * 
+     * @return the number of failures.
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /**
+     * Returns the ratio of requests served from the cache.
+     * 
+     * @return the hit rate, between <code>0</code> and <code>1</code> (<code>0</code> if no request has been made).
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return (total == 0) ? 0 : (double) h / total;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "hits=" + getHitCount() + ", misses=" + getMissCount() + ", failures=" + getFailureCount() + ", hitRate="
+                + getHitRate();
+    }
+
+}
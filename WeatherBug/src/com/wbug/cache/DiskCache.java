@@ -0,0 +1,684 @@
+package com.wbug.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of raw service responses, used by <code>WeatherBugService</code> (see
+ * <code>WeatherBugService.Builder.diskCache</code>) so that a restarted process serves station lists and forecasts from local disk.
+ * <p>
+ * Entries are appended to a single log file (<i>responses.log</i>). Each record carries its length, a CRC-32 checksum, the
+ * expiration time of the entry, the key and the response bytes; removals are appended as records without data. When the cache is
+ * opened, the log is scanned to rebuild the in-memory index and stops at the first incomplete or corrupt record, which is
+ * truncated, so a crash during an append loses at most that append. Responses are read through a read-only memory mapping of
+ * the log. The log is compacted when superseded records take more room than the live ones; compaction also drops the entries
+ * expired for longer than {@link #STALE_RETENTION}. It copies the live records to a new log without holding the cache lock, which
+ * is only taken to switch to the new log, so reads and writes go on meanwhile.
+ * <p>
+ * Expired entries are still returned (see {@link Entry#isExpired()}), so that callers can serve them while refreshing them, as
+ * long as they have not been expired for longer than the maximum staleness (see {@link #setMaxStaleness(long)}). Only the
+ * methods given a time-to-live are cached; by default, <i>getStationsXML</i> (24 hours) and <i>getForecastRSS</i> (30
+ * minutes). The cache also keeps the access history of the {@link #MAX_ACCESS_HISTORIES} most recently requested keys, used to
+ * refresh the popular entries ahead of their expiration (see <code>Prefetcher</code>). Instances are thread-safe.
+ */
+public class DiskCache {
+
+    /** The time expired entries are kept (7 days, in milliseconds). */
+    public static final long STALE_RETENTION = 7 * 24 * 60 * 60 * 1000L;
+
+    /** The default maximum staleness of the served entries (one hour, in milliseconds). */
+    public static final long DEFAULT_MAX_STALENESS = 60 * 60 * 1000L;
+
+    /** The maximum number of access histories kept; the least recently requested keys are forgotten first. */
+    public static final int MAX_ACCESS_HISTORIES = 10000;
+
+    /** The magic number of records. */
+    private static final int RECORD_MAGIC = 0x57424452; // "WBDR"
+
+    /** The size of the record header: magic, body length and checksum. */
+    private static final int RECORD_HEADER_SIZE = 12;
+
+    /** The log file name. */
+    private static final String LOG_FILE = "responses.log";
+
+    /** The minimum log size before compaction is considered (in bytes). */
+    private static final long MIN_COMPACTION_SIZE = 1024 * 1024;
+
+    /** The cache directory. */
+    private final File directory;
+
+    /** The times-to-live (in milliseconds), keyed by method name. */
+    private final Map ttls = new HashMap();
+
+    /** The time an expired entry can still be served while it is refreshed (in milliseconds). */
+    private long maxStaleness = DEFAULT_MAX_STALENESS;
+
+    /** The index of the live records, keyed by cache key. */
+    private final Map index = new HashMap();
+
+    /** The access histories, keyed by cache key, in access order. */
+    private final LinkedHashMap accesses = new LinkedHashMap(16, 0.75f, true);
+
+    /** Whether a compaction is running. */
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    /** The hit and miss counters. */
+    private final CacheStats stats = new CacheStats();
+
+    /** The log file. */
+    private RandomAccessFile file;
+
+    /** The memory mapping of the log (<code>null</code> until needed). */
+    private MappedByteBuffer mapped;
+
+    /** The size of the log (in bytes). */
+    private long size;
+
+    /** The number of bytes taken by live records. */
+    private long liveBytes;
+
+    /**
+     * Opens a disk cache, creating its directory if needed.
+     * 
+     * @param directory
+     *            the cache directory.
+     * @throws IOException
+     *             if the log cannot be opened.
+     */
+    public DiskCache(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the cache directory: " + directory);
+        }
+        this.directory = directory;
+        ttls.put("getStationsXML", Long.valueOf(24 * 60 * 60 * 1000L));
+        ttls.put("getForecastRSS", Long.valueOf(30 * 60 * 1000L));
+        file = new RandomAccessFile(new File(directory, LOG_FILE), "rw");
+        load();
+    }
+
+    /**
+     * Sets the time-to-live of the responses of a method.
+     * 
+     * @param methodName
+     *            the name of the WeatherBug API method (for instance <i>getForecastRSS</i>).
+     * @param ttlMillis
+     *            the time-to-live (in milliseconds), or <code>0</code> not to cache the method.
+     */
+    public synchronized void setTimeToLive(String methodName, long ttlMillis) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Invalid time-to-live: " + ttlMillis);
+        }
+        ttls.put(methodName, Long.valueOf(ttlMillis));
+    }
+
+    /**
+     * Returns the time-to-live of the responses of a method.
+     * 
+     * @param methodName
+     *            the name of the WeatherBug API method.
+     * @return the time-to-live (in milliseconds), <code>0</code> if the method is not cached.
+     */
+    public synchronized long getTimeToLive(String methodName) {
+        Long ttl = (Long) ttls.get(methodName);
+        return (ttl != null) ? ttl.longValue() : 0;
+    }
+
+    /**
+     * Sets the maximum staleness: the time after its expiration during which an entry can still be served while it is refreshed.
+     * Older entries are fetched again before being served.
+     * 
+     * @param maxStaleness
+     *            the maximum staleness (in milliseconds).
+     */
+    public synchronized void setMaxStaleness(long maxStaleness) {
+        if (maxStaleness < 0) {
+            throw new IllegalArgumentException("Invalid maximum staleness: " + maxStaleness);
+        }
+        this.maxStaleness = maxStaleness;
+    }
+
+    /**
+     * Returns the maximum staleness.
+     * 
+     * @return the time after its expiration during which an entry can still be served (in milliseconds).
+     */
+    public synchronized long getMaxStaleness() {
+        return maxStaleness;
+    }
+
+    /**
+     * Returns a cached response, even if expired.
+     * 
+     * @param key
+     *            the cache key.
+     * @return the entry, or <code>null</code> if the key is not cached.
+     * @throws IOException
+     *             if the log cannot be read.
+     */
+    public synchronized Entry get(String key) throws IOException {
+        long now = System.currentTimeMillis();
+        AccessHistory history = (AccessHistory) accesses.get(key);
+        if (history == null) {
+            history = new AccessHistory();
+            accesses.put(key, history);
+            if (accesses.size() > MAX_ACCESS_HISTORIES) {
+                Iterator eldest = accesses.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        history.record(now);
+        Entry entry = read(key);
+        if (entry != null && entry.getExpiresTime() > now) {
+            stats.recordHit();
+        } else {
+            stats.recordMiss();
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the expiration time of a cached response, without reading it nor counting an access.
+     * 
+     * @param key
+     *            the cache key.
+     * @return the expiration time (in milliseconds), or <code>-1</code> if the key is not cached.
+     */
+    public synchronized long getExpiresTime(String key) {
+        Record record = (Record) index.get(key);
+        return (record != null) ? record.expiresTime : -1;
+    }
+
+    /**
+     * Returns the access histories of the keys requested through {@link #get(String)}, cached or not. Histories of keys not
+     * requested for longer than {@link #STALE_RETENTION} are dropped by the compaction.
+     * 
+     * @return a copy of the map of the access histories, keyed by cache key.
+     */
+    public synchronized Map getAccessHistories() {
+        return new HashMap(accesses);
+    }
+
+    /**
+     * Returns the hit and miss counters; an expired entry counts as a miss.
+     * 
+     * @return the cache statistics.
+     */
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Reads a cached response.
+     * 
+     * @param key
+     *            the cache key.
+     * @return the entry, or <code>null</code> if the key is not cached.
+     * @throws IOException
+     *             if the log cannot be read.
+     */
+    private Entry read(String key) throws IOException {
+        Record record = (Record) index.get(key);
+        if (record == null) {
+            return null;
+        }
+        if (mapped == null || record.dataOffset + record.dataLength > mapped.capacity()) {
+            mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        byte[] data = new byte[record.dataLength];
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) record.dataOffset);
+        buffer.get(data);
+        return new Entry(data, record.expiresTime);
+    }
+
+    /**
+     * Stores a response.
+     * 
+     * @param key
+     *            the cache key.
+     * @param data
+     *            the response bytes.
+     * @param ttlMillis
+     *            the time-to-live of the entry (in milliseconds).
+     * @throws IOException
+     *             if the log cannot be written or compacted.
+     */
+    public void put(String key, byte[] data, long ttlMillis) throws IOException {
+        boolean compact;
+        synchronized (this) {
+            append(key, data, System.currentTimeMillis() + ttlMillis);
+            compact = isCompactionNeeded();
+        }
+        if (compact) {
+            compact();
+        }
+    }
+
+    /**
+     * Removes a response.
+     * 
+     * @param key
+     *            the cache key.
+     * @throws IOException
+     *             if the log cannot be written or compacted.
+     */
+    public void remove(String key) throws IOException {
+        boolean compact;
+        synchronized (this) {
+            if (!index.containsKey(key)) {
+                return;
+            }
+            append(key, null, 0);
+            compact = isCompactionNeeded();
+        }
+        if (compact) {
+            compact();
+        }
+    }
+
+    /**
+     * Returns the number of cached responses.
+     * 
+     * @return the number of entries.
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Rewrites the log with the live records only, dropping the entries expired for longer than {@link #STALE_RETENTION}. The
+     * live records are copied as is to a new log without holding the cache lock; the lock is then taken to copy the records
+     * appended meanwhile and to switch to the new log. Does nothing if another compaction is running.
+     * 
+     * @throws IOException
+     *             if the log cannot be rewritten.
+     */
+    public void compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return;
+        }
+        File logFile = new File(directory, LOG_FILE);
+        File tmpFile = new File(directory, LOG_FILE + ".tmp");
+        RandomAccessFile tmp = null;
+        boolean done = false;
+        try {
+            RandomAccessFile source;
+            Map records;
+            long copiedSize;
+            synchronized (this) {
+                source = file;
+                records = new HashMap(index);
+                copiedSize = size;
+            }
+
+            // copy the live records, the log being append-only
+            long now = System.currentTimeMillis();
+            tmp = new RandomAccessFile(tmpFile, "rw");
+            tmp.setLength(0);
+            FileChannel from = source.getChannel();
+            FileChannel to = tmp.getChannel();
+            Map compacted = new HashMap();
+            long compactedSize = 0;
+            for (Iterator i = records.entrySet().iterator(); i.hasNext();) {
+                Map.Entry e = (Map.Entry) i.next();
+                Record record = (Record) e.getValue();
+                if (record.expiresTime + STALE_RETENTION <= now) {
+                    continue;
+                }
+                long start = record.dataOffset + record.dataLength - record.recordLength;
+                transfer(from, start, record.recordLength, to, compactedSize);
+                compacted.put(e.getKey(), new Record(compactedSize + record.recordLength - record.dataLength,
+                        record.recordLength, record.dataLength, record.expiresTime));
+                compactedSize += record.recordLength;
+            }
+
+            synchronized (this) {
+                if (file != source || !source.getChannel().isOpen()) {
+                    return; // closed meanwhile
+                }
+                // copy the records appended meanwhile, then replay them on the compacted index
+                int tailLength = (int) (size - copiedSize);
+                ByteBuffer tail = ByteBuffer.allocate(tailLength);
+                while (tail.hasRemaining()) {
+                    if (from.read(tail, copiedSize + tail.position()) < 0) {
+                        throw new IOException("Unexpected end of the cache log");
+                    }
+                }
+                tail.flip();
+                long position = compactedSize;
+                while (tail.hasRemaining()) {
+                    position += to.write(tail, position);
+                }
+                tmp.close();
+                Files.move(tmpFile.toPath(), logFile.toPath(), new CopyOption[] { StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING });
+                done = true;
+                mapped = null;
+                file.close();
+                file = new RandomAccessFile(logFile, "rw");
+                index.clear();
+                liveBytes = 0;
+                for (Iterator i = compacted.entrySet().iterator(); i.hasNext();) {
+                    Map.Entry e = (Map.Entry) i.next();
+                    Record record = (Record) e.getValue();
+                    index.put(e.getKey(), record);
+                    liveBytes += record.recordLength;
+                }
+                tail.rewind();
+                size = compactedSize + scan(tail, compactedSize);
+                for (Iterator i = accesses.values().iterator(); i.hasNext();) {
+                    if (((AccessHistory) i.next()).getLastAccessTime() + STALE_RETENTION <= now) {
+                        i.remove();
+                    }
+                }
+            }
+        } finally {
+            if (!done) {
+                if (tmp != null) {
+                    tmp.close();
+                }
+                tmpFile.delete();
+            }
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Closes the log.
+     * 
+     * @throws IOException
+     *             if the log cannot be closed.
+     */
+    public synchronized void close() throws IOException {
+        mapped = null;
+        file.close();
+    }
+
+    /**
+     * Appends a record to the log and updates the index.
+     * 
+     * @param key
+     *            the cache key.
+     * @param data
+     *            the response bytes, or <code>null</code> for a removal.
+     * @param expiresTime
+     *            the expiration time (in milliseconds).
+     * @throws IOException
+     *             if the log cannot be written.
+     */
+    private void append(String key, byte[] data, long expiresTime) throws IOException {
+        byte[] keyBytes = encodeKey(key);
+        int dataLength = (data != null) ? data.length : -1;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + 14 + keyBytes.length + Math.max(0, dataLength));
+        record.position(RECORD_HEADER_SIZE);
+        record.putLong(expiresTime);
+        record.putShort((short) keyBytes.length);
+        record.put(keyBytes);
+        record.putInt(dataLength);
+        if (data != null) {
+            record.put(data);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER_SIZE, record.capacity() - RECORD_HEADER_SIZE);
+        record.putInt(0, RECORD_MAGIC);
+        record.putInt(4, record.capacity() - RECORD_HEADER_SIZE);
+        record.putInt(8, (int) crc.getValue());
+        record.rewind();
+        FileChannel channel = file.getChannel();
+        long position = size;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+        index(key, size, record.capacity(), dataLength, expiresTime);
+        size = position;
+    }
+
+    /**
+     * Indicates whether the log should be compacted: superseded records take more room than the live ones.
+     * 
+     * @return <code>true</code> if the log should be compacted.
+     */
+    private boolean isCompactionNeeded() {
+        return size > MIN_COMPACTION_SIZE && size - liveBytes > liveBytes && !compacting.get();
+    }
+
+    /**
+     * Copies bytes between file channels.
+     * 
+     * @param from
+     *            the source channel.
+     * @param position
+     *            the offset of the bytes in the source.
+     * @param length
+     *            the number of bytes.
+     * @param to
+     *            the target channel.
+     * @param target
+     *            the offset of the bytes in the target.
+     * @throws IOException
+     *             if the bytes cannot be copied.
+     */
+    private static void transfer(FileChannel from, long position, long length, FileChannel to, long target) throws IOException {
+        to.position(target);
+        while (length > 0) {
+            long count = from.transferTo(position, length, to);
+            if (count <= 0) {
+                throw new IOException("Unexpected end of the cache log");
+            }
+            position += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Scans the log, rebuilding the index, and truncates it after the last valid record.
+     * 
+     * @throws IOException
+     *             if the log cannot be read.
+     */
+    private void load() throws IOException {
+        long length = file.length();
+        if (length == 0) {
+            return;
+        }
+        size = scan(file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length), 0);
+        if (size < length) {
+            file.setLength(size);
+        }
+    }
+
+    /**
+     * Indexes the records of a part of the log, up to the first incomplete or corrupt record.
+     * 
+     * @param buffer
+     *            the bytes of the records.
+     * @param offset
+     *            the offset of the bytes in the log.
+     * @return the number of bytes of the valid records.
+     * @throws IOException
+     *             if a key cannot be decoded.
+     */
+    private long scan(ByteBuffer buffer, long offset) throws IOException {
+        int length = buffer.limit();
+        int position = 0;
+        CRC32 crc = new CRC32();
+        while (position + RECORD_HEADER_SIZE <= length) {
+            int bodyLength = buffer.getInt(position + 4);
+            if (buffer.getInt(position) != RECORD_MAGIC || bodyLength < 14
+                    || (long) position + RECORD_HEADER_SIZE + bodyLength > length) {
+                break;
+            }
+            byte[] body = new byte[bodyLength];
+            ByteBuffer bodyBuffer = buffer.duplicate();
+            bodyBuffer.position(position + RECORD_HEADER_SIZE);
+            bodyBuffer.get(body);
+            crc.reset();
+            crc.update(body);
+            if ((int) crc.getValue() != buffer.getInt(position + 8)) {
+                break;
+            }
+            ByteBuffer b = ByteBuffer.wrap(body);
+            long expiresTime = b.getLong();
+            byte[] keyBytes = new byte[b.getShort() & 0xFFFF];
+            b.get(keyBytes);
+            int dataLength = b.getInt();
+            index(new String(keyBytes, "UTF-8"), offset + position, RECORD_HEADER_SIZE + bodyLength, dataLength, expiresTime);
+            position += RECORD_HEADER_SIZE + bodyLength;
+        }
+        return position;
+    }
+
+    /**
+     * Updates the index with an appended record.
+     * 
+     * @param key
+     *            the cache key.
+     * @param offset
+     *            the offset of the record.
+     * @param recordLength
+     *            the length of the record.
+     * @param dataLength
+     *            the length of the response bytes, or -1 for a removal.
+     * @param expiresTime
+     *            the expiration time (in milliseconds).
+     */
+    private void index(String key, long offset, int recordLength, int dataLength, long expiresTime) {
+        Record previous = (Record) index.remove(key);
+        if (previous != null) {
+            liveBytes -= previous.recordLength;
+        }
+        if (dataLength >= 0) {
+            index.put(key, new Record(offset + recordLength - dataLength, recordLength, dataLength, expiresTime));
+            liveBytes += recordLength;
+        }
+    }
+
+    /**
+     * Encodes a cache key.
+     * 
+     * @param key
+     *            the cache key.
+     * @return the UTF-8 bytes of the key.
+     * @throws IllegalArgumentException
+     *             if the key is too long.
+     */
+    private static byte[] encodeKey(String key) {
+        byte[] keyBytes;
+        try {
+            keyBytes = key.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported");
+        }
+        if (keyBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("Cache key too long: " + key);
+        }
+        return keyBytes;
+    }
+
+    /**
+     * A cached response.
+     */
+    public static class Entry {
+
+        /** The response bytes. */
+        private final byte[] data;
+
+        /** The expiration time (in milliseconds). */
+        private final long expiresTime;
+
+        /**
+         * Constructs a new entry.
+         * 
+         * @param data
+         *            the response bytes.
+         * @param expiresTime
+         *            the expiration time (in milliseconds).
+         */
+        Entry(byte[] data, long expiresTime) {
+            this.data = data;
+            this.expiresTime = expiresTime;
+        }
+
+        /**
+         * Returns the response bytes.
+         * 
+         * @return the response bytes.
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        /**
+         * Returns the expiration time.
+         * 
+         * @return the expiration time (in milliseconds).
+         */
+        public long getExpiresTime() {
+            return expiresTime;
+        }
+
+        /**
+         * Indicates whether the entry has expired.
+         * 
+         * @return <code>true</code> if the time-to-live of the entry has elapsed.
+         */
+        public boolean isExpired() {
+            return expiresTime <= System.currentTimeMillis();
+        }
+
+    }
+
+    /**
+     * The location of a live record in the log.
+     */
+    private static class Record {
+
+        /** The offset of the response bytes. */
+        final long dataOffset;
+
+        /** The length of the whole record. */
+        final int recordLength;
+
+        /** The length of the response bytes. */
+        final int dataLength;
+
+        /** The expiration time (in milliseconds). */
+        final long expiresTime;
+
+        /**
+         * Constructs a new record location.
+         * 
+         * @param dataOffset
+         *            the offset of the response bytes.
+         * @param recordLength
+         *            the length of the whole record.
+         * @param dataLength
+         *            the length of the response bytes.
+         * @param expiresTime
+         *            the expiration time (in milliseconds).
+         */
+        Record(long dataOffset, int recordLength, int dataLength, long expiresTime) {
+            this.dataOffset = dataOffset;
+            this.recordLength = recordLength;
+            this.dataLength = dataLength;
+            this.expiresTime = expiresTime;
+        }
+
+    }
+
+}
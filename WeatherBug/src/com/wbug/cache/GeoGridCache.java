@@ -0,0 +1,391 @@
+package com.wbug.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.wbug.WeatherBugService;
+import com.wbug.WeatherBugServiceException;
+import com.wbug.data.Alert;
+import com.wbug.data.Forecasts;
+import com.wbug.data.LiveCompactWeather;
+import com.wbug.data.Station;
+
+/**
+ * A cache of the latitude/longitude endpoints of a {@link WeatherBugService} keyed by grid cell rather than by exact coordinates,
+ * so that nearby clients share one upstream request.
+ * <p>
+ * The plane is divided into cells of a configurable size (in degrees) per endpoint. A request is answered with the result fetched
+ * for the center of its cell, which is cached for the endpoint time-to-live. Concurrent misses on the same cell wait for a single
+ * upstream call. Hit and miss counters are kept per endpoint (see {@link #getStats(int)}).
+ */
+public class GeoGridCache {
+
+    /** The <i>getLiveCompactWeatherByLatLong</i> endpoint. */
+    public static final int LIVE_COMPACT_WEATHER = 0;
+
+    /** The <i>getForecastByLatLong</i> endpoint. */
+    public static final int FORECAST = 1;
+
+    /** The <i>getAlertsByLatLong</i> endpoint. */
+    public static final int ALERTS = 2;
+
+    /** The <i>getStationListByLatLong</i> endpoint. */
+    public static final int STATIONS = 3;
+
+    /** The endpoint names, used in cache keys. */
+    private static final String[] ENDPOINT_NAMES = new String[] { "live", "forecast", "alerts", "stations" };
+
+    /** The default cell sizes (in degrees), indexed by endpoint. */
+    private static final double[] DEFAULT_CELL_SIZES = new double[] { 0.05, 0.1, 0.05, 0.25 };
+
+    /** The default times-to-live (in milliseconds), indexed by endpoint. */
+    private static final long[] DEFAULT_TTLS = new long[] { 5 * 60 * 1000L, 30 * 60 * 1000L, 2 * 60 * 1000L, 24 * 60 * 60 * 1000L };
+
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    /** The fraction of the maximum number of entries freed by a purge, so that purges only happen every so many misses. */
+    private static final int PURGE_FRACTION = 8;
+
+    /** The underlying service. */
+    private final WeatherBugService service;
+
+    /** The maximum number of entries. */
+    private final int maxEntries;
+
+    /** The cell sizes (in degrees), indexed by endpoint. */
+    private final double[] cellSizes = DEFAULT_CELL_SIZES.clone();
+
+    /** The times-to-live (in milliseconds), indexed by endpoint. */
+    private final long[] ttls = DEFAULT_TTLS.clone();
+
+    /** The statistics, indexed by endpoint. */
+    private final CacheStats[] stats = new CacheStats[ENDPOINT_NAMES.length];
+
+    /** The cached entries, keyed by endpoint, unit type and cell. */
+    private final ConcurrentMap entries = new ConcurrentHashMap();
+
+    /** Whether a thread is purging the entries. */
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    /**
+     * Constructs a new cache with the default maximum number of entries.
+     * 
+     * @param service
+     *            the underlying service.
+     */
+    public GeoGridCache(WeatherBugService service) {
+        this(service, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a new cache.
+     * 
+     * @param service
+     *            the underlying service.
+     * @param maxEntries
+     *            the maximum number of entries.
+     */
+    public GeoGridCache(WeatherBugService service, int maxEntries) {
+        this.service = service;
+        this.maxEntries = maxEntries;
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new CacheStats();
+        }
+    }
+
+    /**
+     * Configures an endpoint. Should be called before the cache is used: entries already cached keep their cell.
+     * 
+     * @param endpoint
+     *            the endpoint (<code>LIVE_COMPACT_WEATHER</code>, <code>FORECAST</code>, and so on).
+     * @param cellSize
+     *            the cell size (in degrees). Sizes below <code>0.01</code> do not improve sharing since the service rounds
+     *            coordinates to two decimals.
+     * @param ttlMillis
+     *            the time-to-live of the entries (in milliseconds).
+     */
+    public synchronized void configure(int endpoint, double cellSize, long ttlMillis) {
+        if (cellSize <= 0 || ttlMillis < 0) {
+            throw new IllegalArgumentException("Invalid cell size or time-to-live: " + cellSize + ", " + ttlMillis);
+        }
+        cellSizes[endpoint] = cellSize;
+        ttls[endpoint] = ttlMillis;
+    }
+
+    /**
+     * Returns the statistics of an endpoint.
+     * 
+     * @param endpoint
+     *            the endpoint (<code>LIVE_COMPACT_WEATHER</code>, <code>FORECAST</code>, and so on).
+     * @return the statistics.
+     */
+    public CacheStats getStats(int endpoint) {
+        return stats[endpoint];
+    }
+
+    /**
+     * For a given latitude and longitude returns the live compact weather of the matching cell.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @return the live compact weather.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     * @see WeatherBugService#getLiveCompactWeatherByLatLong(double, double, int)
+     */
+    public LiveCompactWeather getLiveCompactWeatherByLatLong(double latitude, double longitude, final int unitType)
+            throws WeatherBugServiceException {
+        return (LiveCompactWeather) get(LIVE_COMPACT_WEATHER, latitude, longitude, unitType, new CellLoader() {
+            public Object load(double lat, double lon) throws WeatherBugServiceException {
+                return service.getLiveCompactWeatherByLatLong(lat, lon, unitType);
+            }
+        });
+    }
+
+    /**
+     * For a given latitude and longitude returns the forecast of the matching cell.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @return the forecast.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     * @see WeatherBugService#getForecastByLatLong(double, double, int)
+     */
+    public Forecasts getForecastByLatLong(double latitude, double longitude, final int unitType) throws WeatherBugServiceException {
+        return (Forecasts) get(FORECAST, latitude, longitude, unitType, new CellLoader() {
+            public Object load(double lat, double lon) throws WeatherBugServiceException {
+                return service.getForecastByLatLong(lat, lon, unitType);
+            }
+        });
+    }
+
+    /**
+     * Returns the weather alerts of the cell matching a latitude and longitude.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @return the weather alerts.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     * @see WeatherBugService#getAlertsByLatLong(double, double, int)
+     */
+    public Alert[] getAlertsByLatLong(double latitude, double longitude, final int unitType) throws WeatherBugServiceException {
+        Alert[] alerts = (Alert[]) get(ALERTS, latitude, longitude, unitType, new CellLoader() {
+            public Object load(double lat, double lon) throws WeatherBugServiceException {
+                return service.getAlertsByLatLong(lat, lon, unitType);
+            }
+        });
+        return alerts.clone();
+    }
+
+    /**
+     * Returns the weather stations of the cell matching a latitude and longitude.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @return the set of weather stations in the area.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     * @see WeatherBugService#getStationListByLatLong(double, double)
+     */
+    public Station[] getStationListByLatLong(double latitude, double longitude) throws WeatherBugServiceException {
+        Station[] stations = (Station[]) get(STATIONS, latitude, longitude, -1, new CellLoader() {
+            public Object load(double lat, double lon) throws WeatherBugServiceException {
+                return service.getStationListByLatLong(lat, lon);
+            }
+        });
+        return stations.clone();
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the cached value of a cell, loading it if needed.
+     * 
+     * @param endpoint
+     *            the endpoint.
+     * @param latitude
+     *            the requested latitude.
+     * @param longitude
+     *            the requested longitude.
+     * @param unitType
+     *            the unit type (<code>-1</code> if the endpoint has none).
+     * @param loader
+     *            the upstream call.
+     * @return the cached value.
+     * @throws WeatherBugServiceException
+     *             if an error occurred processing the service response.
+     */
+    private Object get(int endpoint, double latitude, double longitude, int unitType, final CellLoader loader)
+            throws WeatherBugServiceException {
+        double cellSize;
+        long ttl;
+        synchronized (this) {
+            cellSize = cellSizes[endpoint];
+            ttl = ttls[endpoint];
+        }
+        long latIndex = (long) Math.floor(latitude / cellSize);
+        long lonIndex = (long) Math.floor(longitude / cellSize);
+        final double cellLat = Math.max(-90, Math.min(90, (latIndex + 0.5) * cellSize));
+        final double cellLon = Math.max(-180, Math.min(180, (lonIndex + 0.5) * cellSize));
+        String key = ENDPOINT_NAMES[endpoint] + ':' + unitType + ':' + cellSize + ':' + latIndex + ':' + lonIndex;
+        long now = System.currentTimeMillis();
+        while (true) {
+            Entry entry = (Entry) entries.get(key);
+            if (entry != null && entry.expiresTime > now) {
+                Object value;
+                try {
+                    value = entry.getValue();
+                } catch (WeatherBugServiceException e) {
+                    // waited for a load that failed
+                    stats[endpoint].recordFailure();
+                    throw e;
+                }
+                stats[endpoint].recordHit();
+                return value;
+            }
+            FutureTask task = new FutureTask(new Callable() {
+                public Object call() throws Exception {
+                    return loader.load(cellLat, cellLon);
+                }
+            });
+            Entry loading = new Entry(task, now + ttl);
+            boolean owner = (entry == null) ? entries.putIfAbsent(key, loading) == null : entries.replace(key, entry, loading);
+            if (!owner) {
+                continue;
+            }
+            stats[endpoint].recordMiss();
+            if (entries.size() > maxEntries && purging.compareAndSet(false, true)) {
+                try {
+                    purge(now);
+                } finally {
+                    purging.set(false);
+                }
+            }
+            task.run();
+            try {
+                return loading.getValue();
+            } catch (WeatherBugServiceException e) {
+                stats[endpoint].recordFailure();
+                entries.remove(key, loading);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Removes the expired entries and, if the cache is still too large, arbitrary loaded entries until it is back below
+     * <code>1 - 1/PURGE_FRACTION</code> of its maximum size. Freeing a batch of entries at once spreads the cost of the scan over
+     * the next misses, instead of scanning the whole map on every miss once the cache is full. Only one thread purges at a time.
+     * 
+     * @param now
+     *            the current time (in milliseconds).
+     */
+    private void purge(long now) {
+        int target = maxEntries - maxEntries / PURGE_FRACTION;
+        for (Iterator i = entries.values().iterator(); i.hasNext();) {
+            if (((Entry) i.next()).expiresTime <= now) {
+                i.remove();
+            }
+        }
+        for (Iterator i = entries.values().iterator(); i.hasNext() && entries.size() > target;) {
+            if (((Entry) i.next()).task.isDone()) {
+                i.remove();
+            }
+        }
+    }
+
+    /**
+     * An upstream call for the center of a cell.
+     */
+    private interface CellLoader {
+
+        /**
+         * Calls the service.
+         * 
+         * @param latitude
+         *            the latitude of the cell center.
+         * @param longitude
+         *            the longitude of the cell center.
+         * @return the service result.
+         * @throws WeatherBugServiceException
+         *             if an error occurred processing the service response.
+         */
+        Object load(double latitude, double longitude) throws WeatherBugServiceException;
+
+    }
+
+    /**
+     * A cache entry: the (possibly pending) result of an upstream call.
+     */
+    private static class Entry {
+
+        /** The upstream call. */
+        final FutureTask task;
+
+        /** The expiration time (in milliseconds). */
+        final long expiresTime;
+
+        /**
+         * Constructs a new entry.
+         * 
+         * @param task
+         *            the upstream call.
+         * @param expiresTime
+         *            the expiration time (in milliseconds).
+         */
+        Entry(FutureTask task, long expiresTime) {
+            this.task = task;
+            this.expiresTime = expiresTime;
+        }
+
+        /**
+         * Returns the result of the upstream call, waiting for it if needed.
+         * 
+         * @return the result.
+         * @throws WeatherBugServiceException
+         *             if the upstream call failed or the wait was interrupted.
+         */
+        Object getValue() throws WeatherBugServiceException {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WeatherBugServiceException("Interrupted while waiting for the response", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof WeatherBugServiceException) {
+                    throw (WeatherBugServiceException) e.getCause();
+                }
+                throw new WeatherBugServiceException(e.getCause());
+            }
+        }
+
+    }
+
+}
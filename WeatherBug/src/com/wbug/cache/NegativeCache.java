@@ -0,0 +1,200 @@
+package com.wbug.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of the requests whose response was empty (unknown ZIP code, retired station, and so on), so that repeated bad
+ * requests are answered locally for a short time instead of costing an API round trip each.
+ * <p>
+ * Only successful empty responses are recorded: requests that failed (transport or parsing errors, or a response status other
+ * than <i>200 OK</i>) are never cached. When the cache is full, an eighth of the entries is purged at once, expired keys first,
+ * then arbitrary keys, so that the cost of the purge is spread over the following insertions. A single thread purges at a
+ * time; an empty response recorded while the cache is full and another thread is purging is not cached. Instances are
+ * thread-safe.
+ */
+public class NegativeCache {
+
+    /** The default time-to-live of the entries (10 minutes, in milliseconds). */
+    public static final long DEFAULT_TTL = 10 * 60 * 1000L;
+
+    /** The default maximum number of entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** The time-to-live of the entries (in milliseconds). */
+    private final long ttl;
+
+    /** The maximum number of entries. */
+    private final int maxEntries;
+
+    /** The expiration times (<code>Long</code>, in milliseconds), keyed by request key. */
+    private final ConcurrentMap entries = new ConcurrentHashMap();
+
+    /** The number of requests answered from the cache, each saving an upstream call. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of empty responses recorded. */
+    private final AtomicLong recorded = new AtomicLong();
+
+    /** The number of entries evicted before their expiration. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Whether a thread is purging. */
+    private final AtomicBoolean purging = new AtomicBoolean();
+
+    /**
+     * Constructs a new negative cache with the default time-to-live and size.
+     */
+    public NegativeCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Constructs a new negative cache.
+     * 
+     * @param ttlMillis
+     *            the time-to-live of the entries (in milliseconds).
+     * @param maxEntries
+     *            the maximum number of entries.
+     */
+    public NegativeCache(long ttlMillis, int maxEntries) {
+        if (ttlMillis <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("Invalid time-to-live or size: " + ttlMillis + ", " + maxEntries);
+        }
+        this.ttl = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Indicates whether a request is known to have an empty response, counting a hit if so.
+     * 
+     * @param key
+     *            the request key.
+     * @return <code>true</code> if the request had an empty response less than a time-to-live ago.
+     */
+    public boolean contains(String key) {
+        Long expiresTime = (Long) entries.get(key);
+        if (expiresTime == null) {
+            return false;
+        }
+        if (expiresTime.longValue() <= System.currentTimeMillis()) {
+            entries.remove(key, expiresTime);
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Records a request whose response was empty.
+     * 
+     * @param key
+     *            the request key.
+     */
+    public void put(String key) {
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            if (!purging.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                purge(now);
+            } finally {
+                purging.set(false);
+            }
+        }
+        entries.put(key, Long.valueOf(now + ttl));
+        recorded.incrementAndGet();
+    }
+
+    /**
+     * Forgets a request, for instance once the corresponding station has been registered.
+     * 
+     * @param key
+     *            the request key.
+     */
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return the number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of requests answered from the cache, that is the number of upstream calls saved.
+     * 
+     * @return the number of hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of empty responses recorded.
+     * 
+     * @return the number of recorded responses.
+     */
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    /**
+     * Returns the number of entries evicted before their expiration.
+     * 
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Removes an eighth of the entries: expired entries first, then arbitrary ones. Called by one thread at a time.
+     * 
+     * @param now
+     *            the current time (in milliseconds).
+     */
+    private void purge(long now) {
+        int count = Math.max(1, maxEntries / 8);
+        for (Iterator i = entries.entrySet().iterator(); i.hasNext() && count > 0;) {
+            Map.Entry entry = (Map.Entry) i.next();
+            if (((Long) entry.getValue()).longValue() <= now && entries.remove(entry.getKey(), entry.getValue())) {
+                count--;
+            }
+        }
+        for (Iterator i = entries.entrySet().iterator(); i.hasNext() && count > 0;) {
+            Map.Entry entry = (Map.Entry) i.next();
+            if (entries.remove(entry.getKey(), entry.getValue())) {
+                evictions.incrementAndGet();
+                count--;
+            }
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "entries=" + size() + ", hits=" + getHitCount() + ", recorded=" + getRecordedCount() + ", evictions="
+                + getEvictionCount();
+    }
+
+}
@@ -0,0 +1,317 @@
+package com.wbug.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.wbug.data.BinaryCodec;
+import com.wbug.data.BinaryEncodable;
+
+/**
+ * A cache of data objects stored outside of the Java heap, in their binary encoding (see {@link BinaryCodec}).
+ * <p>
+ * Entries are appended to direct <code>ByteBuffer</code> slabs of a fixed size. When every slab is full, the oldest slab is
+ * recycled and all its entries are evicted at once, so the cache never exceeds its capacity and never fragments. Only the key
+ * index lives on the heap; values are decoded into new data objects on each hit, straight from the slab. Keys are usually built
+ * with {@link CacheKeys#key(String, Map)} from the endpoint and the request parameters.
+ * <p>
+ * The cache is a stand-alone component: <code>WeatherBugService</code> caches raw responses (see {@link DiskCache}) and does not
+ * consult it. Applications keeping many decoded data objects can use it in front of the service.
+ * <p>
+ * Instances are thread-safe: lookups proceed concurrently with each other, and only wait for the recycling of the slab they read.
+ */
+public class OffHeapCache {
+
+    /** The default slab size (16 MB). */
+    public static final int DEFAULT_SLAB_SIZE = 16 * 1024 * 1024;
+
+    /** The slabs. */
+    private final ByteBuffer[] slabs;
+
+    /** The locks guarding the recycling of the slabs. */
+    private final ReadWriteLock[] slabLocks;
+
+    /** The keys stored in each slab. */
+    private final List[] slabKeys;
+
+    /** The index of the slab being filled. */
+    private int currentSlab;
+
+    /** The number of slabs used so far. */
+    private int usedSlabs = 1;
+
+    /** The cached entries, keyed by cache key. */
+    private final ConcurrentMap entries = new ConcurrentHashMap();
+
+    /** The hit and miss counters. */
+    private final CacheStats stats = new CacheStats();
+
+    /** The number of entries evicted by slab recycling. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new cache with the default slab size.
+     * 
+     * @param capacity
+     *            the capacity (in bytes, rounded up to a whole number of slabs).
+     */
+    public OffHeapCache(long capacity) {
+        this(capacity, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Constructs a new cache.
+     * 
+     * @param capacity
+     *            the capacity (in bytes, rounded up to a whole number of slabs, at least two).
+     * @param slabSize
+     *            the slab size (in bytes), which is also the maximum size of an entry.
+     */
+    public OffHeapCache(long capacity, int slabSize) {
+        if (capacity <= 0 || slabSize <= 0) {
+            throw new IllegalArgumentException("Invalid capacity or slab size: " + capacity + ", " + slabSize);
+        }
+        int slabCount = (int) Math.max(2, (capacity + slabSize - 1) / slabSize);
+        slabs = new ByteBuffer[slabCount];
+        slabLocks = new ReadWriteLock[slabCount];
+        slabKeys = new List[slabCount];
+        for (int i = 0; i < slabCount; i++) {
+            slabLocks[i] = new ReentrantReadWriteLock();
+            slabKeys[i] = new ArrayList();
+        }
+        slabs[0] = ByteBuffer.allocateDirect(slabSize);
+    }
+
+    /**
+     * Stores a data object.
+     * 
+     * @param key
+     *            the cache key.
+     * @param value
+     *            the data object.
+     * @param ttlMillis
+     *            the time-to-live of the entry (in milliseconds).
+     * @return <code>true</code> if the object has been stored, <code>false</code> if its encoding exceeds the slab size.
+     */
+    public boolean put(String key, BinaryEncodable value, long ttlMillis) {
+        return store(key, BinaryCodec.encode(value), false, ttlMillis);
+    }
+
+    /**
+     * Stores data objects of the same class.
+     * 
+     * @param key
+     *            the cache key.
+     * @param values
+     *            the data objects.
+     * @param ttlMillis
+     *            the time-to-live of the entry (in milliseconds).
+     * @return <code>true</code> if the objects have been stored, <code>false</code> if their encoding exceeds the slab size.
+     */
+    public boolean put(String key, BinaryEncodable[] values, long ttlMillis) {
+        return store(key, BinaryCodec.encodeArray(values), true, ttlMillis);
+    }
+
+    /**
+     * Returns a cached value, decoded into new data objects.
+     * 
+     * @param key
+     *            the cache key.
+     * @return the data object, or the array of data objects if an array has been stored, or <code>null</code> if the key is not
+     *         cached or has expired.
+     */
+    public Object get(String key) {
+        Entry entry = (Entry) entries.get(key);
+        if (entry != null && entry.expiresTime <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            entry = null;
+        }
+        if (entry == null) {
+            stats.recordMiss();
+            return null;
+        }
+        ReadWriteLock lock = slabLocks[entry.slab];
+        lock.readLock().lock();
+        try {
+            if (entries.get(key) != entry) {
+                stats.recordMiss(); // evicted meanwhile
+                return null;
+            }
+            ByteBuffer message = slabs[entry.slab].duplicate();
+            message.position(entry.offset);
+            Object[] values = BinaryCodec.decodeArray(message);
+            stats.recordHit();
+            return entry.array ? (Object) values : values[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an entry. Its bytes are reclaimed when its slab is recycled.
+     * 
+     * @param key
+     *            the cache key.
+     */
+    public void remove(String key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes all the entries.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return the number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the capacity of the cache.
+     * 
+     * @return the capacity (in bytes).
+     */
+    public long getCapacity() {
+        return (long) slabs.length * slabs[0].capacity();
+    }
+
+    /**
+     * Returns the hit and miss counters.
+     * 
+     * @return the statistics.
+     */
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the number of entries evicted to make room for new ones.
+     * 
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Copies an encoded message into the current slab, recycling the oldest slab if needed, and indexes it.
+     * 
+     * @param key
+     *            the cache key.
+     * @param message
+     *            the encoded message.
+     * @param array
+     *            indicates whether the message holds an array.
+     * @param ttlMillis
+     *            the time-to-live of the entry (in milliseconds).
+     * @return <code>true</code> if the message has been stored.
+     */
+    private synchronized boolean store(String key, ByteBuffer message, boolean array, long ttlMillis) {
+        int length = message.remaining();
+        if (length > slabs[0].capacity()) {
+            entries.remove(key);
+            return false;
+        }
+        if (slabs[currentSlab].remaining() < length) {
+            currentSlab = (currentSlab + 1) % slabs.length;
+            if (usedSlabs < slabs.length) {
+                slabs[currentSlab] = ByteBuffer.allocateDirect(slabs[0].capacity());
+                usedSlabs++;
+            } else {
+                recycle(currentSlab);
+            }
+        }
+        ByteBuffer slab = slabs[currentSlab];
+        Entry entry = new Entry(currentSlab, slab.position(), array, System.currentTimeMillis() + ttlMillis);
+        slab.put(message);
+        slabKeys[currentSlab].add(key);
+        entries.put(key, entry);
+        return true;
+    }
+
+    /**
+     * Evicts the entries of a slab and empties it.
+     * 
+     * @param slab
+     *            the slab index.
+     */
+    private void recycle(int slab) {
+        ReadWriteLock lock = slabLocks[slab];
+        lock.writeLock().lock();
+        try {
+            for (Iterator i = slabKeys[slab].iterator(); i.hasNext();) {
+                String key = (String) i.next();
+                Entry entry = (Entry) entries.get(key);
+                if (entry != null && entry.slab == slab && entries.remove(key, entry)) {
+                    evictions.incrementAndGet();
+                }
+            }
+            slabKeys[slab].clear();
+            slabs[slab].clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "entries=" + size() + ", capacity=" + getCapacity() + ", evictions=" + getEvictionCount() + ", " + stats;
+    }
+
+    /**
+     * The location of a cached message.
+     */
+    private static class Entry {
+
+        /** The slab index. */
+        final int slab;
+
+        /** The offset of the message in the slab. */
+        final int offset;
+
+        /** Indicates whether the message holds an array. */
+        final boolean array;
+
+        /** The expiration time (in milliseconds). */
+        final long expiresTime;
+
+        /**
+         * Constructs a new entry.
+         * 
+         * @param slab
+         *            the slab index.
+         * @param offset
+         *            the offset of the message in the slab.
+         * @param array
+         *            indicates whether the message holds an array.
+         * @param expiresTime
+         *            the expiration time (in milliseconds).
+         */
+        Entry(int slab, int offset, boolean array, long expiresTime) {
+            this.slab = slab;
+            this.offset = offset;
+            this.array = array;
+            this.expiresTime = expiresTime;
+        }
+
+    }
+
+}
@@ -9,7 +9,46 @@ import org.dom4j.Element;
 /**
  * A severe weather alert.
  */
-public class Alert {
+public class Alert implements BinaryEncodable {
+
+    /** The binary tag of the id field. */
+    private static final int ID_TAG = 0;
+
+    /** The binary tag of the type field. */
+    private static final int TYPE_TAG = 1;
+
+    /** The binary tag of the title field. */
+    private static final int TITLE_TAG = 2;
+
+    /** The binary tag of the postedTime field. */
+    private static final int POSTED_TIME_TAG = 3;
+
+    /** The binary tag of the expiresTime field. */
+    private static final int EXPIRES_TIME_TAG = 4;
+
+    /** The binary tag of the messageSummary field. */
+    private static final int MESSAGE_SUMMARY_TAG = 5;
+
+    /** The binary tag of the expiresKey field. */
+    private static final int EXPIRES_KEY_TAG = 6;
+
+    /** The arguments of the XPath <i>concat</i> joining the raw components of the expiration date. */
+    private static final String EXPIRES_KEY_ARGS = "aws:expires-date/aws:year/@number, '-', "
+            + "aws:expires-date/aws:month/@number, '-', aws:expires-date/aws:day/@number, ' ', "
+            + "aws:expires-date/aws:hour/@hour-24, ':', aws:expires-date/aws:minute/@number, ':', "
+            + "aws:expires-date/aws:second/@number, ' ', aws:expires-date/aws:time-zone/@abbrv";
+
+    /** The XPath computing the raw expiration date of an &lt;aws:alert&gt; element. */
+    private static final String EXPIRES_KEY_PATH = "concat(" + EXPIRES_KEY_ARGS + ")";
+
+    /**
+     * The XPath computing the identity of an &lt;aws:alert&gt; element, matching {@link #getIdentity()}.
+     */
+    public static final String IDENTITY_PATH = "concat(aws:id, '|', aws:title, '|', aws:msg-summary, '|', " + EXPIRES_KEY_ARGS
+            + ")";
+
+    /** The raw expiration date, as found in the XML element (part of the identity). */
+    private String expiresKey;
 
     /** The expiration time of the alert. */
     private Timestamp expiresTime;
@@ -42,6 +81,24 @@ public class Alert {
         this.postedTime = WeatherBugDataUtils.getTimestamp(alert, "aws:posted-date");
         this.expiresTime = WeatherBugDataUtils.getTimestamp(alert, "aws:expires-date");
         this.messageSummary = WeatherBugDataUtils.getString(alert, "aws:msg-summary");
+        this.expiresKey = WeatherBugDataUtils.getString(alert, EXPIRES_KEY_PATH);
+    }
+
+    /**
+     * Constructs a new alert from its binary encoding.
+     * 
+     * @param record
+     *            the binary record.
+     * @see #writeTo(BinaryWriter)
+     */
+    public Alert(BinaryRecord record) {
+        this.id = record.getString(ID_TAG);
+        this.type = record.getString(TYPE_TAG);
+        this.title = record.getString(TITLE_TAG);
+        this.postedTime = record.getTimestamp(POSTED_TIME_TAG);
+        this.expiresTime = record.getTimestamp(EXPIRES_TIME_TAG);
+        this.messageSummary = record.getString(MESSAGE_SUMMARY_TAG);
+        this.expiresKey = record.getString(EXPIRES_KEY_TAG);
     }
 
     /**
@@ -62,6 +119,18 @@ public class Alert {
         return id;
     }
 
+    /**
+     * Returns the identity of the alert: its identifier, title, message summary and expiration date. Two alerts with the same
+     * identity are considered the same issue of an alert, while a change of title, summary or expiration date (an extended alert)
+     * under the same identifier denotes an update.
+     * 
+     * @return the identity of the alert.
+     * @see #IDENTITY_PATH
+     */
+    public String getIdentity() {
+        return id + '|' + title + '|' + messageSummary + '|' + expiresKey;
+    }
+
     /**
      * Returns the message summary.
      * 
@@ -98,6 +167,21 @@ public class Alert {
         return type;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.BinaryEncodable#writeTo(com.wbug.data.BinaryWriter)
+     */
+    public void writeTo(BinaryWriter out) {
+        out.writeString(ID_TAG, id);
+        out.writeString(TYPE_TAG, type);
+        out.writeString(TITLE_TAG, title);
+        out.writeTimestamp(POSTED_TIME_TAG, postedTime);
+        out.writeTimestamp(EXPIRES_TIME_TAG, expiresTime);
+        out.writeString(MESSAGE_SUMMARY_TAG, messageSummary);
+        out.writeString(EXPIRES_KEY_TAG, expiresKey);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,276 @@
+package com.wbug.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Encodes and decodes the WeatherBug data objects in a compact, versioned binary format.
+ * <p>
+ * A message holds one or more objects of the same class:
+ * <ol>
+ * <li>the magic bytes <i>WB</i>, the format version and the type of the objects (one byte each);</li>
+ * <li>the string dictionary: a varint count, then the varint length and the UTF-8 bytes of each string;</li>
+ * <li>a varint count of objects, then each object as a 4-byte length followed by its tagged fields (see
+ * {@link BinaryWriter}).</li>
+ * </ol>
+ * Decoding reads the message in place: only the dictionary strings are materialized up front, each distinct string once, and the
+ * fields are decoded directly from the buffer. Tagged fields let the data classes evolve: unknown fields are skipped and missing
+ * fields take their default value.
+ * <p>
+ * Methods of this class are thread-safe.
+ */
+public final class BinaryCodec {
+
+    /** The current format version. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** The first magic byte. */
+    private static final byte MAGIC_1 = 'W';
+
+    /** The second magic byte. */
+    private static final byte MAGIC_2 = 'B';
+
+    /** The encodable classes, indexed by type identifier. */
+    private static final Class[] TYPES = new Class[] { null, LiveWeather.class, LiveCompactWeather.class, Forecasts.class,
+            Forecast.class, Alert.class, Station.class, Location.class };
+
+    /** The UTF-8 character set. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /** Private constructor (don't instantiate). */
+    private BinaryCodec() {
+    }
+
+    /**
+     * Encodes a data object.
+     * 
+     * @param data
+     *            the data object.
+     * @return the encoded message (a heap buffer, positioned at its start).
+     */
+    public static ByteBuffer encode(BinaryEncodable data) {
+        return encodeArray(new BinaryEncodable[] { data });
+    }
+
+    /**
+     * Encodes data objects of the same class.
+     * 
+     * @param data
+     *            the data objects.
+     * @return the encoded message (a heap buffer, positioned at its start).
+     */
+    public static ByteBuffer encodeArray(BinaryEncodable[] data) {
+        int type = getType(data.getClass().getComponentType());
+        if (type < 0 && data.length > 0) {
+            type = getType(data[0].getClass());
+        }
+        if (type < 0) {
+            throw new IllegalArgumentException("Not a WeatherBug data class: " + data.getClass().getComponentType().getName());
+        }
+        BinaryWriter body = new BinaryWriter();
+        body.writeVarint(data.length);
+        for (int i = 0; i < data.length; i++) {
+            if (getType(data[i].getClass()) != type) {
+                throw new IllegalArgumentException("Mixed data classes: " + data[i].getClass().getName());
+            }
+            body.writeLengthPrefixed(data[i]);
+        }
+        byte[] dictionary = body.encodeDictionary();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + dictionary.length + body.getLength());
+        buffer.put(MAGIC_1).put(MAGIC_2).put((byte) FORMAT_VERSION).put((byte) type);
+        buffer.put(dictionary);
+        buffer.put(body.getBytes(), 0, body.getLength());
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Encodes data objects of the same class to a stream.
+     * 
+     * @param data
+     *            the data objects.
+     * @param out
+     *            the output stream.
+     * @throws IOException
+     *             if the message cannot be written.
+     */
+    public static void encodeArray(BinaryEncodable[] data, OutputStream out) throws IOException {
+        ByteBuffer buffer = encodeArray(data);
+        out.write(buffer.array(), buffer.arrayOffset(), buffer.remaining());
+    }
+
+    /**
+     * Decodes the first data object of a message. On return, the buffer is positioned after the message.
+     * 
+     * @param buffer
+     *            the buffer, positioned at the start of the message.
+     * @return the data object (<code>null</code> if the message is empty).
+     * @throws IllegalArgumentException
+     *             if the message is malformed or has an unsupported version.
+     */
+    public static Object decode(ByteBuffer buffer) {
+        Object[] data = decodeArray(buffer);
+        return (data.length > 0) ? data[0] : null;
+    }
+
+    /**
+     * Decodes the data objects of a message. On return, the buffer is positioned after the message.
+     * 
+     * @param buffer
+     *            the buffer, positioned at the start of the message.
+     * @return the data objects, as an array of their class (for instance a <code>Station[]</code>).
+     * @throws IllegalArgumentException
+     *             if the message is malformed or has an unsupported version.
+     */
+    public static Object[] decodeArray(ByteBuffer buffer) {
+        try {
+            return decodeMessage(buffer);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed binary message: truncated");
+        }
+    }
+
+    /**
+     * Decodes the data objects of a message, checking every count and length against the remaining bytes before allocating.
+     * 
+     * @param buffer
+     *            the buffer, positioned at the start of the message.
+     * @return the data objects.
+     * @throws IllegalArgumentException
+     *             if the message is malformed or has an unsupported version.
+     */
+    private static Object[] decodeMessage(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int limit = buffer.limit();
+        if (limit - pos < 4 || buffer.get(pos) != MAGIC_1 || buffer.get(pos + 1) != MAGIC_2) {
+            throw new IllegalArgumentException("Not a WeatherBug binary message");
+        }
+        int version = buffer.get(pos + 2);
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported binary format version: " + version);
+        }
+        int type = buffer.get(pos + 3);
+        if (type <= 0 || type >= TYPES.length) {
+            throw new IllegalArgumentException("Unknown binary data type: " + type);
+        }
+        pos += 4;
+
+        // each string takes at least its length byte
+        String[] dictionary = new String[readCount(buffer, pos, limit, 1)];
+        pos = BinaryRecord.skipVarint(buffer, pos);
+        for (int i = 0; i < dictionary.length; i++) {
+            int length = readCount(buffer, pos, limit, 1);
+            pos = BinaryRecord.skipVarint(buffer, pos);
+            if (length > limit - pos) {
+                throw new IllegalArgumentException("Malformed binary message: string length " + length);
+            }
+            dictionary[i] = decodeString(buffer, pos, length);
+            pos += length;
+        }
+
+        // each object takes at least its 4-byte length
+        Object[] data = (Object[]) Array.newInstance(TYPES[type], readCount(buffer, pos, limit, 4));
+        pos = BinaryRecord.skipVarint(buffer, pos);
+        for (int i = 0; i < data.length; i++) {
+            int length = buffer.getInt(pos);
+            if (length < 0 || length > limit - pos - 4) {
+                throw new IllegalArgumentException("Malformed binary message: record length " + length);
+            }
+            data[i] = newInstance(type, new BinaryRecord(buffer, pos + 4, pos + 4 + length, dictionary));
+            pos += 4 + length;
+        }
+        buffer.position(pos);
+        return data;
+    }
+
+    /**
+     * Reads the varint count of the items that follow it, checking that the remaining bytes can hold them.
+     * 
+     * @param buffer
+     *            the buffer.
+     * @param pos
+     *            the offset of the varint.
+     * @param limit
+     *            the end of the message.
+     * @param minItemLength
+     *            the minimum encoded length of an item.
+     * @return the count.
+     * @throws IllegalArgumentException
+     *             if the count exceeds the remaining bytes.
+     */
+    private static int readCount(ByteBuffer buffer, int pos, int limit, int minItemLength) {
+        long count = BinaryRecord.readVarint(buffer, pos);
+        if (count < 0 || count > (limit - BinaryRecord.skipVarint(buffer, pos)) / minItemLength) {
+            throw new IllegalArgumentException("Malformed binary message: count " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Creates a data object from its record.
+     * 
+     * @param type
+     *            the type identifier.
+     * @param record
+     *            the record.
+     * @return the data object.
+     */
+    private static Object newInstance(int type, BinaryRecord record) {
+        switch (type) {
+        case 1:
+            return new LiveWeather(record);
+        case 2:
+            return new LiveCompactWeather(record);
+        case 3:
+            return new Forecasts(record);
+        case 4:
+            return new Forecast(record);
+        case 5:
+            return new Alert(record);
+        case 6:
+            return new Station(record);
+        default:
+            return new Location(record);
+        }
+    }
+
+    /**
+     * Returns the type identifier of a data class.
+     * 
+     * @param dataClass
+     *            the data class.
+     * @return the type identifier (the one of the nearest encodable superclass), or -1 if the class cannot be encoded.
+     */
+    private static int getType(Class dataClass) {
+        for (int i = 1; i < TYPES.length; i++) {
+            if (TYPES[i].isAssignableFrom(dataClass)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes a UTF-8 string in place.
+     * 
+     * @param buffer
+     *            the buffer.
+     * @param pos
+     *            the offset of the string bytes.
+     * @param length
+     *            the number of bytes.
+     * @return the string.
+     */
+    private static String decodeString(ByteBuffer buffer, int pos, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + pos, length, UTF_8);
+        }
+        ByteBuffer bytes = buffer.duplicate();
+        bytes.limit(pos + length).position(pos);
+        return UTF_8.decode(bytes).toString();
+    }
+
+}
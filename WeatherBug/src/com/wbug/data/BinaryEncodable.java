@@ -0,0 +1,19 @@
+package com.wbug.data;
+
+/**
+ * A data object which can be written in the compact binary format of {@link BinaryCodec}. Implementations also provide a
+ * constructor taking a {@link BinaryRecord}, which restores the object from the fields written by
+ * {@link #writeTo(BinaryWriter)}.
+ */
+public interface BinaryEncodable {
+
+    /**
+     * Writes the fields of this object. Each field is identified by a tag which must never be reused for another meaning; fields
+     * with a <code>null</code> value are omitted.
+     * 
+     * @param out
+     *            the binary writer.
+     */
+    void writeTo(BinaryWriter out);
+
+}
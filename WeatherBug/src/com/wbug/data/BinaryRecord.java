@@ -0,0 +1,356 @@
+package com.wbug.data;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The fields of a data object encoded by {@link BinaryWriter}, read in place from a <code>ByteBuffer</code>.
+ * <p>
+ * The fields are indexed once, when the record is created; the values are then decoded straight from the buffer when they are
+ * requested, without copying the encoded bytes. When a tag occurs several times, the single-value accessors return the last
+ * occurrence. Fields whose wire type doesn't match the accessor are reported as absent. Records must not outlive changes to the
+ * content of their buffer.
+ */
+public final class BinaryRecord {
+
+    /** The highest indexed tag; fields with a higher tag are unknown to every data class and skipped. */
+    private static final int MAX_TAG = 1023;
+
+    /** The encoded message. */
+    private final ByteBuffer buffer;
+
+    /** The offset of the first field. */
+    private final int start;
+
+    /** The offset following the last field. */
+    private final int end;
+
+    /** The string dictionary of the message. */
+    private final String[] dictionary;
+
+    /** The offset of the last value of each tag, plus one (zero when absent). */
+    private int[] valueOffsets = new int[16];
+
+    /** The wire type of the last value of each tag. */
+    private byte[] wireTypes = new byte[16];
+
+    /**
+     * Constructs a new record and indexes its fields.
+     * 
+     * @param buffer
+     *            the encoded message.
+     * @param start
+     *            the offset of the first field.
+     * @param end
+     *            the offset following the last field.
+     * @param dictionary
+     *            the string dictionary of the message.
+     * @throws IllegalArgumentException
+     *             if the record is malformed.
+     */
+    BinaryRecord(ByteBuffer buffer, int start, int end, String[] dictionary) {
+        if (start < 0 || start > end || end > buffer.limit()) {
+            throw new IllegalArgumentException("Malformed binary record: bounds " + start + '-' + end);
+        }
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.dictionary = dictionary;
+        int pos = start;
+        while (pos < end) {
+            long key = readVarint(buffer, pos);
+            pos = skipVarint(buffer, pos);
+            int wireType = (int) (key & ((1 << BinaryWriter.WIRE_TYPE_BITS) - 1));
+            long tagValue = key >>> BinaryWriter.WIRE_TYPE_BITS;
+            if (tagValue > MAX_TAG) {
+                pos = skipValue(pos, wireType);
+                continue;
+            }
+            int tag = (int) tagValue;
+            if (tag >= valueOffsets.length) {
+                int[] grownOffsets = new int[Math.max(tag + 1, valueOffsets.length * 2)];
+                System.arraycopy(valueOffsets, 0, grownOffsets, 0, valueOffsets.length);
+                valueOffsets = grownOffsets;
+                byte[] grownTypes = new byte[grownOffsets.length];
+                System.arraycopy(wireTypes, 0, grownTypes, 0, wireTypes.length);
+                wireTypes = grownTypes;
+            }
+            valueOffsets[tag] = pos + 1;
+            wireTypes[tag] = (byte) wireType;
+            pos = skipValue(pos, wireType);
+        }
+        if (pos != end) {
+            throw new IllegalArgumentException("Malformed binary record");
+        }
+    }
+
+    /**
+     * Indicates whether a field is present.
+     * 
+     * @param tag
+     *            the field tag.
+     * @return <code>true</code> if the record holds a value for the tag.
+     */
+    public boolean has(int tag) {
+        return tag < valueOffsets.length && valueOffsets[tag] != 0;
+    }
+
+    /**
+     * Returns a string field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @return the value (<code>null</code> if absent).
+     */
+    public String getString(int tag) {
+        int offset = offsetOf(tag, BinaryWriter.STRING_WIRE_TYPE);
+        if (offset < 0) {
+            return null;
+        }
+        long index = readVarint(buffer, offset);
+        if (index < 0 || index >= dictionary.length) {
+            throw new IllegalArgumentException("Malformed binary record: string index " + index);
+        }
+        return dictionary[(int) index];
+    }
+
+    /**
+     * Returns a URL field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @return the value (<code>null</code> if absent or malformed).
+     */
+    public URL getURL(int tag) {
+        String spec = getString(tag);
+        if (spec == null) {
+            return null;
+        }
+        try {
+            return new URL(spec);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns an integer field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param defaultValue
+     *            the value returned if the field is absent.
+     * @return the value.
+     */
+    public int getInt(int tag, int defaultValue) {
+        int offset = offsetOf(tag, BinaryWriter.VARINT_WIRE_TYPE);
+        return (offset < 0) ? defaultValue : (int) unzigzag(readVarint(buffer, offset));
+    }
+
+    /**
+     * Returns a boolean field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param defaultValue
+     *            the value returned if the field is absent.
+     * @return the value.
+     */
+    public boolean getBoolean(int tag, boolean defaultValue) {
+        int offset = offsetOf(tag, BinaryWriter.VARINT_WIRE_TYPE);
+        return (offset < 0) ? defaultValue : readVarint(buffer, offset) != 0;
+    }
+
+    /**
+     * Returns a timestamp field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @return the value (<code>null</code> if absent).
+     */
+    public Timestamp getTimestamp(int tag) {
+        int offset = offsetOf(tag, BinaryWriter.VARINT_WIRE_TYPE);
+        return (offset < 0) ? null : new Timestamp(unzigzag(readVarint(buffer, offset)));
+    }
+
+    /**
+     * Returns a decimal field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @return the value (<code>null</code> if absent).
+     */
+    public BigDecimal getBigDecimal(int tag) {
+        int offset = offsetOf(tag, BinaryWriter.DECIMAL_WIRE_TYPE);
+        if (offset >= 0) {
+            int scale = (int) unzigzag(readVarint(buffer, offset));
+            return BigDecimal.valueOf(unzigzag(readVarint(buffer, skipVarint(buffer, offset))), scale);
+        }
+        offset = offsetOf(tag, BinaryWriter.BIG_DECIMAL_WIRE_TYPE);
+        if (offset >= 0) {
+            int scale = (int) unzigzag(readVarint(buffer, offset));
+            int lengthOffset = skipVarint(buffer, offset);
+            byte[] unscaled = new byte[(int) readVarint(buffer, lengthOffset)];
+            int pos = skipVarint(buffer, lengthOffset);
+            for (int i = 0; i < unscaled.length; i++) {
+                unscaled[i] = buffer.get(pos + i);
+            }
+            return new BigDecimal(new BigInteger(unscaled), scale);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a nested object field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @return the nested record (<code>null</code> if absent).
+     */
+    public BinaryRecord getRecord(int tag) {
+        int offset = offsetOf(tag, BinaryWriter.RECORD_WIRE_TYPE);
+        return (offset < 0) ? null : new BinaryRecord(buffer, offset + 4, offset + 4 + buffer.getInt(offset), dictionary);
+    }
+
+    /**
+     * Returns all the occurrences of a repeated nested object field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @return the nested records, in encoding order (empty if absent).
+     */
+    public BinaryRecord[] getRecords(int tag) {
+        List records = new ArrayList();
+        if (has(tag)) {
+            int pos = start;
+            while (pos < end) {
+                long key = readVarint(buffer, pos);
+                pos = skipVarint(buffer, pos);
+                int wireType = (int) (key & ((1 << BinaryWriter.WIRE_TYPE_BITS) - 1));
+                if ((key >>> BinaryWriter.WIRE_TYPE_BITS) == tag && wireType == BinaryWriter.RECORD_WIRE_TYPE) {
+                    records.add(new BinaryRecord(buffer, pos + 4, pos + 4 + buffer.getInt(pos), dictionary));
+                }
+                pos = skipValue(pos, wireType);
+            }
+        }
+        return (BinaryRecord[]) records.toArray(new BinaryRecord[records.size()]);
+    }
+
+    /**
+     * Returns the offset of the value of a field, checking its wire type.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param wireType
+     *            the expected wire type.
+     * @return the offset of the value, or -1 if the field is absent or has another wire type.
+     */
+    private int offsetOf(int tag, int wireType) {
+        if (!has(tag) || wireTypes[tag] != wireType) {
+            return -1;
+        }
+        return valueOffsets[tag] - 1;
+    }
+
+    /**
+     * Skips a value, checking that it lies within the record: the lengths of nested records and big decimals are validated
+     * here, once, so that the accessors can trust them.
+     * 
+     * @param pos
+     *            the offset of the value.
+     * @param wireType
+     *            the wire type of the value.
+     * @return the offset following the value.
+     * @throws IllegalArgumentException
+     *             if the value is malformed or overruns the record.
+     */
+    private int skipValue(int pos, int wireType) {
+        switch (wireType) {
+        case BinaryWriter.VARINT_WIRE_TYPE:
+        case BinaryWriter.STRING_WIRE_TYPE:
+            return skipVarint(buffer, pos);
+        case BinaryWriter.DECIMAL_WIRE_TYPE:
+            return skipVarint(buffer, skipVarint(buffer, pos));
+        case BinaryWriter.RECORD_WIRE_TYPE:
+            return checkLength(pos + 4, buffer.getInt(pos));
+        case BinaryWriter.BIG_DECIMAL_WIRE_TYPE:
+            int lengthOffset = skipVarint(buffer, pos);
+            return checkLength(skipVarint(buffer, lengthOffset), readVarint(buffer, lengthOffset));
+        default:
+            throw new IllegalArgumentException("Unknown wire type: " + wireType);
+        }
+    }
+
+    /**
+     * Checks that a length-prefixed value ends within the record.
+     * 
+     * @param pos
+     *            the offset of the value bytes.
+     * @param length
+     *            the length of the value.
+     * @return the offset following the value.
+     * @throws IllegalArgumentException
+     *             if the value overruns the record.
+     */
+    private int checkLength(int pos, long length) {
+        if (length < 0 || length > end - pos) {
+            throw new IllegalArgumentException("Malformed binary record: length " + length);
+        }
+        return pos + (int) length;
+    }
+
+    /**
+     * Reads an unsigned varint.
+     * 
+     * @param buffer
+     *            the buffer.
+     * @param pos
+     *            the offset of the varint.
+     * @return the value.
+     */
+    static long readVarint(ByteBuffer buffer, int pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get(pos++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Skips a varint.
+     * 
+     * @param buffer
+     *            the buffer.
+     * @param pos
+     *            the offset of the varint.
+     * @return the offset following the varint.
+     */
+    static int skipVarint(ByteBuffer buffer, int pos) {
+        while (buffer.get(pos) < 0) {
+            pos++;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * Reverts the zigzag mapping of a signed value.
+     * 
+     * @param value
+     *            the zigzag-encoded value.
+     * @return the signed value.
+     */
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.wbug.data;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the tagged fields of data objects in the compact binary format of {@link BinaryCodec}.
+ * <p>
+ * Each field is written as a key (the tag and the wire type of the value) followed by the value:
+ * <ul>
+ * <li>integers, booleans and timestamps (in milliseconds) as zigzag varints;</li>
+ * <li>strings and URLs as varint indexes into the string dictionary of the message, so that repeated values (units, city and
+ * country names) are only stored once;</li>
+ * <li>decimals as a zigzag varint scale followed by the unscaled value, either as a zigzag varint or, when it does not fit in a
+ * long, as its two's-complement bytes;</li>
+ * <li>nested objects as a 4-byte length followed by their fields.</li>
+ * </ul>
+ * Readers skip the fields whose tag they don't know, and ignore the fields whose wire type doesn't match the expected one, which
+ * lets the data classes add (or retype) fields without breaking older readers.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public final class BinaryWriter {
+
+    /** The wire type of varint values. */
+    static final int VARINT_WIRE_TYPE = 0;
+
+    /** The wire type of dictionary strings. */
+    static final int STRING_WIRE_TYPE = 1;
+
+    /** The wire type of decimals whose unscaled value fits in a long. */
+    static final int DECIMAL_WIRE_TYPE = 2;
+
+    /** The wire type of nested objects. */
+    static final int RECORD_WIRE_TYPE = 3;
+
+    /** The wire type of decimals whose unscaled value doesn't fit in a long. */
+    static final int BIG_DECIMAL_WIRE_TYPE = 4;
+
+    /** The number of bits of the wire type in a key. */
+    static final int WIRE_TYPE_BITS = 3;
+
+    /** The string dictionary indexes, keyed by string. */
+    private final Map dictionaryIndexes = new HashMap();
+
+    /** The dictionary strings, in index order. */
+    private final List dictionary = new ArrayList();
+
+    /** The encoded fields. */
+    private byte[] bytes = new byte[256];
+
+    /** The number of encoded bytes. */
+    private int length;
+
+    /**
+     * Writes a string field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param value
+     *            the value (omitted if <code>null</code>).
+     */
+    public void writeString(int tag, String value) {
+        if (value != null) {
+            Integer index = (Integer) dictionaryIndexes.get(value);
+            if (index == null) {
+                index = Integer.valueOf(dictionary.size());
+                dictionaryIndexes.put(value, index);
+                dictionary.add(value);
+            }
+            writeKey(tag, STRING_WIRE_TYPE);
+            writeVarint(index.intValue());
+        }
+    }
+
+    /**
+     * Writes a URL field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param value
+     *            the value (omitted if <code>null</code>).
+     */
+    public void writeURL(int tag, URL value) {
+        if (value != null) {
+            writeString(tag, value.toExternalForm());
+        }
+    }
+
+    /**
+     * Writes an integer field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param value
+     *            the value.
+     */
+    public void writeInt(int tag, int value) {
+        writeKey(tag, VARINT_WIRE_TYPE);
+        writeVarint(zigzag(value));
+    }
+
+    /**
+     * Writes a boolean field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param value
+     *            the value.
+     */
+    public void writeBoolean(int tag, boolean value) {
+        writeKey(tag, VARINT_WIRE_TYPE);
+        writeVarint(value ? 1 : 0);
+    }
+
+    /**
+     * Writes a timestamp field, with a millisecond precision.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param value
+     *            the value (omitted if <code>null</code>).
+     */
+    public void writeTimestamp(int tag, Timestamp value) {
+        if (value != null) {
+            writeKey(tag, VARINT_WIRE_TYPE);
+            writeVarint(zigzag(value.getTime()));
+        }
+    }
+
+    /**
+     * Writes a decimal field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param value
+     *            the value (omitted if <code>null</code>).
+     */
+    public void writeBigDecimal(int tag, BigDecimal value) {
+        if (value != null) {
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                writeKey(tag, DECIMAL_WIRE_TYPE);
+                writeVarint(zigzag(value.scale()));
+                writeVarint(zigzag(unscaled.longValue()));
+            } else {
+                byte[] unscaledBytes = unscaled.toByteArray();
+                writeKey(tag, BIG_DECIMAL_WIRE_TYPE);
+                writeVarint(zigzag(value.scale()));
+                writeVarint(unscaledBytes.length);
+                ensureCapacity(unscaledBytes.length);
+                System.arraycopy(unscaledBytes, 0, bytes, length, unscaledBytes.length);
+                length += unscaledBytes.length;
+            }
+        }
+    }
+
+    /**
+     * Writes a nested object field.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param value
+     *            the value (omitted if <code>null</code>).
+     */
+    public void writeRecord(int tag, BinaryEncodable value) {
+        if (value != null) {
+            writeKey(tag, RECORD_WIRE_TYPE);
+            writeLengthPrefixed(value);
+        }
+    }
+
+    /**
+     * Writes a repeated nested object field, one field per element.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param values
+     *            the values (omitted if <code>null</code>).
+     */
+    public void writeRecords(int tag, BinaryEncodable[] values) {
+        if (values != null) {
+            for (int i = 0; i < values.length; i++) {
+                writeRecord(tag, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the fields of an object preceded by their 4-byte length.
+     * 
+     * @param value
+     *            the object.
+     */
+    void writeLengthPrefixed(BinaryEncodable value) {
+        ensureCapacity(4);
+        int lengthOffset = length;
+        length += 4;
+        value.writeTo(this);
+        int recordLength = length - lengthOffset - 4;
+        bytes[lengthOffset] = (byte) (recordLength >>> 24);
+        bytes[lengthOffset + 1] = (byte) (recordLength >>> 16);
+        bytes[lengthOffset + 2] = (byte) (recordLength >>> 8);
+        bytes[lengthOffset + 3] = (byte) recordLength;
+    }
+
+    /**
+     * Returns the buffer holding the encoded fields.
+     * 
+     * @return the encoded fields (the first {@link #getLength()} bytes).
+     */
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of encoded bytes.
+     * 
+     * @return the number of encoded bytes.
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Encodes the strings of the dictionary: their count, then the length and the UTF-8 bytes of each.
+     * 
+     * @return the encoded dictionary.
+     */
+    byte[] encodeDictionary() {
+        BinaryWriter out = new BinaryWriter();
+        out.writeVarint(dictionary.size());
+        for (int i = 0; i < dictionary.size(); i++) {
+            byte[] utf8;
+            try {
+                utf8 = ((String) dictionary.get(i)).getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException("UTF-8 not supported");
+            }
+            out.writeVarint(utf8.length);
+            out.ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, out.bytes, out.length, utf8.length);
+            out.length += utf8.length;
+        }
+        byte[] encoded = new byte[out.length];
+        System.arraycopy(out.bytes, 0, encoded, 0, out.length);
+        return encoded;
+    }
+
+    /**
+     * Writes a field key.
+     * 
+     * @param tag
+     *            the field tag.
+     * @param wireType
+     *            the wire type of the value.
+     */
+    private void writeKey(int tag, int wireType) {
+        if (tag < 0) {
+            throw new IllegalArgumentException("Negative tag: " + tag);
+        }
+        writeVarint(((long) tag << WIRE_TYPE_BITS) | wireType);
+    }
+
+    /**
+     * Writes an unsigned varint: 7 bits per byte, least significant group first, the high bit flagging a continuation.
+     * 
+     * @param value
+     *            the value (taken as unsigned).
+     */
+    void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+
+    /**
+     * Maps a signed value to an unsigned one so that small magnitudes have short varints.
+     * 
+     * @param value
+     *            the signed value.
+     * @return the zigzag-encoded value.
+     */
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Grows the buffer if needed.
+     * 
+     * @param extra
+     *            the number of bytes about to be written.
+     */
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            byte[] grown = new byte[Math.max(bytes.length * 2, length + extra)];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+    }
+
+}
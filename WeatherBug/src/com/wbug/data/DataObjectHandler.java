@@ -0,0 +1,18 @@
+package com.wbug.data;
+
+/**
+ * Receives the WeatherBug data objects (<i>Location</i>, <i>Station</i>, and so on) of a response one at a time, as soon as they
+ * are bound, instead of a list once the whole response has been read.
+ */
+public interface DataObjectHandler {
+
+    /**
+     * Handles a data object.
+     * 
+     * @param object
+     *            the data object.
+     * @return <code>true</code> to go on, <code>false</code> to stop reading the response.
+     */
+    boolean handle(Object object);
+
+}
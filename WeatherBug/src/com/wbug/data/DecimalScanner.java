@@ -0,0 +1,251 @@
+package com.wbug.data;
+
+import java.math.BigDecimal;
+
+/**
+ * Parses decimal numbers from character data without allocating nor throwing exceptions.
+ * <p>
+ * A parsed decimal is returned as a single <code>long</code> packing its unscaled value and its scale, from which the
+ * <code>double</code> or <code>BigDecimal</code> value is only computed when needed. Absent readings (empty strings, <i>N/A</i>,
+ * and so on) are reported as {@link #MISSING}. The accepted syntax is the one of <code>BigDecimal(String)</code> without
+ * exponent, and up to {@link #MAX_DIGITS} digits; other well-formed numbers are reported as {@link #UNSUPPORTED}, for the caller
+ * to fall back on <code>BigDecimal</code>.
+ */
+public class DecimalScanner {
+
+    /** The value returned for character data that is not a number. */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    /** The value returned for numbers that may be valid but are outside the supported syntax. */
+    public static final long UNSUPPORTED = Long.MIN_VALUE + 1;
+
+    /** The maximum number of digits of a supported number. */
+    public static final int MAX_DIGITS = 17;
+
+    /** The number of bits of a packed decimal holding the scale. */
+    private static final int SCALE_BITS = 6;
+
+    /** The mask of the scale bits. */
+    private static final long SCALE_MASK = (1 << SCALE_BITS) - 1;
+
+    /** The powers of ten up to the maximum scale, all exactly represented as doubles. */
+    private static final double[] POWERS_OF_TEN = new double[MAX_DIGITS + 1];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /** Private constructor (don't instantiate). */
+    private DecimalScanner() {
+    }
+
+    /**
+     * Parses a decimal number.
+     * 
+     * @param s
+     *            the character data.
+     * @return the packed decimal, {@link #MISSING} or {@link #UNSUPPORTED}.
+     */
+    public static long parse(CharSequence s) {
+        return parse(s, 0, s.length());
+    }
+
+    /**
+     * Parses a decimal number from a range of character data.
+     * 
+     * @param s
+     *            the character data.
+     * @param start
+     *            the index of the first character.
+     * @param end
+     *            the index after the last character.
+     * @return the packed decimal, {@link #MISSING} or {@link #UNSUPPORTED}.
+     */
+    public static long parse(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int significantDigits = 0;
+        int scale = -1;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if ((significantDigits > 0 || c != '0') && ++significantDigits > MAX_DIGITS) {
+                    return isNumber(s, i, end, scale >= 0) ? UNSUPPORTED : MISSING;
+                }
+                unscaled = unscaled * 10 + (c - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else if ((c == 'e' || c == 'E') && digits > 0) {
+                return isExponent(s, i + 1, end) ? UNSUPPORTED : MISSING;
+            } else {
+                return MISSING;
+            }
+        }
+        if (digits == 0) {
+            return MISSING;
+        }
+        if (scale > MAX_DIGITS) {
+            return UNSUPPORTED;
+        }
+        return ((negative ? -unscaled : unscaled) << SCALE_BITS) | Math.max(scale, 0);
+    }
+
+    /**
+     * Parses an integer number.
+     * 
+     * @param s
+     *            the character data.
+     * @param defaultValue
+     *            the value returned if the character data is not an integer number within the <code>int</code> range.
+     * @return the parsed number, or <i>defaultValue</i>.
+     */
+    public static int parseInt(CharSequence s, int defaultValue) {
+        int end = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            return defaultValue;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return defaultValue;
+            }
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return defaultValue;
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        return (value > Integer.MAX_VALUE) ? defaultValue : (int) value;
+    }
+
+    /**
+     * Indicates whether a value returned by {@link #parse(CharSequence)} is a packed decimal.
+     * 
+     * @param packed
+     *            the parsed value.
+     * @return <code>true</code> if the value is neither {@link #MISSING} nor {@link #UNSUPPORTED}.
+     */
+    public static boolean isDecimal(long packed) {
+        return packed != MISSING && packed != UNSUPPORTED;
+    }
+
+    /**
+     * Returns the unscaled value of a packed decimal.
+     * 
+     * @param packed
+     *            the packed decimal.
+     * @return the unscaled value.
+     */
+    public static long getUnscaledValue(long packed) {
+        return packed >> SCALE_BITS;
+    }
+
+    /**
+     * Returns the scale of a packed decimal.
+     * 
+     * @param packed
+     *            the packed decimal.
+     * @return the number of digits after the decimal point.
+     */
+    public static int getScale(long packed) {
+        return (int) (packed & SCALE_MASK);
+    }
+
+    /**
+     * Converts a packed decimal to a double, correctly rounded for numbers of up to 15 digits.
+     * 
+     * @param packed
+     *            the packed decimal.
+     * @return the double value.
+     */
+    public static double toDouble(long packed) {
+        return getUnscaledValue(packed) / POWERS_OF_TEN[getScale(packed)];
+    }
+
+    /**
+     * Converts a packed decimal to a big decimal.
+     * 
+     * @param packed
+     *            the packed decimal.
+     * @return the big decimal, equal to the one built from the parsed character data.
+     */
+    public static BigDecimal toBigDecimal(long packed) {
+        return BigDecimal.valueOf(getUnscaledValue(packed), getScale(packed));
+    }
+
+    /**
+     * Checks the remaining characters of a number having too many digits.
+     * 
+     * @param s
+     *            the character data.
+     * @param i
+     *            the index of the next character.
+     * @param end
+     *            the index after the last character.
+     * @param point
+     *            whether the decimal point has been read.
+     * @return <code>true</code> if the remaining characters are valid.
+     */
+    private static boolean isNumber(CharSequence s, int i, int end, boolean point) {
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '.' && !point) {
+                point = true;
+            } else if (c == 'e' || c == 'E') {
+                return isExponent(s, i + 1, end);
+            } else if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the exponent of a number.
+     * 
+     * @param s
+     *            the character data.
+     * @param i
+     *            the index of the first character of the exponent, after the <i>e</i>.
+     * @param end
+     *            the index after the last character.
+     * @return <code>true</code> if the exponent is a valid, non-empty, signed integer.
+     */
+    private static boolean isExponent(CharSequence s, int i, int end) {
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        for (; i < end; i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -8,7 +8,40 @@ import org.apache.commons.lang.builder.ToStringStyle;
 import org.dom4j.Element;
 
 /** A local forecast. */
-public class Forecast {
+public class Forecast implements BinaryEncodable {
+
+    /** The binary tag of the title field. */
+    private static final int TITLE_TAG = 0;
+
+    /** The binary tag of the shortPrediction field. */
+    private static final int SHORT_PREDICTION_TAG = 1;
+
+    /** The binary tag of the isNightImage field. */
+    private static final int IS_NIGHT_IMAGE_TAG = 2;
+
+    /** The binary tag of the iconName field. */
+    private static final int ICON_NAME_TAG = 3;
+
+    /** The binary tag of the imageURL field. */
+    private static final int IMAGE_URL_TAG = 4;
+
+    /** The binary tag of the description field. */
+    private static final int DESCRIPTION_TAG = 5;
+
+    /** The binary tag of the prediction field. */
+    private static final int PREDICTION_TAG = 6;
+
+    /** The binary tag of the highestTemperature field. */
+    private static final int HIGHEST_TEMPERATURE_TAG = 7;
+
+    /** The binary tag of the highestTemperatureUnits field. */
+    private static final int HIGHEST_TEMPERATURE_UNITS_TAG = 8;
+
+    /** The binary tag of the lowestTemperature field. */
+    private static final int LOWEST_TEMPERATURE_TAG = 9;
+
+    /** The binary tag of the lowestTemperatureUnits field. */
+    private static final int LOWEST_TEMPERATURE_UNITS_TAG = 10;
 
     /** The forecast description. */
     private String description;
@@ -63,6 +96,27 @@ public class Forecast {
         this.lowestTemperatureUnits = WeatherBugDataUtils.getUnits(forecast, "aws:low/@units");
     }
 
+    /**
+     * Constructs a new forecast from its binary encoding.
+     * 
+     * @param record
+     *            the binary record.
+     * @see #writeTo(BinaryWriter)
+     */
+    public Forecast(BinaryRecord record) {
+        this.title = record.getString(TITLE_TAG);
+        this.shortPrediction = record.getString(SHORT_PREDICTION_TAG);
+        this.isNightImage = record.getBoolean(IS_NIGHT_IMAGE_TAG, false);
+        this.iconName = record.getString(ICON_NAME_TAG);
+        this.imageURL = record.getURL(IMAGE_URL_TAG);
+        this.description = record.getString(DESCRIPTION_TAG);
+        this.prediction = record.getString(PREDICTION_TAG);
+        this.highestTemperature = record.getBigDecimal(HIGHEST_TEMPERATURE_TAG);
+        this.highestTemperatureUnits = record.getString(HIGHEST_TEMPERATURE_UNITS_TAG);
+        this.lowestTemperature = record.getBigDecimal(LOWEST_TEMPERATURE_TAG);
+        this.lowestTemperatureUnits = record.getString(LOWEST_TEMPERATURE_UNITS_TAG);
+    }
+
     /**
      * Returns the description.
      * 
@@ -162,6 +216,25 @@ public class Forecast {
         return isNightImage;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.BinaryEncodable#writeTo(com.wbug.data.BinaryWriter)
+     */
+    public void writeTo(BinaryWriter out) {
+        out.writeString(TITLE_TAG, title);
+        out.writeString(SHORT_PREDICTION_TAG, shortPrediction);
+        out.writeBoolean(IS_NIGHT_IMAGE_TAG, isNightImage);
+        out.writeString(ICON_NAME_TAG, iconName);
+        out.writeURL(IMAGE_URL_TAG, imageURL);
+        out.writeString(DESCRIPTION_TAG, description);
+        out.writeString(PREDICTION_TAG, prediction);
+        out.writeBigDecimal(HIGHEST_TEMPERATURE_TAG, highestTemperature);
+        out.writeString(HIGHEST_TEMPERATURE_UNITS_TAG, highestTemperatureUnits);
+        out.writeBigDecimal(LOWEST_TEMPERATURE_TAG, lowestTemperature);
+        out.writeString(LOWEST_TEMPERATURE_UNITS_TAG, lowestTemperatureUnits);
+    }
+
     /*
      * (non-Javadoc)
      * 
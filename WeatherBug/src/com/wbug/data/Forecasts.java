@@ -10,7 +10,31 @@ import org.dom4j.Element;
 /**
  * A set of daily forecasts.
  */
-public class Forecasts {
+public class Forecasts implements BinaryEncodable {
+
+    /** The binary tag of the city field. */
+    private static final int CITY_TAG = 0;
+
+    /** The binary tag of the state field. */
+    private static final int STATE_TAG = 1;
+
+    /** The binary tag of the country field. */
+    private static final int COUNTRY_TAG = 2;
+
+    /** The binary tag of the zipCode field. */
+    private static final int ZIP_CODE_TAG = 3;
+
+    /** The binary tag of the cityCode field. */
+    private static final int CITY_CODE_TAG = 4;
+
+    /** The binary tag of the zone field. */
+    private static final int ZONE_TAG = 5;
+
+    /** The binary tag of the weatherBugSiteURL field. */
+    private static final int WEATHER_BUG_SITE_URL_TAG = 6;
+
+    /** The binary tag of the forecasts field. */
+    private static final int FORECASTS_TAG = 7;
 
     /** The city the forecast is for. */
     private String city;
@@ -44,17 +68,39 @@ public class Forecasts {
      */
     public Forecasts(Element weather) {
         Element location = (Element) weather.selectSingleNode("aws:forecasts/aws:location");
-        this.city = WeatherBugDataUtils.getString(location, "aws:city");
-        this.state = WeatherBugDataUtils.getString(location, "aws:state");
-        this.country = WeatherBugDataUtils.getString(location, "aws:country");
+        this.city = WeatherBugDataUtils.getPooledString(location, "aws:city", Forecasts.class);
+        this.state = WeatherBugDataUtils.getPooledString(location, "aws:state", Forecasts.class);
+        this.country = WeatherBugDataUtils.getPooledString(location, "aws:country", Forecasts.class);
         this.zipCode = WeatherBugDataUtils.getInt(location, "aws:zip", -1);
         this.cityCode = WeatherBugDataUtils.getInt(location, "aws:citycode", -1);
-        this.zone = WeatherBugDataUtils.getString(location, "aws:zone");
+        this.zone = WeatherBugDataUtils.getPooledString(location, "aws:zone", Forecasts.class);
         this.weatherBugSiteURL = WeatherBugDataUtils.getURL(weather, "aws:WebURL");
         List forecastList = WeatherBugDataUtils.bind(weather, "aws:forecasts/aws:forecast", Forecast.class);
         forecasts = (Forecast[]) forecastList.toArray(new Forecast[0]);
     }
 
+    /**
+     * Constructs a new collection of forecasts from its binary encoding.
+     * 
+     * @param record
+     *            the binary record.
+     * @see #writeTo(BinaryWriter)
+     */
+    public Forecasts(BinaryRecord record) {
+        this.city = StringPool.getShared().pool(record.getString(CITY_TAG), Forecasts.class);
+        this.state = StringPool.getShared().pool(record.getString(STATE_TAG), Forecasts.class);
+        this.country = StringPool.getShared().pool(record.getString(COUNTRY_TAG), Forecasts.class);
+        this.zipCode = record.getInt(ZIP_CODE_TAG, -1);
+        this.cityCode = record.getInt(CITY_CODE_TAG, -1);
+        this.zone = StringPool.getShared().pool(record.getString(ZONE_TAG), Forecasts.class);
+        this.weatherBugSiteURL = record.getURL(WEATHER_BUG_SITE_URL_TAG);
+        BinaryRecord[] forecastRecords = record.getRecords(FORECASTS_TAG);
+        this.forecasts = new Forecast[forecastRecords.length];
+        for (int i = 0; i < forecastRecords.length; i++) {
+            forecasts[i] = new Forecast(forecastRecords[i]);
+        }
+    }
+
     /**
      * Returns the city the forecast is for.
      * 
@@ -127,6 +173,22 @@ public class Forecasts {
         return zone;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.BinaryEncodable#writeTo(com.wbug.data.BinaryWriter)
+     */
+    public void writeTo(BinaryWriter out) {
+        out.writeString(CITY_TAG, city);
+        out.writeString(STATE_TAG, state);
+        out.writeString(COUNTRY_TAG, country);
+        out.writeInt(ZIP_CODE_TAG, zipCode);
+        out.writeInt(CITY_CODE_TAG, cityCode);
+        out.writeString(ZONE_TAG, zone);
+        out.writeURL(WEATHER_BUG_SITE_URL_TAG, weatherBugSiteURL);
+        out.writeRecords(FORECASTS_TAG, forecasts);
+    }
+
     /*
      * (non-Javadoc)
      * 
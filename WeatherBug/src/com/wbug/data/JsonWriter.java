@@ -0,0 +1,632 @@
+package com.wbug.data;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Writes WeatherBug data objects as JSON, streaming the members straight to the output without reflection or intermediate
+ * trees.
+ * <p>
+ * Each data object becomes a JSON object whose member names are its property names (for instance <i>temperature</i> and
+ * <i>temperatureUnits</i>). Timestamps are written as ISO 8601 UTC strings, URLs as strings, and integer readings of -1 (the
+ * value used for missing codes and elevations) as <code>null</code>. The following options are available:
+ * <ul>
+ * <li>{@link #OMIT_NULLS}: members without a value (and the units of readings without a value) are left out;</li>
+ * <li>{@link #METRIC_UNITS}: readings in English units are converted to metric ones (&deg;C, km/h, mm, mb, m and km), whatever
+ * unit type the data has been requested with.</li>
+ * </ul>
+ * Instances are not thread-safe.
+ */
+public final class JsonWriter {
+
+    /** The option leaving out the members without a value. */
+    public static final int OMIT_NULLS = 1;
+
+    /** The option converting readings to metric units. */
+    public static final int METRIC_UNITS = 2;
+
+    /** The quantity of readings which are not converted. */
+    private static final int OTHER_QUANTITY = 0;
+
+    /** The quantity of temperatures. */
+    private static final int TEMPERATURE_QUANTITY = 1;
+
+    /** The quantity of temperature differences (rates). */
+    private static final int TEMPERATURE_DELTA_QUANTITY = 2;
+
+    /** The quantity of speeds. */
+    private static final int SPEED_QUANTITY = 3;
+
+    /** The quantity of rainfalls. */
+    private static final int RAIN_QUANTITY = 4;
+
+    /** The quantity of pressures. */
+    private static final int PRESSURE_QUANTITY = 5;
+
+    /** The quantity of elevations. */
+    private static final int ELEVATION_QUANTITY = 6;
+
+    /** The quantity of distances. */
+    private static final int DISTANCE_QUANTITY = 7;
+
+    /** The metric units, indexed by quantity. */
+    private static final String[] METRIC_UNIT_NAMES = new String[] { null, "\u00B0C", "\u00B0C", "km/h", "mm", "mb", "m", "km" };
+
+    /** The conversion factors to metric units, indexed by quantity. */
+    private static final BigDecimal[] METRIC_FACTORS = new BigDecimal[] { null, new BigDecimal("5").divide(new BigDecimal("9"), 10,
+            RoundingMode.HALF_UP), new BigDecimal("5").divide(new BigDecimal("9"), 10, RoundingMode.HALF_UP),
+            new BigDecimal("1.609344"), new BigDecimal("25.4"), new BigDecimal("33.8639"), new BigDecimal("0.3048"),
+            new BigDecimal("1.609344") };
+
+    /** The number of decimal places of converted readings, indexed by quantity. */
+    private static final int[] METRIC_SCALES = new int[] { 0, 1, 1, 1, 2, 1, 0, 2 };
+
+    /** The offset of the Fahrenheit scale. */
+    private static final BigDecimal FAHRENHEIT_OFFSET = new BigDecimal("32");
+
+    /** The maximum nesting depth of the written values. */
+    private static final int MAX_DEPTH = 8;
+
+    /** The output. */
+    private final Writer out;
+
+    /** The options. */
+    private final int options;
+
+    /** The calendar used to format timestamps. */
+    private final Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+
+    /** Indicates, for each open object or array, whether it has no member yet. */
+    private final boolean[] empty = new boolean[MAX_DEPTH];
+
+    /** The number of open objects and arrays. */
+    private int depth;
+
+    /** Indicates whether a member name has been written for the next object or array. */
+    private boolean named;
+
+    /**
+     * Constructs a new JSON writer on a character stream.
+     * 
+     * @param out
+     *            the output.
+     * @param options
+     *            the options (a combination of {@link #OMIT_NULLS} and {@link #METRIC_UNITS}).
+     */
+    public JsonWriter(Writer out, int options) {
+        this.out = out;
+        this.options = options;
+    }
+
+    /**
+     * Constructs a new JSON writer on a byte stream, encoding the output in UTF-8.
+     * 
+     * @param out
+     *            the output.
+     * @param options
+     *            the options (a combination of {@link #OMIT_NULLS} and {@link #METRIC_UNITS}).
+     * @throws IOException
+     *             if UTF-8 is not supported.
+     */
+    public JsonWriter(OutputStream out, int options) throws IOException {
+        this(new BufferedWriter(new OutputStreamWriter(out, "UTF-8")), options);
+    }
+
+    /**
+     * Writes a data object or an array of data objects.
+     * 
+     * @param data
+     *            the data object (<i>LiveWeather</i>, <i>Station</i>, and so on), or an array of them.
+     * @throws IOException
+     *             if the output cannot be written.
+     * @throws IllegalArgumentException
+     *             if the object is not a WeatherBug data object.
+     */
+    public void write(Object data) throws IOException {
+        if (data == null) {
+            beforeValue();
+            out.write("null");
+        } else if (data instanceof Object[]) {
+            write((Object[]) data);
+        } else if (data instanceof LiveWeather) {
+            write((LiveWeather) data);
+        } else if (data instanceof LiveCompactWeather) {
+            write((LiveCompactWeather) data);
+        } else if (data instanceof Forecasts) {
+            write((Forecasts) data);
+        } else if (data instanceof Forecast) {
+            write((Forecast) data);
+        } else if (data instanceof Alert) {
+            write((Alert) data);
+        } else if (data instanceof Station) {
+            write((Station) data);
+        } else if (data instanceof Location) {
+            write((Location) data);
+        } else {
+            throw new IllegalArgumentException("Not a WeatherBug data object: " + data.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes an array of data objects.
+     * 
+     * @param data
+     *            the data objects.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(Object[] data) throws IOException {
+        begin('[');
+        for (int i = 0; i < data.length; i++) {
+            write(data[i]);
+        }
+        end(']');
+    }
+
+    /**
+     * Writes a live weather.
+     * 
+     * @param weather
+     *            the live weather.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(LiveWeather weather) throws IOException {
+        begin('{');
+        for (int field = 0; field < LiveWeatherField.COUNT; field++) {
+            String name = LiveWeatherField.getName(field);
+            Object value = weather.getValue(field);
+            int type = LiveWeatherField.getType(field);
+            boolean hasUnits = (field + 1 < LiveWeatherField.COUNT && LiveWeatherField.getType(field + 1) == LiveWeatherField.UNITS_TYPE);
+            if (type == LiveWeatherField.INT_TYPE && hasUnits) {
+                int intValue = ((Integer) value).intValue();
+                reading(name, (intValue != -1) ? new BigDecimal(intValue) : null, LiveWeatherField.getName(field + 1),
+                        (String) weather.getValue(field + 1));
+                field++;
+            } else if (type == LiveWeatherField.DECIMAL_TYPE && hasUnits) {
+                reading(name, (BigDecimal) value, LiveWeatherField.getName(field + 1), (String) weather.getValue(field + 1));
+                field++;
+            } else if (type == LiveWeatherField.INT_TYPE) {
+                member(name, ((Integer) value).intValue());
+            } else {
+                member(name, value);
+            }
+        }
+        end('}');
+    }
+
+    /**
+     * Writes a live compact weather.
+     * 
+     * @param weather
+     *            the live compact weather.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(LiveCompactWeather weather) throws IOException {
+        begin('{');
+        member("stationId", weather.getStationId());
+        member("stationName", weather.getStationName());
+        member("state", weather.getState());
+        member("city", weather.getCity());
+        member("zipCode", weather.getZipCode());
+        member("cityCode", weather.getCityCode());
+        member("country", weather.getCountry());
+        member("latitude", weather.getLatitude());
+        member("longitude", weather.getLongitude());
+        member("currentCondition", weather.getCurrentCondition());
+        member("currentConditionIconURL", weather.getCurrentConditionIconURL());
+        reading("temperature", weather.getTemperature(), "temperatureUnits", weather.getTemperatureUnits());
+        reading("rainToday", weather.getRainToday(), "rainTodayUnits", weather.getRainTodayUnits());
+        reading("windSpeed", weather.getWindSpeed(), "windSpeedUnits", weather.getWindSpeedUnits());
+        member("windDirection", weather.getWindDirection());
+        reading("gustSpeed", weather.getGustSpeed(), "gustSpeedUnits", weather.getGustSpeedUnits());
+        member("gustDirection", weather.getGustDirection());
+        end('}');
+    }
+
+    /**
+     * Writes a collection of forecasts.
+     * 
+     * @param forecasts
+     *            the forecasts.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(Forecasts forecasts) throws IOException {
+        begin('{');
+        member("city", forecasts.getCity());
+        member("state", forecasts.getState());
+        member("country", forecasts.getCountry());
+        member("zipCode", forecasts.getZipCode());
+        member("cityCode", forecasts.getCityCode());
+        member("zone", forecasts.getZone());
+        member("weatherBugSiteURL", forecasts.getWeatherBugSiteURL());
+        if (forecasts.getForecasts() != null || (options & OMIT_NULLS) == 0) {
+            name("forecasts");
+            named = true;
+            write((Object) forecasts.getForecasts());
+        }
+        end('}');
+    }
+
+    /**
+     * Writes a forecast.
+     * 
+     * @param forecast
+     *            the forecast.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(Forecast forecast) throws IOException {
+        begin('{');
+        member("title", forecast.getTitle());
+        member("shortPrediction", forecast.getShortPrediction());
+        member("nightImage", Boolean.valueOf(forecast.isNightImage()));
+        member("iconName", forecast.getIconName());
+        member("imageURL", forecast.getImageURL());
+        member("description", forecast.getDescription());
+        member("prediction", forecast.getPrediction());
+        reading("highestTemperature", forecast.getHighestTemperature(), "highestTemperatureUnits", forecast
+                .getHighestTemperatureUnits());
+        reading("lowestTemperature", forecast.getLowestTemperature(), "lowestTemperatureUnits", forecast
+                .getLowestTemperatureUnits());
+        end('}');
+    }
+
+    /**
+     * Writes an alert.
+     * 
+     * @param alert
+     *            the alert.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(Alert alert) throws IOException {
+        begin('{');
+        member("id", alert.getId());
+        member("type", alert.getType());
+        member("title", alert.getTitle());
+        member("postedTime", alert.getPostedTime());
+        member("expiresTime", alert.getExpiresTime());
+        member("messageSummary", alert.getMessageSummary());
+        end('}');
+    }
+
+    /**
+     * Writes a station.
+     * 
+     * @param station
+     *            the station.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(Station station) throws IOException {
+        begin('{');
+        member("id", station.getId());
+        member("name", station.getName());
+        member("city", station.getCity());
+        member("state", station.getState());
+        member("country", station.getCountry());
+        member("zipCode", station.getZipCode());
+        member("cityCode", station.getCityCode());
+        reading("distance", station.getDistance(), "unit", station.getUnit());
+        member("latitude", station.getLatitude());
+        member("longitude", station.getLongitude());
+        end('}');
+    }
+
+    /**
+     * Writes a location.
+     * 
+     * @param location
+     *            the location.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    public void write(Location location) throws IOException {
+        begin('{');
+        member("cityName", location.getCityName());
+        member("stateName", location.getStateName());
+        member("countryName", location.getCountryName());
+        member("zipCode", location.getZipCode());
+        member("cityCode", location.getCityCode());
+        member("cityType", location.getCityType());
+        end('}');
+    }
+
+    /**
+     * Flushes the output.
+     * 
+     * @throws IOException
+     *             if the output cannot be flushed.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Closes the output.
+     * 
+     * @throws IOException
+     *             if the output cannot be closed.
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Writes a reading and its units, converting them to metric units if requested.
+     * 
+     * @param name
+     *            the name of the reading.
+     * @param value
+     *            the reading (may be <code>null</code>).
+     * @param unitsName
+     *            the name of the units member.
+     * @param units
+     *            the units of the reading.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void reading(String name, BigDecimal value, String unitsName, String units) throws IOException {
+        if ((options & METRIC_UNITS) != 0 && units != null) {
+            int quantity = getQuantity(name, units);
+            if (quantity != OTHER_QUANTITY) {
+                if (value != null) {
+                    if (quantity == TEMPERATURE_QUANTITY) {
+                        value = value.subtract(FAHRENHEIT_OFFSET);
+                    }
+                    value = value.multiply(METRIC_FACTORS[quantity]).setScale(METRIC_SCALES[quantity], RoundingMode.HALF_UP);
+                }
+                units = METRIC_UNIT_NAMES[quantity] + (units.endsWith("/h") ? "/h" : "");
+            }
+        }
+        member(name, value);
+        if (value != null || (options & OMIT_NULLS) == 0) {
+            member(unitsName, units);
+        }
+    }
+
+    /**
+     * Returns the quantity of a reading in English units.
+     * 
+     * @param name
+     *            the name of the reading.
+     * @param units
+     *            the units of the reading.
+     * @return the quantity, or {@link #OTHER_QUANTITY} if the reading is not in English units.
+     */
+    private static int getQuantity(String name, String units) {
+        boolean rate = units.endsWith("/h");
+        String base = rate ? units.substring(0, units.length() - 2) : units;
+        if ("\u00B0F".equals(base)) {
+            return (rate || name.endsWith("Rate")) ? TEMPERATURE_DELTA_QUANTITY : TEMPERATURE_QUANTITY;
+        } else if ("mph".equals(base)) {
+            return SPEED_QUANTITY;
+        } else if ("\"".equals(base) || "in".equals(base)) {
+            return (name.indexOf("ressure") >= 0) ? PRESSURE_QUANTITY : RAIN_QUANTITY;
+        } else if ("ft".equals(base)) {
+            return ELEVATION_QUANTITY;
+        } else if ("mi".equalsIgnoreCase(base)) {
+            return DISTANCE_QUANTITY;
+        }
+        return OTHER_QUANTITY;
+    }
+
+    /**
+     * Writes an integer member, -1 standing for a missing value.
+     * 
+     * @param name
+     *            the member name.
+     * @param value
+     *            the value.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void member(String name, int value) throws IOException {
+        if (value == -1) {
+            member(name, null);
+        } else {
+            name(name);
+            out.write(Integer.toString(value));
+        }
+    }
+
+    /**
+     * Writes a member.
+     * 
+     * @param name
+     *            the member name.
+     * @param value
+     *            the value: a string, decimal, boolean, URL or timestamp (may be <code>null</code>).
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void member(String name, Object value) throws IOException {
+        if (value == null) {
+            if ((options & OMIT_NULLS) == 0) {
+                name(name);
+                out.write("null");
+            }
+        } else if (value instanceof String) {
+            name(name);
+            string((String) value);
+        } else if (value instanceof BigDecimal) {
+            name(name);
+            out.write(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Timestamp) {
+            name(name);
+            timestamp((Timestamp) value);
+        } else if (value instanceof URL) {
+            name(name);
+            string(((URL) value).toExternalForm());
+        } else {
+            name(name);
+            out.write(value.toString());
+        }
+    }
+
+    /**
+     * Writes a member name.
+     * 
+     * @param name
+     *            the member name.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void name(String name) throws IOException {
+        beforeValue();
+        out.write('"');
+        out.write(name);
+        out.write("\":");
+    }
+
+    /**
+     * Writes the separator preceding a value if needed.
+     * 
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void beforeValue() throws IOException {
+        if (named) {
+            named = false;
+        } else if (depth > 0) {
+            if (!empty[depth - 1]) {
+                out.write(',');
+            }
+            empty[depth - 1] = false;
+        }
+    }
+
+    /**
+     * Opens an object or an array.
+     * 
+     * @param c
+     *            the opening character.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void begin(char c) throws IOException {
+        beforeValue();
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Maximum JSON depth exceeded");
+        }
+        out.write(c);
+        empty[depth++] = true;
+    }
+
+    /**
+     * Closes an object or an array.
+     * 
+     * @param c
+     *            the closing character.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void end(char c) throws IOException {
+        out.write(c);
+        depth--;
+    }
+
+    /**
+     * Writes a string literal.
+     * 
+     * @param s
+     *            the string.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void string(String s) throws IOException {
+        out.write('"');
+        int length = s.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x20 || c == '"' || c == '\\' || c == 0x2028 || c == 0x2029) {
+                out.write(s, start, i - start);
+                start = i + 1;
+                switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    out.write("\\u");
+                    String hex = Integer.toHexString(c);
+                    for (int j = hex.length(); j < 4; j++) {
+                        out.write('0');
+                    }
+                    out.write(hex);
+                    break;
+                }
+            }
+        }
+        out.write(s, start, length - start);
+        out.write('"');
+    }
+
+    /**
+     * Writes a timestamp as an ISO 8601 UTC string.
+     * 
+     * @param timestamp
+     *            the timestamp.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void timestamp(Timestamp timestamp) throws IOException {
+        calendar.setTimeInMillis(timestamp.getTime());
+        out.write('"');
+        digits(calendar.get(Calendar.YEAR), 4);
+        out.write('-');
+        digits(calendar.get(Calendar.MONTH) + 1, 2);
+        out.write('-');
+        digits(calendar.get(Calendar.DAY_OF_MONTH), 2);
+        out.write('T');
+        digits(calendar.get(Calendar.HOUR_OF_DAY), 2);
+        out.write(':');
+        digits(calendar.get(Calendar.MINUTE), 2);
+        out.write(':');
+        digits(calendar.get(Calendar.SECOND), 2);
+        out.write("Z\"");
+    }
+
+    /**
+     * Writes a zero-padded number.
+     * 
+     * @param value
+     *            the number (non-negative).
+     * @param width
+     *            the minimum number of digits.
+     * @throws IOException
+     *             if the output cannot be written.
+     */
+    private void digits(int value, int width) throws IOException {
+        for (int divisor = (width == 4) ? 1000 : 10; divisor > 1 && value < divisor; divisor /= 10) {
+            out.write('0');
+        }
+        out.write(Integer.toString(value));
+    }
+
+}
@@ -0,0 +1,845 @@
+package com.wbug.data;
+
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Timestamp;
+
+import org.dom4j.Element;
+
+/**
+ * A live weather whose fields are decoded from the XML element on first access, rather than all at construction time.
+ * <p>
+ * Consumers reading a handful of fields (temperature, humidity, wind speed) skip the evaluation of the other paths, including
+ * the timestamp and URL ones. The element is retained until every field has been decoded; {@link #materialize()} returns a
+ * plain {@link LiveWeather} detached from it. Instances are thread-safe.
+ */
+public class LazyLiveWeather extends LiveWeather {
+
+    /** The marker of the fields not decoded yet. */
+    private static final Object UNDECODED = new Object();
+
+    /** The &lt;aws:weather&gt; XML element (<code>null</code> once every field has been decoded). */
+    private Element weather;
+
+    /** The decoded values, indexed by field (ints are boxed). */
+    private final Object[] values = new Object[LiveWeatherField.COUNT];
+
+    /** The number of fields not decoded yet. */
+    private int undecodedCount = LiveWeatherField.COUNT;
+
+    /**
+     * Constructs a new lazy live weather.
+     * 
+     * @param weather
+     *            the &lt;aws:weather&gt; XML element.
+     */
+    public LazyLiveWeather(Element weather) {
+        this.weather = weather;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = UNDECODED;
+        }
+    }
+
+    /**
+     * Constructs a new lazy live weather restricted to a set of fields. The other fields are not decoded: they return
+     * <code>null</code> (-1 for integers), as the element may have been projected (see {@link ProjectionFilter}).
+     * 
+     * @param weather
+     *            the &lt;aws:weather&gt; XML element.
+     * @param fields
+     *            the fields which can be decoded (<code>LiveWeatherField</code> constants).
+     */
+    public LazyLiveWeather(Element weather, int[] fields) {
+        Integer missing = Integer.valueOf(-1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (LiveWeatherField.getType(i) == LiveWeatherField.INT_TYPE) ? missing : null;
+        }
+        undecodedCount = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (values[fields[i]] != UNDECODED) {
+                values[fields[i]] = UNDECODED;
+                undecodedCount++;
+            }
+        }
+        this.weather = (undecodedCount > 0) ? weather : null;
+    }
+
+    /**
+     * Decodes every field and returns them in a plain live weather, which doesn't reference the XML element.
+     * 
+     * @return the materialized live weather.
+     */
+    public LiveWeather materialize() {
+        return new LiveWeather(this);
+    }
+
+    /**
+     * Indicates whether a field has been decoded.
+     * 
+     * @param field
+     *            the field (a <code>LiveWeatherField</code> constant).
+     * @return <code>true</code> if the field has been decoded.
+     */
+    public synchronized boolean isDecoded(int field) {
+        return values[field] != UNDECODED;
+    }
+
+    /**
+     * Returns the value of a field, decoding it on first access.
+     * 
+     * @param field
+     *            the field (a <code>LiveWeatherField</code> constant).
+     * @return the value (ints are boxed).
+     */
+    private synchronized Object get(int field) {
+        Object value = values[field];
+        if (value == UNDECODED) {
+            value = decode(field);
+            values[field] = value;
+            if (--undecodedCount == 0) {
+                weather = null;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Decodes a field from the XML element, the same way {@link LiveWeather#LiveWeather(Element)} does.
+     * 
+     * @param field
+     *            the field.
+     * @return the value (ints are boxed).
+     */
+    private Object decode(int field) {
+        String path = LiveWeatherField.getPath(field);
+        switch (LiveWeatherField.getType(field)) {
+        case LiveWeatherField.UNITS_TYPE:
+            return WeatherBugDataUtils.getUnits(weather, path);
+        case LiveWeatherField.DECIMAL_TYPE:
+            return WeatherBugDataUtils.getBigDecimal(weather, path, null);
+        case LiveWeatherField.INT_TYPE:
+            return Integer.valueOf(WeatherBugDataUtils.getInt(weather, path, -1));
+        case LiveWeatherField.URL_TYPE:
+            return WeatherBugDataUtils.getURL(weather, path);
+        case LiveWeatherField.TIMESTAMP_TYPE:
+            return WeatherBugDataUtils.getTimestamp(weather, path);
+        default:
+            if (field == LiveWeatherField.CITY_STATE || field == LiveWeatherField.COUNTRY) {
+                return WeatherBugDataUtils.getPooledString(weather, path, LiveWeather.class);
+            }
+            return WeatherBugDataUtils.getString(weather, path);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getObservationTime()
+     */
+    public Timestamp getObservationTime() {
+        return (Timestamp) get(LiveWeatherField.OBSERVATION_TIME);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getStationId()
+     */
+    public String getStationId() {
+        return (String) get(LiveWeatherField.STATION_ID);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getStationName()
+     */
+    public String getStationName() {
+        return (String) get(LiveWeatherField.STATION_NAME);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getCityState()
+     */
+    public String getCityState() {
+        return (String) get(LiveWeatherField.CITY_STATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getCityCode()
+     */
+    public int getCityCode() {
+        return ((Integer) get(LiveWeatherField.CITY_CODE)).intValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getZipCode()
+     */
+    public int getZipCode() {
+        return ((Integer) get(LiveWeatherField.ZIP_CODE)).intValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getCountry()
+     */
+    public String getCountry() {
+        return (String) get(LiveWeatherField.COUNTRY);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLatitude()
+     */
+    public BigDecimal getLatitude() {
+        return (BigDecimal) get(LiveWeatherField.LATITUDE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLongitude()
+     */
+    public BigDecimal getLongitude() {
+        return (BigDecimal) get(LiveWeatherField.LONGITUDE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getSiteURL()
+     */
+    public URL getSiteURL() {
+        return (URL) get(LiveWeatherField.SITE_URL);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getAuxTemp()
+     */
+    public BigDecimal getAuxTemp() {
+        return (BigDecimal) get(LiveWeatherField.AUX_TEMP);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getAuxTempUnits()
+     */
+    public String getAuxTempUnits() {
+        return (String) get(LiveWeatherField.AUX_TEMP_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getAuxTempRate()
+     */
+    public BigDecimal getAuxTempRate() {
+        return (BigDecimal) get(LiveWeatherField.AUX_TEMP_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getAuxTempRateUnits()
+     */
+    public String getAuxTempRateUnits() {
+        return (String) get(LiveWeatherField.AUX_TEMP_RATE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getCurrentCondition()
+     */
+    public String getCurrentCondition() {
+        return (String) get(LiveWeatherField.CURRENT_CONDITION);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getCurrentConditionIconURL()
+     */
+    public URL getCurrentConditionIconURL() {
+        return (URL) get(LiveWeatherField.CURRENT_CONDITION_ICON_URL);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getDewPoint()
+     */
+    public BigDecimal getDewPoint() {
+        return (BigDecimal) get(LiveWeatherField.DEW_POINT);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getDewPointUnits()
+     */
+    public String getDewPointUnits() {
+        return (String) get(LiveWeatherField.DEW_POINT_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getElevation()
+     */
+    public int getElevation() {
+        return ((Integer) get(LiveWeatherField.ELEVATION)).intValue();
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getElevationUnits()
+     */
+    public String getElevationUnits() {
+        return (String) get(LiveWeatherField.ELEVATION_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getFeelsLike()
+     */
+    public BigDecimal getFeelsLike() {
+        return (BigDecimal) get(LiveWeatherField.FEELS_LIKE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getFeelsLikeUnits()
+     */
+    public String getFeelsLikeUnits() {
+        return (String) get(LiveWeatherField.FEELS_LIKE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getGustTime()
+     */
+    public Timestamp getGustTime() {
+        return (Timestamp) get(LiveWeatherField.GUST_TIME);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getGustDirection()
+     */
+    public String getGustDirection() {
+        return (String) get(LiveWeatherField.GUST_DIRECTION);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getGustSpeed()
+     */
+    public BigDecimal getGustSpeed() {
+        return (BigDecimal) get(LiveWeatherField.GUST_SPEED);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getGustSpeedUnits()
+     */
+    public String getGustSpeedUnits() {
+        return (String) get(LiveWeatherField.GUST_SPEED_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHumidity()
+     */
+    public BigDecimal getHumidity() {
+        return (BigDecimal) get(LiveWeatherField.HUMIDITY);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHumidityUnits()
+     */
+    public String getHumidityUnits() {
+        return (String) get(LiveWeatherField.HUMIDITY_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHighestHumidity()
+     */
+    public BigDecimal getHighestHumidity() {
+        return (BigDecimal) get(LiveWeatherField.HIGHEST_HUMIDITY);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHighestHumidityUnits()
+     */
+    public String getHighestHumidityUnits() {
+        return (String) get(LiveWeatherField.HIGHEST_HUMIDITY_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLowestHumidity()
+     */
+    public BigDecimal getLowestHumidity() {
+        return (BigDecimal) get(LiveWeatherField.LOWEST_HUMIDITY);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLowestHumidityUnits()
+     */
+    public String getLowestHumidityUnits() {
+        return (String) get(LiveWeatherField.LOWEST_HUMIDITY_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHumidityRate()
+     */
+    public BigDecimal getHumidityRate() {
+        return (BigDecimal) get(LiveWeatherField.HUMIDITY_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getIndoorTemperature()
+     */
+    public BigDecimal getIndoorTemperature() {
+        return (BigDecimal) get(LiveWeatherField.INDOOR_TEMPERATURE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getIndoorTemperatureUnits()
+     */
+    public String getIndoorTemperatureUnits() {
+        return (String) get(LiveWeatherField.INDOOR_TEMPERATURE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getIndoorTemperatureRate()
+     */
+    public BigDecimal getIndoorTemperatureRate() {
+        return (BigDecimal) get(LiveWeatherField.INDOOR_TEMPERATURE_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getIndoorTemperatureRateUnits()
+     */
+    public String getIndoorTemperatureRateUnits() {
+        return (String) get(LiveWeatherField.INDOOR_TEMPERATURE_RATE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLight()
+     */
+    public BigDecimal getLight() {
+        return (BigDecimal) get(LiveWeatherField.LIGHT);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLightRate()
+     */
+    public BigDecimal getLightRate() {
+        return (BigDecimal) get(LiveWeatherField.LIGHT_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getMoonPhase()
+     */
+    public String getMoonPhase() {
+        return (String) get(LiveWeatherField.MOON_PHASE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getMoonPhaseImageURL()
+     */
+    public URL getMoonPhaseImageURL() {
+        return (URL) get(LiveWeatherField.MOON_PHASE_IMAGE_URL);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getPressure()
+     */
+    public BigDecimal getPressure() {
+        return (BigDecimal) get(LiveWeatherField.PRESSURE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getPressureUnits()
+     */
+    public String getPressureUnits() {
+        return (String) get(LiveWeatherField.PRESSURE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHighestPressure()
+     */
+    public BigDecimal getHighestPressure() {
+        return (BigDecimal) get(LiveWeatherField.HIGHEST_PRESSURE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHighestPressureUnits()
+     */
+    public String getHighestPressureUnits() {
+        return (String) get(LiveWeatherField.HIGHEST_PRESSURE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLowestPressure()
+     */
+    public BigDecimal getLowestPressure() {
+        return (BigDecimal) get(LiveWeatherField.LOWEST_PRESSURE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLowestPressureUnits()
+     */
+    public String getLowestPressureUnits() {
+        return (String) get(LiveWeatherField.LOWEST_PRESSURE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getPressureRate()
+     */
+    public BigDecimal getPressureRate() {
+        return (BigDecimal) get(LiveWeatherField.PRESSURE_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getPressureRateUnits()
+     */
+    public String getPressureRateUnits() {
+        return (String) get(LiveWeatherField.PRESSURE_RATE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainMonth()
+     */
+    public BigDecimal getRainMonth() {
+        return (BigDecimal) get(LiveWeatherField.RAIN_MONTH);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainMonthUnits()
+     */
+    public String getRainMonthUnits() {
+        return (String) get(LiveWeatherField.RAIN_MONTH_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainRate()
+     */
+    public BigDecimal getRainRate() {
+        return (BigDecimal) get(LiveWeatherField.RAIN_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainRateUnits()
+     */
+    public String getRainRateUnits() {
+        return (String) get(LiveWeatherField.RAIN_RATE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getMaxRainRate()
+     */
+    public BigDecimal getMaxRainRate() {
+        return (BigDecimal) get(LiveWeatherField.MAX_RAIN_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getMaxRainRateUnits()
+     */
+    public String getMaxRainRateUnits() {
+        return (String) get(LiveWeatherField.MAX_RAIN_RATE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainToday()
+     */
+    public BigDecimal getRainToday() {
+        return (BigDecimal) get(LiveWeatherField.RAIN_TODAY);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainTodayUnits()
+     */
+    public String getRainTodayUnits() {
+        return (String) get(LiveWeatherField.RAIN_TODAY_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainYear()
+     */
+    public BigDecimal getRainYear() {
+        return (BigDecimal) get(LiveWeatherField.RAIN_YEAR);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getRainYearUnits()
+     */
+    public String getRainYearUnits() {
+        return (String) get(LiveWeatherField.RAIN_YEAR_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getTemperature()
+     */
+    public BigDecimal getTemperature() {
+        return (BigDecimal) get(LiveWeatherField.TEMPERATURE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getTemperatureUnits()
+     */
+    public String getTemperatureUnits() {
+        return (String) get(LiveWeatherField.TEMPERATURE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHighestTemperature()
+     */
+    public BigDecimal getHighestTemperature() {
+        return (BigDecimal) get(LiveWeatherField.HIGHEST_TEMPERATURE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getHighestTemperatureUnits()
+     */
+    public String getHighestTemperatureUnits() {
+        return (String) get(LiveWeatherField.HIGHEST_TEMPERATURE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLowestTemperature()
+     */
+    public BigDecimal getLowestTemperature() {
+        return (BigDecimal) get(LiveWeatherField.LOWEST_TEMPERATURE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getLowestTemperatureUnits()
+     */
+    public String getLowestTemperatureUnits() {
+        return (String) get(LiveWeatherField.LOWEST_TEMPERATURE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getTemperatureRate()
+     */
+    public BigDecimal getTemperatureRate() {
+        return (BigDecimal) get(LiveWeatherField.TEMPERATURE_RATE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getTemperatureRateUnits()
+     */
+    public String getTemperatureRateUnits() {
+        return (String) get(LiveWeatherField.TEMPERATURE_RATE_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getSunriseTime()
+     */
+    public Timestamp getSunriseTime() {
+        return (Timestamp) get(LiveWeatherField.SUNRISE_TIME);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getSunsetTime()
+     */
+    public Timestamp getSunsetTime() {
+        return (Timestamp) get(LiveWeatherField.SUNSET_TIME);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getWetBulb()
+     */
+    public BigDecimal getWetBulb() {
+        return (BigDecimal) get(LiveWeatherField.WET_BULB);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getWetBulbUnits()
+     */
+    public String getWetBulbUnits() {
+        return (String) get(LiveWeatherField.WET_BULB_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getWindSpeed()
+     */
+    public BigDecimal getWindSpeed() {
+        return (BigDecimal) get(LiveWeatherField.WIND_SPEED);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getWindSpeedUnits()
+     */
+    public String getWindSpeedUnits() {
+        return (String) get(LiveWeatherField.WIND_SPEED_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getAvgWindSpeed()
+     */
+    public BigDecimal getAvgWindSpeed() {
+        return (BigDecimal) get(LiveWeatherField.AVG_WIND_SPEED);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getAvgWindSpeedUnits()
+     */
+    public String getAvgWindSpeedUnits() {
+        return (String) get(LiveWeatherField.AVG_WIND_SPEED_UNITS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getWindDirection()
+     */
+    public String getWindDirection() {
+        return (String) get(LiveWeatherField.WIND_DIRECTION);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getAvgWindDirection()
+     */
+    public String getAvgWindDirection() {
+        return (String) get(LiveWeatherField.AVG_WIND_DIRECTION);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#getWeatherBugSiteURL()
+     */
+    public URL getWeatherBugSiteURL() {
+        return (URL) get(LiveWeatherField.WEATHER_BUG_SITE_URL);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.LiveWeather#toString()
+     */
+    public String toString() {
+        return materialize().toString();
+    }
+
+}
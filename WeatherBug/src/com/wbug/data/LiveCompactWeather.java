@@ -10,7 +10,70 @@ import org.dom4j.Element;
 /**
  * The live compact weather for a specific location.
  */
-public class LiveCompactWeather {
+public class LiveCompactWeather implements BinaryEncodable {
+
+    /** The binary tag of the stationId field. */
+    private static final int STATION_ID_TAG = 0;
+
+    /** The binary tag of the stationName field. */
+    private static final int STATION_NAME_TAG = 1;
+
+    /** The binary tag of the state field. */
+    private static final int STATE_TAG = 2;
+
+    /** The binary tag of the city field. */
+    private static final int CITY_TAG = 3;
+
+    /** The binary tag of the zipCode field. */
+    private static final int ZIP_CODE_TAG = 4;
+
+    /** The binary tag of the cityCode field. */
+    private static final int CITY_CODE_TAG = 5;
+
+    /** The binary tag of the country field. */
+    private static final int COUNTRY_TAG = 6;
+
+    /** The binary tag of the latitude field. */
+    private static final int LATITUDE_TAG = 7;
+
+    /** The binary tag of the longitude field. */
+    private static final int LONGITUDE_TAG = 8;
+
+    /** The binary tag of the currentCondition field. */
+    private static final int CURRENT_CONDITION_TAG = 9;
+
+    /** The binary tag of the currentConditionIconURL field. */
+    private static final int CURRENT_CONDITION_ICON_URL_TAG = 10;
+
+    /** The binary tag of the temperature field. */
+    private static final int TEMPERATURE_TAG = 11;
+
+    /** The binary tag of the temperatureUnits field. */
+    private static final int TEMPERATURE_UNITS_TAG = 12;
+
+    /** The binary tag of the rainToday field. */
+    private static final int RAIN_TODAY_TAG = 13;
+
+    /** The binary tag of the rainTodayUnits field. */
+    private static final int RAIN_TODAY_UNITS_TAG = 14;
+
+    /** The binary tag of the windSpeed field. */
+    private static final int WIND_SPEED_TAG = 15;
+
+    /** The binary tag of the windSpeedUnits field. */
+    private static final int WIND_SPEED_UNITS_TAG = 16;
+
+    /** The binary tag of the windDirection field. */
+    private static final int WIND_DIRECTION_TAG = 17;
+
+    /** The binary tag of the gustSpeed field. */
+    private static final int GUST_SPEED_TAG = 18;
+
+    /** The binary tag of the gustSpeedUnits field. */
+    private static final int GUST_SPEED_UNITS_TAG = 19;
+
+    /** The binary tag of the gustDirection field. */
+    private static final int GUST_DIRECTION_TAG = 20;
 
     /** The city name. */
     private String city;
@@ -84,11 +147,11 @@ public class LiveCompactWeather {
     public LiveCompactWeather(Element weather) {
         this.stationId = WeatherBugDataUtils.getString(weather, "aws:station/@id");
         this.stationName = WeatherBugDataUtils.getString(weather, "aws:station/@name");
-        this.state = WeatherBugDataUtils.getString(weather, "aws:station/@state");
-        this.city = WeatherBugDataUtils.getString(weather, "aws:station/@city");
+        this.state = WeatherBugDataUtils.getPooledString(weather, "aws:station/@state", LiveCompactWeather.class);
+        this.city = WeatherBugDataUtils.getPooledString(weather, "aws:station/@city", LiveCompactWeather.class);
         this.zipCode = WeatherBugDataUtils.getInt(weather, "aws:station/@zipcode", -1);
         this.cityCode = WeatherBugDataUtils.getInt(weather, "aws:station/@citycode", -1);
-        this.country = WeatherBugDataUtils.getString(weather, "aws:station/@country");
+        this.country = WeatherBugDataUtils.getPooledString(weather, "aws:station/@country", LiveCompactWeather.class);
         this.latitude = WeatherBugDataUtils.getBigDecimal(weather, "aws:station/@latitude", null);
         this.longitude = WeatherBugDataUtils.getBigDecimal(weather, "aws:station/@longitude", null);
         this.currentCondition = WeatherBugDataUtils.getString(weather, "aws:current-condition");
@@ -105,6 +168,37 @@ public class LiveCompactWeather {
         this.gustDirection = WeatherBugDataUtils.getString(weather, "aws:gust-direction");
     }
 
+    /**
+     * Constructs a new live compact weather from its binary encoding.
+     * 
+     * @param record
+     *            the binary record.
+     * @see #writeTo(BinaryWriter)
+     */
+    public LiveCompactWeather(BinaryRecord record) {
+        this.stationId = record.getString(STATION_ID_TAG);
+        this.stationName = record.getString(STATION_NAME_TAG);
+        this.state = StringPool.getShared().pool(record.getString(STATE_TAG), LiveCompactWeather.class);
+        this.city = StringPool.getShared().pool(record.getString(CITY_TAG), LiveCompactWeather.class);
+        this.zipCode = record.getInt(ZIP_CODE_TAG, -1);
+        this.cityCode = record.getInt(CITY_CODE_TAG, -1);
+        this.country = StringPool.getShared().pool(record.getString(COUNTRY_TAG), LiveCompactWeather.class);
+        this.latitude = record.getBigDecimal(LATITUDE_TAG);
+        this.longitude = record.getBigDecimal(LONGITUDE_TAG);
+        this.currentCondition = record.getString(CURRENT_CONDITION_TAG);
+        this.currentConditionIconURL = record.getURL(CURRENT_CONDITION_ICON_URL_TAG);
+        this.temperature = record.getBigDecimal(TEMPERATURE_TAG);
+        this.temperatureUnits = record.getString(TEMPERATURE_UNITS_TAG);
+        this.rainToday = record.getBigDecimal(RAIN_TODAY_TAG);
+        this.rainTodayUnits = record.getString(RAIN_TODAY_UNITS_TAG);
+        this.windSpeed = record.getBigDecimal(WIND_SPEED_TAG);
+        this.windSpeedUnits = record.getString(WIND_SPEED_UNITS_TAG);
+        this.windDirection = record.getString(WIND_DIRECTION_TAG);
+        this.gustSpeed = record.getBigDecimal(GUST_SPEED_TAG);
+        this.gustSpeedUnits = record.getString(GUST_SPEED_UNITS_TAG);
+        this.gustDirection = record.getString(GUST_DIRECTION_TAG);
+    }
+
     /**
      * Returns the city name.
      * 
@@ -294,6 +388,35 @@ public class LiveCompactWeather {
         return zipCode;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.BinaryEncodable#writeTo(com.wbug.data.BinaryWriter)
+     */
+    public void writeTo(BinaryWriter out) {
+        out.writeString(STATION_ID_TAG, stationId);
+        out.writeString(STATION_NAME_TAG, stationName);
+        out.writeString(STATE_TAG, state);
+        out.writeString(CITY_TAG, city);
+        out.writeInt(ZIP_CODE_TAG, zipCode);
+        out.writeInt(CITY_CODE_TAG, cityCode);
+        out.writeString(COUNTRY_TAG, country);
+        out.writeBigDecimal(LATITUDE_TAG, latitude);
+        out.writeBigDecimal(LONGITUDE_TAG, longitude);
+        out.writeString(CURRENT_CONDITION_TAG, currentCondition);
+        out.writeURL(CURRENT_CONDITION_ICON_URL_TAG, currentConditionIconURL);
+        out.writeBigDecimal(TEMPERATURE_TAG, temperature);
+        out.writeString(TEMPERATURE_UNITS_TAG, temperatureUnits);
+        out.writeBigDecimal(RAIN_TODAY_TAG, rainToday);
+        out.writeString(RAIN_TODAY_UNITS_TAG, rainTodayUnits);
+        out.writeBigDecimal(WIND_SPEED_TAG, windSpeed);
+        out.writeString(WIND_SPEED_UNITS_TAG, windSpeedUnits);
+        out.writeString(WIND_DIRECTION_TAG, windDirection);
+        out.writeBigDecimal(GUST_SPEED_TAG, gustSpeed);
+        out.writeString(GUST_SPEED_UNITS_TAG, gustSpeedUnits);
+        out.writeString(GUST_DIRECTION_TAG, gustDirection);
+    }
+
     /*
      * (non-Javadoc)
      * 
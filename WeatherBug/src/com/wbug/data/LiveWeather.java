@@ -11,7 +11,7 @@ import org.dom4j.Element;
 /**
  * The live weather for a specific location.
  */
-public class LiveWeather {
+public class LiveWeather implements BinaryEncodable {
 
     /** The temperature at the auxiliary probe for the station. */
     private BigDecimal auxTemp;
@@ -257,10 +257,10 @@ public class LiveWeather {
         this.observationTime = WeatherBugDataUtils.getTimestamp(weather, "aws:ob/aws:ob-date");
         this.stationId = WeatherBugDataUtils.getString(weather, "aws:ob/aws:station-id");
         this.stationName = WeatherBugDataUtils.getString(weather, "aws:ob/aws:station");
-        this.cityState = WeatherBugDataUtils.getString(weather, "aws:ob/aws:city-state");
+        this.cityState = WeatherBugDataUtils.getPooledString(weather, "aws:ob/aws:city-state", LiveWeather.class);
         this.cityCode = WeatherBugDataUtils.getInt(weather, "aws:ob/aws:city-state/@citycode", -1);
         this.zipCode = WeatherBugDataUtils.getInt(weather, "aws:ob/aws:city-state/@zipcode", -1);
-        this.country = WeatherBugDataUtils.getString(weather, "aws:ob/aws:country");
+        this.country = WeatherBugDataUtils.getPooledString(weather, "aws:ob/aws:country", LiveWeather.class);
         this.latitude = WeatherBugDataUtils.getBigDecimal(weather, "aws:ob/aws:latitude", null);
         this.longitude = WeatherBugDataUtils.getBigDecimal(weather, "aws:ob/aws:longitude", null);
         this.siteURL = WeatherBugDataUtils.getURL(weather, "aws:ob/aws:site-url");
@@ -334,6 +334,187 @@ public class LiveWeather {
         this.weatherBugSiteURL = WeatherBugDataUtils.getURL(weather, "aws:WebURL");
     }
 
+    /**
+     * Constructs a new live weather holding the values of another one.
+     * 
+     * @param source
+     *            the live weather whose values are copied (read through its getters).
+     */
+    public LiveWeather(LiveWeather source) {
+        this.observationTime = source.getObservationTime();
+        this.stationId = source.getStationId();
+        this.stationName = source.getStationName();
+        this.cityState = source.getCityState();
+        this.cityCode = source.getCityCode();
+        this.zipCode = source.getZipCode();
+        this.country = source.getCountry();
+        this.latitude = source.getLatitude();
+        this.longitude = source.getLongitude();
+        this.siteURL = source.getSiteURL();
+        this.auxTemp = source.getAuxTemp();
+        this.auxTempUnits = source.getAuxTempUnits();
+        this.auxTempRate = source.getAuxTempRate();
+        this.auxTempRateUnits = source.getAuxTempRateUnits();
+        this.currentCondition = source.getCurrentCondition();
+        this.currentConditionIconURL = source.getCurrentConditionIconURL();
+        this.dewPoint = source.getDewPoint();
+        this.dewPointUnits = source.getDewPointUnits();
+        this.elevation = source.getElevation();
+        this.elevationUnits = source.getElevationUnits();
+        this.feelsLike = source.getFeelsLike();
+        this.feelsLikeUnits = source.getFeelsLikeUnits();
+        this.gustTime = source.getGustTime();
+        this.gustDirection = source.getGustDirection();
+        this.gustSpeed = source.getGustSpeed();
+        this.gustSpeedUnits = source.getGustSpeedUnits();
+        this.humidity = source.getHumidity();
+        this.humidityUnits = source.getHumidityUnits();
+        this.highestHumidity = source.getHighestHumidity();
+        this.highestHumidityUnits = source.getHighestHumidityUnits();
+        this.lowestHumidity = source.getLowestHumidity();
+        this.lowestHumidityUnits = source.getLowestHumidityUnits();
+        this.humidityRate = source.getHumidityRate();
+        this.indoorTemperature = source.getIndoorTemperature();
+        this.indoorTemperatureUnits = source.getIndoorTemperatureUnits();
+        this.indoorTemperatureRate = source.getIndoorTemperatureRate();
+        this.indoorTemperatureRateUnits = source.getIndoorTemperatureRateUnits();
+        this.light = source.getLight();
+        this.lightRate = source.getLightRate();
+        this.moonPhase = source.getMoonPhase();
+        this.moonPhaseImageURL = source.getMoonPhaseImageURL();
+        this.pressure = source.getPressure();
+        this.pressureUnits = source.getPressureUnits();
+        this.highestPressure = source.getHighestPressure();
+        this.highestPressureUnits = source.getHighestPressureUnits();
+        this.lowestPressure = source.getLowestPressure();
+        this.lowestPressureUnits = source.getLowestPressureUnits();
+        this.pressureRate = source.getPressureRate();
+        this.pressureRateUnits = source.getPressureRateUnits();
+        this.rainMonth = source.getRainMonth();
+        this.rainMonthUnits = source.getRainMonthUnits();
+        this.rainRate = source.getRainRate();
+        this.rainRateUnits = source.getRainRateUnits();
+        this.maxRainRate = source.getMaxRainRate();
+        this.maxRainRateUnits = source.getMaxRainRateUnits();
+        this.rainToday = source.getRainToday();
+        this.rainTodayUnits = source.getRainTodayUnits();
+        this.rainYear = source.getRainYear();
+        this.rainYearUnits = source.getRainYearUnits();
+        this.temperature = source.getTemperature();
+        this.temperatureUnits = source.getTemperatureUnits();
+        this.highestTemperature = source.getHighestTemperature();
+        this.highestTemperatureUnits = source.getHighestTemperatureUnits();
+        this.lowestTemperature = source.getLowestTemperature();
+        this.lowestTemperatureUnits = source.getLowestTemperatureUnits();
+        this.temperatureRate = source.getTemperatureRate();
+        this.temperatureRateUnits = source.getTemperatureRateUnits();
+        this.sunriseTime = source.getSunriseTime();
+        this.sunsetTime = source.getSunsetTime();
+        this.wetBulb = source.getWetBulb();
+        this.wetBulbUnits = source.getWetBulbUnits();
+        this.windSpeed = source.getWindSpeed();
+        this.windSpeedUnits = source.getWindSpeedUnits();
+        this.avgWindSpeed = source.getAvgWindSpeed();
+        this.avgWindSpeedUnits = source.getAvgWindSpeedUnits();
+        this.windDirection = source.getWindDirection();
+        this.avgWindDirection = source.getAvgWindDirection();
+        this.weatherBugSiteURL = source.getWeatherBugSiteURL();
+    }
+
+    /**
+     * Constructs a new live weather without values, for subclasses providing them through the getters.
+     */
+    protected LiveWeather() {
+    }
+
+    /**
+     * Constructs a new live weather from its binary encoding. The binary tags are the {@link LiveWeatherField} constants.
+     * 
+     * @param record
+     *            the binary record.
+     * @see #writeTo(BinaryWriter)
+     */
+    public LiveWeather(BinaryRecord record) {
+        this.observationTime = record.getTimestamp(LiveWeatherField.OBSERVATION_TIME);
+        this.stationId = record.getString(LiveWeatherField.STATION_ID);
+        this.stationName = record.getString(LiveWeatherField.STATION_NAME);
+        this.cityState = StringPool.getShared().pool(record.getString(LiveWeatherField.CITY_STATE), LiveWeather.class);
+        this.cityCode = record.getInt(LiveWeatherField.CITY_CODE, -1);
+        this.zipCode = record.getInt(LiveWeatherField.ZIP_CODE, -1);
+        this.country = StringPool.getShared().pool(record.getString(LiveWeatherField.COUNTRY), LiveWeather.class);
+        this.latitude = record.getBigDecimal(LiveWeatherField.LATITUDE);
+        this.longitude = record.getBigDecimal(LiveWeatherField.LONGITUDE);
+        this.siteURL = record.getURL(LiveWeatherField.SITE_URL);
+        this.auxTemp = record.getBigDecimal(LiveWeatherField.AUX_TEMP);
+        this.auxTempUnits = record.getString(LiveWeatherField.AUX_TEMP_UNITS);
+        this.auxTempRate = record.getBigDecimal(LiveWeatherField.AUX_TEMP_RATE);
+        this.auxTempRateUnits = record.getString(LiveWeatherField.AUX_TEMP_RATE_UNITS);
+        this.currentCondition = record.getString(LiveWeatherField.CURRENT_CONDITION);
+        this.currentConditionIconURL = record.getURL(LiveWeatherField.CURRENT_CONDITION_ICON_URL);
+        this.dewPoint = record.getBigDecimal(LiveWeatherField.DEW_POINT);
+        this.dewPointUnits = record.getString(LiveWeatherField.DEW_POINT_UNITS);
+        this.elevation = record.getInt(LiveWeatherField.ELEVATION, -1);
+        this.elevationUnits = record.getString(LiveWeatherField.ELEVATION_UNITS);
+        this.feelsLike = record.getBigDecimal(LiveWeatherField.FEELS_LIKE);
+        this.feelsLikeUnits = record.getString(LiveWeatherField.FEELS_LIKE_UNITS);
+        this.gustTime = record.getTimestamp(LiveWeatherField.GUST_TIME);
+        this.gustDirection = record.getString(LiveWeatherField.GUST_DIRECTION);
+        this.gustSpeed = record.getBigDecimal(LiveWeatherField.GUST_SPEED);
+        this.gustSpeedUnits = record.getString(LiveWeatherField.GUST_SPEED_UNITS);
+        this.humidity = record.getBigDecimal(LiveWeatherField.HUMIDITY);
+        this.humidityUnits = record.getString(LiveWeatherField.HUMIDITY_UNITS);
+        this.highestHumidity = record.getBigDecimal(LiveWeatherField.HIGHEST_HUMIDITY);
+        this.highestHumidityUnits = record.getString(LiveWeatherField.HIGHEST_HUMIDITY_UNITS);
+        this.lowestHumidity = record.getBigDecimal(LiveWeatherField.LOWEST_HUMIDITY);
+        this.lowestHumidityUnits = record.getString(LiveWeatherField.LOWEST_HUMIDITY_UNITS);
+        this.humidityRate = record.getBigDecimal(LiveWeatherField.HUMIDITY_RATE);
+        this.indoorTemperature = record.getBigDecimal(LiveWeatherField.INDOOR_TEMPERATURE);
+        this.indoorTemperatureUnits = record.getString(LiveWeatherField.INDOOR_TEMPERATURE_UNITS);
+        this.indoorTemperatureRate = record.getBigDecimal(LiveWeatherField.INDOOR_TEMPERATURE_RATE);
+        this.indoorTemperatureRateUnits = record.getString(LiveWeatherField.INDOOR_TEMPERATURE_RATE_UNITS);
+        this.light = record.getBigDecimal(LiveWeatherField.LIGHT);
+        this.lightRate = record.getBigDecimal(LiveWeatherField.LIGHT_RATE);
+        this.moonPhase = record.getString(LiveWeatherField.MOON_PHASE);
+        this.moonPhaseImageURL = record.getURL(LiveWeatherField.MOON_PHASE_IMAGE_URL);
+        this.pressure = record.getBigDecimal(LiveWeatherField.PRESSURE);
+        this.pressureUnits = record.getString(LiveWeatherField.PRESSURE_UNITS);
+        this.highestPressure = record.getBigDecimal(LiveWeatherField.HIGHEST_PRESSURE);
+        this.highestPressureUnits = record.getString(LiveWeatherField.HIGHEST_PRESSURE_UNITS);
+        this.lowestPressure = record.getBigDecimal(LiveWeatherField.LOWEST_PRESSURE);
+        this.lowestPressureUnits = record.getString(LiveWeatherField.LOWEST_PRESSURE_UNITS);
+        this.pressureRate = record.getBigDecimal(LiveWeatherField.PRESSURE_RATE);
+        this.pressureRateUnits = record.getString(LiveWeatherField.PRESSURE_RATE_UNITS);
+        this.rainMonth = record.getBigDecimal(LiveWeatherField.RAIN_MONTH);
+        this.rainMonthUnits = record.getString(LiveWeatherField.RAIN_MONTH_UNITS);
+        this.rainRate = record.getBigDecimal(LiveWeatherField.RAIN_RATE);
+        this.rainRateUnits = record.getString(LiveWeatherField.RAIN_RATE_UNITS);
+        this.maxRainRate = record.getBigDecimal(LiveWeatherField.MAX_RAIN_RATE);
+        this.maxRainRateUnits = record.getString(LiveWeatherField.MAX_RAIN_RATE_UNITS);
+        this.rainToday = record.getBigDecimal(LiveWeatherField.RAIN_TODAY);
+        this.rainTodayUnits = record.getString(LiveWeatherField.RAIN_TODAY_UNITS);
+        this.rainYear = record.getBigDecimal(LiveWeatherField.RAIN_YEAR);
+        this.rainYearUnits = record.getString(LiveWeatherField.RAIN_YEAR_UNITS);
+        this.temperature = record.getBigDecimal(LiveWeatherField.TEMPERATURE);
+        this.temperatureUnits = record.getString(LiveWeatherField.TEMPERATURE_UNITS);
+        this.highestTemperature = record.getBigDecimal(LiveWeatherField.HIGHEST_TEMPERATURE);
+        this.highestTemperatureUnits = record.getString(LiveWeatherField.HIGHEST_TEMPERATURE_UNITS);
+        this.lowestTemperature = record.getBigDecimal(LiveWeatherField.LOWEST_TEMPERATURE);
+        this.lowestTemperatureUnits = record.getString(LiveWeatherField.LOWEST_TEMPERATURE_UNITS);
+        this.temperatureRate = record.getBigDecimal(LiveWeatherField.TEMPERATURE_RATE);
+        this.temperatureRateUnits = record.getString(LiveWeatherField.TEMPERATURE_RATE_UNITS);
+        this.sunriseTime = record.getTimestamp(LiveWeatherField.SUNRISE_TIME);
+        this.sunsetTime = record.getTimestamp(LiveWeatherField.SUNSET_TIME);
+        this.wetBulb = record.getBigDecimal(LiveWeatherField.WET_BULB);
+        this.wetBulbUnits = record.getString(LiveWeatherField.WET_BULB_UNITS);
+        this.windSpeed = record.getBigDecimal(LiveWeatherField.WIND_SPEED);
+        this.windSpeedUnits = record.getString(LiveWeatherField.WIND_SPEED_UNITS);
+        this.avgWindSpeed = record.getBigDecimal(LiveWeatherField.AVG_WIND_SPEED);
+        this.avgWindSpeedUnits = record.getString(LiveWeatherField.AVG_WIND_SPEED_UNITS);
+        this.windDirection = record.getString(LiveWeatherField.WIND_DIRECTION);
+        this.avgWindDirection = record.getString(LiveWeatherField.AVG_WIND_DIRECTION);
+        this.weatherBugSiteURL = record.getURL(LiveWeatherField.WEATHER_BUG_SITE_URL);
+    }
+
     /**
      * Returns the temperature at the auxiliary probe for the station..
      * 
@@ -1036,6 +1217,204 @@ public class LiveWeather {
         return zipCode;
     }
 
+    /**
+     * Returns the value of a field. Integer values are returned as <code>Integer</code> objects.
+     * 
+     * @param field
+     *            the field (see {@link LiveWeatherField}).
+     * @return the field value (may be <code>null</code>).
+     */
+    public Object getValue(int field) {
+        switch (field) {
+        case LiveWeatherField.OBSERVATION_TIME:
+            return getObservationTime();
+        case LiveWeatherField.STATION_ID:
+            return getStationId();
+        case LiveWeatherField.STATION_NAME:
+            return getStationName();
+        case LiveWeatherField.CITY_STATE:
+            return getCityState();
+        case LiveWeatherField.CITY_CODE:
+            return Integer.valueOf(getCityCode());
+        case LiveWeatherField.ZIP_CODE:
+            return Integer.valueOf(getZipCode());
+        case LiveWeatherField.COUNTRY:
+            return getCountry();
+        case LiveWeatherField.LATITUDE:
+            return getLatitude();
+        case LiveWeatherField.LONGITUDE:
+            return getLongitude();
+        case LiveWeatherField.SITE_URL:
+            return getSiteURL();
+        case LiveWeatherField.AUX_TEMP:
+            return getAuxTemp();
+        case LiveWeatherField.AUX_TEMP_UNITS:
+            return getAuxTempUnits();
+        case LiveWeatherField.AUX_TEMP_RATE:
+            return getAuxTempRate();
+        case LiveWeatherField.AUX_TEMP_RATE_UNITS:
+            return getAuxTempRateUnits();
+        case LiveWeatherField.CURRENT_CONDITION:
+            return getCurrentCondition();
+        case LiveWeatherField.CURRENT_CONDITION_ICON_URL:
+            return getCurrentConditionIconURL();
+        case LiveWeatherField.DEW_POINT:
+            return getDewPoint();
+        case LiveWeatherField.DEW_POINT_UNITS:
+            return getDewPointUnits();
+        case LiveWeatherField.ELEVATION:
+            return Integer.valueOf(getElevation());
+        case LiveWeatherField.ELEVATION_UNITS:
+            return getElevationUnits();
+        case LiveWeatherField.FEELS_LIKE:
+            return getFeelsLike();
+        case LiveWeatherField.FEELS_LIKE_UNITS:
+            return getFeelsLikeUnits();
+        case LiveWeatherField.GUST_TIME:
+            return getGustTime();
+        case LiveWeatherField.GUST_DIRECTION:
+            return getGustDirection();
+        case LiveWeatherField.GUST_SPEED:
+            return getGustSpeed();
+        case LiveWeatherField.GUST_SPEED_UNITS:
+            return getGustSpeedUnits();
+        case LiveWeatherField.HUMIDITY:
+            return getHumidity();
+        case LiveWeatherField.HUMIDITY_UNITS:
+            return getHumidityUnits();
+        case LiveWeatherField.HIGHEST_HUMIDITY:
+            return getHighestHumidity();
+        case LiveWeatherField.HIGHEST_HUMIDITY_UNITS:
+            return getHighestHumidityUnits();
+        case LiveWeatherField.LOWEST_HUMIDITY:
+            return getLowestHumidity();
+        case LiveWeatherField.LOWEST_HUMIDITY_UNITS:
+            return getLowestHumidityUnits();
+        case LiveWeatherField.HUMIDITY_RATE:
+            return getHumidityRate();
+        case LiveWeatherField.INDOOR_TEMPERATURE:
+            return getIndoorTemperature();
+        case LiveWeatherField.INDOOR_TEMPERATURE_UNITS:
+            return getIndoorTemperatureUnits();
+        case LiveWeatherField.INDOOR_TEMPERATURE_RATE:
+            return getIndoorTemperatureRate();
+        case LiveWeatherField.INDOOR_TEMPERATURE_RATE_UNITS:
+            return getIndoorTemperatureRateUnits();
+        case LiveWeatherField.LIGHT:
+            return getLight();
+        case LiveWeatherField.LIGHT_RATE:
+            return getLightRate();
+        case LiveWeatherField.MOON_PHASE:
+            return getMoonPhase();
+        case LiveWeatherField.MOON_PHASE_IMAGE_URL:
+            return getMoonPhaseImageURL();
+        case LiveWeatherField.PRESSURE:
+            return getPressure();
+        case LiveWeatherField.PRESSURE_UNITS:
+            return getPressureUnits();
+        case LiveWeatherField.HIGHEST_PRESSURE:
+            return getHighestPressure();
+        case LiveWeatherField.HIGHEST_PRESSURE_UNITS:
+            return getHighestPressureUnits();
+        case LiveWeatherField.LOWEST_PRESSURE:
+            return getLowestPressure();
+        case LiveWeatherField.LOWEST_PRESSURE_UNITS:
+            return getLowestPressureUnits();
+        case LiveWeatherField.PRESSURE_RATE:
+            return getPressureRate();
+        case LiveWeatherField.PRESSURE_RATE_UNITS:
+            return getPressureRateUnits();
+        case LiveWeatherField.RAIN_MONTH:
+            return getRainMonth();
+        case LiveWeatherField.RAIN_MONTH_UNITS:
+            return getRainMonthUnits();
+        case LiveWeatherField.RAIN_RATE:
+            return getRainRate();
+        case LiveWeatherField.RAIN_RATE_UNITS:
+            return getRainRateUnits();
+        case LiveWeatherField.MAX_RAIN_RATE:
+            return getMaxRainRate();
+        case LiveWeatherField.MAX_RAIN_RATE_UNITS:
+            return getMaxRainRateUnits();
+        case LiveWeatherField.RAIN_TODAY:
+            return getRainToday();
+        case LiveWeatherField.RAIN_TODAY_UNITS:
+            return getRainTodayUnits();
+        case LiveWeatherField.RAIN_YEAR:
+            return getRainYear();
+        case LiveWeatherField.RAIN_YEAR_UNITS:
+            return getRainYearUnits();
+        case LiveWeatherField.TEMPERATURE:
+            return getTemperature();
+        case LiveWeatherField.TEMPERATURE_UNITS:
+            return getTemperatureUnits();
+        case LiveWeatherField.HIGHEST_TEMPERATURE:
+            return getHighestTemperature();
+        case LiveWeatherField.HIGHEST_TEMPERATURE_UNITS:
+            return getHighestTemperatureUnits();
+        case LiveWeatherField.LOWEST_TEMPERATURE:
+            return getLowestTemperature();
+        case LiveWeatherField.LOWEST_TEMPERATURE_UNITS:
+            return getLowestTemperatureUnits();
+        case LiveWeatherField.TEMPERATURE_RATE:
+            return getTemperatureRate();
+        case LiveWeatherField.TEMPERATURE_RATE_UNITS:
+            return getTemperatureRateUnits();
+        case LiveWeatherField.SUNRISE_TIME:
+            return getSunriseTime();
+        case LiveWeatherField.SUNSET_TIME:
+            return getSunsetTime();
+        case LiveWeatherField.WET_BULB:
+            return getWetBulb();
+        case LiveWeatherField.WET_BULB_UNITS:
+            return getWetBulbUnits();
+        case LiveWeatherField.WIND_SPEED:
+            return getWindSpeed();
+        case LiveWeatherField.WIND_SPEED_UNITS:
+            return getWindSpeedUnits();
+        case LiveWeatherField.AVG_WIND_SPEED:
+            return getAvgWindSpeed();
+        case LiveWeatherField.AVG_WIND_SPEED_UNITS:
+            return getAvgWindSpeedUnits();
+        case LiveWeatherField.WIND_DIRECTION:
+            return getWindDirection();
+        case LiveWeatherField.AVG_WIND_DIRECTION:
+            return getAvgWindDirection();
+        case LiveWeatherField.WEATHER_BUG_SITE_URL:
+            return getWeatherBugSiteURL();
+        default:
+            throw new IllegalArgumentException("Unknown field: " + field);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.BinaryEncodable#writeTo(com.wbug.data.BinaryWriter)
+     */
+    public void writeTo(BinaryWriter out) {
+        for (int field = 0; field < LiveWeatherField.COUNT; field++) {
+            Object value = getValue(field);
+            switch (LiveWeatherField.getType(field)) {
+            case LiveWeatherField.INT_TYPE:
+                out.writeInt(field, ((Integer) value).intValue());
+                break;
+            case LiveWeatherField.DECIMAL_TYPE:
+                out.writeBigDecimal(field, (BigDecimal) value);
+                break;
+            case LiveWeatherField.URL_TYPE:
+                out.writeURL(field, (URL) value);
+                break;
+            case LiveWeatherField.TIMESTAMP_TYPE:
+                out.writeTimestamp(field, (Timestamp) value);
+                break;
+            default:
+                out.writeString(field, (String) value);
+                break;
+            }
+        }
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,391 @@
+package com.wbug.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The fields of a {@link LiveWeather}, identified by integer constants so that they can be enumerated, compared and addressed
+ * without reflection. The constant values are stable: new fields are only ever appended.
+ * 
+ * @see LiveWeather#getValue(int)
+ */
+public final class LiveWeatherField {
+
+    /** The value type of string fields. */
+    public static final int STRING_TYPE = 0;
+
+    /** The value type of unit of measurement fields (strings). */
+    public static final int UNITS_TYPE = 1;
+
+    /** The value type of decimal fields (<code>BigDecimal</code>). */
+    public static final int DECIMAL_TYPE = 2;
+
+    /** The value type of integer fields (<code>Integer</code>). */
+    public static final int INT_TYPE = 3;
+
+    /** The value type of URL fields. */
+    public static final int URL_TYPE = 4;
+
+    /** The value type of timestamp fields. */
+    public static final int TIMESTAMP_TYPE = 5;
+
+    /** The observation time. */
+    public static final int OBSERVATION_TIME = 0;
+
+    /** The station identifier. */
+    public static final int STATION_ID = 1;
+
+    /** The station name. */
+    public static final int STATION_NAME = 2;
+
+    /** The city state. */
+    public static final int CITY_STATE = 3;
+
+    /** The city code. */
+    public static final int CITY_CODE = 4;
+
+    /** The ZIP code. */
+    public static final int ZIP_CODE = 5;
+
+    /** The country name. */
+    public static final int COUNTRY = 6;
+
+    /** The latitude. */
+    public static final int LATITUDE = 7;
+
+    /** The longitude. */
+    public static final int LONGITUDE = 8;
+
+    /** The site URL. */
+    public static final int SITE_URL = 9;
+
+    /** The temperature at the auxiliary probe for the station. */
+    public static final int AUX_TEMP = 10;
+
+    /** The auxiliary temperature unit of measurement. */
+    public static final int AUX_TEMP_UNITS = 11;
+
+    /** The rate of change in temperature at the auxiliary probe. */
+    public static final int AUX_TEMP_RATE = 12;
+
+    /** The auxiliary rate of change unit of measurement. */
+    public static final int AUX_TEMP_RATE_UNITS = 13;
+
+    /** The current weather condition. */
+    public static final int CURRENT_CONDITION = 14;
+
+    /** The URL of the icon associated with the current condition. */
+    public static final int CURRENT_CONDITION_ICON_URL = 15;
+
+    /** The temperature to which the air must be cooled to condense. */
+    public static final int DEW_POINT = 16;
+
+    /** The dew-point unit of measurement. */
+    public static final int DEW_POINT_UNITS = 17;
+
+    /** The elevation above sea level for this station. */
+    public static final int ELEVATION = 18;
+
+    /** The elevation unit of measurement. */
+    public static final int ELEVATION_UNITS = 19;
+
+    /** The Wind Chill (cold temps) or Heat Index (hot temps) temperature. */
+    public static final int FEELS_LIKE = 20;
+
+    /** The feels-Like unit of measurement. */
+    public static final int FEELS_LIKE_UNITS = 21;
+
+    /** The time of strongest wind gust recently recorded. */
+    public static final int GUST_TIME = 22;
+
+    /** The cardinal direction of strongest wind gust recently recorded. */
+    public static final int GUST_DIRECTION = 23;
+
+    /** The speed of strongest wind gust recently recorded. */
+    public static final int GUST_SPEED = 24;
+
+    /** The gust speed unit of measurement. */
+    public static final int GUST_SPEED_UNITS = 25;
+
+    /** The current relative humidity. */
+    public static final int HUMIDITY = 26;
+
+    /** The current relative humidity. */
+    public static final int HUMIDITY_UNITS = 27;
+
+    /** The highest relative humidity measured today. */
+    public static final int HIGHEST_HUMIDITY = 28;
+
+    /** The relative humidity (high) unit of measurement. */
+    public static final int HIGHEST_HUMIDITY_UNITS = 29;
+
+    /** The lowest relative humidity measured today. */
+    public static final int LOWEST_HUMIDITY = 30;
+
+    /** The relative humidity (low) unit of measurement. */
+    public static final int LOWEST_HUMIDITY_UNITS = 31;
+
+    /** The rate of change in relative humidity. */
+    public static final int HUMIDITY_RATE = 32;
+
+    /** The indoor temperature at the facility that hosts the station. */
+    public static final int INDOOR_TEMPERATURE = 33;
+
+    /** The indoor temperature unit of measurement. */
+    public static final int INDOOR_TEMPERATURE_UNITS = 34;
+
+    /** The rate of change in indoor temperature at the station's host facility. */
+    public static final int INDOOR_TEMPERATURE_RATE = 35;
+
+    /** The indoor temperature rate of change unit of measurement. */
+    public static final int INDOOR_TEMPERATURE_RATE_UNITS = 36;
+
+    /** The relative percentage of daylight currently at the station's location. */
+    public static final int LIGHT = 37;
+
+    /** The rate of change in light at the station's location. */
+    public static final int LIGHT_RATE = 38;
+
+    /** The phase of the moon. */
+    public static final int MOON_PHASE = 39;
+
+    /** The moon phase image URL. */
+    public static final int MOON_PHASE_IMAGE_URL = 40;
+
+    /** The current barometric pressure. */
+    public static final int PRESSURE = 41;
+
+    /** The barometric pressure (current) unit of measurement. */
+    public static final int PRESSURE_UNITS = 42;
+
+    /** The highest barometric pressure measured today. */
+    public static final int HIGHEST_PRESSURE = 43;
+
+    /** The barometric pressure (high) unit of measurement. */
+    public static final int HIGHEST_PRESSURE_UNITS = 44;
+
+    /** The lowest barometric pressure measured today. */
+    public static final int LOWEST_PRESSURE = 45;
+
+    /** The barometric pressure (low) unit of measurement. */
+    public static final int LOWEST_PRESSURE_UNITS = 46;
+
+    /** The rate of change in barometric pressure. */
+    public static final int PRESSURE_RATE = 47;
+
+    /** The barometric pressure rate of change unit of measurement. */
+    public static final int PRESSURE_RATE_UNITS = 48;
+
+    /** The amount of rainfall so far this month. */
+    public static final int RAIN_MONTH = 49;
+
+    /** The month rainfall unit of measurement. */
+    public static final int RAIN_MONTH_UNITS = 50;
+
+    /** The current rate at which rain is falling. */
+    public static final int RAIN_RATE = 51;
+
+    /** The rain rate (current) unit of measurement. */
+    public static final int RAIN_RATE_UNITS = 52;
+
+    /** The maximum rate at which rain has fallen today. */
+    public static final int MAX_RAIN_RATE = 53;
+
+    /** The rain rate (max) unit of measurement. */
+    public static final int MAX_RAIN_RATE_UNITS = 54;
+
+    /** The amount of rainfall so far today. */
+    public static final int RAIN_TODAY = 55;
+
+    /** The rainfall unit of measurement. */
+    public static final int RAIN_TODAY_UNITS = 56;
+
+    /** The amount of rainfall so far this year. */
+    public static final int RAIN_YEAR = 57;
+
+    /** The year rainfall unit of measurement. */
+    public static final int RAIN_YEAR_UNITS = 58;
+
+    /** The current temperature. */
+    public static final int TEMPERATURE = 59;
+
+    /** The temperature unit (current) of measurement. */
+    public static final int TEMPERATURE_UNITS = 60;
+
+    /** The highest temperature measured today. */
+    public static final int HIGHEST_TEMPERATURE = 61;
+
+    /** The temperature unit (high) of measurement. */
+    public static final int HIGHEST_TEMPERATURE_UNITS = 62;
+
+    /** The lowest temperature measured today. */
+    public static final int LOWEST_TEMPERATURE = 63;
+
+    /** The temperature unit (low) of measurement. */
+    public static final int LOWEST_TEMPERATURE_UNITS = 64;
+
+    /** The rate of change in temperature. */
+    public static final int TEMPERATURE_RATE = 65;
+
+    /** The temperature rate of change unit of measurement. */
+    public static final int TEMPERATURE_RATE_UNITS = 66;
+
+    /** The time of last/next sunrise. */
+    public static final int SUNRISE_TIME = 67;
+
+    /** The time of last/next sunset. */
+    public static final int SUNSET_TIME = 68;
+
+    /** The temperature at which no evaporation occurs and temperature stops dropping. */
+    public static final int WET_BULB = 69;
+
+    /** The wet-bulb unit of measurement. */
+    public static final int WET_BULB_UNITS = 70;
+
+    /** The current wind speed. */
+    public static final int WIND_SPEED = 71;
+
+    /** The wind speed (current) unit of measurement. */
+    public static final int WIND_SPEED_UNITS = 72;
+
+    /** The average speed of the wind so far today. */
+    public static final int AVG_WIND_SPEED = 73;
+
+    /** The wind speed (average) unit of measurement. */
+    public static final int AVG_WIND_SPEED_UNITS = 74;
+
+    /** The current cardinal direction of the wind. */
+    public static final int WIND_DIRECTION = 75;
+
+    /** The average cardinal direction of the wind so far today. */
+    public static final int AVG_WIND_DIRECTION = 76;
+
+    /** The WeatherBug web site URL associated with this live weather. */
+    public static final int WEATHER_BUG_SITE_URL = 77;
+
+    /** The number of fields. */
+    public static final int COUNT = 78;
+
+    /** The field names (the <i>LiveWeather</i> property names), indexed by field. */
+    private static final String[] NAMES = new String[] {
+            "observationTime", "stationId", "stationName", "cityState", "cityCode", "zipCode", "country", "latitude",
+            "longitude", "siteURL", "auxTemp", "auxTempUnits", "auxTempRate", "auxTempRateUnits", "currentCondition",
+            "currentConditionIconURL", "dewPoint", "dewPointUnits", "elevation", "elevationUnits", "feelsLike", "feelsLikeUnits",
+            "gustTime", "gustDirection", "gustSpeed", "gustSpeedUnits", "humidity", "humidityUnits", "highestHumidity",
+            "highestHumidityUnits", "lowestHumidity", "lowestHumidityUnits", "humidityRate", "indoorTemperature",
+            "indoorTemperatureUnits", "indoorTemperatureRate", "indoorTemperatureRateUnits", "light", "lightRate", "moonPhase",
+            "moonPhaseImageURL", "pressure", "pressureUnits", "highestPressure", "highestPressureUnits", "lowestPressure",
+            "lowestPressureUnits", "pressureRate", "pressureRateUnits", "rainMonth", "rainMonthUnits", "rainRate",
+            "rainRateUnits", "maxRainRate", "maxRainRateUnits", "rainToday", "rainTodayUnits", "rainYear", "rainYearUnits",
+            "temperature", "temperatureUnits", "highestTemperature", "highestTemperatureUnits", "lowestTemperature",
+            "lowestTemperatureUnits", "temperatureRate", "temperatureRateUnits", "sunriseTime", "sunsetTime", "wetBulb",
+            "wetBulbUnits", "windSpeed", "windSpeedUnits", "avgWindSpeed", "avgWindSpeedUnits", "windDirection",
+            "avgWindDirection", "weatherBugSiteURL" };
+
+    /** The value types, indexed by field. */
+    private static final int[] TYPES = new int[] {
+            TIMESTAMP_TYPE, STRING_TYPE, STRING_TYPE, STRING_TYPE, INT_TYPE, INT_TYPE, STRING_TYPE, DECIMAL_TYPE, DECIMAL_TYPE,
+            URL_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, STRING_TYPE, URL_TYPE, DECIMAL_TYPE, UNITS_TYPE,
+            INT_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, TIMESTAMP_TYPE, STRING_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE,
+            UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE,
+            UNITS_TYPE, DECIMAL_TYPE, DECIMAL_TYPE, STRING_TYPE, URL_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE,
+            DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE,
+            UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE,
+            DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, TIMESTAMP_TYPE, TIMESTAMP_TYPE, DECIMAL_TYPE, UNITS_TYPE,
+            DECIMAL_TYPE, UNITS_TYPE, DECIMAL_TYPE, UNITS_TYPE, STRING_TYPE, STRING_TYPE, URL_TYPE };
+
+    /** The XPaths locating the values within the &lt;aws:weather&gt; element, indexed by field. */
+    private static final String[] PATHS = new String[] {
+            "aws:ob/aws:ob-date", "aws:ob/aws:station-id", "aws:ob/aws:station", "aws:ob/aws:city-state",
+            "aws:ob/aws:city-state/@citycode", "aws:ob/aws:city-state/@zipcode", "aws:ob/aws:country", "aws:ob/aws:latitude",
+            "aws:ob/aws:longitude", "aws:ob/aws:site-url", "aws:ob/aws:aux-temp", "aws:ob/aws:aux-temp/@units",
+            "aws:ob/aws:aux-temp-rate", "aws:ob/aws:aux-temp-rate/@units", "aws:ob/aws:current-condition",
+            "aws:ob/aws:current-condition/@icon", "aws:ob/aws:dew-point", "aws:ob/aws:dew-point/@units", "aws:ob/aws:elevation",
+            "aws:ob/aws:elevation/@units", "aws:ob/aws:feels-like", "aws:ob/aws:feels-like/@units", "aws:ob/aws:gust-time",
+            "aws:ob/aws:gust-direction", "aws:ob/aws:gust-speed", "aws:ob/aws:gust-speed/@units", "aws:ob/aws:humidity",
+            "aws:ob/aws:humidity/@units", "aws:ob/aws:humidity-high", "aws:ob/aws:humidity-high/@units",
+            "aws:ob/aws:humidity-low", "aws:ob/aws:humidity-low/@units", "aws:ob/aws:humidity-rate", "aws:ob/aws:indoor-temp",
+            "aws:ob/aws:indoor-temp/@units", "aws:ob/aws:indoor-temp-rate", "aws:ob/aws:indoor-temp-rate/@units",
+            "aws:ob/aws:light", "aws:ob/aws:light-rate", "aws:ob/aws:moon-phase", "aws:ob/aws:moon-phase/@moon-phase-img",
+            "aws:ob/aws:pressure", "aws:ob/aws:pressure/@units", "aws:ob/aws:pressure-high", "aws:ob/aws:pressure-high/@units",
+            "aws:ob/aws:pressure-low", "aws:ob/aws:pressure-low/@units", "aws:ob/aws:pressure-rate",
+            "aws:ob/aws:pressure-low/@units", "aws:ob/aws:rain-month", "aws:ob/aws:rain-month/@units", "aws:ob/aws:rain-rate",
+            "aws:ob/aws:rain-rate/@units", "aws:ob/aws:rain-rate-max", "aws:ob/aws:rain-rate-max/@units",
+            "aws:ob/aws:rain-today", "aws:ob/aws:rain-today/@units", "aws:ob/aws:rain-year", "aws:ob/aws:rain-year/@units",
+            "aws:ob/aws:temp", "aws:ob/aws:temp/@units", "aws:ob/aws:temp-high", "aws:ob/aws:temp-high/@units",
+            "aws:ob/aws:temp-low", "aws:ob/aws:temp-low/@units", "aws:ob/aws:temp-rate", "aws:ob/aws:temp-low/@units",
+            "aws:ob/aws:sunrise", "aws:ob/aws:sunset", "aws:ob/aws:wet-bulb", "aws:ob/aws:wet-bulb/@units",
+            "aws:ob/aws:wind-speed", "aws:ob/aws:wind-speed/@units", "aws:ob/aws:wind-speed-avg",
+            "aws:ob/aws:wind-speed-avg/@units", "aws:ob/aws:wind-direction", "aws:ob/aws:wind-direction-avg", "aws:WebURL" };
+
+    /** The fields indexed by name. */
+    private static final Map FIELDS_BY_NAME = new HashMap();
+
+    /* static initializer */
+    static {
+        for (int i = 0; i < COUNT; i++) {
+            FIELDS_BY_NAME.put(NAMES[i], Integer.valueOf(i));
+        }
+    }
+
+    /** Private constructor (don't instantiate). */
+    private LiveWeatherField() {
+    }
+
+    /**
+     * Returns the name of a field, which is the name of the matching <i>LiveWeather</i> property.
+     * 
+     * @param field
+     *            the field.
+     * @return the field name.
+     */
+    public static String getName(int field) {
+        return NAMES[field];
+    }
+
+    /**
+     * Returns the value type of a field.
+     * 
+     * @param field
+     *            the field.
+     * @return the value type (<code>STRING_TYPE</code>, <code>DECIMAL_TYPE</code>, and so on).
+     */
+    public static int getType(int field) {
+        return TYPES[field];
+    }
+
+    /**
+     * Returns the XPath locating the value of a field within the &lt;aws:weather&gt; element.
+     * 
+     * @param field
+     *            the field.
+     * @return the XPath.
+     */
+    public static String getPath(int field) {
+        return PATHS[field];
+    }
+
+    /**
+     * Indicates whether a field holds a numeric value.
+     * 
+     * @param field
+     *            the field.
+     * @return <code>true</code> for decimal and integer fields.
+     */
+    public static boolean isNumeric(int field) {
+        return TYPES[field] == DECIMAL_TYPE || TYPES[field] == INT_TYPE;
+    }
+
+    /**
+     * Returns the field having a specific name.
+     * 
+     * @param name
+     *            the field name (a <i>LiveWeather</i> property name, e.g. <code>temperature</code>).
+     * @return the field, or <code>-1</code> if no field has that name.
+     */
+    public static int forName(String name) {
+        Integer field = (Integer) FIELDS_BY_NAME.get(name);
+        return (field != null) ? field.intValue() : -1;
+    }
+
+}
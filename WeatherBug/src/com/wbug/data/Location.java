@@ -7,7 +7,25 @@ import org.dom4j.Element;
 /**
  * A city located in U.S or outside of the U.S.
  */
-public class Location {
+public class Location implements BinaryEncodable {
+
+    /** The binary tag of the cityName field. */
+    private static final int CITY_NAME_TAG = 0;
+
+    /** The binary tag of the stateName field. */
+    private static final int STATE_NAME_TAG = 1;
+
+    /** The binary tag of the countryName field. */
+    private static final int COUNTRY_NAME_TAG = 2;
+
+    /** The binary tag of the zipCode field. */
+    private static final int ZIP_CODE_TAG = 3;
+
+    /** The binary tag of the cityCode field. */
+    private static final int CITY_CODE_TAG = 4;
+
+    /** The binary tag of the cityType field. */
+    private static final int CITY_TYPE_TAG = 5;
 
     /** The city type identifying cities outside of the U.S. */
     public static final int NON_US_CITY_TYPE = 1;
@@ -45,14 +63,30 @@ public class Location {
      *            the &lt;aws:location&gt; XML element.
      */
     public Location(Element location) {
-        this.cityName = WeatherBugDataUtils.getString(location, "@cityname");
-        this.stateName = WeatherBugDataUtils.getString(location, "@statename");
-        this.countryName = WeatherBugDataUtils.getString(location, "@countryname");
+        this.cityName = WeatherBugDataUtils.getPooledString(location, "@cityname", Location.class);
+        this.stateName = WeatherBugDataUtils.getPooledString(location, "@statename", Location.class);
+        this.countryName = WeatherBugDataUtils.getPooledString(location, "@countryname", Location.class);
         this.zipCode = WeatherBugDataUtils.getInt(location, "@zipcode", -1);
         this.cityCode = WeatherBugDataUtils.getInt(location, "@citycode", -1);
         this.cityType = WeatherBugDataUtils.getInt(location, "@citytype", -1);
     }
 
+    /**
+     * Constructs a new location from its binary encoding.
+     * 
+     * @param record
+     *            the binary record.
+     * @see #writeTo(BinaryWriter)
+     */
+    public Location(BinaryRecord record) {
+        this.cityName = StringPool.getShared().pool(record.getString(CITY_NAME_TAG), Location.class);
+        this.stateName = StringPool.getShared().pool(record.getString(STATE_NAME_TAG), Location.class);
+        this.countryName = StringPool.getShared().pool(record.getString(COUNTRY_NAME_TAG), Location.class);
+        this.zipCode = record.getInt(ZIP_CODE_TAG, -1);
+        this.cityCode = record.getInt(CITY_CODE_TAG, -1);
+        this.cityType = record.getInt(CITY_TYPE_TAG, -1);
+    }
+
     /**
      * Constructs a new location.
      * 
@@ -162,6 +196,20 @@ public class Location {
         return (getCityType() == US_CITY_TYPE) ? getZipCode() : getCityCode();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.BinaryEncodable#writeTo(com.wbug.data.BinaryWriter)
+     */
+    public void writeTo(BinaryWriter out) {
+        out.writeString(CITY_NAME_TAG, cityName);
+        out.writeString(STATE_NAME_TAG, stateName);
+        out.writeString(COUNTRY_NAME_TAG, countryName);
+        out.writeInt(ZIP_CODE_TAG, zipCode);
+        out.writeInt(CITY_CODE_TAG, cityCode);
+        out.writeInt(CITY_TYPE_TAG, cityType);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,179 @@
+package com.wbug.data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * A SAX filter which only lets through the elements needed to bind a set of fields, so that the rest of the response is never
+ * turned into dom4j nodes.
+ * <p>
+ * The filter keeps the chain of elements leading to the record element (for instance <i>rss/channel/aws:weather</i>) and, within
+ * the record, the elements designated by the field paths along with their ancestors and their whole subtree (timestamps are
+ * made of child elements). Every other element is skipped with its content. Elements are matched by local name. A filter holds
+ * parsing state and must not be shared by concurrent parses.
+ */
+public class ProjectionFilter extends XMLFilterImpl {
+
+    /** The local names of the elements leading to the record element, the record element included. */
+    private final String[] recordPath;
+
+    /** The paths of the kept elements within the record, along with their ancestors. */
+    private final Set keptPaths = new HashSet();
+
+    /** The paths of the elements kept with their whole subtree. */
+    private final Set subtreePaths = new HashSet();
+
+    /** The number of elements of the record path currently open. */
+    private int recordDepth;
+
+    /** The local names of the open elements within the record. */
+    private final List innerNames = new ArrayList();
+
+    /** The depth (within the record) of the open element kept with its subtree, or 0 if none. */
+    private int subtreeDepth;
+
+    /** The number of open elements being skipped. */
+    private int skipDepth;
+
+    /**
+     * Constructs a new projection filter.
+     * 
+     * @param recordPath
+     *            the local names of the elements leading to the record element, the record element included.
+     * @param fieldPaths
+     *            the XPaths of the fields, relative to the record element (as used by the data classes, for instance
+     *            <i>aws:ob/aws:temp/@units</i>); attribute steps are ignored.
+     */
+    public ProjectionFilter(String[] recordPath, String[] fieldPaths) {
+        this.recordPath = recordPath;
+        for (int i = 0; i < fieldPaths.length; i++) {
+            String[] steps = fieldPaths[i].split("/");
+            StringBuffer path = new StringBuffer();
+            for (int j = 0; j < steps.length && !steps[j].startsWith("@"); j++) {
+                if (path.length() > 0) {
+                    path.append('/');
+                }
+                path.append(steps[j].substring(steps[j].indexOf(':') + 1));
+                keptPaths.add(path.toString());
+            }
+            if (path.length() > 0) {
+                subtreePaths.add(path.toString());
+            }
+        }
+    }
+
+    /**
+     * Creates a filter keeping the elements of a set of live weather fields.
+     * 
+     * @param fields
+     *            the fields (<code>LiveWeatherField</code> constants).
+     * @return the new filter.
+     */
+    public static ProjectionFilter forLiveWeather(int[] fields) {
+        String[] paths = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            paths[i] = LiveWeatherField.getPath(fields[i]);
+        }
+        return new ProjectionFilter(new String[] { "rss", "channel", "weather" }, paths);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xml.sax.helpers.XMLFilterImpl#startElement(java.lang.String, java.lang.String, java.lang.String,
+     * org.xml.sax.Attributes)
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        if (skipDepth > 0) {
+            skipDepth++;
+            return;
+        }
+        if (recordDepth < recordPath.length) {
+            if (!recordPath[recordDepth].equals(localName)) {
+                skipDepth = 1;
+                return;
+            }
+            recordDepth++;
+        } else {
+            innerNames.add(localName);
+            if (subtreeDepth == 0) {
+                String path = getInnerPath();
+                if (!keptPaths.contains(path)) {
+                    innerNames.remove(innerNames.size() - 1);
+                    skipDepth = 1;
+                    return;
+                }
+                if (subtreePaths.contains(path)) {
+                    subtreeDepth = innerNames.size();
+                }
+            }
+        }
+        super.startElement(uri, localName, qName, atts);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xml.sax.helpers.XMLFilterImpl#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (skipDepth > 0) {
+            skipDepth--;
+            return;
+        }
+        if (innerNames.isEmpty()) {
+            recordDepth--;
+        } else {
+            if (subtreeDepth == innerNames.size()) {
+                subtreeDepth = 0;
+            }
+            innerNames.remove(innerNames.size() - 1);
+        }
+        super.endElement(uri, localName, qName);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xml.sax.helpers.XMLFilterImpl#characters(char[], int, int)
+     */
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        if (skipDepth == 0) {
+            super.characters(ch, start, length);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xml.sax.helpers.XMLFilterImpl#ignorableWhitespace(char[], int, int)
+     */
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        if (skipDepth == 0) {
+            super.ignorableWhitespace(ch, start, length);
+        }
+    }
+
+    /**
+     * Returns the path of the current element within the record.
+     * 
+     * @return the local names of the open elements within the record, separated by slashes.
+     */
+    private String getInnerPath() {
+        StringBuffer path = new StringBuffer();
+        for (int i = 0; i < innerNames.size(); i++) {
+            if (i > 0) {
+                path.append('/');
+            }
+            path.append(innerNames.get(i));
+        }
+        return path.toString();
+    }
+
+}
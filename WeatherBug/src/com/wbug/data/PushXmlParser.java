@@ -0,0 +1,702 @@
+package com.wbug.data;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * A non-blocking XML parser: the document is pushed chunk by chunk, as the bytes arrive from the network, and the SAX events of
+ * every complete construct are sent to the content handler right away. The parser never reads nor waits on its own, so a single
+ * thread can drive many responses.
+ * <p>
+ * The parser supports the subset of XML used by the WeatherBug API: UTF-8 documents made of elements, attributes, namespaces,
+ * character and predefined entity references, CDATA sections, comments and processing instructions. Comments are dropped and
+ * document type declarations are rejected, so no entity is ever resolved. Well-formedness is checked as far as element nesting
+ * and syntax go. Line ends are normalized as the document is decoded: <i>CR LF</i> and lone <i>CR</i> characters become
+ * <i>LF</i>, so a line end in an attribute value is reported as a single space. Events are reported with namespace processing on
+ * and without the <i>xmlns</i> attributes. A parser is single-use and not thread-safe.
+ */
+public class PushXmlParser {
+
+    /** The URI bound to the <i>xml</i> prefix. */
+    private static final String XML_NAMESPACE_URI = "http://www.w3.org/XML/1998/namespace";
+
+    /** The content handler. */
+    private final ContentHandler handler;
+
+    /** The decoder of the document bytes. */
+    private final CharsetDecoder decoder;
+
+    /** The bytes received and not decoded yet (an incomplete character). */
+    private ByteBuffer bytes = ByteBuffer.allocate(8192);
+
+    /** The characters decoded and not parsed yet. */
+    private char[] text = new char[8192];
+
+    /** The index of the first character not parsed yet. */
+    private int pos;
+
+    /** The index after the last decoded character. */
+    private int limit;
+
+    /** The number of characters parsed before <i>pos</i>, for error messages. */
+    private long offset;
+
+    /** The scratch buffer of the character data with references. */
+    private final StringBuffer scratch = new StringBuffer();
+
+    /** The attributes of the current start tag. */
+    private final AttributesImpl atts = new AttributesImpl();
+
+    /** The qualified names of the attributes of the current start tag, namespace declarations excluded. */
+    private final List attributeNames = new ArrayList();
+
+    /** The values of the attributes of the current start tag, namespace declarations excluded. */
+    private final List attributeValues = new ArrayList();
+
+    /** The open elements. */
+    private final List openElements = new ArrayList();
+
+    /** The prefixes of the namespace declarations in scope. */
+    private final List namespacePrefixes = new ArrayList();
+
+    /** The URIs of the namespace declarations in scope. */
+    private final List namespaceURIs = new ArrayList();
+
+    /** Whether the document has started. */
+    private boolean started;
+
+    /** Whether the root element has been read. */
+    private boolean rootRead;
+
+    /** Whether the end of the input has been reached. */
+    private boolean finished;
+
+    /** Whether the last decoded character was a carriage return, so that a following line feed must be dropped. */
+    private boolean afterCarriageReturn;
+
+    /**
+     * Constructs a new push parser.
+     * 
+     * @param handler
+     *            the content handler receiving the events.
+     */
+    public PushXmlParser(ContentHandler handler) {
+        this.handler = handler;
+        decoder = Charset.forName("UTF-8").newDecoder();
+        decoder.onMalformedInput(CodingErrorAction.REPORT);
+        decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+
+    /**
+     * Parses a chunk of the document. The events of all the complete constructs are sent before returning; the incomplete one at
+     * the end of the chunk, if any, waits for the next chunk.
+     * 
+     * @param chunk
+     *            the next bytes of the document; they are all consumed.
+     * @throws SAXException
+     *             if the document is not well-formed or the content handler failed.
+     */
+    public void feed(ByteBuffer chunk) throws SAXException {
+        if (finished) {
+            throw new SAXException("Input already ended");
+        }
+        if (bytes.remaining() < chunk.remaining()) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(bytes.capacity() * 2, bytes.position() + chunk.remaining()));
+            bytes.flip();
+            larger.put(bytes);
+            bytes = larger;
+        }
+        bytes.put(chunk);
+        decode(false);
+        parse();
+    }
+
+    /**
+     * Signals the end of the document.
+     * 
+     * @throws SAXException
+     *             if the document is incomplete or not well-formed, or the content handler failed.
+     */
+    public void endOfInput() throws SAXException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        decode(true);
+        parse();
+        if (pos < limit) {
+            throw error("Incomplete construct at the end of the document");
+        }
+        if (!openElements.isEmpty() || !rootRead) {
+            throw error("Unexpected end of the document");
+        }
+        handler.endDocument();
+    }
+
+    /**
+     * Decodes the received bytes into the pending characters.
+     * 
+     * @param endOfInput
+     *            whether no more bytes will be received.
+     * @throws SAXException
+     *             if the bytes are not valid UTF-8.
+     */
+    private void decode(boolean endOfInput) throws SAXException {
+        bytes.flip();
+        while (true) {
+            if (text.length - limit < bytes.remaining() + 1) {
+                if (pos > 0) {
+                    System.arraycopy(text, pos, text, 0, limit - pos);
+                    limit -= pos;
+                    pos = 0;
+                }
+                if (text.length - limit < bytes.remaining() + 1) {
+                    char[] larger = new char[Math.max(text.length * 2, limit + bytes.remaining() + 1)];
+                    System.arraycopy(text, 0, larger, 0, limit);
+                    text = larger;
+                }
+            }
+            CharBuffer out = CharBuffer.wrap(text, limit, text.length - limit);
+            CoderResult result = decoder.decode(bytes, out, endOfInput);
+            if (endOfInput && !result.isError()) {
+                result = decoder.flush(out);
+            }
+            limit = normalizeLineEnds(limit, out.position());
+            if (result.isError()) {
+                try {
+                    result.throwException();
+                } catch (CharacterCodingException e) {
+                    throw error("Invalid UTF-8 input: " + e);
+                }
+            }
+            if (!result.isOverflow()) {
+                break;
+            }
+        }
+        bytes.compact();
+    }
+
+    /**
+     * Normalizes the line ends of decoded characters in place: <i>CR LF</i> and lone <i>CR</i> become <i>LF</i>.
+     * 
+     * @param start
+     *            the index of the first decoded character.
+     * @param end
+     *            the index after the last decoded character.
+     * @return the index after the last normalized character.
+     */
+    private int normalizeLineEnds(int start, int end) {
+        int j = start;
+        for (int i = start; i < end; i++) {
+            char c = text[i];
+            if (c == '\r') {
+                text[j++] = '\n';
+                afterCarriageReturn = true;
+            } else {
+                if (c != '\n' || !afterCarriageReturn) {
+                    text[j++] = c;
+                }
+                afterCarriageReturn = false;
+            }
+        }
+        return j;
+    }
+
+    /**
+     * Parses the complete constructs of the pending characters.
+     * 
+     * @throws SAXException
+     *             if the document is not well-formed or the content handler failed.
+     */
+    private void parse() throws SAXException {
+        if (!started) {
+            if (pos < limit && text[pos] == '\uFEFF') {
+                pos++;
+            }
+            if (pos == limit && !finished) {
+                return;
+            }
+            started = true;
+            handler.startDocument();
+        }
+        while (pos < limit) {
+            int start = pos;
+            if (text[pos] != '<') {
+                int end = indexOf('<', pos);
+                if (end < 0) {
+                    if (!finished) {
+                        break;
+                    }
+                    end = limit;
+                }
+                characters(pos, end);
+                pos = end;
+            } else if (!parseMarkup()) {
+                pos = start;
+                break;
+            }
+            offset += pos - start;
+        }
+        if (pos == limit) {
+            pos = 0;
+            limit = 0;
+        }
+    }
+
+    /**
+     * Parses the markup starting at the current position.
+     * 
+     * @return <code>false</code> if the markup is incomplete.
+     * @throws SAXException
+     *             if the markup is not well-formed or the content handler failed.
+     */
+    private boolean parseMarkup() throws SAXException {
+        if (limit - pos < 2) {
+            return false;
+        }
+        char c = text[pos + 1];
+        if (c == '?') {
+            int end = indexOf("?>", pos + 2);
+            if (end < 0) {
+                return false;
+            }
+            int nameEnd = scanName(pos + 2, end);
+            String target = new String(text, pos + 2, nameEnd - pos - 2);
+            if (!target.equalsIgnoreCase("xml")) {
+                handler.processingInstruction(target, new String(text, nameEnd, end - nameEnd).trim());
+            }
+            pos = end + 2;
+        } else if (c == '!') {
+            if (startsWith("<!--", pos)) {
+                int end = indexOf("-->", pos + 4);
+                if (end < 0) {
+                    return false;
+                }
+                pos = end + 3;
+            } else if (startsWith("<![CDATA[", pos)) {
+                int end = indexOf("]]>", pos + 9);
+                if (end < 0) {
+                    return false;
+                }
+                if (openElements.isEmpty()) {
+                    throw error("Content outside the root element");
+                }
+                handler.characters(text, pos + 9, end - pos - 9);
+                pos = end + 3;
+            } else if (limit - pos < 9 && !finished) {
+                return false;
+            } else {
+                throw error("Document type declarations are not allowed");
+            }
+        } else if (c == '/') {
+            int end = indexOf('>', pos + 2);
+            if (end < 0) {
+                return false;
+            }
+            int nameEnd = scanName(pos + 2, end);
+            String qName = new String(text, pos + 2, nameEnd - pos - 2);
+            if (skipSpaces(nameEnd, end) != end) {
+                throw error("Invalid end tag: " + qName);
+            }
+            pos = end + 1;
+            endElement(qName);
+        } else {
+            int end = indexOfTagEnd(pos + 1);
+            if (end < 0) {
+                return false;
+            }
+            int start = pos + 1;
+            pos = end + 1;
+            startElement(start, end);
+        }
+        return true;
+    }
+
+    /**
+     * Parses a start tag and sends its events.
+     * 
+     * @param start
+     *            the index after the opening <i>&lt;</i>.
+     * @param end
+     *            the index of the closing <i>&gt;</i>.
+     * @throws SAXException
+     *             if the tag is not well-formed or the content handler failed.
+     */
+    private void startElement(int start, int end) throws SAXException {
+        boolean empty = text[end - 1] == '/';
+        int tagEnd = empty ? end - 1 : end;
+        int nameEnd = scanName(start, tagEnd);
+        if (nameEnd == start) {
+            throw error("Invalid start tag");
+        }
+        String qName = new String(text, start, nameEnd - start);
+        if (openElements.isEmpty() && rootRead) {
+            throw error("Content after the root element: " + qName);
+        }
+        int namespaceCount = namespacePrefixes.size();
+        attributeNames.clear();
+        attributeValues.clear();
+        for (int i = nameEnd;;) {
+            int nameStart = skipSpaces(i, tagEnd);
+            if (nameStart == tagEnd) {
+                break;
+            }
+            int attributeEnd = scanName(nameStart, tagEnd);
+            int equals = skipSpaces(attributeEnd, tagEnd);
+            int quote = (equals < tagEnd && text[equals] == '=') ? skipSpaces(equals + 1, tagEnd) : tagEnd;
+            if (nameStart == i || attributeEnd == nameStart || quote == tagEnd || (text[quote] != '"' && text[quote] != '\'')) {
+                throw error("Invalid attribute in start tag: " + qName);
+            }
+            int valueEnd = indexOf(text[quote], quote + 1);
+            if (valueEnd < 0 || valueEnd >= tagEnd) {
+                throw error("Invalid attribute in start tag: " + qName);
+            }
+            String name = new String(text, nameStart, attributeEnd - nameStart);
+            String value = decode(quote + 1, valueEnd, true);
+            if (name.equals("xmlns")) {
+                namespacePrefixes.add("");
+                namespaceURIs.add(value);
+            } else if (name.startsWith("xmlns:")) {
+                namespacePrefixes.add(name.substring(6));
+                namespaceURIs.add(value);
+            } else {
+                attributeNames.add(name);
+                attributeValues.add(value);
+            }
+            i = valueEnd + 1;
+        }
+        for (int i = namespaceCount; i < namespacePrefixes.size(); i++) {
+            handler.startPrefixMapping((String) namespacePrefixes.get(i), (String) namespaceURIs.get(i));
+        }
+        atts.clear();
+        for (int i = 0; i < attributeNames.size(); i++) {
+            String name = (String) attributeNames.get(i);
+            int colon = name.indexOf(':');
+            String uri = (colon > 0) ? resolve(name.substring(0, colon)) : "";
+            atts.addAttribute(uri, name.substring(colon + 1), name, "CDATA", (String) attributeValues.get(i));
+        }
+        int colon = qName.indexOf(':');
+        String uri = resolve((colon > 0) ? qName.substring(0, colon) : "");
+        OpenElement element = new OpenElement(uri, qName.substring(colon + 1), qName, namespaceCount);
+        openElements.add(element);
+        rootRead = true;
+        handler.startElement(element.uri, element.localName, qName, atts);
+        if (empty) {
+            endElement(qName);
+        }
+    }
+
+    /**
+     * Sends the end of an element.
+     * 
+     * @param qName
+     *            the qualified name read in the end tag.
+     * @throws SAXException
+     *             if the element is not the open one or the content handler failed.
+     */
+    private void endElement(String qName) throws SAXException {
+        if (openElements.isEmpty() || !((OpenElement) openElements.get(openElements.size() - 1)).qName.equals(qName)) {
+            throw error("Unexpected end tag: " + qName);
+        }
+        OpenElement element = (OpenElement) openElements.remove(openElements.size() - 1);
+        handler.endElement(element.uri, element.localName, qName);
+        for (int i = namespacePrefixes.size() - 1; i >= element.namespaceCount; i--) {
+            handler.endPrefixMapping((String) namespacePrefixes.remove(i));
+            namespaceURIs.remove(i);
+        }
+    }
+
+    /**
+     * Returns the namespace URI bound to a prefix.
+     * 
+     * @param prefix
+     *            the prefix, empty for the default namespace.
+     * @return the namespace URI, empty if none.
+     * @throws SAXException
+     *             if the prefix is not bound.
+     */
+    private String resolve(String prefix) throws SAXException {
+        if (prefix.equals("xml")) {
+            return XML_NAMESPACE_URI;
+        }
+        for (int i = namespacePrefixes.size() - 1; i >= 0; i--) {
+            if (namespacePrefixes.get(i).equals(prefix)) {
+                return (String) namespaceURIs.get(i);
+            }
+        }
+        if (prefix.length() > 0) {
+            throw error("Unbound namespace prefix: " + prefix);
+        }
+        return "";
+    }
+
+    /**
+     * Sends character data, decoding its references. Whitespace outside the root element is ignored.
+     * 
+     * @param start
+     *            the index of the first character.
+     * @param end
+     *            the index after the last character.
+     * @throws SAXException
+     *             if a reference is invalid or the content handler failed.
+     */
+    private void characters(int start, int end) throws SAXException {
+        if (openElements.isEmpty()) {
+            if (skipSpaces(start, end) != end) {
+                throw error("Content outside the root element");
+            }
+            return;
+        }
+        if (indexOf('&', start) < 0 || indexOf('&', start) >= end) {
+            handler.characters(text, start, end - start);
+        } else {
+            String decoded = decode(start, end, false);
+            handler.characters(decoded.toCharArray(), 0, decoded.length());
+        }
+    }
+
+    /**
+     * Decodes the references of character data.
+     * 
+     * @param start
+     *            the index of the first character.
+     * @param end
+     *            the index after the last character.
+     * @param attribute
+     *            whether the characters are an attribute value, whose whitespace characters (line ends included, already
+     *            normalized to a single <i>LF</i>) are normalized to spaces.
+     * @return the decoded string.
+     * @throws SAXException
+     *             if a reference is invalid.
+     */
+    private String decode(int start, int end, boolean attribute) throws SAXException {
+        scratch.setLength(0);
+        for (int i = start; i < end; i++) {
+            char c = text[i];
+            if (c == '&') {
+                int semicolon = i + 1;
+                while (semicolon < end && text[semicolon] != ';') {
+                    semicolon++;
+                }
+                if (semicolon == end) {
+                    throw error("Unterminated reference");
+                }
+                String name = new String(text, i + 1, semicolon - i - 1);
+                if (name.equals("lt")) {
+                    scratch.append('<');
+                } else if (name.equals("gt")) {
+                    scratch.append('>');
+                } else if (name.equals("amp")) {
+                    scratch.append('&');
+                } else if (name.equals("quot")) {
+                    scratch.append('"');
+                } else if (name.equals("apos")) {
+                    scratch.append('\'');
+                } else if (name.startsWith("#")) {
+                    try {
+                        int codePoint = name.startsWith("#x") ? Integer.parseInt(name.substring(2), 16) : Integer.parseInt(name
+                                .substring(1));
+                        scratch.appendCodePoint(codePoint);
+                    } catch (IllegalArgumentException e) {
+                        throw error("Invalid character reference: &" + name + ";");
+                    }
+                } else {
+                    throw error("Undeclared entity: " + name);
+                }
+                i = semicolon;
+            } else if (attribute && (c == '\t' || c == '\n')) {
+                scratch.append(' ');
+            } else {
+                scratch.append(c);
+            }
+        }
+        return scratch.toString();
+    }
+
+    /**
+     * Returns the index of a character within the pending characters.
+     * 
+     * @param c
+     *            the character.
+     * @param from
+     *            the index the search starts from.
+     * @return the index of the character, or <code>-1</code> if not found.
+     */
+    private int indexOf(char c, int from) {
+        for (int i = from; i < limit; i++) {
+            if (text[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of a string within the pending characters.
+     * 
+     * @param s
+     *            the string.
+     * @param from
+     *            the index the search starts from.
+     * @return the index of the string, or <code>-1</code> if not found.
+     */
+    private int indexOf(String s, int from) {
+        for (int i = from; i + s.length() <= limit; i++) {
+            if (startsWith(s, i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Indicates whether the pending characters contain a string at a given index.
+     * 
+     * @param s
+     *            the string.
+     * @param index
+     *            the index.
+     * @return <code>true</code> if the string is found at the index.
+     */
+    private boolean startsWith(String s, int index) {
+        if (index + s.length() > limit) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (text[index + i] != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the index of the closing <i>&gt;</i> of a tag, ignoring those within attribute values.
+     * 
+     * @param from
+     *            the index after the opening <i>&lt;</i>.
+     * @return the index of the closing <i>&gt;</i>, or <code>-1</code> if the tag is incomplete.
+     */
+    private int indexOfTagEnd(int from) {
+        char quote = 0;
+        for (int i = from; i < limit; i++) {
+            char c = text[i];
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the end of a name.
+     * 
+     * @param from
+     *            the index of the first character of the name.
+     * @param end
+     *            the index the name cannot exceed.
+     * @return the index after the last character of the name.
+     */
+    private int scanName(int from, int end) {
+        int i = from;
+        while (i < end && !isSpace(text[i]) && text[i] != '=' && text[i] != '/' && text[i] != '>') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Skips whitespace characters.
+     * 
+     * @param from
+     *            the index the skipping starts from.
+     * @param end
+     *            the index the skipping cannot exceed.
+     * @return the index of the first non-whitespace character, or <i>end</i>.
+     */
+    private int skipSpaces(int from, int end) {
+        int i = from;
+        while (i < end && isSpace(text[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Indicates whether a character is XML whitespace.
+     * 
+     * @param c
+     *            the character.
+     * @return <code>true</code> for a space, tab, carriage return or line feed.
+     */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Creates a parsing error.
+     * 
+     * @param message
+     *            the error message.
+     * @return the exception.
+     */
+    private SAXException error(String message) {
+        return new SAXException(message + " (at character " + offset + ")");
+    }
+
+    /**
+     * An open element.
+     */
+    private static class OpenElement {
+
+        /** The namespace URI. */
+        final String uri;
+
+        /** The local name. */
+        final String localName;
+
+        /** The qualified name. */
+        final String qName;
+
+        /** The number of namespace declarations in scope before the element. */
+        final int namespaceCount;
+
+        /**
+         * Constructs a new open element.
+         * 
+         * @param uri
+         *            the namespace URI.
+         * @param localName
+         *            the local name.
+         * @param qName
+         *            the qualified name.
+         * @param namespaceCount
+         *            the number of namespace declarations in scope before the element.
+         */
+        OpenElement(String uri, String localName, String qName, int namespaceCount) {
+            this.uri = uri;
+            this.localName = localName;
+            this.qName = qName;
+            this.namespaceCount = namespaceCount;
+        }
+
+    }
+
+}
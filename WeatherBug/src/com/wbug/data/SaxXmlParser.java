@@ -0,0 +1,98 @@
+package com.wbug.data;
+
+import java.io.InputStream;
+import java.io.StringReader;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
+import org.xml.sax.XMLReader;
+
+/**
+ * Parses the responses with the JDK SAX parser. Each thread reuses its own reader, created once from a shared, hardened parser
+ * factory: document type declarations are rejected and external entities are never loaded.
+ */
+public class SaxXmlParser implements XmlParser {
+
+    /** The factory of the SAX parsers. */
+    private final SAXParserFactory factory;
+
+    /** The reader of the current thread. */
+    private final ThreadLocal readers = new ThreadLocal();
+
+    /**
+     * Constructs a new SAX parser backend.
+     */
+    public SaxXmlParser() {
+        factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        factory.setValidating(false);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to harden the SAX parser: " + e.getMessage());
+        } catch (SAXException e) {
+            throw new IllegalStateException("Unable to harden the SAX parser: " + e.getMessage());
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.XmlParser#parse(java.io.InputStream, org.xml.sax.XMLFilter)
+     */
+    public Document parse(InputStream in, XMLFilter filter) throws DocumentException {
+        SAXReader reader = getReader();
+        reader.setXMLFilter(filter);
+        try {
+            InputSource source = new InputSource(in);
+            source.setEncoding("UTF-8");
+            return reader.read(source);
+        } finally {
+            reader.setXMLFilter(null);
+        }
+    }
+
+    /**
+     * Returns the reader of the current thread, creating it if needed.
+     * 
+     * @return the reader.
+     * @throws DocumentException
+     *             if the SAX parser cannot be created.
+     */
+    private SAXReader getReader() throws DocumentException {
+        SAXReader reader = (SAXReader) readers.get();
+        if (reader == null) {
+            XMLReader xmlReader;
+            try {
+                xmlReader = factory.newSAXParser().getXMLReader();
+            } catch (ParserConfigurationException e) {
+                throw new DocumentException("Unable to create the SAX parser: " + e.getMessage(), e);
+            } catch (SAXException e) {
+                throw new DocumentException("Unable to create the SAX parser: " + e.getMessage(), e);
+            }
+            reader = new SAXReader(xmlReader);
+            reader.setDocumentFactory(WeatherBugDataUtils.getDocumentFactory());
+            reader.setEntityResolver(new EntityResolver() {
+                public InputSource resolveEntity(String publicId, String systemId) {
+                    return new InputSource(new StringReader(""));
+                }
+            });
+            readers.set(reader);
+        }
+        return reader;
+    }
+
+}
@@ -9,7 +9,40 @@ import org.dom4j.Element;
 /**
  * A weather station.
  */
-public class Station {
+public class Station implements BinaryEncodable {
+
+    /** The binary tag of the id field. */
+    private static final int ID_TAG = 0;
+
+    /** The binary tag of the name field. */
+    private static final int NAME_TAG = 1;
+
+    /** The binary tag of the city field. */
+    private static final int CITY_TAG = 2;
+
+    /** The binary tag of the state field. */
+    private static final int STATE_TAG = 3;
+
+    /** The binary tag of the country field. */
+    private static final int COUNTRY_TAG = 4;
+
+    /** The binary tag of the zipCode field. */
+    private static final int ZIP_CODE_TAG = 5;
+
+    /** The binary tag of the cityCode field. */
+    private static final int CITY_CODE_TAG = 6;
+
+    /** The binary tag of the distance field. */
+    private static final int DISTANCE_TAG = 7;
+
+    /** The binary tag of the unit field. */
+    private static final int UNIT_TAG = 8;
+
+    /** The binary tag of the latitude field. */
+    private static final int LATITUDE_TAG = 9;
+
+    /** The binary tag of the longitude field. */
+    private static final int LONGITUDE_TAG = 10;
 
     /** The city where the station is located. */
     private String city;
@@ -53,9 +86,9 @@ public class Station {
     public Station(Element location) {
         this.id = WeatherBugDataUtils.getString(location, "@id");
         this.name = WeatherBugDataUtils.getString(location, "@name");
-        this.city = WeatherBugDataUtils.getString(location, "@city");
-        this.state = WeatherBugDataUtils.getString(location, "@state");
-        this.country = WeatherBugDataUtils.getString(location, "@country");
+        this.city = WeatherBugDataUtils.getPooledString(location, "@city", Station.class);
+        this.state = WeatherBugDataUtils.getPooledString(location, "@state", Station.class);
+        this.country = WeatherBugDataUtils.getPooledString(location, "@country", Station.class);
         this.zipCode = WeatherBugDataUtils.getInt(location, "@zipcode", -1);
         this.cityCode = WeatherBugDataUtils.getInt(location, "@citycode", -1);
         this.distance = WeatherBugDataUtils.getBigDecimal(location, "@distance", null);
@@ -64,6 +97,68 @@ public class Station {
         this.longitude = WeatherBugDataUtils.getBigDecimal(location, "@longitude", null);
     }
 
+    /**
+     * Constructs a new station from its binary encoding.
+     * 
+     * @param record
+     *            the binary record.
+     * @see #writeTo(BinaryWriter)
+     */
+    public Station(BinaryRecord record) {
+        this.id = record.getString(ID_TAG);
+        this.name = record.getString(NAME_TAG);
+        this.city = StringPool.getShared().pool(record.getString(CITY_TAG), Station.class);
+        this.state = StringPool.getShared().pool(record.getString(STATE_TAG), Station.class);
+        this.country = StringPool.getShared().pool(record.getString(COUNTRY_TAG), Station.class);
+        this.zipCode = record.getInt(ZIP_CODE_TAG, -1);
+        this.cityCode = record.getInt(CITY_CODE_TAG, -1);
+        this.distance = record.getBigDecimal(DISTANCE_TAG);
+        this.unit = record.getString(UNIT_TAG);
+        this.latitude = record.getBigDecimal(LATITUDE_TAG);
+        this.longitude = record.getBigDecimal(LONGITUDE_TAG);
+    }
+
+    /**
+     * Constructs a new station.
+     * 
+     * @param id
+     *            the unique station identifier.
+     * @param name
+     *            the station name.
+     * @param city
+     *            the city where the station is located.
+     * @param state
+     *            the state where the station is located.
+     * @param country
+     *            the country where the station is located.
+     * @param zipCode
+     *            the ZIP code.
+     * @param cityCode
+     *            the city code.
+     * @param distance
+     *            the distance.
+     * @param unit
+     *            the distance unit.
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     */
+    public Station(String id, String name, String city, String state, String country, int zipCode, int cityCode,
+            BigDecimal distance, String unit, BigDecimal latitude, BigDecimal longitude) {
+        this.id = id;
+        this.name = name;
+        this.city = city;
+        this.state = state;
+        this.country = country;
+        this.zipCode = zipCode;
+        this.cityCode = cityCode;
+        this.distance = distance;
+        this.unit = unit;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -184,6 +279,25 @@ public class Station {
         return getId().hashCode();
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.BinaryEncodable#writeTo(com.wbug.data.BinaryWriter)
+     */
+    public void writeTo(BinaryWriter out) {
+        out.writeString(ID_TAG, id);
+        out.writeString(NAME_TAG, name);
+        out.writeString(CITY_TAG, city);
+        out.writeString(STATE_TAG, state);
+        out.writeString(COUNTRY_TAG, country);
+        out.writeInt(ZIP_CODE_TAG, zipCode);
+        out.writeInt(CITY_CODE_TAG, cityCode);
+        out.writeBigDecimal(DISTANCE_TAG, distance);
+        out.writeString(UNIT_TAG, unit);
+        out.writeBigDecimal(LATITUDE_TAG, latitude);
+        out.writeBigDecimal(LONGITUDE_TAG, longitude);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -0,0 +1,148 @@
+package com.wbug.data;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXContentHandler;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Parses the responses with the JDK StAX parser, feeding the stream events to the dom4j document builder (through the filter, if
+ * any) as SAX events. The input factory is created and hardened once: DTDs are not supported and external entities are never
+ * loaded. Comments and processing instructions are not kept, the bound data never using them.
+ */
+public class StaxXmlParser implements XmlParser {
+
+    /** The factory of the stream readers, thread-safe once configured. */
+    private final XMLInputFactory factory;
+
+    /**
+     * Constructs a new StAX parser backend.
+     */
+    public StaxXmlParser() {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.data.XmlParser#parse(java.io.InputStream, org.xml.sax.XMLFilter)
+     */
+    public Document parse(InputStream in, XMLFilter filter) throws DocumentException {
+        SAXContentHandler builder = new SAXContentHandler(WeatherBugDataUtils.getDocumentFactory());
+        ContentHandler handler = builder;
+        if (filter != null) {
+            if (!(filter instanceof ContentHandler)) {
+                throw new DocumentException("Unsupported filter: " + filter.getClass().getName());
+            }
+            filter.setContentHandler(builder);
+            handler = (ContentHandler) filter;
+        }
+        XMLStreamReader reader = null;
+        try {
+            reader = factory.createXMLStreamReader(in, "UTF-8");
+            fire(reader, handler);
+        } catch (XMLStreamException e) {
+            throw new DocumentException(e.getMessage(), e);
+        } catch (SAXException e) {
+            throw new DocumentException(e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                    // already failed or complete
+                }
+            }
+        }
+        return builder.getDocument();
+    }
+
+    /**
+     * Reads a whole document and sends its events to a SAX content handler.
+     * 
+     * @param reader
+     *            the stream reader, positioned at the start of the document.
+     * @param handler
+     *            the content handler.
+     * @throws XMLStreamException
+     *             if the document cannot be read.
+     * @throws SAXException
+     *             if the content handler failed.
+     */
+    private static void fire(XMLStreamReader reader, ContentHandler handler) throws XMLStreamException, SAXException {
+        AttributesImpl atts = new AttributesImpl();
+        handler.startDocument();
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    handler.startPrefixMapping(nonNull(reader.getNamespacePrefix(i)), nonNull(reader.getNamespaceURI(i)));
+                }
+                atts.clear();
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    String prefix = reader.getAttributePrefix(i);
+                    String localName = reader.getAttributeLocalName(i);
+                    atts.addAttribute(nonNull(reader.getAttributeNamespace(i)), localName, qualify(prefix, localName),
+                            nonNull(reader.getAttributeType(i)), reader.getAttributeValue(i));
+                }
+                handler.startElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(), qualify(reader.getPrefix(), reader
+                        .getLocalName()), atts);
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                handler.endElement(nonNull(reader.getNamespaceURI()), reader.getLocalName(), qualify(reader.getPrefix(), reader
+                        .getLocalName()));
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    handler.endPrefixMapping(nonNull(reader.getNamespacePrefix(i)));
+                }
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                break;
+            default:
+                break;
+            }
+        }
+        handler.endDocument();
+    }
+
+    /**
+     * Returns a qualified name.
+     * 
+     * @param prefix
+     *            the namespace prefix (may be <code>null</code> or empty).
+     * @param localName
+     *            the local name.
+     * @return the qualified name.
+     */
+    private static String qualify(String prefix, String localName) {
+        return (prefix == null || prefix.length() == 0) ? localName : prefix + ':' + localName;
+    }
+
+    /**
+     * Returns a string, or the empty string if <code>null</code>, as SAX expects for missing names.
+     * 
+     * @param s
+     *            the string (may be <code>null</code>).
+     * @return the string, never <code>null</code>.
+     */
+    private static String nonNull(String s) {
+        return (s != null) ? s : "";
+    }
+
+}
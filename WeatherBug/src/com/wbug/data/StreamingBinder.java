@@ -0,0 +1,235 @@
+package com.wbug.data;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import org.dom4j.DocumentFactory;
+import org.dom4j.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A SAX handler which binds the records of a response as they are parsed: only the subtree of the current record element is
+ * built, handed to the <code>(Element)</code> constructor of the data class, then passed to a {@link DataObjectHandler} and
+ * dropped. Combined with a {@link PushXmlParser}, the first objects of a long list are delivered before the rest of the
+ * response has arrived, and memory use does not depend on the number of records.
+ * <p>
+ * Elements are matched by local name. Once the handler asks to stop, the remaining events are ignored. Java reflection errors
+ * are silently ignored, as in {@link WeatherBugDataUtils#bind(Element, String, Class)}. A binder holds parsing state and must not
+ * be shared by concurrent parses.
+ */
+public class StreamingBinder extends DefaultHandler {
+
+    /** The local names of the elements leading to the station elements, the station element included. */
+    public static final String[] STATION_PATH = new String[] { "weather", "stations", "station" };
+
+    /** The local names of the elements leading to the location elements, the location element included. */
+    public static final String[] LOCATION_PATH = new String[] { "weather", "locations", "location" };
+
+    /** The argument types of the constructor of the data objects. */
+    private static final Class[] ELEM_CLASS_ARRAY = new Class[] { Element.class };
+
+    /** The local names of the elements leading to the record element, the record element included. */
+    private final String[] recordPath;
+
+    /** The constructor of the data objects (<code>null</code> if the data class has none taking an element). */
+    private final Constructor constructor;
+
+    /** The handler of the bound objects. */
+    private final DataObjectHandler handler;
+
+    /** The factory of the record nodes. */
+    private final DocumentFactory factory = WeatherBugDataUtils.getDocumentFactory();
+
+    /** The depth of the current element, the root element being at depth 1. */
+    private int depth;
+
+    /** The number of elements of the record path currently open. */
+    private int pathDepth;
+
+    /** The current element within the record (<code>null</code> outside a record). */
+    private Element current;
+
+    /** The character data not added to the current element yet. */
+    private final StringBuffer text = new StringBuffer();
+
+    /** The number of objects passed to the handler. */
+    private int count;
+
+    /** Whether the handler asked to stop. */
+    private boolean stopped;
+
+    /**
+     * Constructs a new streaming binder.
+     * 
+     * @param recordPath
+     *            the local names of the elements leading to the record elements, from the root element (included) to the record
+     *            element (included).
+     * @param dataClass
+     *            the class of objects being instantiated (<i>Location</i>, <i>Station</i>, and so on).
+     * @param handler
+     *            the handler of the bound objects.
+     */
+    public StreamingBinder(String[] recordPath, Class dataClass, DataObjectHandler handler) {
+        this.recordPath = recordPath;
+        this.handler = handler;
+        Constructor constr;
+        try {
+            constr = dataClass.getConstructor(ELEM_CLASS_ARRAY);
+        } catch (SecurityException e) {
+            constr = null;
+        } catch (NoSuchMethodException e) {
+            constr = null;
+        }
+        this.constructor = constr;
+    }
+
+    /**
+     * Creates a binder of the stations of a station list response.
+     * 
+     * @param handler
+     *            the handler of the <i>Station</i> objects.
+     * @return the binder.
+     */
+    public static StreamingBinder forStations(DataObjectHandler handler) {
+        return new StreamingBinder(STATION_PATH, Station.class, handler);
+    }
+
+    /**
+     * Creates a binder of the locations of a location list response.
+     * 
+     * @param handler
+     *            the handler of the <i>Location</i> objects.
+     * @return the binder.
+     */
+    public static StreamingBinder forLocations(DataObjectHandler handler) {
+        return new StreamingBinder(LOCATION_PATH, Location.class, handler);
+    }
+
+    /**
+     * Returns the number of objects passed to the handler so far.
+     * 
+     * @return the number of bound objects.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Indicates whether the handler asked to stop.
+     * 
+     * @return <code>true</code> if the rest of the response is ignored.
+     */
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xml.sax.helpers.DefaultHandler#startElement(java.lang.String, java.lang.String, java.lang.String,
+     *      org.xml.sax.Attributes)
+     */
+    public void startElement(String uri, String localName, String qName, Attributes atts) {
+        if (stopped) {
+            return;
+        }
+        depth++;
+        if (current == null) {
+            if (pathDepth != depth - 1 || pathDepth == recordPath.length || !recordPath[pathDepth].equals(localName)) {
+                return;
+            }
+            pathDepth++;
+            if (pathDepth < recordPath.length) {
+                return;
+            }
+        } else {
+            flushText();
+        }
+        int colon = qName.indexOf(':');
+        Element element = factory.createElement(factory.createQName(localName, (colon > 0) ? qName.substring(0, colon) : "", uri));
+        for (int i = 0; i < atts.getLength(); i++) {
+            String attributeName = atts.getQName(i);
+            int attributeColon = attributeName.indexOf(':');
+            element.addAttribute(factory.createQName(atts.getLocalName(i), (attributeColon > 0) ? attributeName.substring(0,
+                    attributeColon) : "", atts.getURI(i)), atts.getValue(i));
+        }
+        if (current != null) {
+            current.add(element);
+        }
+        current = element;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xml.sax.helpers.DefaultHandler#endElement(java.lang.String, java.lang.String, java.lang.String)
+     */
+    public void endElement(String uri, String localName, String qName) {
+        if (stopped) {
+            return;
+        }
+        if (current != null) {
+            flushText();
+            Element parent = current.getParent();
+            if (parent == null) {
+                pathDepth--;
+                handle(current);
+            }
+            current = parent;
+        } else if (pathDepth == depth) {
+            pathDepth--;
+        }
+        depth--;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.xml.sax.helpers.DefaultHandler#characters(char[], int, int)
+     */
+    public void characters(char[] ch, int start, int length) {
+        if (current != null && !stopped) {
+            text.append(ch, start, length);
+        }
+    }
+
+    /**
+     * Adds the pending character data to the current element.
+     */
+    private void flushText() {
+        if (text.length() > 0) {
+            current.addText(text.toString());
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Binds a record element and passes the object to the handler.
+     * 
+     * @param record
+     *            the record element.
+     */
+    private void handle(Element record) {
+        if (constructor == null) {
+            return;
+        }
+        Object object;
+        try {
+            object = constructor.newInstance(new Object[] { record });
+        } catch (IllegalArgumentException e) {
+            return;
+        } catch (InstantiationException e) {
+            return;
+        } catch (InvocationTargetException e) {
+            return;
+        } catch (IllegalAccessException e) {
+            return;
+        }
+        count++;
+        if (!handler.handle(object)) {
+            stopped = true;
+        }
+    }
+
+}
@@ -0,0 +1,320 @@
+package com.wbug.data;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of canonical strings, used during binding so that the place names repeated across many data objects (city,
+ * state, country, zone) share one instance.
+ * <p>
+ * Unlike <code>String.intern()</code>, the pool is bounded: when it reaches its maximum size, an eighth of the entries is evicted
+ * before the new string is added. Eviction follows the CLOCK policy, an approximation of LRU: each hit marks its entry as
+ * referenced, and the eviction sweep, resuming where the previous one stopped, spares and unmarks the referenced entries, so
+ * that the strings used since the last sweep stay pooled. A single thread evicts at a time; a string missed while the pool is
+ * full and another thread is evicting is returned without being pooled. Evicted strings stay valid; they are merely no longer
+ * shared with the strings pooled afterwards.
+ * <p>
+ * The callers can name themselves when pooling a string (see {@link #pool(String, Class)}), so that the memory saved is also
+ * reported per caller (see {@link #getSavedBytesByOwner()}); the strings are shared across all the callers. Instances are
+ * thread-safe.
+ */
+public class StringPool {
+
+    /** The default maximum number of pooled strings. */
+    public static final int DEFAULT_MAX_SIZE = 50000;
+
+    /** The estimated overhead of a string instance (object header, fields and array header, in bytes). */
+    private static final int STRING_OVERHEAD = 40;
+
+    /** The pool used by the data classes when binding XML responses. */
+    private static final StringPool SHARED = new StringPool(DEFAULT_MAX_SIZE);
+
+    /** The entries of the canonical strings, keyed by the strings. */
+    private final ConcurrentMap strings = new ConcurrentHashMap();
+
+    /** Whether a thread is evicting. */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /** The position of the eviction sweep (used by the evicting thread only). */
+    private Iterator hand;
+
+    /** The maximum number of pooled strings. */
+    private final int maxSize;
+
+    /** The number of lookups returning an already pooled instance. */
+    private final AtomicLong hits = new AtomicLong();
+
+    /** The number of lookups adding a string to the pool. */
+    private final AtomicLong misses = new AtomicLong();
+
+    /** The number of evicted strings. */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** The estimated number of bytes made reclaimable by the hits (see {@link #getSavedBytes()}). */
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /** The estimated number of bytes made reclaimable by the hits of each caller (<code>AtomicLong</code>), keyed by class. */
+    private final ConcurrentMap ownerSavedBytes = new ConcurrentHashMap();
+
+    /**
+     * Constructs a new string pool.
+     * 
+     * @param maxSize
+     *            the maximum number of pooled strings.
+     */
+    public StringPool(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the pool used by the data classes when binding XML responses.
+     * 
+     * @return the shared pool.
+     */
+    public static StringPool getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the canonical instance of a string, pooling it if needed.
+     * 
+     * @param s
+     *            the string (may be <code>null</code>).
+     * @return the pooled instance equal to <i>s</i>, or <code>null</code>.
+     */
+    public String pool(String s) {
+        return pool(s, null);
+    }
+
+    /**
+     * Returns the canonical instance of a string, pooling it if needed, and accounts for the memory saved on behalf of a caller.
+     * 
+     * @param s
+     *            the string (may be <code>null</code>).
+     * @param owner
+     *            the class of the caller (typically the data class holding the string), or <code>null</code> to account for the
+     *            memory saved in the total only.
+     * @return the pooled instance equal to <i>s</i>, or <code>null</code>.
+     */
+    public String pool(String s, Class owner) {
+        if (s == null) {
+            return null;
+        }
+        Entry entry = (Entry) strings.get(s);
+        if (entry == null) {
+            if (strings.size() >= maxSize) {
+                if (!evicting.compareAndSet(false, true)) {
+                    misses.incrementAndGet();
+                    return s;
+                }
+                try {
+                    evict();
+                } finally {
+                    evicting.set(false);
+                }
+            }
+            entry = (Entry) strings.putIfAbsent(s, new Entry(s));
+            if (entry == null) {
+                misses.incrementAndGet();
+                return s;
+            }
+        }
+        hits.incrementAndGet();
+        if (!entry.referenced) {
+            entry.referenced = true;
+        }
+        if (entry.value != s) {
+            int size = STRING_OVERHEAD + getBytesPerChar(s) * s.length();
+            savedBytes.addAndGet(size);
+            if (owner != null) {
+                getOwnerSavedBytes(owner).addAndGet(size);
+            }
+        }
+        return entry.value;
+    }
+
+    /**
+     * Returns the number of pooled strings.
+     * 
+     * @return the pool size.
+     */
+    public int size() {
+        return strings.size();
+    }
+
+    /**
+     * Returns the number of lookups returning an already pooled instance.
+     * 
+     * @return the number of hits.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of lookups adding a string to the pool.
+     * 
+     * @return the number of misses.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of evicted strings.
+     * 
+     * @return the number of evictions.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the estimated memory saved by the pool: for each hit on a distinct but equal instance, the size of that instance,
+     * which becomes garbage instead of being retained by a data object. The size assumes compact strings (the default since Java
+     * 9): one byte per character for the strings made only of Latin-1 characters, two bytes otherwise. It overstates the
+     * savings when compact strings are disabled.
+     * 
+     * @return the estimated saved memory (in bytes).
+     */
+    public long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    /**
+     * Returns the estimated memory saved on behalf of a caller (see {@link #getSavedBytes()}).
+     * 
+     * @param owner
+     *            the class of the caller, as given to {@link #pool(String, Class)}.
+     * @return the estimated saved memory (in bytes).
+     */
+    public long getSavedBytes(Class owner) {
+        AtomicLong saved = (AtomicLong) ownerSavedBytes.get(owner);
+        return (saved != null) ? saved.get() : 0;
+    }
+
+    /**
+     * Returns the estimated memory saved on behalf of each caller (see {@link #getSavedBytes()}). The strings pooled without a
+     * caller are only accounted for in the total.
+     * 
+     * @return a map of the saved memory (<code>Long</code>, in bytes), keyed by caller class.
+     */
+    public Map getSavedBytesByOwner() {
+        Map result = new HashMap();
+        for (Iterator i = ownerSavedBytes.entrySet().iterator(); i.hasNext();) {
+            Map.Entry entry = (Map.Entry) i.next();
+            result.put(entry.getKey(), Long.valueOf(((AtomicLong) entry.getValue()).get()));
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the pooled strings. The counters are kept.
+     */
+    public void clear() {
+        strings.clear();
+    }
+
+    /**
+     * Evicts an eighth of the pooled strings, sparing the entries referenced since the previous sweep. Called by one thread at a
+     * time.
+     */
+    private void evict() {
+        int count = Math.max(1, maxSize / 8);
+        int spared = 0;
+        while (count > 0 && spared <= 2 * maxSize) {
+            if (hand == null || !hand.hasNext()) {
+                hand = strings.values().iterator();
+                if (!hand.hasNext()) {
+                    return;
+                }
+            }
+            Entry entry = (Entry) hand.next();
+            if (entry.referenced) {
+                entry.referenced = false;
+                spared++;
+            } else {
+                hand.remove();
+                evictions.incrementAndGet();
+                count--;
+            }
+        }
+    }
+
+    /**
+     * Returns the saved memory counter of a caller, creating it if needed.
+     * 
+     * @param owner
+     *            the class of the caller.
+     * @return the counter.
+     */
+    private AtomicLong getOwnerSavedBytes(Class owner) {
+        AtomicLong saved = (AtomicLong) ownerSavedBytes.get(owner);
+        if (saved == null) {
+            saved = new AtomicLong();
+            AtomicLong previous = (AtomicLong) ownerSavedBytes.putIfAbsent(owner, saved);
+            if (previous != null) {
+                saved = previous;
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Returns the number of bytes used per character by a compact string.
+     * 
+     * @param s
+     *            the string.
+     * @return 1 if the string is made of Latin-1 characters only, 2 otherwise.
+     */
+    private static int getBytesPerChar(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                return 2;
+            }
+        }
+        return 1;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return "size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount()
+                + ", savedBytes=" + getSavedBytes();
+    }
+
+    /**
+     * A pooled string and its reference mark.
+     */
+    private static class Entry {
+
+        /** The canonical string. */
+        final String value;
+
+        /** Whether the string has been looked up since the eviction sweep last passed over it. */
+        volatile boolean referenced;
+
+        /**
+         * Constructs a new entry.
+         * 
+         * @param value
+         *            the canonical string.
+         */
+        Entry(String value) {
+            this.value = value;
+        }
+
+    }
+
+}
@@ -3,6 +3,7 @@ package com.wbug.data;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.Timestamp;
@@ -13,14 +14,16 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.math.NumberUtils;
 import org.dom4j.Document;
+import org.dom4j.DocumentFactory;
 import org.dom4j.Element;
 
 /**
@@ -33,10 +36,58 @@ public class WeatherBugDataUtils {
      */
     private static final Class[] ELEM_CLASS_ARRAY = new Class[] { Element.class };
 
+    /** The namespace URI of the WeatherBug elements. */
+    public static final String AWS_NAMESPACE_URI = "http://www.aws.com/aws";
+
+    /**
+     * The document factory used to parse WeatherBug responses. The <i>aws</i> prefix is bound once, here, so that XPath
+     * expressions evaluated on the created nodes can use it without touching the shared <code>DocumentFactory.getInstance()</code>.
+     */
+    private static final DocumentFactory DOCUMENT_FACTORY = createDocumentFactory();
+
+    /** The largest magnitude formatted by {@link #appendCoordinate(StringBuffer, double)} without <code>DecimalFormat</code>. */
+    private static final double MAX_FIXED_POINT = 1e13;
+
+    /** The date formats of the current thread, keyed by pattern. */
+    private static final ThreadLocal DATE_FORMATS = new ThreadLocal() {
+        protected Object initialValue() {
+            return new HashMap();
+        }
+    };
+
+    /** The number formats of the current thread, keyed by pattern. */
+    private static final ThreadLocal NUMBER_FORMATS = new ThreadLocal() {
+        protected Object initialValue() {
+            return new HashMap();
+        }
+    };
+
     /** Private constructor (don't instantiate). */
     private WeatherBugDataUtils() {
     }
 
+    /**
+     * Creates the document factory used to parse WeatherBug responses.
+     * 
+     * @return a new document factory with the <i>aws</i> namespace prefix bound.
+     */
+    private static DocumentFactory createDocumentFactory() {
+        DocumentFactory factory = new DocumentFactory();
+        Map nsURIs = new HashMap();
+        nsURIs.put("aws", AWS_NAMESPACE_URI);
+        factory.setXPathNamespaceURIs(nsURIs);
+        return factory;
+    }
+
+    /**
+     * Returns the document factory to be used when parsing WeatherBug responses. The factory is shared and must not be reconfigured.
+     * 
+     * @return the document factory.
+     */
+    public static DocumentFactory getDocumentFactory() {
+        return DOCUMENT_FACTORY;
+    }
+
     /**
      * Extracts a string value from a XML element.
      * 
@@ -50,6 +101,38 @@ public class WeatherBugDataUtils {
         return elem.valueOf(path);
     }
 
+    /**
+     * Extracts a string value from a XML element and returns its instance from the shared string pool. Used for the values
+     * repeated across many data objects, such as place names.
+     * 
+     * @param elem
+     *            the element whose string value must be returned.
+     * @param path
+     *            the XPath to be used to locate the value.
+     * @return the extracted string value, shared with equal values.
+     * @see StringPool#getShared()
+     */
+    public static String getPooledString(Element elem, String path) {
+        return getPooledString(elem, path, WeatherBugDataUtils.class);
+    }
+
+    /**
+     * Extracts a string value from a XML element and returns its instance from the shared string pool, accounting for the memory
+     * saved on behalf of a data class.
+     * 
+     * @param elem
+     *            the element whose string value must be returned.
+     * @param path
+     *            the XPath to be used to locate the value.
+     * @param owner
+     *            the data class holding the value.
+     * @return the extracted string value, shared with equal values.
+     * @see StringPool#pool(String, Class)
+     */
+    public static String getPooledString(Element elem, String path, Class owner) {
+        return StringPool.getShared().pool(getString(elem, path), owner);
+    }
+
     /**
      * Extracts a units string value from a XML element.
      * 
@@ -57,14 +140,15 @@ public class WeatherBugDataUtils {
      *            the element whose units string value must be returned.
      * @param path
      *            the XPath to be used to locate the value.
-     * @return the extracted units string value.
+     * @return the extracted units string value, shared with equal values. The memory saved is accounted for on behalf of this
+     *         class, as the units are shared by all the data classes.
      */
     public static String getUnits(Element elem, String path) {
         String units =  fixDegrees(elem.valueOf(path));
         if ("km".equals(units)) {
             units = "km/h";
         }
-        return units;
+        return StringPool.getShared().pool(units, WeatherBugDataUtils.class);
     }
 
     /**
@@ -90,11 +174,12 @@ public class WeatherBugDataUtils {
      * @return the extracted integer value.
      */
     public static int getInt(Element elem, String path, int defaultValue) {
-        return NumberUtils.toInt(elem.valueOf(path), defaultValue);
+        return DecimalScanner.parseInt(elem.valueOf(path), defaultValue);
     }
 
     /**
-     * Extracts a big decimal value from a XML element.
+     * Extracts a big decimal value from a XML element. Absent values (empty, <i>N/A</i>...) are detected by
+     * {@link DecimalScanner} without throwing exceptions.
      * 
      * @param elem
      *            the element whose decimal value must be returned.
@@ -106,11 +191,46 @@ public class WeatherBugDataUtils {
      * @return the extracted integer value.
      */
     public static BigDecimal getBigDecimal(Element elem, String path, BigDecimal defaultValue) {
-        try {
-            return new BigDecimal(elem.valueOf(path));
-        } catch (NumberFormatException e) {
+        String value = elem.valueOf(path);
+        long packed = DecimalScanner.parse(value);
+        if (packed == DecimalScanner.MISSING) {
+            return defaultValue;
+        }
+        if (packed == DecimalScanner.UNSUPPORTED) {
+            try {
+                return new BigDecimal(value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return DecimalScanner.toBigDecimal(packed);
+    }
+
+    /**
+     * Extracts a double value from a XML element, without building a big decimal.
+     * 
+     * @param elem
+     *            the element whose decimal value must be returned.
+     * @param path
+     *            the XPath to be used to locate the value.
+     * @param defaultValue
+     *            the default value to be returned if the string value located through <i>path</i> is not a number.
+     * @return the extracted double value.
+     */
+    public static double getDouble(Element elem, String path, double defaultValue) {
+        String value = elem.valueOf(path);
+        long packed = DecimalScanner.parse(value);
+        if (packed == DecimalScanner.MISSING) {
             return defaultValue;
         }
+        if (packed == DecimalScanner.UNSUPPORTED) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return DecimalScanner.toDouble(packed);
     }
 
     /**
@@ -208,6 +328,47 @@ public class WeatherBugDataUtils {
      * @return a list of <i>dataClass</i> objects.
      */
     public static List bind(Element elem, String path, Class dataClass) {
+        return bind(elem, path, dataClass, null, null);
+    }
+
+    /**
+     * Navigates a XML document through an XPath and, for each encountered element, either reuses a known WeatherBug data object or
+     * creates a new one. Java reflection errors are silently ignored.
+     * 
+     * @param doc
+     *            the XML document being accessed.
+     * @param path
+     *            the XPath used to find specific sub-elements.
+     * @param dataClass
+     *            the class of objects being instantiated (<i>Location</i>, <i>Station</i>, and so on).
+     * @param keyPath
+     *            the XPath evaluated on each sub-element to compute its key within <i>known</i>.
+     * @param known
+     *            the objects already bound, indexed by key (may be <code>null</code>).
+     * @return a list of <i>dataClass</i> objects.
+     */
+    public static List bind(Document doc, String path, Class dataClass, String keyPath, Map known) {
+        return bind(doc.getRootElement(), path, dataClass, keyPath, known);
+    }
+
+    /**
+     * Navigates a XML element through an XPath and, for each encountered element, either reuses a known WeatherBug data object or
+     * creates a new one. Evaluating the key is expected to be much cheaper than binding a whole object. Java reflection errors are
+     * silently ignored.
+     * 
+     * @param elem
+     *            the XML element being accessed.
+     * @param path
+     *            the XPath used to find specific sub-elements.
+     * @param dataClass
+     *            the class of objects being instantiated (<i>Location</i>, <i>Station</i>, and so on).
+     * @param keyPath
+     *            the XPath evaluated on each sub-element to compute its key within <i>known</i>.
+     * @param known
+     *            the objects already bound, indexed by key (may be <code>null</code>).
+     * @return a list of <i>dataClass</i> objects.
+     */
+    public static List bind(Element elem, String path, Class dataClass, String keyPath, Map known) {
         Constructor constr;
         try {
             constr = dataClass.getConstructor(ELEM_CLASS_ARRAY);
@@ -219,6 +380,13 @@ public class WeatherBugDataUtils {
         List resultList = new ArrayList();
         for (Iterator i = elem.selectNodes(path).iterator(); i.hasNext();) {
             Element item = (Element) i.next();
+            if (known != null && !known.isEmpty()) {
+                Object knownObject = known.get(item.valueOf(keyPath));
+                if (knownObject != null) {
+                    resultList.add(knownObject);
+                    continue;
+                }
+            }
             try {
                 resultList.add(constr.newInstance(new Object[] { item }));
             } catch (IllegalArgumentException e) {
@@ -231,7 +399,52 @@ public class WeatherBugDataUtils {
     }
 
     /**
-     * Formats a timestamp into a string.
+     * Navigates a XML element through an XPath and, for each encountered element, creates a specific WeatherBug data object and
+     * passes it to a handler, until the handler asks to stop. Java reflection errors are silently ignored.
+     * 
+     * @param elem
+     *            the XML element being accessed.
+     * @param path
+     *            the XPath used to find specific sub-elements.
+     * @param dataClass
+     *            the class of objects being instantiated (<i>Location</i>, <i>Station</i>, and so on).
+     * @param handler
+     *            the handler of the data objects.
+     * @return the number of objects passed to the handler.
+     */
+    public static int bind(Element elem, String path, Class dataClass, DataObjectHandler handler) {
+        Constructor constr;
+        try {
+            constr = dataClass.getConstructor(ELEM_CLASS_ARRAY);
+        } catch (SecurityException e) {
+            return 0;
+        } catch (NoSuchMethodException e) {
+            return 0;
+        }
+        int count = 0;
+        for (Iterator i = elem.selectNodes(path).iterator(); i.hasNext();) {
+            Object object;
+            try {
+                object = constr.newInstance(new Object[] { i.next() });
+            } catch (IllegalArgumentException e) {
+                continue;
+            } catch (InstantiationException e) {
+                continue;
+            } catch (IllegalAccessException e) {
+                continue;
+            } catch (InvocationTargetException e) {
+                continue;
+            }
+            count++;
+            if (!handler.handle(object)) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Formats a timestamp into a string. The compiled formats are cached per thread and pattern.
      * 
      * @param timestamp
      *            the timestamp being formatted.
@@ -240,11 +453,17 @@ public class WeatherBugDataUtils {
      * @return the formatted string.
      */
     public static String formatTimestamp(Timestamp timestamp, String pattern) {
-        return new SimpleDateFormat(pattern).format(timestamp);
+        Map formats = (Map) DATE_FORMATS.get();
+        SimpleDateFormat format = (SimpleDateFormat) formats.get(pattern);
+        if (format == null) {
+            format = new SimpleDateFormat(pattern);
+            formats.put(pattern, format);
+        }
+        return format.format(timestamp);
     }
 
     /**
-     * Formats a number into a string.
+     * Formats a number into a string. The compiled formats are cached per thread and pattern.
      * 
      * @param d
      *            the decimal number being formatted.
@@ -253,8 +472,62 @@ public class WeatherBugDataUtils {
      * @return the formatted string.
      */
     public static String formatNumber(double d, String pattern) {
-        DecimalFormat format = new DecimalFormat(pattern, new DecimalFormatSymbols(Locale.US));
+        Map formats = (Map) NUMBER_FORMATS.get();
+        DecimalFormat format = (DecimalFormat) formats.get(pattern);
+        if (format == null) {
+            format = new DecimalFormat(pattern, new DecimalFormatSymbols(Locale.US));
+            formats.put(pattern, format);
+        }
         return format.format(d);
     }
 
+    /**
+     * Formats a coordinate with two decimals, as <code>formatNumber(d, "0.00")</code> does, except that values rounding to zero
+     * are written without sign.
+     * 
+     * @param d
+     *            the latitude or longitude.
+     * @return the formatted string.
+     */
+    public static String formatCoordinate(double d) {
+        return appendCoordinate(new StringBuffer(8), d).toString();
+    }
+
+    /**
+     * Appends a coordinate with two decimals, rounded half-even on its exact binary value as <code>DecimalFormat</code> does,
+     * without allocating. Values rounding to zero are written without sign.
+     * 
+     * @param buffer
+     *            the buffer the coordinate is appended to.
+     * @param d
+     *            the latitude or longitude.
+     * @return the buffer.
+     */
+    public static StringBuffer appendCoordinate(StringBuffer buffer, double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d) || Math.abs(d) >= MAX_FIXED_POINT) {
+            return buffer.append(formatNumber(d, "0.00"));
+        }
+        double scaled = Math.abs(d) * 100;
+        double fraction = scaled - Math.floor(scaled);
+        long cents;
+        if (Math.abs(fraction - 0.5) > 1e-6) {
+            cents = (long) Math.floor(scaled + 0.5);
+        } else {
+            // too close to a tie for the product to be trusted: round the exact value
+            cents = new BigDecimal(Math.abs(d)).setScale(2, RoundingMode.HALF_EVEN).unscaledValue().longValue();
+        }
+        if (cents == 0) {
+            return buffer.append("0.00");
+        }
+        if (d < 0) {
+            buffer.append('-');
+        }
+        buffer.append(cents / 100).append('.');
+        int remainder = (int) (cents % 100);
+        if (remainder < 10) {
+            buffer.append('0');
+        }
+        return buffer.append(remainder);
+    }
+
 }
@@ -0,0 +1,34 @@
+package com.wbug.data;
+
+import java.io.InputStream;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.xml.sax.XMLFilter;
+
+/**
+ * Parses the WeatherBug responses into dom4j documents built by the factory of {@link WeatherBugDataUtils#getDocumentFactory()}.
+ * <p>
+ * Implementations must be thread-safe, must reuse their underlying parsers across responses rather than create one per response,
+ * and must not resolve DTDs nor external entities.
+ * 
+ * @see SaxXmlParser
+ * @see StaxXmlParser
+ */
+public interface XmlParser {
+
+    /**
+     * Parses a response.
+     * 
+     * @param in
+     *            the response body, encoded in UTF-8.
+     * @param filter
+     *            the SAX filter the parsing events go through before the document is built (may be <code>null</code>); it must
+     *            also implement <code>ContentHandler</code>, as <code>XMLFilterImpl</code> does.
+     * @return the resulting XML document.
+     * @throws DocumentException
+     *             if the response cannot be parsed.
+     */
+    Document parse(InputStream in, XMLFilter filter) throws DocumentException;
+
+}
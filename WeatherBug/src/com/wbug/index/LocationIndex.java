@@ -0,0 +1,525 @@
+package com.wbug.index;
+
+import java.io.InputStream;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+
+import com.wbug.WeatherBugService;
+import com.wbug.WeatherBugServiceException;
+import com.wbug.data.Location;
+import com.wbug.data.SaxXmlParser;
+import com.wbug.data.WeatherBugDataUtils;
+import com.wbug.data.XmlParser;
+
+/**
+ * A local index of locations answering the searches of {@link WeatherBugService#getLocationList(String)} in-process, typically for
+ * autocompletion.
+ * <p>
+ * Locations are indexed by city name, by city name followed by state name, and by ZIP code, in a radix (compressed) trie of
+ * normalized keys (lower case, without accents or punctuation). Searches match key prefixes and tolerate typos: up to one edit
+ * for queries of 3 to 5 characters and up to two edits for longer ones. Results are ranked by number of edits, then by length
+ * of the matched key (so that exact names come before longer names sharing the same prefix), then by city name.
+ * <p>
+ * The index is populated from previously fetched locations or harvested <i>getLocationsXML</i> responses, and {@link #search(
+ * WeatherBugService, String, int)} only calls the service when the index has no match, adding the returned locations to the
+ * index. Instances are thread-safe.
+ */
+public class LocationIndex {
+
+    /** The XPath of the locations in a <i>getLocationsXML</i> response. */
+    private static final String LOCATIONS_PATH = "aws:locations/aws:location";
+
+    /** The parser of the harvested responses, hardened against DTDs and external entities. */
+    private static final XmlParser DEFAULT_PARSER = new SaxXmlParser();
+
+    /** The indexed locations; their position is their identifier in the trie. */
+    private final List locations = new ArrayList();
+
+    /** The identifiers of the indexed locations. */
+    private final Map locationIds = new HashMap();
+
+    /** The root of the trie. */
+    private final Node root = new Node("");
+
+    /** The lock guarding the trie. */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Returns the number of indexed locations.
+     * 
+     * @return the number of locations.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return locations.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds locations to the index. Locations already indexed (same ZIP code or city code) are ignored.
+     * 
+     * @param newLocations
+     *            the locations being added.
+     */
+    public void addAll(Location[] newLocations) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < newLocations.length; i++) {
+                add(newLocations[i]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds the locations listed in a <i>getLocationsXML</i> response.
+     * 
+     * @param doc
+     *            the response document.
+     */
+    public void addAll(Document doc) {
+        List bound = WeatherBugDataUtils.bind(doc, LOCATIONS_PATH, Location.class);
+        addAll((Location[]) bound.toArray(new Location[bound.size()]));
+    }
+
+    /**
+     * Adds the locations listed in a harvested <i>getLocationsXML</i> response, parsed with a {@link SaxXmlParser}.
+     * 
+     * @param in
+     *            the stream of the XML response, encoded in UTF-8.
+     * @throws DocumentException
+     *             if the response cannot be parsed.
+     */
+    public void addAll(InputStream in) throws DocumentException {
+        addAll(in, DEFAULT_PARSER);
+    }
+
+    /**
+     * Adds the locations listed in a harvested <i>getLocationsXML</i> response.
+     * 
+     * @param in
+     *            the stream of the XML response, encoded in UTF-8.
+     * @param parser
+     *            the XML parser (for instance {@link WeatherBugService#getXmlParser()}).
+     * @throws DocumentException
+     *             if the response cannot be parsed.
+     */
+    public void addAll(InputStream in, XmlParser parser) throws DocumentException {
+        addAll(parser.parse(in, null));
+    }
+
+    /**
+     * Searches the index.
+     * 
+     * @param query
+     *            the search string (a city name prefix, optionally followed by a state name, or a ZIP code prefix).
+     * @param limit
+     *            the maximum number of results.
+     * @return the matching locations, best match first.
+     */
+    public Location[] search(String query, int limit) {
+        String key = normalize(query);
+        if (key.length() == 0 || limit <= 0) {
+            return new Location[0];
+        }
+        Map matches = new HashMap();
+        lock.readLock().lock();
+        try {
+            int maxEdits = (key.length() < 3) ? 0 : (key.length() <= 5) ? 1 : 2;
+            int[] row = new int[key.length() + 1];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = i;
+            }
+            search(root, 0, key, row, maxEdits, matches, limit);
+            Match[] ranked = (Match[]) matches.values().toArray(new Match[matches.size()]);
+            Arrays.sort(ranked, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    return ((Match) o1).compareTo((Match) o2);
+                }
+            });
+            Location[] result = new Location[Math.min(limit, ranked.length)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = ranked[i].location;
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the index, falling back to the service when the index has no match. The locations returned by the service are added
+     * to the index.
+     * 
+     * @param service
+     *            the service to be called on misses.
+     * @param query
+     *            the search string.
+     * @param limit
+     *            the maximum number of results.
+     * @return the matching locations, best match first.
+     * @throws WeatherBugServiceException
+     *             if an error occurred calling the service.
+     */
+    public Location[] search(WeatherBugService service, String query, int limit) throws WeatherBugServiceException {
+        Location[] result = search(query, limit);
+        if (result.length > 0) {
+            return result;
+        }
+        Location[] fetched = service.getLocationList(query);
+        addAll(fetched);
+        if (fetched.length <= limit) {
+            return fetched;
+        }
+        Location[] truncated = new Location[limit];
+        System.arraycopy(fetched, 0, truncated, 0, limit);
+        return truncated;
+    }
+
+    /**
+     * Normalizes a key or query: lower case, accents removed, punctuation replaced by spaces and blanks collapsed.
+     * 
+     * @param s
+     *            the string being normalized.
+     * @return the normalized string.
+     */
+    static String normalize(String s) {
+        if (s == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuffer key = new StringBuffer(decomposed.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && key.length() > 0) {
+                    key.append(' ');
+                }
+                pendingSpace = false;
+                key.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Adds a location to the index (the write lock must be held).
+     * 
+     * @param location
+     *            the location being added.
+     */
+    private void add(Location location) {
+        if (locationIds.containsKey(location)) {
+            return;
+        }
+        int id = locations.size();
+        locations.add(location);
+        locationIds.put(location, Integer.valueOf(id));
+        String city = normalize(location.getCityName());
+        if (city.length() > 0) {
+            insert(city, id);
+            String state = normalize(location.getStateName());
+            if (state.length() > 0) {
+                insert(city + ' ' + state, id);
+            }
+        }
+        if (location.getCityType() == Location.US_CITY_TYPE && location.getZipCode() > 0) {
+            String zip = Integer.toString(location.getZipCode());
+            insert("00000".substring(Math.min(5, zip.length())) + zip, id);
+        }
+    }
+
+    /**
+     * Inserts a key into the trie.
+     * 
+     * @param key
+     *            the normalized key.
+     * @param id
+     *            the location identifier.
+     */
+    private void insert(String key, int id) {
+        Node node = root;
+        int pos = 0;
+        while (pos < key.length()) {
+            int index = node.findChild(key.charAt(pos));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(pos));
+                node.insertChild(-index - 1, leaf);
+                node = leaf;
+                break;
+            }
+            Node child = node.children[index];
+            int common = 1;
+            while (common < child.label.length() && pos + common < key.length()
+                    && child.label.charAt(common) == key.charAt(pos + common)) {
+                common++;
+            }
+            if (common < child.label.length()) {
+                Node split = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                split.children = new Node[] { child };
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            pos += common;
+        }
+        node.addId(id);
+    }
+
+    /**
+     * Recursively matches the children of a node against the query, computing one row of the edit-distance matrix per key
+     * character. When the whole query has been matched within the allowed edits, the subtree is collected as prefix matches; the
+     * search goes on deeper only while a closer match is still possible.
+     * 
+     * @param node
+     *            the current node.
+     * @param depth
+     *            the length of the key leading to the node.
+     * @param query
+     *            the normalized query.
+     * @param row
+     *            the edit-distance row of the key leading to the node.
+     * @param maxEdits
+     *            the maximum number of edits.
+     * @param matches
+     *            the collected matches, keyed by location identifier.
+     * @param limit
+     *            the maximum number of results.
+     */
+    private void search(Node node, int depth, String query, int[] row, int maxEdits, Map matches, int limit) {
+        int n = query.length();
+        for (int c = 0; c < node.children.length; c++) {
+            Node child = node.children[c];
+            int[] current = row;
+            boolean matched = false;
+            boolean pruned = false;
+            int length = depth;
+            for (int i = 0; i < child.label.length(); i++) {
+                char ch = child.label.charAt(i);
+                int[] next = new int[n + 1];
+                next[0] = current[0] + 1;
+                int min = next[0];
+                for (int j = 1; j <= n; j++) {
+                    int cost = (query.charAt(j - 1) == ch) ? 0 : 1;
+                    next[j] = Math.min(Math.min(next[j - 1] + 1, current[j] + 1), current[j - 1] + cost);
+                    min = Math.min(min, next[j]);
+                }
+                current = next;
+                length++;
+                if (current[n] <= maxEdits) {
+                    collect(child, length + child.label.length() - i - 1, current[n], matches, limit);
+                    if (current[n] == min) {
+                        // longer keys cannot match with fewer edits
+                        matched = true;
+                        break;
+                    }
+                }
+                if (min > maxEdits) {
+                    pruned = true;
+                    break;
+                }
+            }
+            if (!matched && !pruned) {
+                search(child, length, query, current, maxEdits, matches, limit);
+            }
+        }
+    }
+
+    /**
+     * Collects the locations of a subtree in breadth-first order (shortest keys first).
+     * 
+     * @param node
+     *            the subtree root.
+     * @param depth
+     *            the length of the key leading to the subtree root.
+     * @param edits
+     *            the number of edits of the match.
+     * @param matches
+     *            the collected matches, keyed by location identifier.
+     * @param limit
+     *            the maximum number of results.
+     */
+    private void collect(Node node, int depth, int edits, Map matches, int limit) {
+        // collecting more than the limit lets the ranking pick the best among equally long keys
+        int max = matches.size() + limit * 4;
+        LinkedList queue = new LinkedList();
+        LinkedList depths = new LinkedList();
+        queue.add(node);
+        depths.add(Integer.valueOf(depth));
+        while (!queue.isEmpty() && matches.size() < max) {
+            Node current = (Node) queue.removeFirst();
+            int currentDepth = ((Integer) depths.removeFirst()).intValue();
+            for (int i = 0; i < current.idCount; i++) {
+                Integer id = Integer.valueOf(current.ids[i]);
+                Match match = (Match) matches.get(id);
+                if (match == null || match.edits > edits || (match.edits == edits && match.keyLength > currentDepth)) {
+                    matches.put(id, new Match((Location) locations.get(current.ids[i]), edits, currentDepth));
+                }
+            }
+            for (int i = 0; i < current.children.length; i++) {
+                queue.add(current.children[i]);
+                depths.add(Integer.valueOf(currentDepth + current.children[i].label.length()));
+            }
+        }
+    }
+
+    /**
+     * A trie node.
+     */
+    private static class Node {
+
+        /** An empty array of children. */
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        /** The label of the edge leading to this node. */
+        String label;
+
+        /** The children, sorted by the first character of their label. */
+        Node[] children = NO_CHILDREN;
+
+        /** The identifiers of the locations whose key ends at this node. */
+        int[] ids;
+
+        /** The number of identifiers. */
+        int idCount;
+
+        /**
+         * Constructs a new node.
+         * 
+         * @param label
+         *            the label of the edge leading to this node.
+         */
+        Node(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Finds the child whose label starts with a character.
+         * 
+         * @param c
+         *            the character.
+         * @return the child index, or <code>-(insertion point) - 1</code> if there is no such child.
+         */
+        int findChild(char c) {
+            int low = 0;
+            int high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char midChar = children[mid].label.charAt(0);
+                if (midChar < c) {
+                    low = mid + 1;
+                } else if (midChar > c) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        /**
+         * Inserts a child.
+         * 
+         * @param index
+         *            the insertion index.
+         * @param child
+         *            the child.
+         */
+        void insertChild(int index, Node child) {
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newChildren[index] = child;
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            children = newChildren;
+        }
+
+        /**
+         * Adds a location identifier.
+         * 
+         * @param id
+         *            the location identifier.
+         */
+        void addId(int id) {
+            if (ids == null) {
+                ids = new int[1];
+            } else if (idCount == ids.length) {
+                int[] newIds = new int[idCount * 2];
+                System.arraycopy(ids, 0, newIds, 0, idCount);
+                ids = newIds;
+            }
+            ids[idCount++] = id;
+        }
+
+    }
+
+    /**
+     * A matching location with its ranking criteria.
+     */
+    private static class Match implements Comparable {
+
+        /** The location. */
+        final Location location;
+
+        /** The number of edits. */
+        final int edits;
+
+        /** The length of the matched key. */
+        final int keyLength;
+
+        /**
+         * Constructs a new match.
+         * 
+         * @param location
+         *            the location.
+         * @param edits
+         *            the number of edits.
+         * @param keyLength
+         *            the length of the matched key.
+         */
+        Match(Location location, int edits, int keyLength) {
+            this.location = location;
+            this.edits = edits;
+            this.keyLength = keyLength;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Comparable#compareTo(java.lang.Object)
+         */
+        public int compareTo(Object obj) {
+            Match other = (Match) obj;
+            if (edits != other.edits) {
+                return edits - other.edits;
+            }
+            if (keyLength != other.keyLength) {
+                return keyLength - other.keyLength;
+            }
+            return String.valueOf(location.getCityName()).compareTo(String.valueOf(other.location.getCityName()));
+        }
+
+    }
+
+}
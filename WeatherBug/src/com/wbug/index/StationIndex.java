@@ -0,0 +1,626 @@
+package com.wbug.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.wbug.data.Station;
+
+/**
+ * An in-memory spatial index of weather stations, answering nearest-station and radius queries without calling the service.
+ * <p>
+ * Stations are projected on the unit sphere and stored in a balanced 3-d tree, so that distances are great-circle distances and
+ * queries behave the same near the poles and the antimeridian. The tree is immutable: loading new stations builds a new tree
+ * which replaces the current one atomically, hence queries never block and can run concurrently with loads. Stations without
+ * coordinates are ignored; stations are identified by their identifier, later loads replacing earlier entries.
+ * <p>
+ * The indexed stations can be saved to a snapshot file and loaded back, so that a restarted process does not need to query the
+ * service to rebuild the index.
+ */
+public class StationIndex {
+
+    /** The mean Earth radius (in kilometers). */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /** The magic number identifying snapshot files. */
+    private static final int SNAPSHOT_MAGIC = 0x57425358; // "WBSX"
+
+    /** The snapshot file format version. */
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /** The current tree. */
+    private volatile Tree tree = new Tree(new Station[0]);
+
+    /**
+     * Returns the number of indexed stations.
+     * 
+     * @return the number of stations.
+     */
+    public int size() {
+        return tree.stations.length;
+    }
+
+    /**
+     * Adds stations to the index, typically the result of previous <i>getStationListBy*</i> calls. Stations already indexed are
+     * replaced.
+     * 
+     * @param stations
+     *            the stations being added.
+     */
+    public synchronized void addAll(Station[] stations) {
+        Map byId = new LinkedHashMap();
+        Station[] current = tree.stations;
+        for (int i = 0; i < current.length; i++) {
+            byId.put(current[i].getId(), current[i]);
+        }
+        for (int i = 0; i < stations.length; i++) {
+            if (stations[i].getLatitude() != null && stations[i].getLongitude() != null) {
+                byId.put(stations[i].getId(), stations[i]);
+            }
+        }
+        tree = new Tree(toArray(byId.values()));
+    }
+
+    /**
+     * Removes all the stations from the index.
+     */
+    public synchronized void clear() {
+        tree = new Tree(new Station[0]);
+    }
+
+    /**
+     * Returns the stations nearest to a location, closest first.
+     * <p>
+     * Note that the <i>distance</i> property of the returned stations is the one reported when they were fetched, not the distance
+     * from the query location (see {@link #distanceKm(double, double, Station)}).
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param k
+     *            the maximum number of stations to return.
+     * @return the nearest stations.
+     * @throws IllegalArgumentException
+     *             if <i>k</i> is negative.
+     */
+    public Station[] nearest(double latitude, double longitude, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Invalid number of stations: " + k);
+        }
+        Tree t = tree;
+        Neighbors neighbors = new Neighbors(Math.min(k, t.stations.length), Double.POSITIVE_INFINITY);
+        if (neighbors.capacity > 0) {
+            double[] q = toUnitVector(latitude, longitude);
+            t.search(0, t.stations.length, q[0], q[1], q[2], neighbors);
+        }
+        return neighbors.toSortedArray(t.stations);
+    }
+
+    /**
+     * Returns the stations within a given distance of a location, closest first.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param radiusKm
+     *            the maximum great-circle distance (in kilometers).
+     * @return the stations within the radius.
+     */
+    public Station[] withinRadius(double latitude, double longitude, double radiusKm) {
+        Tree t = tree;
+        double angle = Math.min(radiusKm / EARTH_RADIUS_KM, Math.PI);
+        double chord = 2 * Math.sin(angle / 2);
+        Neighbors neighbors = new Neighbors(-1, chord * chord * (1 + 1e-12));
+        double[] q = toUnitVector(latitude, longitude);
+        t.search(0, t.stations.length, q[0], q[1], q[2], neighbors);
+        return neighbors.toSortedArray(t.stations);
+    }
+
+    /**
+     * Computes the great-circle distance between a location and a station.
+     * 
+     * @param latitude
+     *            the latitude.
+     * @param longitude
+     *            the longitude.
+     * @param station
+     *            the station.
+     * @return the distance (in kilometers).
+     */
+    public static double distanceKm(double latitude, double longitude, Station station) {
+        double[] p = toUnitVector(latitude, longitude);
+        double[] s = toUnitVector(station.getLatitude().doubleValue(), station.getLongitude().doubleValue());
+        double dx = p[0] - s[0];
+        double dy = p[1] - s[1];
+        double dz = p[2] - s[2];
+        double chord = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        return 2 * Math.asin(Math.min(1, chord / 2)) * EARTH_RADIUS_KM;
+    }
+
+    /**
+     * Saves the indexed stations to a snapshot file. The snapshot is written to a temporary file first, then moved over the
+     * previous one atomically, so that an interrupted save leaves either the previous or the new snapshot behind.
+     * 
+     * @param file
+     *            the snapshot file.
+     * @throws IOException
+     *             if the file cannot be written.
+     */
+    public void save(File file) throws IOException {
+        Station[] stations = tree.stations;
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(stations.length);
+            for (int i = 0; i < stations.length; i++) {
+                Station s = stations[i];
+                writeString(out, s.getId());
+                writeString(out, s.getName());
+                writeString(out, s.getCity());
+                writeString(out, s.getState());
+                writeString(out, s.getCountry());
+                out.writeInt(s.getZipCode());
+                out.writeInt(s.getCityCode());
+                writeString(out, (s.getDistance() != null) ? s.getDistance().toString() : null);
+                writeString(out, s.getUnit());
+                writeString(out, s.getLatitude().toString());
+                writeString(out, s.getLongitude().toString());
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), file.toPath(), new CopyOption[] { StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING });
+    }
+
+    /**
+     * Loads the stations of a snapshot file into the index.
+     * 
+     * @param file
+     *            the snapshot file.
+     * @throws IOException
+     *             if the file cannot be read or is not a valid snapshot.
+     */
+    public void load(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        Station[] stations;
+        try {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a station index snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported station index snapshot version: " + version);
+            }
+            stations = new Station[in.readInt()];
+            for (int i = 0; i < stations.length; i++) {
+                String id = readString(in);
+                String name = readString(in);
+                String city = readString(in);
+                String state = readString(in);
+                String country = readString(in);
+                int zipCode = in.readInt();
+                int cityCode = in.readInt();
+                String distance = readString(in);
+                String unit = readString(in);
+                BigDecimal latitude = new BigDecimal(readString(in));
+                BigDecimal longitude = new BigDecimal(readString(in));
+                stations[i] = new Station(id, name, city, state, country, zipCode, cityCode,
+                        (distance != null) ? new BigDecimal(distance) : null, unit, latitude, longitude);
+            }
+        } finally {
+            in.close();
+        }
+        addAll(stations);
+    }
+
+    /**
+     * Writes a nullable string.
+     * 
+     * @param out
+     *            the output stream.
+     * @param s
+     *            the string (may be <code>null</code>).
+     * @throws IOException
+     *             if the string cannot be written.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    /**
+     * Reads a nullable string.
+     * 
+     * @param in
+     *            the input stream.
+     * @return the string (may be <code>null</code>).
+     * @throws IOException
+     *             if the string cannot be read.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Converts a collection of stations into an array.
+     * 
+     * @param stations
+     *            the stations.
+     * @return the array of stations.
+     */
+    private static Station[] toArray(Collection stations) {
+        return (Station[]) stations.toArray(new Station[stations.size()]);
+    }
+
+    /**
+     * Projects a location on the unit sphere.
+     * 
+     * @param latitude
+     *            the latitude (in degrees).
+     * @param longitude
+     *            the longitude (in degrees).
+     * @return the <i>x</i>, <i>y</i> and <i>z</i> coordinates.
+     */
+    private static double[] toUnitVector(double latitude, double longitude) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        return new double[] { cosLat * Math.cos(lon), cosLat * Math.sin(lon), Math.sin(lat) };
+    }
+
+    /**
+     * An immutable, implicit 3-d tree: the node of the range <code>[lo, hi)</code> is stored at <code>(lo + hi) / 2</code>, its
+     * left subtree in <code>[lo, mid)</code> and its right subtree in <code>(mid, hi)</code>.
+     */
+    private static class Tree {
+
+        /** The stations, in tree order. */
+        final Station[] stations;
+
+        /** The unit vectors of the stations (three coordinates per station), in tree order. */
+        final double[] coords;
+
+        /** The split axis of each node. */
+        final byte[] axes;
+
+        /**
+         * Builds a new tree.
+         * 
+         * @param input
+         *            the stations (with coordinates).
+         */
+        Tree(Station[] input) {
+            int n = input.length;
+            double[] points = new double[n * 3];
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                double[] v = toUnitVector(input[i].getLatitude().doubleValue(), input[i].getLongitude().doubleValue());
+                System.arraycopy(v, 0, points, i * 3, 3);
+                order[i] = i;
+            }
+            axes = new byte[n];
+            build(order, points, 0, n);
+            stations = new Station[n];
+            coords = new double[n * 3];
+            for (int i = 0; i < n; i++) {
+                stations[i] = input[order[i]];
+                System.arraycopy(points, order[i] * 3, coords, i * 3, 3);
+            }
+        }
+
+        /**
+         * Recursively arranges a range of points in tree order, splitting on the axis of largest spread.
+         * 
+         * @param order
+         *            the point indexes being arranged.
+         * @param points
+         *            the point coordinates.
+         * @param lo
+         *            the start of the range (inclusive).
+         * @param hi
+         *            the end of the range (exclusive).
+         */
+        private void build(int[] order, double[] points, int lo, int hi) {
+            if (hi - lo < 2) {
+                return;
+            }
+            int axis = 0;
+            double maxSpread = -1;
+            for (int a = 0; a < 3; a++) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int i = lo; i < hi; i++) {
+                    double c = points[order[i] * 3 + a];
+                    min = Math.min(min, c);
+                    max = Math.max(max, c);
+                }
+                if (max - min > maxSpread) {
+                    maxSpread = max - min;
+                    axis = a;
+                }
+            }
+            int mid = (lo + hi) >>> 1;
+            select(order, points, axis, lo, hi - 1, mid);
+            axes[mid] = (byte) axis;
+            build(order, points, lo, mid);
+            build(order, points, mid + 1, hi);
+        }
+
+        /**
+         * Partially sorts a range of points along an axis so that the k-th point is in its final position (quickselect).
+         * 
+         * @param order
+         *            the point indexes.
+         * @param points
+         *            the point coordinates.
+         * @param axis
+         *            the axis.
+         * @param left
+         *            the start of the range (inclusive).
+         * @param right
+         *            the end of the range (inclusive).
+         * @param k
+         *            the position being selected.
+         */
+        private static void select(int[] order, double[] points, int axis, int left, int right, int k) {
+            while (right > left) {
+                double pivot = points[order[(left + right) >>> 1] * 3 + axis];
+                int i = left;
+                int j = right;
+                while (i <= j) {
+                    while (points[order[i] * 3 + axis] < pivot) {
+                        i++;
+                    }
+                    while (points[order[j] * 3 + axis] > pivot) {
+                        j--;
+                    }
+                    if (i <= j) {
+                        int tmp = order[i];
+                        order[i] = order[j];
+                        order[j] = tmp;
+                        i++;
+                        j--;
+                    }
+                }
+                if (k <= j) {
+                    right = j;
+                } else if (k >= i) {
+                    left = i;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Recursively collects the nodes of a range matching a query.
+         * 
+         * @param lo
+         *            the start of the range (inclusive).
+         * @param hi
+         *            the end of the range (exclusive).
+         * @param x
+         *            the <i>x</i> coordinate of the query point.
+         * @param y
+         *            the <i>y</i> coordinate of the query point.
+         * @param z
+         *            the <i>z</i> coordinate of the query point.
+         * @param neighbors
+         *            the collected neighbors.
+         */
+        void search(int lo, int hi, double x, double y, double z, Neighbors neighbors) {
+            if (lo >= hi) {
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            double dx = coords[mid * 3] - x;
+            double dy = coords[mid * 3 + 1] - y;
+            double dz = coords[mid * 3 + 2] - z;
+            neighbors.offer(mid, dx * dx + dy * dy + dz * dz);
+            int axis = axes[mid];
+            double diff = ((axis == 0) ? x : (axis == 1) ? y : z) - coords[mid * 3 + axis];
+            if (diff < 0) {
+                search(lo, mid, x, y, z, neighbors);
+                if (diff * diff <= neighbors.bound()) {
+                    search(mid + 1, hi, x, y, z, neighbors);
+                }
+            } else {
+                search(mid + 1, hi, x, y, z, neighbors);
+                if (diff * diff <= neighbors.bound()) {
+                    search(lo, mid, x, y, z, neighbors);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The neighbors collected by a query: either the <i>k</i> nearest nodes (bounded max-heap) or all the nodes within a maximum
+     * squared distance.
+     */
+    private static class Neighbors {
+
+        /** The maximum number of neighbors (<code>-1</code> for no limit). */
+        final int capacity;
+
+        /** The maximum squared distance. */
+        final double maxDistance;
+
+        /** The collected node positions. */
+        int[] nodes;
+
+        /** The squared distances of the collected nodes. */
+        double[] distances;
+
+        /** The number of collected nodes. */
+        int size;
+
+        /**
+         * Constructs a new set of neighbors.
+         * 
+         * @param capacity
+         *            the maximum number of neighbors (<code>-1</code> for no limit).
+         * @param maxDistance
+         *            the maximum squared distance.
+         */
+        Neighbors(int capacity, double maxDistance) {
+            this.capacity = capacity;
+            this.maxDistance = maxDistance;
+            int initial = (capacity >= 0) ? capacity : 16;
+            this.nodes = new int[initial];
+            this.distances = new double[initial];
+        }
+
+        /**
+         * Returns the squared distance beyond which nodes cannot be collected anymore.
+         * 
+         * @return the current bound.
+         */
+        double bound() {
+            if (capacity >= 0 && size == capacity) {
+                return (size > 0) ? distances[0] : -1;
+            }
+            return maxDistance;
+        }
+
+        /**
+         * Offers a node.
+         * 
+         * @param node
+         *            the node position.
+         * @param distance
+         *            the squared distance of the node.
+         */
+        void offer(int node, double distance) {
+            if (distance > maxDistance) {
+                return;
+            }
+            if (capacity < 0) {
+                if (size == nodes.length) {
+                    int[] newNodes = new int[size * 2];
+                    double[] newDistances = new double[size * 2];
+                    System.arraycopy(nodes, 0, newNodes, 0, size);
+                    System.arraycopy(distances, 0, newDistances, 0, size);
+                    nodes = newNodes;
+                    distances = newDistances;
+                }
+                nodes[size] = node;
+                distances[size++] = distance;
+            } else if (size < capacity) {
+                nodes[size] = node;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (capacity > 0 && distance < distances[0]) {
+                nodes[0] = node;
+                distances[0] = distance;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Restores the max-heap order after an insertion.
+         * 
+         * @param i
+         *            the position of the inserted node.
+         */
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (distances[parent] >= distances[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        /**
+         * Restores the max-heap order after the root has been replaced.
+         * 
+         * @param i
+         *            the position of the replaced node.
+         */
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < size && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        /**
+         * Swaps two collected nodes.
+         * 
+         * @param i
+         *            the first position.
+         * @param j
+         *            the second position.
+         */
+        private void swap(int i, int j) {
+            int node = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = node;
+            double distance = distances[i];
+            distances[i] = distances[j];
+            distances[j] = distance;
+        }
+
+        /**
+         * Returns the collected stations, closest first.
+         * 
+         * @param stations
+         *            the stations of the tree, in tree order.
+         * @return the collected stations.
+         */
+        Station[] toSortedArray(Station[] stations) {
+            Integer[] positions = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                positions[i] = Integer.valueOf(i);
+            }
+            Arrays.sort(positions, new Comparator() {
+                public int compare(Object o1, Object o2) {
+                    return Double.compare(distances[((Integer) o1).intValue()], distances[((Integer) o2).intValue()]);
+                }
+            });
+            Station[] result = new Station[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = stations[nodes[positions[i].intValue()]];
+            }
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.wbug.poll;
+
+import java.math.BigDecimal;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.commons.lang.ObjectUtils;
+
+import com.wbug.WeatherBugServiceException;
+import com.wbug.data.LiveCompactWeather;
+import com.wbug.data.LiveWeather;
+import com.wbug.data.LiveWeatherField;
+
+/**
+ * Filters a stream of live weather observations, forwarding only the ones that actually differ from the last observation of the
+ * same station.
+ * <p>
+ * An observation whose observation time equals the one of the last observation is dropped without comparing its fields. Otherwise
+ * the fields are compared one by one (decimals by value, so <code>1.0</code> equals <code>1.00</code>) and, if any field that is
+ * not ignored has changed, a {@link LiveWeatherDelta} is sent to the registered listeners. By default the observation time itself
+ * is ignored, so a new observation reporting the same readings is not forwarded; it still becomes the last observation of the
+ * station, so that its next polls are dropped on their observation time.
+ * <p>
+ * The detector can be registered directly on a {@link StationPoller}; compact live weather polls and failures are ignored.
+ */
+public class ChangeDetector implements StationPollListener {
+
+    /** The fields ignored by default. */
+    private static final int[] DEFAULT_IGNORED_FIELDS = new int[] { LiveWeatherField.OBSERVATION_TIME };
+
+    /** The last observation of each station, keyed by station identifier. */
+    private final ConcurrentMap lastObservations = new ConcurrentHashMap();
+
+    /** The ignored fields, indexed by field. */
+    private final boolean[] ignored = new boolean[LiveWeatherField.COUNT];
+
+    /** The registered listeners. */
+    private final List listeners = new CopyOnWriteArrayList();
+
+    /** Constructs a new change detector ignoring changes to the observation time only. */
+    public ChangeDetector() {
+        this(DEFAULT_IGNORED_FIELDS);
+    }
+
+    /**
+     * Constructs a new change detector.
+     * 
+     * @param ignoredFields
+     *            the fields (see {@link LiveWeatherField}) whose changes alone do not make an observation worth forwarding.
+     */
+    public ChangeDetector(int[] ignoredFields) {
+        for (int i = 0; i < ignoredFields.length; i++) {
+            ignored[ignoredFields[i]] = true;
+        }
+    }
+
+    /**
+     * Registers a listener.
+     * 
+     * @param listener
+     *            the listener being added.
+     */
+    public void addListener(LiveWeatherChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener
+     *            the listener being removed.
+     */
+    public void removeListener(LiveWeatherChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Compares an observation with the last one of the same station and, if it is newer, records it and, if it has changed,
+     * notifies the listeners. Observations without a station identifier (such as projections leaving the station out) are
+     * ignored.
+     * 
+     * @param weather
+     *            the new observation.
+     * @return the changes, or <code>null</code> if the observation has not changed or has no station identifier.
+     */
+    public LiveWeatherDelta update(LiveWeather weather) {
+        String stationId = weather.getStationId();
+        if (stationId == null) {
+            return null;
+        }
+        while (true) {
+            LiveWeather previous = (LiveWeather) lastObservations.get(stationId);
+            LiveWeatherDelta delta;
+            if (previous == null) {
+                int[] all = new int[LiveWeatherField.COUNT];
+                for (int i = 0; i < all.length; i++) {
+                    all[i] = i;
+                }
+                delta = new LiveWeatherDelta(stationId, null, all, weather);
+                if (lastObservations.putIfAbsent(stationId, weather) != null) {
+                    continue;
+                }
+            } else {
+                if (ObjectUtils.equals(previous.getObservationTime(), weather.getObservationTime())) {
+                    return null;
+                }
+                delta = compare(previous, weather);
+                if (!lastObservations.replace(stationId, previous, weather)) {
+                    continue;
+                }
+                if (delta == null) {
+                    return null;
+                }
+            }
+            for (Iterator i = listeners.iterator(); i.hasNext();) {
+                ((LiveWeatherChangeListener) i.next()).liveWeatherChanged(delta);
+            }
+            return delta;
+        }
+    }
+
+    /**
+     * Forgets the last observation of a station, so that its next observation is reported as initial.
+     * 
+     * @param stationId
+     *            the station identifier.
+     */
+    public void reset(String stationId) {
+        lastObservations.remove(stationId);
+    }
+
+    /**
+     * Compares two observations of the same station, made at different times.
+     * 
+     * @param previous
+     *            the previous observation.
+     * @param weather
+     *            the new observation.
+     * @return the changes, or <code>null</code> if no relevant field has changed.
+     */
+    private LiveWeatherDelta compare(LiveWeather previous, LiveWeather weather) {
+        int[] changed = new int[LiveWeatherField.COUNT];
+        int count = 0;
+        boolean relevant = false;
+        for (int field = 0; field < LiveWeatherField.COUNT; field++) {
+            if (!valueEquals(previous.getValue(field), weather.getValue(field))) {
+                changed[count++] = field;
+                relevant |= !ignored[field];
+            }
+        }
+        if (!relevant) {
+            return null;
+        }
+        int[] changedFields = new int[count];
+        System.arraycopy(changed, 0, changedFields, 0, count);
+        return new LiveWeatherDelta(weather.getStationId(), previous.getObservationTime(), changedFields, weather);
+    }
+
+    /**
+     * Compares two field values. Decimals are compared by value and URLs by their string form (<code>URL.equals</code> resolves
+     * host names).
+     * 
+     * @param v1
+     *            the first value.
+     * @param v2
+     *            the second value.
+     * @return <code>true</code> if the values are equal.
+     */
+    private static boolean valueEquals(Object v1, Object v2) {
+        if (v1 == null || v2 == null) {
+            return v1 == v2;
+        } else if (v1 instanceof BigDecimal && v2 instanceof BigDecimal) {
+            return ((BigDecimal) v1).compareTo((BigDecimal) v2) == 0;
+        } else if (v1 instanceof URL && v2 instanceof URL) {
+            return ((URL) v1).toExternalForm().equals(((URL) v2).toExternalForm());
+        } else {
+            return v1.equals(v2);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.poll.StationPollListener#liveWeatherPolled(java.lang.String, com.wbug.data.LiveWeather)
+     */
+    public void liveWeatherPolled(String stationId, LiveWeather weather) {
+        update(weather);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.poll.StationPollListener#liveCompactWeatherPolled(java.lang.String, com.wbug.data.LiveCompactWeather)
+     */
+    public void liveCompactWeatherPolled(String stationId, LiveCompactWeather weather) {
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see com.wbug.poll.StationPollListener#pollFailed(java.lang.String, com.wbug.WeatherBugServiceException)
+     */
+    public void pollFailed(String stationId, WeatherBugServiceException e) {
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.wbug.poll;
+
+/**
+ * Receives the live weather changes detected by a {@link ChangeDetector}.
+ */
+public interface LiveWeatherChangeListener {
+
+    /**
+     * Notifies that the live weather of a station has changed.
+     * 
+     * @param delta
+     *            the changed fields.
+     */
+    void liveWeatherChanged(LiveWeatherDelta delta);
+
+}
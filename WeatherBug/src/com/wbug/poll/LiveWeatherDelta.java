@@ -0,0 +1,145 @@
+package com.wbug.poll;
+
+import java.sql.Timestamp;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+import com.wbug.data.LiveWeather;
+import com.wbug.data.LiveWeatherField;
+
+/**
+ * The difference between two consecutive live weather observations of a station: the set of changed fields and their new values.
+ */
+public class LiveWeatherDelta {
+
+    /** The station identifier. */
+    private final String stationId;
+
+    /** The observation time of the previous observation (<code>null</code> for the first observation). */
+    private final Timestamp previousObservationTime;
+
+    /** The changed fields (see {@link LiveWeatherField}), in ascending order. */
+    private final int[] changedFields;
+
+    /** The new observation. */
+    private final LiveWeather weather;
+
+    /**
+     * Constructs a new delta.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param previousObservationTime
+     *            the observation time of the previous observation (<code>null</code> for the first observation).
+     * @param changedFields
+     *            the changed fields, in ascending order.
+     * @param weather
+     *            the new observation.
+     */
+    LiveWeatherDelta(String stationId, Timestamp previousObservationTime, int[] changedFields, LiveWeather weather) {
+        this.stationId = stationId;
+        this.previousObservationTime = previousObservationTime;
+        this.changedFields = changedFields;
+        this.weather = weather;
+    }
+
+    /**
+     * Returns the station identifier.
+     * 
+     * @return the station identifier.
+     */
+    public String getStationId() {
+        return stationId;
+    }
+
+    /**
+     * Returns the observation time of the previous observation.
+     * 
+     * @return the previous observation time, or <code>null</code> if this is the first observation of the station.
+     */
+    public Timestamp getPreviousObservationTime() {
+        return previousObservationTime;
+    }
+
+    /**
+     * Returns the observation time of the new observation.
+     * 
+     * @return the observation time.
+     */
+    public Timestamp getObservationTime() {
+        return weather.getObservationTime();
+    }
+
+    /**
+     * Indicates whether this is the first observation of the station, in which case all the fields are reported as changed.
+     * 
+     * @return <code>true</code> for the first observation.
+     */
+    public boolean isInitial() {
+        return previousObservationTime == null && changedFields.length == LiveWeatherField.COUNT;
+    }
+
+    /**
+     * Returns the changed fields.
+     * 
+     * @return the changed fields (see {@link LiveWeatherField}), in ascending order.
+     */
+    public int[] getChangedFields() {
+        return changedFields.clone();
+    }
+
+    /**
+     * Indicates whether a field has changed.
+     * 
+     * @param field
+     *            the field (see {@link LiveWeatherField}).
+     * @return <code>true</code> if the field has changed.
+     */
+    public boolean isChanged(int field) {
+        for (int i = 0; i < changedFields.length; i++) {
+            if (changedFields[i] == field) {
+                return true;
+            } else if (changedFields[i] > field) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the new value of a field.
+     * 
+     * @param field
+     *            the field (see {@link LiveWeatherField}).
+     * @return the field value.
+     */
+    public Object getValue(int field) {
+        return weather.getValue(field);
+    }
+
+    /**
+     * Returns the complete new observation, for consumers that need more than the changed fields.
+     * 
+     * @return the new observation.
+     */
+    public LiveWeather getWeather() {
+        return weather;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE);
+        builder.append("stationId", stationId);
+        builder.append("previousObservationTime", previousObservationTime);
+        for (int i = 0; i < changedFields.length; i++) {
+            builder.append(LiveWeatherField.getName(changedFields[i]), weather.getValue(changedFields[i]));
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.wbug.poll;
+
+import com.wbug.WeatherBugServiceException;
+import com.wbug.data.LiveCompactWeather;
+import com.wbug.data.LiveWeather;
+
+/**
+ * Receives the results of the polls performed by a {@link StationPoller}. Methods are invoked from the poller worker threads and
+ * should return quickly.
+ */
+public interface StationPollListener {
+
+    /**
+     * Notifies that the live weather of a watched station has been fetched.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param weather
+     *            the live weather.
+     */
+    void liveWeatherPolled(String stationId, LiveWeather weather);
+
+    /**
+     * Notifies that the live compact weather of a watched station has been fetched.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param weather
+     *            the live compact weather.
+     */
+    void liveCompactWeatherPolled(String stationId, LiveCompactWeather weather);
+
+    /**
+     * Notifies that a poll failed.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param e
+     *            the error that occurred.
+     */
+    void pollFailed(String stationId, WeatherBugServiceException e);
+
+}
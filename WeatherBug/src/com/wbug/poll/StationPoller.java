@@ -0,0 +1,367 @@
+package com.wbug.poll;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.wbug.DaemonThreadFactory;
+import com.wbug.RequestBudget;
+import com.wbug.RequestScheduler;
+import com.wbug.WeatherBugService;
+import com.wbug.WeatherBugServiceException;
+import com.wbug.data.LiveCompactWeather;
+import com.wbug.data.LiveWeather;
+
+/**
+ * Keeps the live weather of a set of watched stations fresh by polling them in the background.
+ * <p>
+ * Each station has its own polling interval; polls are spread over the interval according to the station identifier so that a
+ * large watch list produces a steady request rate instead of bursts. A dispatcher thread takes the stations whose poll is due,
+ * waits for a permit of the global {@link RequestBudget} and hands the request to a pool of worker threads, which deliver the
+ * results to the registered {@link StationPollListener}s. A station is never polled again while its previous poll is in
+ * progress, and a listener throwing an exception does not prevent the others from being notified. Stations can be added and
+ * removed while the poller is running. Polls are issued as {@link RequestScheduler#BACKGROUND} requests.
+ */
+public class StationPoller {
+
+    /** Default number of worker threads. */
+    public static final int DEFAULT_WORKERS = 4;
+
+    /** The service used to fetch the live weather. */
+    private final WeatherBugService service;
+
+    /** The unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units. */
+    private final int unitType;
+
+    /** The global request budget. */
+    private final RequestBudget budget;
+
+    /** The number of worker threads. */
+    private final int workerCount;
+
+    /** The watched stations, keyed by station identifier. */
+    private final Map watches = new ConcurrentHashMap();
+
+    /** The watched stations, ordered by next poll time. */
+    private final DelayQueue queue = new DelayQueue();
+
+    /** The registered listeners. */
+    private final List listeners = new CopyOnWriteArrayList();
+
+    /** The worker threads (<code>null</code> when the poller is stopped). */
+    private ExecutorService workers;
+
+    /** The dispatcher thread (<code>null</code> when the poller is stopped). */
+    private Thread dispatcher;
+
+    /**
+     * Constructs a new poller using the default number of worker threads.
+     * 
+     * @param service
+     *            the service used to fetch the live weather.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @param budget
+     *            the global request budget.
+     */
+    public StationPoller(WeatherBugService service, int unitType, RequestBudget budget) {
+        this(service, unitType, budget, DEFAULT_WORKERS);
+    }
+
+    /**
+     * Constructs a new poller.
+     * 
+     * @param service
+     *            the service used to fetch the live weather.
+     * @param unitType
+     *            the unit type: <code>0</code> for U.S. customary units or <code>1</code> for Metric system units
+     * @param budget
+     *            the global request budget.
+     * @param workerCount
+     *            the number of worker threads performing the requests.
+     */
+    public StationPoller(WeatherBugService service, int unitType, RequestBudget budget, int workerCount) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Invalid number of workers: " + workerCount);
+        }
+        this.service = service;
+        this.unitType = unitType;
+        this.budget = budget;
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Registers a listener.
+     * 
+     * @param listener
+     *            the listener being added.
+     */
+    public void addListener(StationPollListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * 
+     * @param listener
+     *            the listener being removed.
+     */
+    public void removeListener(StationPollListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Adds a station to the watch list, replacing any previous watch on the same station.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param intervalMillis
+     *            the polling interval (in milliseconds).
+     * @param compact
+     *            <code>true</code> to fetch the live compact weather, <code>false</code> to fetch the full live weather.
+     */
+    public void watch(String stationId, long intervalMillis, boolean compact) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Invalid polling interval: " + intervalMillis);
+        }
+        StationWatch watch = new StationWatch(stationId, intervalMillis, compact, System.currentTimeMillis());
+        StationWatch previous = (StationWatch) watches.put(stationId, watch);
+        if (previous != null) {
+            previous.cancel();
+            queue.remove(previous);
+        }
+        queue.add(watch);
+    }
+
+    /**
+     * Removes a station from the watch list. A poll already in progress still completes and is delivered.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @return <code>true</code> if the station was being watched.
+     */
+    public boolean unwatch(String stationId) {
+        StationWatch watch = (StationWatch) watches.remove(stationId);
+        if (watch == null) {
+            return false;
+        }
+        watch.cancel();
+        queue.remove(watch);
+        return true;
+    }
+
+    /**
+     * Returns the number of watched stations.
+     * 
+     * @return the size of the watch list.
+     */
+    public int getWatchCount() {
+        return watches.size();
+    }
+
+    /**
+     * Starts polling. Does nothing if the poller is already running.
+     */
+    public synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        workers = Executors.newFixedThreadPool(workerCount, new DaemonThreadFactory("wbug-poller-worker"));
+        dispatcher = new Thread(new Runnable() {
+            public void run() {
+                dispatch();
+            }
+        }, "wbug-poller-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Stops polling. The watch list is retained, so the poller can be restarted later.
+     */
+    public synchronized void stop() {
+        if (dispatcher == null) {
+            return;
+        }
+        dispatcher.interrupt();
+        // the polls still queued never run: release their watches, or they would never be polled again after a restart
+        for (Iterator i = workers.shutdownNow().iterator(); i.hasNext();) {
+            ((PollTask) i.next()).getWatch().endPoll();
+        }
+        dispatcher = null;
+        workers = null;
+    }
+
+    /**
+     * Dispatcher loop: takes the due stations and submits their polls to the workers, within the request budget. A station whose
+     * previous poll is still in progress is skipped until its next turn, so a slow station never has concurrent polls.
+     */
+    private void dispatch() {
+        ExecutorService pool;
+        synchronized (this) {
+            pool = workers;
+        }
+        while (!Thread.currentThread().isInterrupted()) {
+            StationWatch watch;
+            try {
+                watch = (StationWatch) queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (watch.isCancelled()) {
+                continue;
+            }
+            if (!watch.startPoll()) {
+                requeue(watch);
+                continue;
+            }
+            try {
+                budget.acquire();
+            } catch (InterruptedException e) {
+                // stopped: keep the watch queued for a restart
+                watch.endPoll();
+                if (!watch.isCancelled()) {
+                    queue.add(watch);
+                }
+                return;
+            }
+            requeue(watch);
+            try {
+                pool.execute(new PollTask(watch));
+            } catch (RejectedExecutionException e) {
+                watch.endPoll();
+                return;
+            }
+        }
+    }
+
+    /**
+     * A poll submitted to the workers. The watch is released once the poll ends, or by {@link StationPoller#stop()} if the poll
+     * is dropped before it runs.
+     */
+    private class PollTask implements Runnable {
+
+        /** The watched station. */
+        private final StationWatch watch;
+
+        /**
+         * Constructs a new <code>PollTask</code>.
+         * 
+         * @param watch
+         *            the watched station, already marked as polling.
+         */
+        PollTask(StationWatch watch) {
+            this.watch = watch;
+        }
+
+        /**
+         * Returns the watched station.
+         * 
+         * @return the watch.
+         */
+        StationWatch getWatch() {
+            return watch;
+        }
+
+        /*
+         * (non-Javadoc)
+         * 
+         * @see java.lang.Runnable#run()
+         */
+        public void run() {
+            try {
+                poll(watch);
+            } finally {
+                watch.endPoll();
+            }
+        }
+    }
+
+    /**
+     * Schedules the next poll of a station and puts it back in the queue, unless it has been removed from the watch list.
+     * 
+     * @param watch
+     *            the watched station.
+     */
+    private void requeue(StationWatch watch) {
+        watch.reschedule(System.currentTimeMillis());
+        if (!watch.isCancelled()) {
+            queue.add(watch);
+        }
+    }
+
+    /**
+     * Polls a station and notifies the listeners.
+     * 
+     * @param watch
+     *            the watched station.
+     */
+    private void poll(StationWatch watch) {
+        RequestScheduler.setPriority(RequestScheduler.BACKGROUND);
+        String stationId = watch.getStationId();
+        Object weather;
+        try {
+            if (watch.isCompact()) {
+                weather = service.getLiveCompactWeatherByStationID(stationId, unitType);
+            } else {
+                weather = service.getLiveWeatherByStationID(stationId, unitType);
+            }
+        } catch (WeatherBugServiceException e) {
+            firePollFailed(stationId, e);
+            return;
+        }
+        if (weather == null) {
+            firePollFailed(stationId, new WeatherBugServiceException("No live weather returned for station: " + stationId));
+            return;
+        }
+        for (Iterator i = listeners.iterator(); i.hasNext();) {
+            StationPollListener listener = (StationPollListener) i.next();
+            try {
+                if (watch.isCompact()) {
+                    listener.liveCompactWeatherPolled(stationId, (LiveCompactWeather) weather);
+                } else {
+                    listener.liveWeatherPolled(stationId, (LiveWeather) weather);
+                }
+            } catch (RuntimeException e) {
+                reportListenerError(e);
+            }
+        }
+    }
+
+    /**
+     * Notifies the listeners that a poll failed.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param e
+     *            the error that occurred.
+     */
+    private void firePollFailed(String stationId, WeatherBugServiceException e) {
+        for (Iterator i = listeners.iterator(); i.hasNext();) {
+            try {
+                ((StationPollListener) i.next()).pollFailed(stationId, e);
+            } catch (RuntimeException re) {
+                reportListenerError(re);
+            }
+        }
+    }
+
+    /**
+     * Reports the error of a listener to the uncaught exception handler of the current thread, so that it neither prevents the
+     * other listeners from being notified nor goes unnoticed.
+     * 
+     * @param e
+     *            the error thrown by the listener.
+     */
+    private static void reportListenerError(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+}
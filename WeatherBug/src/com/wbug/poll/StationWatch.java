@@ -0,0 +1,151 @@
+package com.wbug.poll;
+
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A station watched by a {@link StationPoller}, ordered by the time of its next poll.
+ */
+class StationWatch implements Delayed {
+
+    /** The station identifier. */
+    private final String stationId;
+
+    /** The polling interval (in milliseconds). */
+    private final long interval;
+
+    /** Whether the compact live weather must be fetched. */
+    private final boolean compact;
+
+    /** The time (in milliseconds) of the next poll. */
+    private volatile long nextPollTime;
+
+    /** Whether the station has been removed from the watch list. */
+    private volatile boolean cancelled;
+
+    /** Whether a poll of the station is in progress. */
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    /**
+     * Constructs a new watch. The first poll is scheduled at a station-dependent offset within the first interval, so that stations
+     * added together are spread evenly over time instead of being polled in a single burst.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param interval
+     *            the polling interval (in milliseconds).
+     * @param compact
+     *            whether the compact live weather must be fetched.
+     * @param now
+     *            the current time (in milliseconds).
+     */
+    StationWatch(String stationId, long interval, boolean compact, long now) {
+        this.stationId = stationId;
+        this.interval = interval;
+        this.compact = compact;
+        this.nextPollTime = now + phase(stationId, interval);
+    }
+
+    /**
+     * Computes a stable offset of a station within a polling interval.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param interval
+     *            the polling interval (in milliseconds).
+     * @return the offset (in milliseconds).
+     */
+    private static long phase(String stationId, long interval) {
+        // spread the hash bits (String.hashCode() varies little for similar identifiers)
+        long h = stationId.hashCode() * 0x9E3779B97F4A7C15L;
+        h ^= (h >>> 32);
+        return (h & Long.MAX_VALUE) % interval;
+    }
+
+    /**
+     * Returns the station identifier.
+     * 
+     * @return the station identifier.
+     */
+    String getStationId() {
+        return stationId;
+    }
+
+    /**
+     * Returns the polling interval.
+     * 
+     * @return the polling interval (in milliseconds).
+     */
+    long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Indicates whether the compact live weather must be fetched.
+     * 
+     * @return <code>true</code> for the compact live weather.
+     */
+    boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Indicates whether the station has been removed from the watch list.
+     * 
+     * @return <code>true</code> if the watch is cancelled.
+     */
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** Cancels this watch. */
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Marks a poll of the station as started, unless one is already in progress.
+     * 
+     * @return <code>true</code> if the poll can start, <code>false</code> if the previous one has not completed yet.
+     */
+    boolean startPoll() {
+        return polling.compareAndSet(false, true);
+    }
+
+    /** Marks the poll of the station as completed. */
+    void endPoll() {
+        polling.set(false);
+    }
+
+    /**
+     * Schedules the next poll one interval after the previous one. If polls have been delayed (e.g. by the request budget) the
+     * schedule slips instead of catching up with a burst.
+     * 
+     * @param now
+     *            the current time (in milliseconds).
+     */
+    void reschedule(long now) {
+        nextPollTime = Math.max(nextPollTime + interval, now);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.util.concurrent.Delayed#getDelay(java.util.concurrent.TimeUnit)
+     */
+    public long getDelay(TimeUnit unit) {
+        return unit.convert(nextPollTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Comparable#compareTo(java.lang.Object)
+     */
+    public int compareTo(Delayed obj) {
+        long other = ((StationWatch) obj).nextPollTime;
+        return (nextPollTime < other) ? -1 : ((nextPollTime == other) ? 0 : 1);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.wbug.store;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bits, most significant bit first, from a region of a byte buffer (typically a memory-mapped segment file).
+ */
+class BitInput {
+
+    /** The buffer. */
+    private final ByteBuffer buffer;
+
+    /** The absolute position of the first byte of the region. */
+    private final int offset;
+
+    /** The number of bits read. */
+    private long bitPosition;
+
+    /**
+     * Constructs a new bit reader.
+     * 
+     * @param buffer
+     *            the buffer.
+     * @param offset
+     *            the absolute position of the first byte of the region.
+     */
+    BitInput(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    /**
+     * Reads a single bit.
+     * 
+     * @return <code>true</code> for 1.
+     */
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * Reads a number of bits.
+     * 
+     * @param count
+     *            the number of bits (0 to 64).
+     * @return the bits, as the lowest bits of the returned value.
+     */
+    long readBits(int count) {
+        long value = 0;
+        for (int remaining = count; remaining > 0;) {
+            int b = buffer.get(offset + (int) (bitPosition >>> 3)) & 0xFF;
+            int available = 8 - (int) (bitPosition & 7);
+            int n = Math.min(available, remaining);
+            int chunk = (b >>> (available - n)) & ((1 << n) - 1);
+            value = (value << n) | chunk;
+            bitPosition += n;
+            remaining -= n;
+        }
+        return value;
+    }
+
+}
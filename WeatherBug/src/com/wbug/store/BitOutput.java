@@ -0,0 +1,99 @@
+package com.wbug.store;
+
+/**
+ * A growable buffer of bits, written most significant bit first.
+ */
+class BitOutput {
+
+    /** The written bytes. */
+    private byte[] bytes;
+
+    /** The number of bits written. */
+    private long bitCount;
+
+    /**
+     * Constructs a new bit buffer.
+     * 
+     * @param initialCapacity
+     *            the initial capacity (in bytes).
+     */
+    BitOutput(int initialCapacity) {
+        bytes = new byte[Math.max(1, initialCapacity)];
+    }
+
+    /**
+     * Writes a single bit.
+     * 
+     * @param bit
+     *            <code>true</code> for 1.
+     */
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Writes the lowest bits of a value.
+     * 
+     * @param value
+     *            the value.
+     * @param count
+     *            the number of bits (0 to 64).
+     */
+    void writeBits(long value, int count) {
+        ensureCapacity(bitCount + count);
+        for (int remaining = count; remaining > 0;) {
+            int byteIndex = (int) (bitCount >>> 3);
+            int free = 8 - (int) (bitCount & 7);
+            int n = Math.min(free, remaining);
+            int chunk = (int) ((value >>> (remaining - n)) & ((1 << n) - 1));
+            bytes[byteIndex] |= (byte) (chunk << (free - n));
+            bitCount += n;
+            remaining -= n;
+        }
+    }
+
+    /**
+     * Returns the number of bits written.
+     * 
+     * @return the number of bits.
+     */
+    long getBitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Returns the number of bytes holding the written bits.
+     * 
+     * @return the number of bytes.
+     */
+    int getByteCount() {
+        return (int) ((bitCount + 7) >>> 3);
+    }
+
+    /**
+     * Returns a copy of the written bytes (the last byte is padded with zeros).
+     * 
+     * @return the bytes.
+     */
+    byte[] toByteArray() {
+        byte[] copy = new byte[getByteCount()];
+        System.arraycopy(bytes, 0, copy, 0, copy.length);
+        return copy;
+    }
+
+    /**
+     * Grows the buffer if needed.
+     * 
+     * @param bits
+     *            the required capacity (in bits).
+     */
+    private void ensureCapacity(long bits) {
+        int required = (int) ((bits + 7) >>> 3);
+        if (required > bytes.length) {
+            byte[] newBytes = new byte[Math.max(required, bytes.length * 2)];
+            System.arraycopy(bytes, 0, newBytes, 0, bytes.length);
+            bytes = newBytes;
+        }
+    }
+
+}
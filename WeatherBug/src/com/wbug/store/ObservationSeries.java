@@ -0,0 +1,576 @@
+package com.wbug.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The observation history of one station: an append-only segment file of sealed, compressed blocks, plus the block being
+ * filled in memory.
+ * <p>
+ * A segment file starts with a header (magic number, format version). Each block holds a fixed list of fields and stores one
+ * column per field, after the timestamp column, so that a scan only decodes the requested fields. A block is written with a
+ * single append, forced to the disk, and its header carries its size; a block truncated by a crash is detected and discarded
+ * when the file is reopened. Each sealed block is read through its own read-only memory mapping, so positions are not limited
+ * to the 2 GB a single mapping can address.
+ */
+class ObservationSeries {
+
+    /** The magic number of segment files. */
+    private static final int FILE_MAGIC = 0x57425453; // "WBTS"
+
+    /** The segment file format version. */
+    private static final int FILE_VERSION = 1;
+
+    /** The size of the segment file header. */
+    private static final int FILE_HEADER_SIZE = 8;
+
+    /** The magic number of blocks. */
+    private static final int BLOCK_MAGIC = 0x424C4B31; // "BLK1"
+
+    /** The station identifier. */
+    private final String stationId;
+
+    /** The fields stored in new blocks. */
+    private final int[] fields;
+
+    /** The maximum number of observations per block. */
+    private final int blockSize;
+
+    /** The segment file. */
+    private final RandomAccessFile file;
+
+    /** The sealed blocks, in time order. */
+    private final List blocks = new ArrayList();
+
+    /** The number of observations in the open block. */
+    private int openCount;
+
+    /** The first timestamp of the open block (in seconds). */
+    private long openFirst;
+
+    /** The last appended timestamp (in seconds). */
+    private long lastTime = Long.MIN_VALUE;
+
+    /** The timestamp column of the open block. */
+    private TimestampColumn timeColumn;
+
+    /** The timestamp bits of the open block. */
+    private BitOutput timeBits;
+
+    /** The value columns of the open block. */
+    private ValueColumn[] valueColumns;
+
+    /** The value bits of the open block. */
+    private BitOutput[] valueBits;
+
+    /** Whether the segment file has been closed. */
+    private boolean closed;
+
+    /**
+     * Opens the series of a station, creating its segment file if needed.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param segmentFile
+     *            the segment file.
+     * @param fields
+     *            the fields stored in new blocks.
+     * @param blockSize
+     *            the maximum number of observations per block.
+     * @throws IOException
+     *             if the segment file cannot be opened or is invalid.
+     */
+    ObservationSeries(String stationId, File segmentFile, int[] fields, int blockSize) throws IOException {
+        this.stationId = stationId;
+        this.fields = fields;
+        this.blockSize = blockSize;
+        this.file = new RandomAccessFile(segmentFile, "rw");
+        try {
+            if (file.length() < FILE_HEADER_SIZE) {
+                file.setLength(0);
+                file.writeInt(FILE_MAGIC);
+                file.writeInt(FILE_VERSION);
+            } else {
+                if (file.readInt() != FILE_MAGIC) {
+                    throw new IOException("Not an observation segment file: " + segmentFile);
+                }
+                int version = file.readInt();
+                if (version != FILE_VERSION) {
+                    throw new IOException("Unsupported observation segment version: " + version);
+                }
+                loadBlocks();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the headers of the sealed blocks, discarding a truncated last block.
+     * 
+     * @throws IOException
+     *             if the segment file cannot be read.
+     */
+    private void loadBlocks() throws IOException {
+        long length = file.length();
+        long position = FILE_HEADER_SIZE;
+        while (position < length) {
+            Block block = Block.readHeader(file, position, length);
+            if (block == null) {
+                file.setLength(position);
+                break;
+            }
+            blocks.add(block);
+            lastTime = block.lastTime;
+            position = block.end;
+        }
+    }
+
+    /**
+     * Appends an observation. Observations not newer than the last appended one are ignored.
+     * 
+     * @param seconds
+     *            the observation time (in seconds).
+     * @param values
+     *            the values of the stored fields.
+     * @return <code>true</code> if the observation has been appended.
+     * @throws IOException
+     *             if a full block cannot be written.
+     */
+    synchronized boolean append(long seconds, double[] values) throws IOException {
+        if (seconds <= lastTime) {
+            return false;
+        }
+        if (openCount == 0) {
+            openFirst = seconds;
+            timeColumn = new TimestampColumn();
+            timeBits = new BitOutput(blockSize / 4);
+            valueColumns = new ValueColumn[fields.length];
+            valueBits = new BitOutput[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                valueColumns[i] = new ValueColumn();
+                valueBits[i] = new BitOutput(blockSize / 4);
+            }
+        }
+        timeColumn.write(timeBits, seconds);
+        for (int i = 0; i < fields.length; i++) {
+            valueColumns[i].write(valueBits[i], values[i]);
+        }
+        openCount++;
+        lastTime = seconds;
+        if (openCount >= blockSize) {
+            seal();
+        }
+        return true;
+    }
+
+    /**
+     * Writes the open block to the segment file.
+     * 
+     * @throws IOException
+     *             if the block cannot be written.
+     */
+    synchronized void seal() throws IOException {
+        if (closed || openCount == 0) {
+            return;
+        }
+        byte[][] columns = openColumns();
+        Block block = Block.write(file, openFirst, lastTime, openCount, fields, columns);
+        blocks.add(block);
+        openCount = 0;
+        timeColumn = null;
+        timeBits = null;
+        valueColumns = null;
+        valueBits = null;
+    }
+
+    /**
+     * Returns the columns of the open block.
+     * 
+     * @return the timestamp column followed by the value columns.
+     */
+    private byte[][] openColumns() {
+        byte[][] columns = new byte[fields.length + 1][];
+        columns[0] = timeBits.toByteArray();
+        for (int i = 0; i < fields.length; i++) {
+            columns[i + 1] = valueBits[i].toByteArray();
+        }
+        return columns;
+    }
+
+    /**
+     * Scans the observations within a time range.
+     * 
+     * @param fromSeconds
+     *            the start of the range (inclusive, in seconds).
+     * @param toSeconds
+     *            the end of the range (exclusive, in seconds).
+     * @param requested
+     *            the requested fields.
+     * @param visitor
+     *            the visitor receiving the observations.
+     * @return <code>false</code> if the series has been closed (nothing has been scanned).
+     * @throws IOException
+     *             if a block cannot be mapped.
+     */
+    boolean scan(long fromSeconds, long toSeconds, int[] requested, ObservationVisitor visitor) throws IOException {
+        List selected = new ArrayList();
+        List buffers = new ArrayList();
+        ByteBuffer openBuffer = null;
+        Block openBlock = null;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            for (Iterator i = blocks.iterator(); i.hasNext();) {
+                Block block = (Block) i.next();
+                if (block.lastTime >= fromSeconds && block.firstTime < toSeconds) {
+                    selected.add(block);
+                    buffers.add(block.map(file));
+                }
+            }
+            if (openCount > 0 && lastTime >= fromSeconds && openFirst < toSeconds) {
+                byte[][] columns = openColumns();
+                openBuffer = Block.toBuffer(columns);
+                openBlock = Block.inMemory(openFirst, lastTime, openCount, fields, columns);
+            }
+        }
+        double[] values = new double[requested.length];
+        for (int i = 0; i < selected.size(); i++) {
+            ((Block) selected.get(i)).scan((ByteBuffer) buffers.get(i), stationId, fromSeconds, toSeconds, requested, values,
+                    visitor);
+        }
+        if (openBlock != null) {
+            openBlock.scan(openBuffer, stationId, fromSeconds, toSeconds, requested, values, visitor);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of stored observations.
+     * 
+     * @return the number of observations.
+     */
+    synchronized long size() {
+        long size = openCount;
+        for (Iterator i = blocks.iterator(); i.hasNext();) {
+            size += ((Block) i.next()).count;
+        }
+        return size;
+    }
+
+    /**
+     * Returns whether the segment file has been closed.
+     * 
+     * @return <code>true</code> if the series has been closed.
+     */
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Seals the open block and closes the segment file. Closing a closed series has no effect.
+     * 
+     * @throws IOException
+     *             if the open block cannot be written.
+     */
+    synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            seal();
+        } finally {
+            closed = true;
+            file.close();
+        }
+    }
+
+    /**
+     * A block of observations. The header is made of the magic number, the first and last timestamps, the number of observations,
+     * the number of fields, the field identifiers and the length of each column.
+     */
+    private static class Block {
+
+        /** The position of the block. */
+        final long start;
+
+        /** The first timestamp (in seconds). */
+        final long firstTime;
+
+        /** The last timestamp (in seconds). */
+        final long lastTime;
+
+        /** The number of observations. */
+        final int count;
+
+        /** The stored fields. */
+        final int[] fields;
+
+        /** The absolute positions of the columns (timestamps first). */
+        final long[] columnOffsets;
+
+        /** The position following the block. */
+        final long end;
+
+        /** The memory mapping of the block (<code>null</code> until needed; guarded by the series). */
+        private MappedByteBuffer mapped;
+
+        /**
+         * Constructs a new block.
+         * 
+         * @param start
+         *            the position of the block.
+         * @param firstTime
+         *            the first timestamp (in seconds).
+         * @param lastTime
+         *            the last timestamp (in seconds).
+         * @param count
+         *            the number of observations.
+         * @param fields
+         *            the stored fields.
+         * @param columnOffsets
+         *            the absolute positions of the columns.
+         * @param end
+         *            the position following the block.
+         */
+        private Block(long start, long firstTime, long lastTime, int count, int[] fields, long[] columnOffsets, long end) {
+            this.start = start;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+            this.count = count;
+            this.fields = fields;
+            this.columnOffsets = columnOffsets;
+            this.end = end;
+        }
+
+        /**
+         * Returns the size of a block header.
+         * 
+         * @param fieldCount
+         *            the number of fields.
+         * @return the header size (in bytes).
+         */
+        private static int headerSize(int fieldCount) {
+            return 4 + 8 + 8 + 4 + 4 + fieldCount * 2 + (fieldCount + 1) * 4;
+        }
+
+        /**
+         * Reads a block header.
+         * 
+         * @param file
+         *            the segment file.
+         * @param position
+         *            the position of the block.
+         * @param length
+         *            the length of the file.
+         * @return the block, or <code>null</code> if the block is truncated or corrupted.
+         * @throws IOException
+         *             if the file cannot be read.
+         */
+        static Block readHeader(RandomAccessFile file, long position, long length) throws IOException {
+            if (length - position < headerSize(0)) {
+                return null;
+            }
+            file.seek(position);
+            if (file.readInt() != BLOCK_MAGIC) {
+                return null;
+            }
+            long firstTime = file.readLong();
+            long lastTime = file.readLong();
+            int count = file.readInt();
+            int fieldCount = file.readInt();
+            if (fieldCount < 0 || length - position < headerSize(fieldCount)) {
+                return null;
+            }
+            int[] fields = new int[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                fields[i] = file.readShort();
+            }
+            long[] offsets = new long[fieldCount + 1];
+            long offset = position + headerSize(fieldCount);
+            for (int i = 0; i <= fieldCount; i++) {
+                offsets[i] = offset;
+                int columnLength = file.readInt();
+                if (columnLength < 0) {
+                    return null;
+                }
+                offset += columnLength;
+            }
+            if (offset > length || offset - position > Integer.MAX_VALUE) {
+                return null;
+            }
+            return new Block(position, firstTime, lastTime, count, fields, offsets, offset);
+        }
+
+        /**
+         * Appends a block to a segment file and forces it to the disk, so that a sealed block survives a crash.
+         * 
+         * @param file
+         *            the segment file.
+         * @param firstTime
+         *            the first timestamp (in seconds).
+         * @param lastTime
+         *            the last timestamp (in seconds).
+         * @param count
+         *            the number of observations.
+         * @param fields
+         *            the stored fields.
+         * @param columns
+         *            the timestamp column followed by the value columns.
+         * @return the written block.
+         * @throws IOException
+         *             if the block cannot be written.
+         */
+        static Block write(RandomAccessFile file, long firstTime, long lastTime, int count, int[] fields, byte[][] columns)
+                throws IOException {
+            int size = headerSize(fields.length);
+            for (int i = 0; i < columns.length; i++) {
+                size += columns[i].length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(BLOCK_MAGIC);
+            buffer.putLong(firstTime);
+            buffer.putLong(lastTime);
+            buffer.putInt(count);
+            buffer.putInt(fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                buffer.putShort((short) fields[i]);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                buffer.putInt(columns[i].length);
+            }
+            long position = file.length();
+            long[] offsets = new long[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                offsets[i] = position + buffer.position();
+                buffer.put(columns[i]);
+            }
+            buffer.flip();
+            FileChannel channel = file.getChannel();
+            long written = position;
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+            channel.force(false);
+            return new Block(position, firstTime, lastTime, count, fields, offsets, written);
+        }
+
+        /**
+         * Concatenates the columns of an in-memory block.
+         * 
+         * @param columns
+         *            the columns.
+         * @return a buffer holding the columns.
+         */
+        static ByteBuffer toBuffer(byte[][] columns) {
+            int size = 0;
+            for (int i = 0; i < columns.length; i++) {
+                size += columns[i].length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (int i = 0; i < columns.length; i++) {
+                buffer.put(columns[i]);
+            }
+            return buffer;
+        }
+
+        /**
+         * Describes an in-memory block whose columns are concatenated as in {@link #toBuffer(byte[][])}.
+         * 
+         * @param firstTime
+         *            the first timestamp (in seconds).
+         * @param lastTime
+         *            the last timestamp (in seconds).
+         * @param count
+         *            the number of observations.
+         * @param fields
+         *            the stored fields.
+         * @param columns
+         *            the columns.
+         * @return the block.
+         */
+        static Block inMemory(long firstTime, long lastTime, int count, int[] fields, byte[][] columns) {
+            long[] offsets = new long[columns.length];
+            long offset = 0;
+            for (int i = 0; i < columns.length; i++) {
+                offsets[i] = offset;
+                offset += columns[i].length;
+            }
+            return new Block(0, firstTime, lastTime, count, fields, offsets, offset);
+        }
+
+        /**
+         * Returns the memory mapping of this sealed block, mapping it if needed. The series lock must be held.
+         * 
+         * @param file
+         *            the segment file.
+         * @return the mapping, starting at the position of the block.
+         * @throws IOException
+         *             if the block cannot be mapped.
+         */
+        ByteBuffer map(RandomAccessFile file) throws IOException {
+            if (mapped == null) {
+                mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            }
+            return mapped;
+        }
+
+        /**
+         * Decodes the observations of this block within a time range.
+         * 
+         * @param buffer
+         *            the buffer holding the block, from its position (see {@link #map(RandomAccessFile)}).
+         * @param stationId
+         *            the station identifier.
+         * @param fromSeconds
+         *            the start of the range (inclusive, in seconds).
+         * @param toSeconds
+         *            the end of the range (exclusive, in seconds).
+         * @param requested
+         *            the requested fields.
+         * @param values
+         *            the array receiving the values.
+         * @param visitor
+         *            the visitor receiving the observations.
+         */
+        void scan(ByteBuffer buffer, String stationId, long fromSeconds, long toSeconds, int[] requested, double[] values,
+                ObservationVisitor visitor) {
+            BitInput timeInput = new BitInput(buffer, (int) (columnOffsets[0] - start));
+            TimestampColumn timeColumn = new TimestampColumn();
+            BitInput[] inputs = new BitInput[requested.length];
+            ValueColumn[] columns = new ValueColumn[requested.length];
+            for (int r = 0; r < requested.length; r++) {
+                for (int f = 0; f < fields.length; f++) {
+                    if (fields[f] == requested[r]) {
+                        inputs[r] = new BitInput(buffer, (int) (columnOffsets[f + 1] - start));
+                        columns[r] = new ValueColumn();
+                        break;
+                    }
+                }
+            }
+            for (int n = 0; n < count; n++) {
+                long seconds = timeColumn.read(timeInput);
+                if (seconds >= toSeconds) {
+                    return;
+                }
+                for (int r = 0; r < requested.length; r++) {
+                    values[r] = (columns[r] != null) ? columns[r].read(inputs[r]) : Double.NaN;
+                }
+                if (seconds >= fromSeconds) {
+                    visitor.observation(stationId, seconds * 1000, values);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,385 @@
+package com.wbug.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import com.wbug.data.LiveWeather;
+import com.wbug.data.LiveWeatherField;
+
+/**
+ * An append-only store of live weather observations, one compressed time series per station.
+ * <p>
+ * Every numeric field of {@link LiveWeather} (see {@link LiveWeatherField#isNumeric(int)}) is stored as a column of doubles next
+ * to the observation time. Observations are accumulated in memory and sealed into blocks of a fixed number of observations, which
+ * are appended to a segment file per station (<i>&lt;station&gt;.seg</i> in the store directory). Timestamps are compressed with
+ * delta-of-delta encoding and values with XOR encoding, so that a station polled every minute costs a few bytes per observation.
+ * Observation times are stored with a resolution of one second.
+ * <p>
+ * Range scans read the sealed blocks through a memory mapping of the segment file, decode only the requested columns and also
+ * see the observations not sealed yet. {@link #flush()} seals the open blocks; observations that have not been sealed are lost
+ * if the process dies. Instances are thread-safe.
+ * <p>
+ * At most a fixed number of segment files are kept open: when another station is accessed, the least recently used series is
+ * sealed and closed, and reopened when it is accessed again.
+ */
+public class ObservationStore {
+
+    /** The default number of observations per block. */
+    public static final int DEFAULT_BLOCK_SIZE = 720;
+
+    /** The default maximum number of open series. */
+    public static final int DEFAULT_MAX_OPEN_SERIES = 256;
+
+    /** The stored fields. */
+    private static final int[] FIELDS = numericFields();
+
+    /** The file name extension of segment files. */
+    private static final String SEGMENT_EXTENSION = ".seg";
+
+    /** The store directory. */
+    private final File directory;
+
+    /** The number of observations per block. */
+    private final int blockSize;
+
+    /** The maximum number of open series. */
+    private final int maxOpenSeries;
+
+    /** The open series, keyed by station identifier, in access order (guarded by itself). */
+    private final LinkedHashMap series = new LinkedHashMap(16, 0.75f, true);
+
+    /** Whether the store has been closed. */
+    private volatile boolean closed;
+
+    /**
+     * Opens a store using the default block size.
+     * 
+     * @param directory
+     *            the store directory (created if needed).
+     * @throws IOException
+     *             if the directory cannot be created.
+     */
+    public ObservationStore(File directory) throws IOException {
+        this(directory, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Opens a store.
+     * 
+     * @param directory
+     *            the store directory (created if needed).
+     * @param blockSize
+     *            the number of observations per block.
+     * @throws IOException
+     *             if the directory cannot be created.
+     */
+    public ObservationStore(File directory, int blockSize) throws IOException {
+        this(directory, blockSize, DEFAULT_MAX_OPEN_SERIES);
+    }
+
+    /**
+     * Opens a store.
+     * 
+     * @param directory
+     *            the store directory (created if needed).
+     * @param blockSize
+     *            the number of observations per block.
+     * @param maxOpenSeries
+     *            the maximum number of series (segment files) kept open.
+     * @throws IOException
+     *             if the directory cannot be created.
+     */
+    public ObservationStore(File directory, int blockSize, int maxOpenSeries) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+        }
+        if (maxOpenSeries < 1) {
+            throw new IllegalArgumentException("Invalid maximum number of open series: " + maxOpenSeries);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the store directory: " + directory);
+        }
+        this.directory = directory;
+        this.blockSize = blockSize;
+        this.maxOpenSeries = maxOpenSeries;
+    }
+
+    /**
+     * Returns the stored fields.
+     * 
+     * @return the stored fields (see {@link LiveWeatherField}).
+     */
+    public static int[] getFields() {
+        return FIELDS.clone();
+    }
+
+    /**
+     * Appends an observation to the history of its station. Observations that are not newer than the last stored observation of
+     * the station are ignored, so repeated polls of an unchanged observation cost nothing. Observations without a station
+     * identifier or an observation time are ignored as well.
+     * 
+     * @param weather
+     *            the observation.
+     * @return <code>true</code> if the observation has been stored.
+     * @throws IOException
+     *             if the observation cannot be stored.
+     */
+    public boolean append(LiveWeather weather) throws IOException {
+        if (weather.getStationId() == null || weather.getObservationTime() == null) {
+            return false;
+        }
+        double[] values = new double[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) {
+            values[i] = toDouble(weather.getValue(FIELDS[i]));
+        }
+        long seconds = weather.getObservationTime().getTime() / 1000;
+        while (true) {
+            ObservationSeries s = getSeries(weather.getStationId(), true);
+            synchronized (s) {
+                if (!s.isClosed()) {
+                    return s.append(seconds, values);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scans the history of a station within a time range, in time order.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param fromTime
+     *            the start of the range (inclusive, in milliseconds).
+     * @param toTime
+     *            the end of the range (exclusive, in milliseconds).
+     * @param fields
+     *            the requested fields (see {@link LiveWeatherField}).
+     * @param visitor
+     *            the visitor receiving the observations.
+     * @throws IOException
+     *             if the history cannot be read.
+     */
+    public void scan(String stationId, long fromTime, long toTime, int[] fields, ObservationVisitor visitor) throws IOException {
+        long fromSeconds = ceilDiv(fromTime, 1000);
+        long toSeconds = ceilDiv(toTime, 1000);
+        while (true) {
+            ObservationSeries s = getSeries(stationId, false);
+            if (s == null || s.scan(fromSeconds, toSeconds, fields, visitor)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of stored observations of a station.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @return the number of observations.
+     * @throws IOException
+     *             if the history cannot be opened.
+     */
+    public long size(String stationId) throws IOException {
+        while (true) {
+            ObservationSeries s = getSeries(stationId, false);
+            if (s == null) {
+                return 0;
+            }
+            synchronized (s) {
+                if (!s.isClosed()) {
+                    return s.size();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the identifiers of the stations having a history.
+     * 
+     * @return the station identifiers.
+     */
+    public String[] getStationIds() {
+        List ids = new ArrayList();
+        String[] names = directory.list();
+        for (int i = 0; names != null && i < names.length; i++) {
+            if (names[i].endsWith(SEGMENT_EXTENSION)) {
+                ids.add(decodeFileName(names[i].substring(0, names[i].length() - SEGMENT_EXTENSION.length())));
+            }
+        }
+        return (String[]) ids.toArray(new String[ids.size()]);
+    }
+
+    /**
+     * Seals the observations accumulated in memory into blocks.
+     * 
+     * @throws IOException
+     *             if a block cannot be written.
+     */
+    public void flush() throws IOException {
+        List open;
+        synchronized (series) {
+            open = new ArrayList(series.values());
+        }
+        for (Iterator i = open.iterator(); i.hasNext();) {
+            ((ObservationSeries) i.next()).seal();
+        }
+    }
+
+    /**
+     * Seals the observations accumulated in memory and closes the segment files.
+     * 
+     * @throws IOException
+     *             if a block cannot be written.
+     */
+    public void close() throws IOException {
+        IOException error = null;
+        synchronized (series) {
+            closed = true;
+            for (Iterator i = series.values().iterator(); i.hasNext();) {
+                try {
+                    ((ObservationSeries) i.next()).close();
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+            series.clear();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Returns the series of a station, opening it if needed. Opening a series closes the least recently used ones beyond the
+     * maximum number of open series; this is done while holding the map lock, so that a series is never reopened before its
+     * previous instance has been sealed.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param create
+     *            whether the series must be created if it does not exist.
+     * @return the series, or <code>null</code> if it does not exist and must not be created.
+     * @throws IOException
+     *             if the segment file cannot be opened.
+     */
+    private ObservationSeries getSeries(String stationId, boolean create) throws IOException {
+        synchronized (series) {
+            if (closed) {
+                throw new IOException("The observation store is closed");
+            }
+            ObservationSeries s = (ObservationSeries) series.get(stationId);
+            if (s == null) {
+                File segment = new File(directory, encodeFileName(stationId) + SEGMENT_EXTENSION);
+                if (!create && !segment.exists()) {
+                    return null;
+                }
+                s = new ObservationSeries(stationId, segment, FIELDS, blockSize);
+                series.put(stationId, s);
+                for (Iterator i = series.values().iterator(); series.size() > maxOpenSeries && i.hasNext();) {
+                    ObservationSeries eldest = (ObservationSeries) i.next();
+                    i.remove();
+                    eldest.close();
+                }
+            }
+            return s;
+        }
+    }
+
+    /**
+     * Converts a field value to a double.
+     * 
+     * @param value
+     *            the field value (<code>BigDecimal</code>, <code>Integer</code> or <code>null</code>).
+     * @return the double value (<code>NaN</code> for <code>null</code>).
+     */
+    private static double toDouble(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).doubleValue();
+        } else if (value instanceof Integer) {
+            return ((Integer) value).intValue();
+        } else {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * Divides rounding towards positive infinity, so that a time range in milliseconds maps to the whole seconds it contains.
+     * 
+     * @param a
+     *            the dividend.
+     * @param b
+     *            the (positive) divisor.
+     * @return the quotient.
+     */
+    private static long ceilDiv(long a, long b) {
+        long q = a / b;
+        return (a % b > 0) ? q + 1 : q;
+    }
+
+    /**
+     * Lists the numeric fields of the live weather.
+     * 
+     * @return the numeric fields.
+     */
+    private static int[] numericFields() {
+        int count = 0;
+        int[] fields = new int[LiveWeatherField.COUNT];
+        for (int field = 0; field < LiveWeatherField.COUNT; field++) {
+            if (LiveWeatherField.isNumeric(field)) {
+                fields[count++] = field;
+            }
+        }
+        int[] result = new int[count];
+        System.arraycopy(fields, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * Encodes a station identifier into a file name: characters other than letters, digits, <code>-</code> and <code>_</code>
+     * are escaped as <code>%XXXX</code>.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @return the file name (without extension).
+     */
+    private static String encodeFileName(String stationId) {
+        StringBuffer name = new StringBuffer(stationId.length());
+        for (int i = 0; i < stationId.length(); i++) {
+            char c = stationId.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_') {
+                name.append(c);
+            } else {
+                String hex = Integer.toHexString(c);
+                name.append('%').append("0000".substring(hex.length())).append(hex);
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Decodes a file name produced by {@link #encodeFileName(String)}.
+     * 
+     * @param name
+     *            the file name (without extension).
+     * @return the station identifier.
+     */
+    private static String decodeFileName(String name) {
+        StringBuffer id = new StringBuffer(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '%' && i + 4 < name.length()) {
+                id.append((char) Integer.parseInt(name.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                id.append(c);
+            }
+        }
+        return id.toString();
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.wbug.store;
+
+/**
+ * Receives the observations read by a range scan of an {@link ObservationStore}.
+ */
+public interface ObservationVisitor {
+
+    /**
+     * Receives an observation.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param time
+     *            the observation time (in milliseconds).
+     * @param values
+     *            the values of the requested fields, in the requested order (<code>NaN</code> for missing values). The array is
+     *            reused between calls and must be copied if retained.
+     */
+    void observation(String stationId, long time, double[] values);
+
+}
@@ -0,0 +1,169 @@
+package com.wbug.store;
+
+import org.apache.commons.lang.builder.ToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+
+/**
+ * The aggregated observations of a station over an hour or a day.
+ */
+public class Rollup {
+
+    /** The resolution of hourly rollups. */
+    public static final int HOURLY = 0;
+
+    /** The resolution of daily rollups. */
+    public static final int DAILY = 1;
+
+    /** The station identifier. */
+    private final String stationId;
+
+    /** The resolution (<code>HOURLY</code> or <code>DAILY</code>). */
+    private final int resolution;
+
+    /** The start of the period (in milliseconds). */
+    private final long startTime;
+
+    /** The number of aggregated observations. */
+    private final int count;
+
+    /** The lowest temperature. */
+    private final double minTemperature;
+
+    /** The highest temperature. */
+    private final double maxTemperature;
+
+    /** The average temperature. */
+    private final double averageTemperature;
+
+    /** The total rainfall. */
+    private final double totalRain;
+
+    /** The speed of the strongest wind gust. */
+    private final double peakGust;
+
+    /**
+     * Constructs a new rollup.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param resolution
+     *            the resolution (<code>HOURLY</code> or <code>DAILY</code>).
+     * @param startTime
+     *            the start of the period (in milliseconds).
+     * @param count
+     *            the number of aggregated observations.
+     * @param minTemperature
+     *            the lowest temperature.
+     * @param maxTemperature
+     *            the highest temperature.
+     * @param averageTemperature
+     *            the average temperature.
+     * @param totalRain
+     *            the total rainfall.
+     * @param peakGust
+     *            the speed of the strongest wind gust.
+     */
+    public Rollup(String stationId, int resolution, long startTime, int count, double minTemperature, double maxTemperature,
+            double averageTemperature, double totalRain, double peakGust) {
+        this.stationId = stationId;
+        this.resolution = resolution;
+        this.startTime = startTime;
+        this.count = count;
+        this.minTemperature = minTemperature;
+        this.maxTemperature = maxTemperature;
+        this.averageTemperature = averageTemperature;
+        this.totalRain = totalRain;
+        this.peakGust = peakGust;
+    }
+
+    /**
+     * Returns the station identifier.
+     * 
+     * @return the station identifier.
+     */
+    public String getStationId() {
+        return stationId;
+    }
+
+    /**
+     * Returns the resolution.
+     * 
+     * @return <code>HOURLY</code> or <code>DAILY</code>.
+     */
+    public int getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the start of the period.
+     * 
+     * @return the start time (in milliseconds).
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the number of aggregated observations.
+     * 
+     * @return the number of observations.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the lowest temperature.
+     * 
+     * @return the lowest temperature (<code>NaN</code> if unknown).
+     */
+    public double getMinTemperature() {
+        return minTemperature;
+    }
+
+    /**
+     * Returns the highest temperature.
+     * 
+     * @return the highest temperature (<code>NaN</code> if unknown).
+     */
+    public double getMaxTemperature() {
+        return maxTemperature;
+    }
+
+    /**
+     * Returns the average of the observed temperatures.
+     * 
+     * @return the average temperature (<code>NaN</code> if unknown).
+     */
+    public double getAverageTemperature() {
+        return averageTemperature;
+    }
+
+    /**
+     * Returns the total rainfall.
+     * 
+     * @return the total rainfall.
+     */
+    public double getTotalRain() {
+        return totalRain;
+    }
+
+    /**
+     * Returns the speed of the strongest wind gust.
+     * 
+     * @return the peak gust speed (<code>NaN</code> if unknown).
+     */
+    public double getPeakGust() {
+        return peakGust;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see java.lang.Object#toString()
+     */
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.MULTI_LINE_STYLE);
+    }
+
+}
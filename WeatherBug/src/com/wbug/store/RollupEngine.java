@@ -0,0 +1,742 @@
+package com.wbug.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import com.wbug.data.LiveWeather;
+
+/**
+ * Maintains hourly and daily aggregates of live weather observations per station, updated as observations arrive.
+ * <p>
+ * Each station has an open hourly and an open daily bucket. An observation updates both; when an observation falls in a later
+ * period, the open bucket is completed and appended to the rollup file of its resolution (<i>hourly.rlp</i> or <i>daily.rlp</i>
+ * in the engine directory) as a fixed-size binary record. The open buckets are saved by {@link #close()} and restored when the
+ * engine is reopened; the saved state is deleted once restored, so after a crash the buckets open at the time are lost rather
+ * than completed a second time from an outdated state.
+ * <p>
+ * The cumulative daily readings of the stations are handled as follows:
+ * <ul>
+ * <li><code>rainToday</code> is converted into increments: an increase adds the difference, a decrease is taken as the daily
+ * reset and adds the new value. Rain totals are the sum of the increments within the period.</li>
+ * <li><code>highestTemperature</code> and <code>lowestTemperature</code> are folded into the daily extremes only once the
+ * station has been seen resetting them, or for observations made at least the reset grace (see {@link #setResetGrace(long)})
+ * after the start of the day, so that the previous day's extremes, still reported until the station resets, do not leak into the
+ * new day.</li>
+ * </ul>
+ * Stations reset their daily readings at their local midnight. Unless the engine is given a time zone, the day boundaries are
+ * therefore taken per station: the daily reset is detected as a decrease of <code>rainToday</code> or
+ * <code>highestTemperature</code>, the local midnight is estimated as the last whole hour before the observation showing it
+ * (the reset may be reported a poll interval late, and zones with a fractional offset are approximated), and later days are
+ * predicted from the resulting UTC offset. Until a station has been seen resetting, its offset is estimated
+ * from its longitude; without a longitude, its first day starts at the hour of its first observation and ends at its first reset.
+ * Since the offset is a whole number of hours, hourly buckets always start on the hour. Observations older than the last observation of their station, or without a
+ * station identifier, are ignored. Instances are thread-safe.
+ */
+public class RollupEngine {
+
+    /** The default delay after midnight before the reported daily extremes are trusted (one hour, in milliseconds). */
+    public static final long DEFAULT_RESET_GRACE = 60 * 60 * 1000L;
+
+    /** One hour (in milliseconds). */
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    /** One day (in milliseconds). */
+    private static final long DAY = 24 * HOUR;
+
+    /**
+     * The age of a day below which a reset moves the boundary of the day instead of starting another day (in milliseconds).
+     */
+    private static final long MIN_DAY_LENGTH = 12 * HOUR;
+
+    /** The magic number of the open bucket file. */
+    private static final int STATE_MAGIC = 0x57425253; // "WBRS"
+
+    /** The version of the open bucket file. */
+    private static final int STATE_VERSION = 2;
+
+    /** The rollup file names, indexed by resolution. */
+    private static final String[] ROLLUP_FILES = new String[] { "hourly.rlp", "daily.rlp" };
+
+    /** The open bucket file name. */
+    private static final String STATE_FILE = "open.rls";
+
+    /** The engine directory. */
+    private final File directory;
+
+    /** The time zone defining the day boundaries (<code>null</code> if they are taken per station). */
+    private final TimeZone timeZone;
+
+    /** The delay after midnight before the reported daily extremes are trusted (in milliseconds). */
+    private long resetGrace = DEFAULT_RESET_GRACE;
+
+    /** The state of each station, keyed by station identifier. */
+    private final Map stations = new HashMap();
+
+    /** The rollup file writers, indexed by resolution. */
+    private final DataOutputStream[] outputs = new DataOutputStream[ROLLUP_FILES.length];
+
+    /**
+     * Opens an engine taking the day boundaries of each station from its daily resets.
+     * 
+     * @param directory
+     *            the engine directory (created if needed).
+     * @throws IOException
+     *             if the engine files cannot be opened.
+     */
+    public RollupEngine(File directory) throws IOException {
+        this(directory, null);
+    }
+
+    /**
+     * Opens an engine.
+     * 
+     * @param directory
+     *            the engine directory (created if needed).
+     * @param timeZone
+     *            the time zone defining the day boundaries of all the stations (<code>null</code> to take them from the daily
+     *            resets of each station).
+     * @throws IOException
+     *             if the engine files cannot be opened.
+     */
+    public RollupEngine(File directory, TimeZone timeZone) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create the rollup directory: " + directory);
+        }
+        this.directory = directory;
+        this.timeZone = timeZone;
+        loadState();
+        for (int i = 0; i < outputs.length; i++) {
+            truncatePartialRecord(new File(directory, ROLLUP_FILES[i]));
+            outputs[i] = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, ROLLUP_FILES[i]),
+                    true)));
+        }
+    }
+
+    /**
+     * Sets the delay after the start of a day before the reported daily extremes are trusted, for the stations that have not
+     * been seen resetting yet that day.
+     * 
+     * @param resetGrace
+     *            the delay (in milliseconds).
+     */
+    public synchronized void setResetGrace(long resetGrace) {
+        if (resetGrace < 0) {
+            throw new IllegalArgumentException("Invalid reset grace: " + resetGrace);
+        }
+        this.resetGrace = resetGrace;
+    }
+
+    /**
+     * Updates the aggregates of a station with an observation.
+     * 
+     * @param weather
+     *            the observation.
+     * @return <code>true</code> if the observation has been aggregated.
+     * @throws IOException
+     *             if a completed bucket cannot be written.
+     */
+    public synchronized boolean update(LiveWeather weather) throws IOException {
+        if (weather.getStationId() == null || weather.getObservationTime() == null) {
+            return false;
+        }
+        long time = weather.getObservationTime().getTime();
+        StationState state = (StationState) stations.get(weather.getStationId());
+        if (state == null) {
+            state = new StationState(weather.getStationId());
+            if (timeZone == null && weather.getLongitude() != null) {
+                state.utcOffset = Math.round(weather.getLongitude().doubleValue() / 15) * HOUR;
+                state.offsetKnown = true;
+            }
+            stations.put(weather.getStationId(), state);
+        } else if (time <= state.lastTime) {
+            return false;
+        }
+        double temperature = toDouble(weather.getTemperature());
+        double gust = toDouble(weather.getGustSpeed());
+        double rainToday = toDouble(weather.getRainToday());
+        double highest = toDouble(weather.getHighestTemperature());
+        double rain = 0;
+        boolean reset = false;
+        if (!Double.isNaN(rainToday)) {
+            if (!Double.isNaN(state.lastRainToday)) {
+                if (rainToday >= state.lastRainToday) {
+                    rain = rainToday - state.lastRainToday;
+                } else {
+                    rain = rainToday;
+                    reset = true;
+                }
+            }
+            state.lastRainToday = rainToday;
+        }
+        if (!Double.isNaN(highest)) {
+            reset |= highest < state.lastHighest;
+            state.lastHighest = highest;
+        }
+        state.lastTime = time;
+
+        long hourStart = time - floorMod(time + getUtcOffset(state, time), HOUR);
+        if (state.hour == null || state.hour.startTime != hourStart) {
+            complete(state.hour);
+            state.hour = new Bucket(state.stationId, Rollup.HOURLY, hourStart);
+        }
+        state.hour.add(temperature, rain, gust);
+
+        updateDay(state, time, reset);
+        state.day.add(temperature, rain, gust);
+        if (state.resetSeen || time - state.day.startTime >= resetGrace) {
+            state.day.addExtremes(toDouble(weather.getLowestTemperature()), highest);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the rollups of a station within a time range, including the open buckets.
+     * 
+     * @param stationId
+     *            the station identifier.
+     * @param resolution
+     *            the resolution (<code>Rollup.HOURLY</code> or <code>Rollup.DAILY</code>).
+     * @param fromTime
+     *            the start of the range (inclusive, in milliseconds).
+     * @param toTime
+     *            the end of the range (exclusive, in milliseconds).
+     * @return the rollups, in time order.
+     * @throws IOException
+     *             if the rollup file cannot be read.
+     */
+    public synchronized Rollup[] getRollups(String stationId, int resolution, long fromTime, long toTime) throws IOException {
+        outputs[resolution].flush();
+        List rollups = new ArrayList();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(new File(directory,
+                ROLLUP_FILES[resolution]))));
+        try {
+            while (true) {
+                Bucket bucket;
+                try {
+                    bucket = Bucket.read(in);
+                } catch (EOFException e) {
+                    break; // end of file, or record truncated by a crash
+                }
+                if (bucket.stationId.equals(stationId) && bucket.startTime >= fromTime && bucket.startTime < toTime) {
+                    rollups.add(bucket.toRollup());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        StationState state = (StationState) stations.get(stationId);
+        Bucket open = (state == null) ? null : (resolution == Rollup.HOURLY) ? state.hour : state.day;
+        if (open != null && open.startTime >= fromTime && open.startTime < toTime) {
+            rollups.add(open.toRollup());
+        }
+        return (Rollup[]) rollups.toArray(new Rollup[rollups.size()]);
+    }
+
+    /**
+     * Flushes the completed rollups to disk.
+     * 
+     * @throws IOException
+     *             if the rollup files cannot be written.
+     */
+    public synchronized void flush() throws IOException {
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i].flush();
+        }
+    }
+
+    /**
+     * Flushes the completed rollups, saves the open buckets and closes the engine files.
+     * 
+     * @throws IOException
+     *             if the engine files cannot be written.
+     */
+    public synchronized void close() throws IOException {
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i].close();
+        }
+        File tmp = new File(directory, STATE_FILE + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(STATE_MAGIC);
+            out.writeInt(STATE_VERSION);
+            out.writeInt(stations.size());
+            for (Iterator i = stations.values().iterator(); i.hasNext();) {
+                StationState state = (StationState) i.next();
+                out.writeUTF(state.stationId);
+                out.writeLong(state.lastTime);
+                out.writeDouble(state.lastRainToday);
+                out.writeDouble(state.lastHighest);
+                out.writeBoolean(state.offsetKnown);
+                out.writeLong(state.utcOffset);
+                out.writeLong(state.dayEnd);
+                out.writeBoolean(state.resetSeen);
+                Bucket.writeNullable(out, state.hour);
+                Bucket.writeNullable(out, state.day);
+            }
+        } finally {
+            out.close();
+        }
+        Files.move(tmp.toPath(), new File(directory, STATE_FILE).toPath(), new CopyOption[] { StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING });
+    }
+
+    /**
+     * Restores the open buckets saved by {@link #close()}, then deletes the state file: the buckets completed from now on must
+     * not be completed again if the engine is not closed properly. The state saved by the first version, which had no
+     * per-station day boundaries, ends the open days 24 hours after their start.
+     * 
+     * @throws IOException
+     *             if the state file cannot be read or deleted.
+     */
+    private void loadState() throws IOException {
+        File stateFile = new File(directory, STATE_FILE);
+        if (!stateFile.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+        try {
+            int version = (in.readInt() == STATE_MAGIC) ? in.readInt() : -1;
+            if (version < 1 || version > STATE_VERSION) {
+                throw new IOException("Invalid rollup state file: " + stateFile);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                StationState state = new StationState(in.readUTF());
+                state.lastTime = in.readLong();
+                state.lastRainToday = in.readDouble();
+                if (version > 1) {
+                    state.lastHighest = in.readDouble();
+                    state.offsetKnown = in.readBoolean();
+                    // the offsets learned before they were rounded to whole hours
+                    state.utcOffset = Math.round((double) in.readLong() / HOUR) * HOUR;
+                    state.dayEnd = in.readLong();
+                    state.resetSeen = in.readBoolean();
+                }
+                state.hour = Bucket.readNullable(in);
+                state.day = Bucket.readNullable(in);
+                if (version == 1 && state.day != null) {
+                    state.dayEnd = state.day.startTime + DAY;
+                }
+                stations.put(state.stationId, state);
+            }
+        } finally {
+            in.close();
+        }
+        Files.delete(stateFile.toPath());
+    }
+
+    /**
+     * Removes the incomplete record left at the end of a rollup file by an interrupted write, so that new records are appended on
+     * a record boundary.
+     * 
+     * @param file
+     *            the rollup file.
+     * @throws IOException
+     *             if the file cannot be read or truncated.
+     */
+    private static void truncatePartialRecord(File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long valid = 0;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                valid += Bucket.read(in).getRecordSize();
+            }
+        } catch (EOFException e) {
+            // end of the complete records
+        } finally {
+            in.close();
+        }
+        if (valid < file.length()) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(valid);
+            } finally {
+                raf.close();
+            }
+        }
+    }
+
+    /**
+     * Appends a completed bucket to its rollup file.
+     * 
+     * @param bucket
+     *            the completed bucket (may be <code>null</code>).
+     * @throws IOException
+     *             if the bucket cannot be written.
+     */
+    private void complete(Bucket bucket) throws IOException {
+        if (bucket != null) {
+            bucket.write(outputs[bucket.resolution]);
+        }
+    }
+
+    /**
+     * Moves the open daily bucket of a station to the day containing an observation. A new day is started when the observation
+     * is past the end of the open day. Without an engine time zone, a daily reset also starts a new day, unless the open day has
+     * just been started from a predicted boundary and the station had not reset yet: the prediction is then corrected instead.
+     * 
+     * @param state
+     *            the station state.
+     * @param time
+     *            the observation time (in milliseconds).
+     * @param reset
+     *            whether the observation shows the daily reset of the station.
+     * @throws IOException
+     *             if a completed bucket cannot be written.
+     */
+    private void updateDay(StationState state, long time, boolean reset) throws IOException {
+        if (state.day == null || time >= state.dayEnd) {
+            if (timeZone != null) {
+                Calendar cal = Calendar.getInstance(timeZone);
+                cal.setTimeInMillis(time);
+                cal.set(Calendar.HOUR_OF_DAY, 0);
+                cal.set(Calendar.MINUTE, 0);
+                cal.set(Calendar.SECOND, 0);
+                cal.set(Calendar.MILLISECOND, 0);
+                long dayStart = cal.getTimeInMillis();
+                cal.add(Calendar.DATE, 1);
+                startDay(state, dayStart, cal.getTimeInMillis());
+            } else if (state.offsetKnown) {
+                long dayStart = time - floorMod(time + state.utcOffset, DAY);
+                startDay(state, dayStart, dayStart + DAY);
+            } else {
+                startDay(state, time - floorMod(time, HOUR), Long.MAX_VALUE);
+            }
+        }
+        if (!reset) {
+            return;
+        }
+        if (timeZone == null) {
+            long midnight = time - floorMod(time, HOUR);
+            if (!state.offsetKnown || time - state.day.startTime >= MIN_DAY_LENGTH) {
+                startDay(state, midnight, midnight + DAY);
+            } else if (state.resetSeen) {
+                return; // a correction of the readings, not the daily reset
+            } else {
+                state.dayEnd = midnight + DAY;
+            }
+            state.utcOffset = floorMod(DAY / 2 - midnight, DAY) - DAY / 2;
+            state.offsetKnown = true;
+        }
+        state.resetSeen = true;
+    }
+
+    /**
+     * Completes the open daily bucket of a station and opens the next one.
+     * 
+     * @param state
+     *            the station state.
+     * @param dayStart
+     *            the start of the new day (in milliseconds).
+     * @param dayEnd
+     *            the predicted end of the new day (in milliseconds).
+     * @throws IOException
+     *             if the completed bucket cannot be written.
+     */
+    private void startDay(StationState state, long dayStart, long dayEnd) throws IOException {
+        complete(state.day);
+        state.day = new Bucket(state.stationId, Rollup.DAILY, dayStart);
+        state.dayEnd = dayEnd;
+        state.resetSeen = false;
+    }
+
+    /**
+     * Returns the difference between the local time of a station and UTC.
+     * 
+     * @param state
+     *            the station state.
+     * @param time
+     *            the time (in milliseconds).
+     * @return the offset (in milliseconds, 0 if unknown).
+     */
+    private long getUtcOffset(StationState state, long time) {
+        if (timeZone != null) {
+            return timeZone.getOffset(time);
+        }
+        return state.offsetKnown ? state.utcOffset : 0;
+    }
+
+    /**
+     * Computes the remainder of a division rounding towards negative infinity.
+     * 
+     * @param a
+     *            the dividend.
+     * @param b
+     *            the (positive) divisor.
+     * @return the remainder (between 0 and <code>b</code>, exclusive).
+     */
+    private static long floorMod(long a, long b) {
+        long m = a % b;
+        return (m < 0) ? m + b : m;
+    }
+
+    /**
+     * Converts a decimal reading to a double.
+     * 
+     * @param value
+     *            the reading (may be <code>null</code>).
+     * @return the double value (<code>NaN</code> for <code>null</code>).
+     */
+    private static double toDouble(BigDecimal value) {
+        return (value != null) ? value.doubleValue() : Double.NaN;
+    }
+
+    /**
+     * The incremental state of a station.
+     */
+    private static class StationState {
+
+        /** The station identifier. */
+        final String stationId;
+
+        /** The time of the last aggregated observation (in milliseconds). */
+        long lastTime = Long.MIN_VALUE;
+
+        /** The last reported rainfall of the day. */
+        double lastRainToday = Double.NaN;
+
+        /** The last reported highest temperature of the day. */
+        double lastHighest = Double.NaN;
+
+        /** Whether the UTC offset of the station is known. */
+        boolean offsetKnown;
+
+        /** The difference between the local time of the station and UTC (in milliseconds). */
+        long utcOffset;
+
+        /** The predicted end of the open daily bucket (in milliseconds). */
+        long dayEnd;
+
+        /** Whether the station has been seen resetting its daily readings since the start of the open daily bucket. */
+        boolean resetSeen;
+
+        /** The open hourly bucket. */
+        Bucket hour;
+
+        /** The open daily bucket. */
+        Bucket day;
+
+        /**
+         * Constructs a new station state.
+         * 
+         * @param stationId
+         *            the station identifier.
+         */
+        StationState(String stationId) {
+            this.stationId = stationId;
+        }
+
+    }
+
+    /**
+     * An aggregate being accumulated. Readings are stored as floats in the rollup files.
+     */
+    private static class Bucket {
+
+        /** The station identifier. */
+        final String stationId;
+
+        /** The resolution. */
+        final int resolution;
+
+        /** The start of the period (in milliseconds). */
+        final long startTime;
+
+        /** The number of observations. */
+        int count;
+
+        /** The number of observations reporting a temperature. */
+        int temperatureCount;
+
+        /** The lowest temperature. */
+        double min = Double.NaN;
+
+        /** The highest temperature. */
+        double max = Double.NaN;
+
+        /** The sum of the temperatures. */
+        double sum;
+
+        /** The total rainfall. */
+        double rain;
+
+        /** The strongest gust. */
+        double peakGust = Double.NaN;
+
+        /**
+         * Constructs a new bucket.
+         * 
+         * @param stationId
+         *            the station identifier.
+         * @param resolution
+         *            the resolution.
+         * @param startTime
+         *            the start of the period (in milliseconds).
+         */
+        Bucket(String stationId, int resolution, long startTime) {
+            this.stationId = stationId;
+            this.resolution = resolution;
+            this.startTime = startTime;
+        }
+
+        /**
+         * Aggregates an observation.
+         * 
+         * @param temperature
+         *            the temperature (<code>NaN</code> if unknown).
+         * @param rainIncrement
+         *            the rainfall since the previous observation.
+         * @param gust
+         *            the gust speed (<code>NaN</code> if unknown).
+         */
+        void add(double temperature, double rainIncrement, double gust) {
+            count++;
+            if (!Double.isNaN(temperature)) {
+                temperatureCount++;
+                sum += temperature;
+                addExtremes(temperature, temperature);
+            }
+            rain += rainIncrement;
+            if (!Double.isNaN(gust) && !(gust <= peakGust)) {
+                peakGust = gust;
+            }
+        }
+
+        /**
+         * Widens the temperature extremes.
+         * 
+         * @param low
+         *            a low temperature (<code>NaN</code> if unknown).
+         * @param high
+         *            a high temperature (<code>NaN</code> if unknown).
+         */
+        void addExtremes(double low, double high) {
+            if (!Double.isNaN(low) && !(low >= min)) {
+                min = low;
+            }
+            if (!Double.isNaN(high) && !(high <= max)) {
+                max = high;
+            }
+        }
+
+        /**
+         * Converts this bucket into a rollup.
+         * 
+         * @return the rollup.
+         */
+        Rollup toRollup() {
+            return new Rollup(stationId, resolution, startTime, count, min, max, (temperatureCount > 0) ? sum / temperatureCount
+                    : Double.NaN, rain, peakGust);
+        }
+
+        /**
+         * Returns the size of the rollup record of this bucket.
+         * 
+         * @return the record size (in bytes).
+         */
+        int getRecordSize() {
+            int utfLength = 0;
+            for (int i = 0; i < stationId.length(); i++) {
+                char c = stationId.charAt(i);
+                utfLength += (c >= 0x0001 && c <= 0x007F) ? 1 : (c > 0x07FF) ? 3 : 2;
+            }
+            return 2 + utfLength + 1 + 8 + 4 + 4 + 5 * 4;
+        }
+
+        /**
+         * Writes this bucket as a rollup record.
+         * 
+         * @param out
+         *            the output stream.
+         * @throws IOException
+         *             if the record cannot be written.
+         */
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(stationId);
+            out.writeByte(resolution);
+            out.writeLong(startTime);
+            out.writeInt(count);
+            out.writeInt(temperatureCount);
+            out.writeFloat((float) min);
+            out.writeFloat((float) max);
+            out.writeFloat((float) sum);
+            out.writeFloat((float) rain);
+            out.writeFloat((float) peakGust);
+        }
+
+        /**
+         * Reads a rollup record.
+         * 
+         * @param in
+         *            the input stream.
+         * @return the bucket.
+         * @throws IOException
+         *             if the record cannot be read.
+         */
+        static Bucket read(DataInputStream in) throws IOException {
+            Bucket bucket = new Bucket(in.readUTF(), in.readByte(), in.readLong());
+            bucket.count = in.readInt();
+            bucket.temperatureCount = in.readInt();
+            bucket.min = in.readFloat();
+            bucket.max = in.readFloat();
+            bucket.sum = in.readFloat();
+            bucket.rain = in.readFloat();
+            bucket.peakGust = in.readFloat();
+            return bucket;
+        }
+
+        /**
+         * Writes a bucket that may be <code>null</code>.
+         * 
+         * @param out
+         *            the output stream.
+         * @param bucket
+         *            the bucket (may be <code>null</code>).
+         * @throws IOException
+         *             if the bucket cannot be written.
+         */
+        static void writeNullable(DataOutputStream out, Bucket bucket) throws IOException {
+            out.writeBoolean(bucket != null);
+            if (bucket != null) {
+                bucket.write(out);
+            }
+        }
+
+        /**
+         * Reads a bucket written by {@link #writeNullable(DataOutputStream, Bucket)}.
+         * 
+         * @param in
+         *            the input stream.
+         * @return the bucket (may be <code>null</code>).
+         * @throws IOException
+         *             if the bucket cannot be read.
+         */
+        static Bucket readNullable(DataInputStream in) throws IOException {
+            return in.readBoolean() ? read(in) : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.wbug.store;
+
+/**
+ * The delta-of-delta compression state of a timestamp column. The first timestamp is stored as is, the second as a delta and
+ * the following ones as the difference between consecutive deltas, using a variable-length prefix code: regularly spaced
+ * observations cost a single bit each. The same state class is used to encode and to decode a column.
+ */
+class TimestampColumn {
+
+    /** The number of timestamps encoded or decoded so far. */
+    private int count;
+
+    /** The previous timestamp (in seconds). */
+    private long previous;
+
+    /** The previous delta (in seconds). */
+    private long previousDelta;
+
+    /**
+     * Encodes a timestamp.
+     * 
+     * @param out
+     *            the bit buffer.
+     * @param seconds
+     *            the timestamp (in seconds).
+     */
+    void write(BitOutput out, long seconds) {
+        if (count == 0) {
+            out.writeBits(seconds, 64);
+        } else if (count == 1) {
+            previousDelta = seconds - previous;
+            out.writeBits(previousDelta, 32);
+        } else {
+            long delta = seconds - previous;
+            long dod = delta - previousDelta;
+            if (dod == 0) {
+                out.writeBit(false);
+            } else if (dod >= -64 && dod <= 63) {
+                out.writeBits(0x2, 2);
+                out.writeBits(dod, 7);
+            } else if (dod >= -256 && dod <= 255) {
+                out.writeBits(0x6, 3);
+                out.writeBits(dod, 9);
+            } else if (dod >= -2048 && dod <= 2047) {
+                out.writeBits(0xE, 4);
+                out.writeBits(dod, 12);
+            } else {
+                out.writeBits(0xF, 4);
+                out.writeBits(dod, 32);
+            }
+            previousDelta = delta;
+        }
+        previous = seconds;
+        count++;
+    }
+
+    /**
+     * Decodes the next timestamp.
+     * 
+     * @param in
+     *            the bit reader.
+     * @return the timestamp (in seconds).
+     */
+    long read(BitInput in) {
+        if (count == 0) {
+            previous = in.readBits(64);
+        } else if (count == 1) {
+            previousDelta = signExtend(in.readBits(32), 32);
+            previous += previousDelta;
+        } else {
+            long dod;
+            if (!in.readBit()) {
+                dod = 0;
+            } else if (!in.readBit()) {
+                dod = signExtend(in.readBits(7), 7);
+            } else if (!in.readBit()) {
+                dod = signExtend(in.readBits(9), 9);
+            } else if (!in.readBit()) {
+                dod = signExtend(in.readBits(12), 12);
+            } else {
+                dod = signExtend(in.readBits(32), 32);
+            }
+            previousDelta += dod;
+            previous += previousDelta;
+        }
+        count++;
+        return previous;
+    }
+
+    /**
+     * Restores the sign of a value stored on a number of bits (two's complement).
+     * 
+     * @param value
+     *            the stored bits.
+     * @param bits
+     *            the number of bits.
+     * @return the signed value.
+     */
+    private static long signExtend(long value, int bits) {
+        return (value << (64 - bits)) >> (64 - bits);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.wbug.store;
+
+/**
+ * The XOR compression state of a column of double values. Each value is XOR-ed with the previous one: an unchanged value costs a
+ * single bit, and a changed value only stores the meaningful bits of the XOR, reusing the previous leading/trailing zero window
+ * when it fits. Missing values are stored as <code>NaN</code>. The same state class is used to encode and to decode a column.
+ */
+class ValueColumn {
+
+    /** The number of values encoded or decoded so far. */
+    private int count;
+
+    /** The bits of the previous value. */
+    private long previousBits;
+
+    /** The number of leading zeros of the previous meaningful window. */
+    private int leading = Integer.MAX_VALUE;
+
+    /** The number of trailing zeros of the previous meaningful window. */
+    private int trailing;
+
+    /**
+     * Encodes a value.
+     * 
+     * @param out
+     *            the bit buffer.
+     * @param value
+     *            the value.
+     */
+    void write(BitOutput out, double value) {
+        long bits = Double.doubleToLongBits(value);
+        if (count++ == 0) {
+            out.writeBits(bits, 64);
+            previousBits = bits;
+            return;
+        }
+        long xor = bits ^ previousBits;
+        previousBits = bits;
+        if (xor == 0) {
+            out.writeBit(false);
+            return;
+        }
+        out.writeBit(true);
+        int newLeading = Math.min(31, Long.numberOfLeadingZeros(xor));
+        int newTrailing = Long.numberOfTrailingZeros(xor);
+        if (leading != Integer.MAX_VALUE && newLeading >= leading && newTrailing >= trailing) {
+            out.writeBit(false);
+            out.writeBits(xor >>> trailing, 64 - leading - trailing);
+        } else {
+            int significant = 64 - newLeading - newTrailing;
+            out.writeBit(true);
+            out.writeBits(newLeading, 5);
+            out.writeBits(significant - 1, 6);
+            out.writeBits(xor >>> newTrailing, significant);
+            leading = newLeading;
+            trailing = newTrailing;
+        }
+    }
+
+    /**
+     * Decodes the next value.
+     * 
+     * @param in
+     *            the bit reader.
+     * @return the value.
+     */
+    double read(BitInput in) {
+        if (count++ == 0) {
+            previousBits = in.readBits(64);
+        } else if (in.readBit()) {
+            if (in.readBit()) {
+                leading = (int) in.readBits(5);
+                int significant = (int) in.readBits(6) + 1;
+                trailing = 64 - leading - significant;
+            }
+            long xor = in.readBits(64 - leading - trailing) << trailing;
+            previousBits ^= xor;
+        }
+        return Double.longBitsToDouble(previousBits);
+    }
+
+}
@@ -0,0 +1,275 @@
+package com.wbug;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.AssertionFailedError;
+import junit.framework.TestCase;
+
+import org.dom4j.DocumentFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.wbug.cache.NegativeCache;
+import com.wbug.data.DataObjectHandler;
+import com.wbug.data.LiveWeather;
+import com.wbug.data.Location;
+import com.wbug.data.Station;
+
+/**
+ * Checks that a single {@link WeatherBugService} can be shared by many threads: every call made concurrently must get the data
+ * of its own request, and the process-wide dom4j document factory must be left untouched.
+ * <p>
+ * The service is routed through a local HTTP server, used as a proxy, which answers the WeatherBug API methods with responses
+ * derived from the request parameters, so that each result can be checked against its request.
+ */
+public class WeatherBugServiceStressTest extends TestCase {
+
+    /** The number of concurrent threads. */
+    private static final int THREADS = 16;
+
+    /** The number of calls per thread. */
+    private static final int CALLS = 100;
+
+    /** The ZIP code answered with an empty station list. */
+    private static final int UNKNOWN_ZIP_CODE = 99999;
+
+    /** The local server answering the requests. */
+    private HttpServer server;
+
+    /** The number of requests answered by the server. */
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    /** The service under test. */
+    private WeatherBugService service;
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see junit.framework.TestCase#setUp()
+     */
+    protected void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requestCount.incrementAndGet();
+                byte[] body = respond(exchange.getRequestURI().getPath(), getParameters(exchange.getRequestURI().getRawQuery()))
+                        .getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(THREADS));
+        server.start();
+        service = new WeatherBugService.Builder("TEST").negativeCache(new NegativeCache()).maxConnections(THREADS).build();
+        service.getHttpClient().getHostConfiguration().setProxy("127.0.0.1", server.getAddress().getPort());
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see junit.framework.TestCase#tearDown()
+     */
+    protected void tearDown() throws Exception {
+        service.shutdown();
+        server.stop(0);
+    }
+
+    /**
+     * Checks that the <i>aws</i> prefix is not bound on the process-wide document factory.
+     * 
+     * @throws Exception
+     *             if the call failed.
+     */
+    public void testSharedDocumentFactoryUntouched() throws Exception {
+        Map before = DocumentFactory.getInstance().getXPathNamespaceURIs();
+        LiveWeather liveWeather = service.getLiveWeatherByStationID("S1", 0);
+        assertEquals("S1", liveWeather.getStationId());
+        Map after = DocumentFactory.getInstance().getXPathNamespaceURIs();
+        assertTrue(after == null || !after.containsKey("aws"));
+        assertEquals(before, after);
+    }
+
+    /**
+     * Runs a mix of calls from many threads and checks each result against its request.
+     * 
+     * @throws Exception
+     *             if the threads could not be run.
+     */
+    public void testConcurrentCalls() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final List failures = Collections.synchronizedList(new ArrayList());
+        for (int t = 0; t < THREADS; t++) {
+            final Random random = new Random(t);
+            new Thread("stress-" + t) {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < CALLS; i++) {
+                            call(random.nextInt(5), random.nextInt(50));
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        start.countDown();
+        assertTrue("Timed out", done.await(120, TimeUnit.SECONDS));
+        if (!failures.isEmpty()) {
+            Throwable failure = (Throwable) failures.get(0);
+            AssertionFailedError error = new AssertionFailedError(failures.size() + " thread(s) failed: " + failure);
+            error.initCause(failure);
+            throw error;
+        }
+        assertTrue(requestCount.get() > 0);
+        assertEquals(1, service.getNegativeCache().size());
+    }
+
+    /**
+     * Makes a call and checks its result.
+     * 
+     * @param kind
+     *            the kind of call.
+     * @param n
+     *            the number the request parameters are derived from.
+     * @throws WeatherBugServiceException
+     *             if the call failed.
+     */
+    private void call(int kind, final int n) throws WeatherBugServiceException {
+        switch (kind) {
+        case 0:
+            LiveWeather liveWeather = service.getLiveWeatherByStationID("S" + n, 0);
+            assertEquals("S" + n, liveWeather.getStationId());
+            assertEquals(new BigDecimal(n + ".5"), liveWeather.getTemperature());
+            break;
+        case 1:
+            Station[] stations = service.getStationListByUSZipCode(10000 + n);
+            assertEquals(getStationCount(10000 + n), stations.length);
+            for (int i = 0; i < stations.length; i++) {
+                assertEquals((10000 + n) + "-" + i, stations[i].getId());
+            }
+            break;
+        case 2:
+            final int[] count = new int[1];
+            service.getStationListByUSZipCode(10000 + n, new DataObjectHandler() {
+                public boolean handle(Object object) {
+                    assertEquals((10000 + n) + "-" + count[0], ((Station) object).getId());
+                    return ++count[0] < 2;
+                }
+            });
+            assertEquals(Math.min(2, getStationCount(10000 + n)), count[0]);
+            break;
+        case 3:
+            Location[] locations = service.getLocationList("City" + n);
+            assertEquals(1, locations.length);
+            assertEquals("City" + n, locations[0].getCityName());
+            break;
+        default:
+            assertEquals(0, service.getStationListByUSZipCode(UNKNOWN_ZIP_CODE).length);
+            break;
+        }
+    }
+
+    /**
+     * Returns the number of stations of a ZIP code, as answered by the server.
+     * 
+     * @param zipCode
+     *            the ZIP code.
+     * @return the number of stations.
+     */
+    private static int getStationCount(int zipCode) {
+        return (zipCode == UNKNOWN_ZIP_CODE) ? 0 : 1 + zipCode % 7;
+    }
+
+    /**
+     * Builds the response of a request.
+     * 
+     * @param path
+     *            the request path (<i>/method.aspx</i>).
+     * @param params
+     *            the request parameters.
+     * @return the response body.
+     */
+    private static String respond(String path, Map params) {
+        StringBuffer xml = new StringBuffer();
+        if (path.startsWith("/getLiveWeatherRSS")) {
+            String stationId = (String) params.get("stationid");
+            xml.append("<rss><channel><aws:weather xmlns:aws=\"http://www.aws.com/aws\">");
+            xml.append("<aws:WebURL>http://weather.weatherbug.com/</aws:WebURL><aws:ob>");
+            appendTimestamp(xml, "ob-date", 12);
+            xml.append("<aws:station-id>").append(stationId).append("</aws:station-id>");
+            xml.append("<aws:temp units=\"&amp;deg;F\">").append(stationId.substring(1)).append(".5</aws:temp>");
+            appendTimestamp(xml, "gust-time", 11);
+            appendTimestamp(xml, "sunrise", 6);
+            appendTimestamp(xml, "sunset", 20);
+            xml.append("</aws:ob></aws:weather></channel></rss>");
+        } else if (path.startsWith("/getStationsXML")) {
+            int zipCode = Integer.parseInt((String) params.get("zipCode"));
+            xml.append("<aws:weather xmlns:aws=\"http://www.aws.com/aws\"><aws:stations>");
+            for (int i = 0; i < getStationCount(zipCode); i++) {
+                xml.append("<aws:station id=\"").append(zipCode).append('-').append(i).append("\" zipcode=\"").append(zipCode);
+                xml.append("\"/>");
+            }
+            xml.append("</aws:stations></aws:weather>");
+        } else if (path.startsWith("/getLocationsXML")) {
+            xml.append("<aws:weather xmlns:aws=\"http://www.aws.com/aws\"><aws:locations><aws:location cityname=\"");
+            xml.append(params.get("SearchString")).append("\"/></aws:locations></aws:weather>");
+        }
+        return xml.toString();
+    }
+
+    /**
+     * Appends a timestamp element of a live weather response.
+     * 
+     * @param xml
+     *            the response being built.
+     * @param name
+     *            the local name of the element.
+     * @param hour
+     *            the hour of the timestamp.
+     */
+    private static void appendTimestamp(StringBuffer xml, String name, int hour) {
+        xml.append("<aws:").append(name).append("><aws:year number=\"2010\"/><aws:month number=\"5\"/>");
+        xml.append("<aws:day number=\"1\"/><aws:hour hour-24=\"").append(hour).append("\"/><aws:minute number=\"0\"/>");
+        xml.append("<aws:second number=\"0\"/><aws:time-zone abbrv=\"UTC\"/></aws:").append(name).append('>');
+    }
+
+    /**
+     * Parses the parameters of a query string. The test parameters need no decoding.
+     * 
+     * @param query
+     *            the query string.
+     * @return the parameters.
+     */
+    private static Map getParameters(String query) {
+        Map params = new HashMap();
+        String[] pairs = (query != null) ? query.split("&") : new String[0];
+        for (int i = 0; i < pairs.length; i++) {
+            int separator = pairs[i].indexOf('=');
+            if (separator > 0) {
+                params.put(pairs[i].substring(0, separator), pairs[i].substring(separator + 1));
+            }
+        }
+        return params;
+    }
+
+}